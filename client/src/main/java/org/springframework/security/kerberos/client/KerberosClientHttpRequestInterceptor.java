@@ -0,0 +1,96 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.function.Function;
+
+import javax.security.auth.login.LoginException;
+
+import org.ietf.jgss.GSSException;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.Assert;
+import org.springframework.web.client.RestClientException;
+
+/**
+ * {@link ClientHttpRequestInterceptor} adding a SPNEGO <code>Authorization</code> header
+ * to every request.
+ *
+ * <p>
+ * Tokens are created by a shared {@link KerberosCredentialManager}, so any number of
+ * clients in an application can use a single login and its cached service tickets instead
+ * of logging in for every request. The interceptor works with any request factory and can
+ * be registered with a plain {@code RestTemplate} or any other client built on
+ * {@link ClientHttpRequestInterceptor}. Requests already having an
+ * <code>Authorization</code> header are passed as is.
+ *
+ * <pre>
+ * RestTemplate restTemplate = new RestTemplate();
+ * restTemplate.getInterceptors().add(new KerberosClientHttpRequestInterceptor(credentialManager));
+ * </pre>
+ *
+ * @see KerberosCredentialManager
+ */
+public class KerberosClientHttpRequestInterceptor implements ClientHttpRequestInterceptor {
+
+	private final KerberosCredentialManager credentialManager;
+
+	private Function<URI, String> servicePrincipalResolver = KerberosCredentialManager::getServicePrincipalName;
+
+	/**
+	 * Instantiates a new kerberos client http request interceptor.
+	 * @param credentialManager the kerberos credential manager
+	 */
+	public KerberosClientHttpRequestInterceptor(KerberosCredentialManager credentialManager) {
+		Assert.notNull(credentialManager, "credentialManager cannot be null");
+		this.credentialManager = credentialManager;
+	}
+
+	@Override
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+			throws IOException {
+		HttpHeaders headers = request.getHeaders();
+		if (!headers.containsKey(HttpHeaders.AUTHORIZATION)) {
+			String servicePrincipalName = this.servicePrincipalResolver.apply(request.getURI());
+			try {
+				headers.set(HttpHeaders.AUTHORIZATION,
+						this.credentialManager.createNegotiateHeader(servicePrincipalName));
+			}
+			catch (LoginException | GSSException ex) {
+				throw new RestClientException("Error creating SPNEGO token for " + servicePrincipalName, ex);
+			}
+		}
+		return execution.execute(request, body);
+	}
+
+	/**
+	 * Sets the function resolving the service principal name for the uri of a request.
+	 * Defaults to <code>HTTP@host</code>.
+	 * @param servicePrincipalResolver the service principal resolver
+	 */
+	public void setServicePrincipalResolver(Function<URI, String> servicePrincipalResolver) {
+		Assert.notNull(servicePrincipalResolver, "servicePrincipalResolver cannot be null");
+		this.servicePrincipalResolver = servicePrincipalResolver;
+	}
+
+}
@@ -0,0 +1,442 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.client;
+
+import java.net.URI;
+import java.security.Principal;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import javax.security.auth.Subject;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.kerberos.KerberosPrincipal;
+import javax.security.auth.kerberos.KerberosTicket;
+import javax.security.auth.login.Configuration;
+import javax.security.auth.login.LoginContext;
+import javax.security.auth.login.LoginException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.ietf.jgss.GSSContext;
+import org.ietf.jgss.GSSCredential;
+import org.ietf.jgss.GSSException;
+import org.ietf.jgss.GSSManager;
+import org.ietf.jgss.GSSName;
+import org.ietf.jgss.Oid;
+
+import org.springframework.security.kerberos.authentication.sun.GlobalKrb5Configuration;
+import org.springframework.security.kerberos.authentication.sun.KdcLocator;
+import org.springframework.security.kerberos.authentication.sun.Krb5Configuration;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * Holds a logged in Kerberos {@link Subject} which can be shared by any number of
+ * clients, and creates SPNEGO tokens for target services on its behalf.
+ *
+ * <p>
+ * The login happens lazily on first use and is repeated once the ticket granting ticket
+ * of the current subject is about to expire, so callers never see an expired subject.
+ * Service tickets obtained for a target service are kept in the subject by the JDK, which
+ * means that after the first request to a service every further token is created locally
+ * without contacting the KDC. All methods are safe to be called concurrently.
+ *
+ * <p>
+ * The manager can be configured in the same ways as {@link KerberosRestTemplate}.
+ * <ul>
+ * <li>Leave keyTabLocation and userPrincipal empty if you want to use cached ticket</li>
+ * <li>Use keyTabLocation and userPrincipal if you want to use keytab file</li>
+ * <li>Use userPrincipal and password if you want to use user/password</li>
+ * <li>Use loginOptions if you want to customise Krb5LoginModule options</li>
+ * </ul>
+ *
+ * <p>
+ * Besides being used by the provided client integrations, the manager can produce
+ * <code>Authorization</code> header values for any other http client. For clients with an
+ * asynchronous api, like the JDK <code>HttpClient</code> on newer Java versions, the
+ * header can be created asynchronously and composed with the request:
+ *
+ * <pre>
+ * credentialManager.createNegotiateHeaderAsync("HTTP@neo.example.org", executor)
+ *     .thenCompose((header) -&gt; httpClient.sendAsync(HttpRequest.newBuilder(uri)
+ *         .header("Authorization", header).build(), BodyHandlers.ofString()));
+ * </pre>
+ *
+ * @see KerberosRestTemplate
+ */
+public class KerberosCredentialManager {
+
+	/**
+	 * Prefix of the <code>Authorization</code> header value carrying a SPNEGO token.
+	 */
+	public static final String NEGOTIATE_PREFIX = "Negotiate ";
+
+	private static final Log LOG = LogFactory.getLog(KerberosCredentialManager.class);
+
+	private static final Oid SPNEGO_OID = createOid("1.3.6.1.5.5.2");
+
+	private static final Oid KERBEROS_PRINCIPAL_NAME_OID = createOid("1.2.840.113554.1.2.2.1");
+
+	private final String loginContextName;
+
+	private final Configuration loginConfig;
+
+	private final CallbackHandler callbackHandler;
+
+	private final String userPrincipal;
+
+	private final Map<String, GSSName> serviceNames = new ConcurrentHashMap<String, GSSName>();
+
+	private final Object loginMonitor = new Object();
+
+	private volatile LoggedInSubject loggedInSubject;
+
+	private Duration renewalThreshold = Duration.ofMinutes(5);
+
+	private Clock clock = Clock.systemUTC();
+
+	private Krb5Configuration krb5Configuration;
+
+	private KdcLocator kdcLocator;
+
+	/**
+	 * Instantiates a new kerberos credential manager using the ticket cache.
+	 */
+	public KerberosCredentialManager() {
+		this(null, (String) null, null, null);
+	}
+
+	/**
+	 * Instantiates a new kerberos credential manager.
+	 * @param keyTabLocation the key tab location
+	 * @param userPrincipal the user principal
+	 */
+	public KerberosCredentialManager(String keyTabLocation, String userPrincipal) {
+		this(keyTabLocation, userPrincipal, null, null);
+	}
+
+	/**
+	 * Instantiates a new kerberos credential manager.
+	 * @param keyTabLocation the key tab location
+	 * @param userPrincipal the user principal
+	 * @param password the password
+	 * @param loginOptions the login options
+	 */
+	public KerberosCredentialManager(String keyTabLocation, String userPrincipal, String password,
+			Map<String, Object> loginOptions) {
+		this(new KerberosRestTemplate.ClientLoginConfig(keyTabLocation, userPrincipal, password, loginOptions),
+				new KerberosRestTemplate.CallbackHandlerImpl(userPrincipal, password), userPrincipal);
+	}
+
+	/**
+	 * Instantiates a new kerberos credential manager using the given login configuration,
+	 * like {@code SunJaasKrb5LoginConfig}.
+	 * @param loginConfig the login config
+	 */
+	public KerberosCredentialManager(Configuration loginConfig) {
+		this("", loginConfig);
+	}
+
+	/**
+	 * Instantiates a new kerberos credential manager using the given login configuration,
+	 * like {@code SunJaasKrb5LoginConfig}.
+	 * @param loginContextName the name of the login context
+	 * @param loginConfig the login config
+	 */
+	public KerberosCredentialManager(String loginContextName, Configuration loginConfig) {
+		this(loginContextName, loginConfig, null, null);
+		Assert.notNull(loginConfig, "loginConfig cannot be null");
+	}
+
+	private KerberosCredentialManager(Configuration loginConfig, CallbackHandler callbackHandler,
+			String userPrincipal) {
+		this("", loginConfig, callbackHandler, userPrincipal);
+	}
+
+	private KerberosCredentialManager(String loginContextName, Configuration loginConfig,
+			CallbackHandler callbackHandler, String userPrincipal) {
+		this.loginContextName = loginContextName;
+		this.loginConfig = loginConfig;
+		this.callbackHandler = callbackHandler;
+		this.userPrincipal = userPrincipal;
+	}
+
+	/**
+	 * Returns the logged in subject, logging in first if there is no subject yet or the
+	 * ticket granting ticket of the current one is about to expire.
+	 * @return the logged in subject
+	 * @throws LoginException if the login fails
+	 */
+	public Subject getSubject() throws LoginException {
+		LoggedInSubject current = this.loggedInSubject;
+		if (current != null && !current.needsRenewal(this.clock.millis())) {
+			return current.subject;
+		}
+		synchronized (this.loginMonitor) {
+			current = this.loggedInSubject;
+			if (current == null || current.needsRenewal(this.clock.millis())) {
+				current = login();
+				this.loggedInSubject = current;
+			}
+			return current.subject;
+		}
+	}
+
+	/**
+	 * Creates a new SPNEGO token for the given service principal. The name is either a
+	 * host based service name like <code>HTTP@host.example.org</code> or a Kerberos
+	 * principal name like <code>HTTP/host.example.org@EXAMPLE.ORG</code>.
+	 * @param servicePrincipalName the service principal name
+	 * @return the token to send to the service
+	 * @throws LoginException if the login fails
+	 * @throws GSSException if the token could not be created
+	 */
+	public byte[] createToken(String servicePrincipalName) throws LoginException, GSSException {
+		Assert.hasText(servicePrincipalName, "servicePrincipalName must be specified");
+		final GSSName serviceName = getServiceName(servicePrincipalName);
+		try {
+			return Subject.doAs(getSubject(), new PrivilegedExceptionAction<byte[]>() {
+
+				@Override
+				public byte[] run() throws GSSException {
+					return initSecContext(serviceName);
+				}
+
+			});
+		}
+		catch (PrivilegedActionException ex) {
+			throw (GSSException) ex.getException();
+		}
+	}
+
+	/**
+	 * Creates a new SPNEGO token for the <code>HTTP</code> service of the host of the
+	 * given uri.
+	 * @param uri the uri of the request
+	 * @return the token to send to the service
+	 * @throws LoginException if the login fails
+	 * @throws GSSException if the token could not be created
+	 * @see #getServicePrincipalName(URI)
+	 */
+	public byte[] createToken(URI uri) throws LoginException, GSSException {
+		return createToken(getServicePrincipalName(uri));
+	}
+
+	/**
+	 * Creates a new <code>Authorization</code> header value for the <code>HTTP</code>
+	 * service of the host of the given uri.
+	 * @param uri the uri of the request
+	 * @return the header value
+	 * @throws LoginException if the login fails
+	 * @throws GSSException if the token could not be created
+	 */
+	public String createNegotiateHeader(URI uri) throws LoginException, GSSException {
+		return createNegotiateHeader(getServicePrincipalName(uri));
+	}
+
+	/**
+	 * Creates a new <code>Authorization</code> header value for the given service
+	 * principal.
+	 * @param servicePrincipalName the service principal name
+	 * @return the header value
+	 * @throws LoginException if the login fails
+	 * @throws GSSException if the token could not be created
+	 * @see #createToken(String)
+	 */
+	public String createNegotiateHeader(String servicePrincipalName) throws LoginException, GSSException {
+		return NEGOTIATE_PREFIX + Base64.getEncoder().encodeToString(createToken(servicePrincipalName));
+	}
+
+	/**
+	 * Asynchronously creates a new <code>Authorization</code> header value for the given
+	 * service principal using the given executor. Only the first token for a service or a
+	 * renewal of the login blocks on the KDC, so the returned future can be composed with
+	 * non-blocking clients without tying up their threads. Failures complete the future
+	 * with a {@link CompletionException} caused by the {@link LoginException} or
+	 * {@link GSSException}.
+	 * @param servicePrincipalName the service principal name
+	 * @param executor the executor used to create the token
+	 * @return the future header value
+	 */
+	public CompletableFuture<String> createNegotiateHeaderAsync(String servicePrincipalName, Executor executor) {
+		Assert.notNull(executor, "executor cannot be null");
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return createNegotiateHeader(servicePrincipalName);
+			}
+			catch (LoginException | GSSException ex) {
+				throw new CompletionException(ex);
+			}
+		}, executor);
+	}
+
+	/**
+	 * Discards the current subject, so that the next request logs in again.
+	 */
+	public void invalidate() {
+		synchronized (this.loginMonitor) {
+			this.loggedInSubject = null;
+		}
+	}
+
+	/**
+	 * Sets how long before the expiry of the ticket granting ticket the subject is
+	 * renewed by logging in again. Default is 5 minutes.
+	 * @param renewalThreshold the renewal threshold
+	 */
+	public void setRenewalThreshold(Duration renewalThreshold) {
+		Assert.notNull(renewalThreshold, "renewalThreshold cannot be null");
+		this.renewalThreshold = renewalThreshold;
+	}
+
+	/**
+	 * Sets the clock used to check the expiry of the ticket granting ticket.
+	 * @param clock the clock
+	 */
+	public void setClock(Clock clock) {
+		Assert.notNull(clock, "clock cannot be null");
+		this.clock = clock;
+	}
+
+	/**
+	 * Sets the Kerberos configuration of this manager, which is merged into the
+	 * configuration of the JVM before logging in. Kdcs and other settings of its realms
+	 * are kept side by side with those of other components.
+	 * @param krb5Configuration the Kerberos configuration
+	 * @see GlobalKrb5Configuration
+	 */
+	public void setKrb5Configuration(Krb5Configuration krb5Configuration) {
+		this.krb5Configuration = krb5Configuration;
+	}
+
+	/**
+	 * Sets the locator the logins of this manager are reported to.
+	 * @param kdcLocator the kdc locator of the realm of the user principal
+	 * @see KdcLocator#login(LoginContext)
+	 */
+	public void setKdcLocator(KdcLocator kdcLocator) {
+		this.kdcLocator = kdcLocator;
+	}
+
+	/**
+	 * Returns the host based service name of the <code>HTTP</code> service for the host
+	 * of the given uri, as used by browsers and Apache HttpClient.
+	 * @param uri the uri
+	 * @return the service principal name
+	 */
+	public static String getServicePrincipalName(URI uri) {
+		Assert.notNull(uri.getHost(), "uri must have a host");
+		return "HTTP@" + uri.getHost();
+	}
+
+	private byte[] initSecContext(GSSName serviceName) throws GSSException {
+		GSSContext context = GSSManager.getInstance().createContext(serviceName, SPNEGO_OID, (GSSCredential) null,
+				GSSContext.DEFAULT_LIFETIME);
+		try {
+			context.requestMutualAuth(true);
+			context.requestCredDeleg(false);
+			byte[] token = new byte[0];
+			return context.initSecContext(token, 0, token.length);
+		}
+		finally {
+			context.dispose();
+		}
+	}
+
+	private GSSName getServiceName(String servicePrincipalName) throws GSSException {
+		GSSName serviceName = this.serviceNames.get(servicePrincipalName);
+		if (serviceName == null) {
+			Oid nameType = (servicePrincipalName.indexOf('/') != -1) ? KERBEROS_PRINCIPAL_NAME_OID
+					: GSSName.NT_HOSTBASED_SERVICE;
+			serviceName = GSSManager.getInstance().createName(servicePrincipalName, nameType);
+			this.serviceNames.put(servicePrincipalName, serviceName);
+		}
+		return serviceName;
+	}
+
+	private LoggedInSubject login() throws LoginException {
+		if (this.krb5Configuration != null) {
+			GlobalKrb5Configuration.apply(this.krb5Configuration);
+		}
+		Set<Principal> principals = new HashSet<Principal>(1);
+		if (StringUtils.hasText(this.userPrincipal)) {
+			principals.add(new KerberosPrincipal(this.userPrincipal));
+		}
+		Subject subject = new Subject(false, principals, new HashSet<Object>(), new HashSet<Object>());
+		LoginContext lc = new LoginContext(this.loginContextName, subject, this.callbackHandler, this.loginConfig);
+		if (this.kdcLocator != null) {
+			this.kdcLocator.login(lc);
+		}
+		else {
+			lc.login();
+		}
+		long renewAt = Long.MAX_VALUE;
+		for (KerberosTicket ticket : lc.getSubject().getPrivateCredentials(KerberosTicket.class)) {
+			if (isTicketGrantingTicket(ticket)) {
+				renewAt = Math.min(renewAt, ticket.getEndTime().getTime() - this.renewalThreshold.toMillis());
+			}
+		}
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Logged in " + lc.getSubject().getPrincipals() + ", renewing at "
+					+ ((renewAt != Long.MAX_VALUE) ? new Date(renewAt) : "never"));
+		}
+		return new LoggedInSubject(lc.getSubject(), renewAt);
+	}
+
+	private static boolean isTicketGrantingTicket(KerberosTicket ticket) {
+		return ticket.getServer() != null && ticket.getServer().getName().startsWith("krbtgt/")
+				&& ticket.getEndTime() != null;
+	}
+
+	private static Oid createOid(String oid) {
+		try {
+			return new Oid(oid);
+		}
+		catch (GSSException ex) {
+			throw new IllegalStateException("Unable to instantiate Oid: ", ex);
+		}
+	}
+
+	private static final class LoggedInSubject {
+
+		private final Subject subject;
+
+		private final long renewAt;
+
+		private LoggedInSubject(Subject subject, long renewAt) {
+			this.subject = subject;
+			this.renewAt = renewAt;
+		}
+
+		private boolean needsRenewal(long now) {
+			return now >= this.renewAt;
+		}
+
+	}
+
+}
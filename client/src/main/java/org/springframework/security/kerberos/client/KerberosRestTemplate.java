@@ -52,6 +52,8 @@ import org.apache.http.impl.client.HttpClientBuilder;
 
 import org.springframework.http.HttpMethod;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.security.kerberos.authentication.sun.KdcLocator;
+import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 import org.springframework.web.client.RequestCallback;
 import org.springframework.web.client.ResponseExtractor;
@@ -71,6 +73,7 @@ import org.springframework.web.client.RestTemplate;
  * <li>Use userPrincipal and password if you want to use user/password</li>
  * <li>Use loginOptions if you want to customise Krb5LoginModule options</li>
  * <li>Use a customised httpClient</li>
+ * <li>Use a {@link KerberosCredentialManager} if you want to share a single login</li>
  * </ul>
  *
  * @author Janne Valkealahti
@@ -79,6 +82,8 @@ public class KerberosRestTemplate extends RestTemplate {
 
 	private static final Credentials credentials = new NullCredentials();
 
+	private final KerberosCredentialManager credentialManager;
+
 	private final String keyTabLocation;
 
 	private final String userPrincipal;
@@ -87,6 +92,8 @@ public class KerberosRestTemplate extends RestTemplate {
 
 	private final Map<String, Object> loginOptions;
 
+	private KdcLocator kdcLocator;
+
 	/**
 	 * Instantiates a new kerberos rest template.
 	 */
@@ -170,6 +177,26 @@ public class KerberosRestTemplate extends RestTemplate {
 		this(keyTabLocation, userPrincipal, password, loginOptions, buildHttpClient(null));
 	}
 
+	/**
+	 * Instantiates a new kerberos rest template using the subject of the given credential
+	 * manager instead of logging in for every request.
+	 * @param credentialManager the kerberos credential manager
+	 */
+	public KerberosRestTemplate(KerberosCredentialManager credentialManager) {
+		this(credentialManager, null);
+	}
+
+	/**
+	 * Instantiates a new kerberos rest template using the subject of the given credential
+	 * manager instead of logging in for every request.
+	 * @param credentialManager the kerberos credential manager
+	 * @param customizer the http client customizer
+	 */
+	public KerberosRestTemplate(KerberosCredentialManager credentialManager, HttpClientCustomizer customizer) {
+		this(credentialManager, null, null, null, null, buildHttpClient(customizer));
+		Assert.notNull(credentialManager, "credentialManager cannot be null");
+	}
+
 	/**
 	 * Instantiates a new kerberos rest template.
 	 * @param keyTabLocation the key tab location
@@ -192,13 +219,30 @@ public class KerberosRestTemplate extends RestTemplate {
 	 */
 	private KerberosRestTemplate(String keyTabLocation, String userPrincipal, String password,
 			Map<String, Object> loginOptions, HttpClient httpClient) {
+		this(null, keyTabLocation, userPrincipal, password, loginOptions, httpClient);
+	}
+
+	private KerberosRestTemplate(KerberosCredentialManager credentialManager, String keyTabLocation,
+			String userPrincipal, String password, Map<String, Object> loginOptions, HttpClient httpClient) {
 		super(new HttpComponentsClientHttpRequestFactory(httpClient));
+		this.credentialManager = credentialManager;
 		this.keyTabLocation = keyTabLocation;
 		this.userPrincipal = userPrincipal;
 		this.password = password;
 		this.loginOptions = loginOptions;
 	}
 
+	/**
+	 * Sets the locator the logins of this template are reported to. Logins of a
+	 * {@link KerberosCredentialManager} given to this template are reported by the
+	 * manager itself.
+	 * @param kdcLocator the kdc locator of the realm of the user principal
+	 * @see KdcLocator#login(LoginContext)
+	 */
+	public void setKdcLocator(KdcLocator kdcLocator) {
+		this.kdcLocator = kdcLocator;
+	}
+
 	/**
 	 * Builds the default instance of {@link HttpClient} having kerberos support.
 	 * @return the http client with spneno auth scheme
@@ -237,9 +281,7 @@ public class KerberosRestTemplate extends RestTemplate {
 			final ResponseExtractor<T> responseExtractor) throws RestClientException {
 
 		try {
-			LoginContext lc = buildLoginContext();
-			lc.login();
-			Subject serviceSubject = lc.getSubject();
+			Subject serviceSubject = getSubject();
 			return Subject.doAs(serviceSubject, new PrivilegedAction<T>() {
 
 				@Override
@@ -254,12 +296,26 @@ public class KerberosRestTemplate extends RestTemplate {
 		}
 	}
 
+	private Subject getSubject() throws LoginException {
+		if (this.credentialManager != null) {
+			return this.credentialManager.getSubject();
+		}
+		LoginContext lc = buildLoginContext();
+		if (this.kdcLocator != null) {
+			this.kdcLocator.login(lc);
+		}
+		else {
+			lc.login();
+		}
+		return lc.getSubject();
+	}
+
 	private <T> T doExecuteSubject(URI url, HttpMethod method, RequestCallback requestCallback,
 			ResponseExtractor<T> responseExtractor) throws RestClientException {
 		return super.doExecute(url, method, requestCallback, responseExtractor);
 	}
 
-	private static final class ClientLoginConfig extends Configuration {
+	static final class ClientLoginConfig extends Configuration {
 
 		private final String keyTabLocation;
 
@@ -269,7 +325,7 @@ public class KerberosRestTemplate extends RestTemplate {
 
 		private final Map<String, Object> loginOptions;
 
-		private ClientLoginConfig(String keyTabLocation, String userPrincipal, String password,
+		ClientLoginConfig(String keyTabLocation, String userPrincipal, String password,
 				Map<String, Object> loginOptions) {
 			super();
 			this.keyTabLocation = keyTabLocation;
@@ -325,13 +381,13 @@ public class KerberosRestTemplate extends RestTemplate {
 
 	}
 
-	private static final class CallbackHandlerImpl implements CallbackHandler {
+	static final class CallbackHandlerImpl implements CallbackHandler {
 
 		private final String userPrincipal;
 
 		private final String password;
 
-		private CallbackHandlerImpl(String userPrincipal, String password) {
+		CallbackHandlerImpl(String userPrincipal, String password) {
 			super();
 			this.userPrincipal = userPrincipal;
 			this.password = password;
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.client.async;
+
+import java.util.function.Consumer;
+
+import org.apache.hc.client5.http.impl.async.HttpAsyncClientBuilder;
+
+/**
+ * Callback interface customizing the {@link HttpAsyncClientBuilder} used by
+ * {@link KerberosHttpAsyncClients}.
+ */
+@FunctionalInterface
+public interface HttpAsyncClientCustomizer extends Consumer<HttpAsyncClientBuilder> {
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.client.async;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.apache.hc.client5.http.async.AsyncExecCallback;
+import org.apache.hc.client5.http.async.AsyncExecChain;
+import org.apache.hc.client5.http.async.AsyncExecChainHandler;
+import org.apache.hc.client5.http.auth.AuthenticationException;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.message.BasicHttpRequest;
+import org.apache.hc.core5.http.nio.AsyncEntityProducer;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.kerberos.client.KerberosCredentialManager;
+import org.springframework.util.Assert;
+
+/**
+ * {@link AsyncExecChainHandler} adding a SPNEGO <code>Authorization</code> header to
+ * every request executed by an Apache HttpClient 5 async client.
+ *
+ * <p>
+ * Tokens are created by a shared {@link KerberosCredentialManager}. Only the first token
+ * for a service, and a renewal of the login, contact the KDC, but even creating a token
+ * from a cached service ticket may block. Tokens are therefore created on a separate
+ * executor and the request continues from there, so the handler does not hold up the I/O
+ * reactor threads. The default executor, shared by all handlers, runs one daemon thread
+ * per processor, discarded when idle, and queues up to {@value #DEFAULT_QUEUE_CAPACITY}
+ * tokens. Requests arriving while the queue is full fail right away with an
+ * {@link AuthenticationException} instead of starting ever more threads. Creating a token
+ * from a cached ticket only takes CPU, so more threads only help while logins or first
+ * tickets wait on the KDC; applications contacting many services at once can pass an
+ * executor sized for that. As a token can only be used once, every execution of a
+ * request, including retries and redirects, gets a new token. Requests already having an
+ * <code>Authorization</code> header are passed as is.
+ *
+ * @see KerberosHttpAsyncClients
+ */
+public class KerberosAsyncExecChainHandler implements AsyncExecChainHandler {
+
+	/**
+	 * Number of tokens the default executor queues before requests are rejected.
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+	private static final ExecutorService DEFAULT_EXECUTOR = createDefaultExecutor();
+
+	private final KerberosCredentialManager credentialManager;
+
+	private final Executor executor;
+
+	private Function<URI, String> servicePrincipalResolver = KerberosCredentialManager::getServicePrincipalName;
+
+	/**
+	 * Instantiates a new kerberos async exec chain handler.
+	 * @param credentialManager the kerberos credential manager
+	 */
+	public KerberosAsyncExecChainHandler(KerberosCredentialManager credentialManager) {
+		this(credentialManager, DEFAULT_EXECUTOR);
+	}
+
+	/**
+	 * Instantiates a new kerberos async exec chain handler.
+	 * @param credentialManager the kerberos credential manager
+	 * @param executor the executor creating the tokens
+	 */
+	public KerberosAsyncExecChainHandler(KerberosCredentialManager credentialManager, Executor executor) {
+		Assert.notNull(credentialManager, "credentialManager cannot be null");
+		Assert.notNull(executor, "executor cannot be null");
+		this.credentialManager = credentialManager;
+		this.executor = executor;
+	}
+
+	@Override
+	public void execute(HttpRequest request, AsyncEntityProducer entityProducer, AsyncExecChain.Scope scope,
+			AsyncExecChain chain, AsyncExecCallback asyncExecCallback) throws HttpException, IOException {
+		if (request.containsHeader(HttpHeaders.AUTHORIZATION)) {
+			chain.proceed(request, entityProducer, scope, asyncExecCallback);
+			return;
+		}
+		HttpHost target = scope.route.getTargetHost();
+		String servicePrincipalName = this.servicePrincipalResolver.apply(URI.create(target.toURI()));
+		CompletableFuture<String> header;
+		try {
+			header = this.credentialManager.createNegotiateHeaderAsync(servicePrincipalName, this.executor);
+		}
+		catch (RejectedExecutionException ex) {
+			asyncExecCallback.failed(new AuthenticationException(
+					"Too many pending SPNEGO tokens, not creating one for " + servicePrincipalName, ex));
+			return;
+		}
+		scope.cancellableDependency.setDependency(() -> header.cancel(false));
+		header.whenComplete((value, ex) -> {
+			if (ex != null) {
+				Throwable cause = (ex instanceof CompletionException && ex.getCause() != null) ? ex.getCause() : ex;
+				asyncExecCallback.failed(new AuthenticationException(
+						"Unable to create SPNEGO token for " + servicePrincipalName, cause));
+				return;
+			}
+			try {
+				chain.proceed(authorize(request, value), entityProducer, scope, asyncExecCallback);
+			}
+			catch (HttpException | IOException | RuntimeException ex2) {
+				asyncExecCallback.failed(ex2);
+			}
+		});
+	}
+
+	/**
+	 * Sets the function resolving the service principal name for the target of a request.
+	 * The uri passed to the function only has a scheme, host and port. Defaults to
+	 * <code>HTTP@host</code>.
+	 * @param servicePrincipalResolver the service principal resolver
+	 */
+	public void setServicePrincipalResolver(Function<URI, String> servicePrincipalResolver) {
+		Assert.notNull(servicePrincipalResolver, "servicePrincipalResolver cannot be null");
+		this.servicePrincipalResolver = servicePrincipalResolver;
+	}
+
+	private static HttpRequest authorize(HttpRequest request, String header) {
+		// never modify the original request, it is reused for retries and redirects
+		HttpRequest authorizedRequest = new BasicHttpRequest(request.getMethod(), request.getPath());
+		authorizedRequest.setScheme(request.getScheme());
+		authorizedRequest.setAuthority(request.getAuthority());
+		authorizedRequest.setVersion(request.getVersion());
+		authorizedRequest.setHeaders(request.getHeaders());
+		authorizedRequest.setHeader(HttpHeaders.AUTHORIZATION, header);
+		return authorizedRequest;
+	}
+
+	private static ExecutorService createDefaultExecutor() {
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("kerberos-token-");
+		threadFactory.setDaemon(true);
+		int threads = Runtime.getRuntime().availableProcessors();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(DEFAULT_QUEUE_CAPACITY), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.client.async;
+
+import org.apache.hc.client5.http.impl.ChainElement;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClientBuilder;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+
+import org.springframework.security.kerberos.client.KerberosCredentialManager;
+import org.springframework.util.Assert;
+
+/**
+ * Factory for Apache HttpClient 5 async clients authenticating every request with SPNEGO
+ * tokens of a shared {@link KerberosCredentialManager}.
+ *
+ * <p>
+ * The returned clients are driven by a small number of I/O reactor threads and negotiate
+ * HTTP/2 where the server supports it, so a single client can have a large number of
+ * Kerberos authenticated requests outstanding. A client can be used from
+ * {@code WebClient} with {@code HttpComponentsClientHttpConnector}, which also starts it,
+ * in which case <code>httpcore5-reactive</code> needs to be on the classpath.
+ *
+ * <pre>
+ * CloseableHttpAsyncClient httpClient = KerberosHttpAsyncClients.create(credentialManager);
+ * WebClient webClient = WebClient.builder()
+ *     .clientConnector(new HttpComponentsClientHttpConnector(httpClient))
+ *     .build();
+ * </pre>
+ *
+ * @see KerberosAsyncExecChainHandler
+ */
+public final class KerberosHttpAsyncClients {
+
+	/**
+	 * Name of the exec interceptor adding the SPNEGO tokens.
+	 */
+	public static final String KERBEROS_INTERCEPTOR = "KERBEROS";
+
+	private KerberosHttpAsyncClients() {
+	}
+
+	/**
+	 * Creates a new async client. The client needs to be started before use.
+	 * @param credentialManager the kerberos credential manager
+	 * @return the async client
+	 */
+	public static CloseableHttpAsyncClient create(KerberosCredentialManager credentialManager) {
+		return create(credentialManager, null);
+	}
+
+	/**
+	 * Creates a new async client. The client needs to be started before use.
+	 * @param credentialManager the kerberos credential manager
+	 * @param customizer the customizer for the client builder, may be {@code null}
+	 * @return the async client
+	 */
+	public static CloseableHttpAsyncClient create(KerberosCredentialManager credentialManager,
+			HttpAsyncClientCustomizer customizer) {
+		return create(new KerberosAsyncExecChainHandler(credentialManager), customizer);
+	}
+
+	/**
+	 * Creates a new async client using the given handler. The client needs to be started
+	 * before use.
+	 * @param handler the kerberos exec chain handler
+	 * @param customizer the customizer for the client builder, may be {@code null}
+	 * @return the async client
+	 */
+	public static CloseableHttpAsyncClient create(KerberosAsyncExecChainHandler handler,
+			HttpAsyncClientCustomizer customizer) {
+		Assert.notNull(handler, "handler cannot be null");
+		HttpAsyncClientBuilder builder = HttpAsyncClients.custom();
+		// placed right in front of the protocol handling so that retries and
+		// redirects are sent with a fresh token
+		builder.addExecInterceptorBefore(ChainElement.PROTOCOL.name(), KERBEROS_INTERCEPTOR, handler);
+		if (customizer != null) {
+			customizer.accept(builder);
+		}
+		return builder.build();
+	}
+
+}
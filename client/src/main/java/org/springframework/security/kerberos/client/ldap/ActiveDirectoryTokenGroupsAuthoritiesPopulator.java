@@ -0,0 +1,284 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.client.ldap;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.ldap.core.ContextSource;
+import org.springframework.ldap.core.DirContextOperations;
+import org.springframework.ldap.support.LdapUtils;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.kerberos.authentication.support.ExpiringCache;
+import org.springframework.security.ldap.userdetails.LdapAuthoritiesPopulator;
+import org.springframework.util.Assert;
+
+/**
+ * {@link LdapAuthoritiesPopulator} resolving all groups of an Active Directory user,
+ * including nested groups, from the constructed <code>tokenGroups</code> attribute.
+ *
+ * <p>
+ * Active Directory computes <code>tokenGroups</code> as the SIDs of all groups the user
+ * is a transitive member of, but only returns it for a base scope search on the user
+ * entry. The SIDs are then resolved to group names with a single search for all of them,
+ * split into batches only for users with very many groups. This costs two queries per
+ * user, independent of the nesting depth, where walking <code>memberOf</code> or using
+ * <code>LDAP_MATCHING_RULE_IN_CHAIN</code> gets slow on large directories.
+ *
+ * <p>
+ * Resolved authorities are cached per user for a bounded time, 5 minutes by default, so
+ * that repeated authentications of a user do not query the directory at all. The context
+ * source is typically a {@link KerberosLdapContextSource}.
+ *
+ * <p>
+ * The context source has to return <code>tokenGroups</code> and <code>objectSid</code> as
+ * binary attributes, which is configured with the environment properties of
+ * {@link #binaryAttributesEnvironment()}. Contexts are used as handed out by the context
+ * source, so that they can be pooled.
+ *
+ * <pre>
+ * contextSource.setBaseEnvironmentProperties(
+ *     ActiveDirectoryTokenGroupsAuthoritiesPopulator.binaryAttributesEnvironment());
+ * contextSource.afterPropertiesSet();
+ * </pre>
+ *
+ * @see KerberosLdapContextSource
+ */
+public class ActiveDirectoryTokenGroupsAuthoritiesPopulator implements LdapAuthoritiesPopulator {
+
+	private static final Log LOG = LogFactory.getLog(ActiveDirectoryTokenGroupsAuthoritiesPopulator.class);
+
+	private static final String BINARY_ATTRIBUTES = "java.naming.ldap.attributes.binary";
+
+	private static final String TOKEN_GROUPS = "tokenGroups";
+
+	private static final String OBJECT_SID = "objectSid";
+
+	private final ContextSource contextSource;
+
+	private String groupSearchBase = "";
+
+	private String groupRoleAttribute = "cn";
+
+	private String rolePrefix = "ROLE_";
+
+	private boolean convertToUpperCase = true;
+
+	private int sidBatchSize = 500;
+
+	private ExpiringCache<String, List<GrantedAuthority>> cache = new ExpiringCache<>(1000, Duration.ofMinutes(5));
+
+	/**
+	 * Instantiates a new active directory token groups authorities populator.
+	 * @param contextSource the context source
+	 */
+	public ActiveDirectoryTokenGroupsAuthoritiesPopulator(ContextSource contextSource) {
+		Assert.notNull(contextSource, "contextSource cannot be null");
+		this.contextSource = contextSource;
+	}
+
+	@Override
+	public Collection<? extends GrantedAuthority> getGrantedAuthorities(DirContextOperations userData,
+			String username) {
+		String userDn = userData.getDn().toString();
+		List<GrantedAuthority> authorities = this.cache.get(userDn);
+		if (authorities != null) {
+			return authorities;
+		}
+		DirContext ctx = this.contextSource.getReadOnlyContext();
+		try {
+			authorities = resolveAuthorities(ctx, userDn);
+		}
+		catch (NamingException ex) {
+			throw LdapUtils.convertLdapException(ex);
+		}
+		finally {
+			LdapUtils.closeContext(ctx);
+		}
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Resolved authorities " + authorities + " for user " + userDn);
+		}
+		this.cache.put(userDn, authorities);
+		return authorities;
+	}
+
+	/**
+	 * Returns the environment properties making a context source return the
+	 * <code>tokenGroups</code> and <code>objectSid</code> attributes as binary values, to
+	 * be set as base environment properties of the context source before it is
+	 * initialized.
+	 * @return the environment properties
+	 */
+	public static Map<String, Object> binaryAttributesEnvironment() {
+		return Collections.singletonMap(BINARY_ATTRIBUTES, TOKEN_GROUPS + " " + OBJECT_SID);
+	}
+
+	/**
+	 * Removes the cached authorities of all users.
+	 */
+	public void clearCache() {
+		this.cache.clear();
+	}
+
+	/**
+	 * Sets the base of the search for groups, relative to the base of the context source.
+	 * Defaults to the base of the context source.
+	 * @param groupSearchBase the group search base
+	 */
+	public void setGroupSearchBase(String groupSearchBase) {
+		Assert.notNull(groupSearchBase, "groupSearchBase cannot be null");
+		this.groupSearchBase = groupSearchBase;
+	}
+
+	/**
+	 * Sets the attribute of a group used as the name of the authority. Defaults to
+	 * <code>cn</code>.
+	 * @param groupRoleAttribute the group role attribute
+	 */
+	public void setGroupRoleAttribute(String groupRoleAttribute) {
+		Assert.hasText(groupRoleAttribute, "groupRoleAttribute must be specified");
+		this.groupRoleAttribute = groupRoleAttribute;
+	}
+
+	/**
+	 * Sets the prefix of the authorities. Defaults to <code>ROLE_</code>.
+	 * @param rolePrefix the role prefix
+	 */
+	public void setRolePrefix(String rolePrefix) {
+		Assert.notNull(rolePrefix, "rolePrefix cannot be null");
+		this.rolePrefix = rolePrefix;
+	}
+
+	/**
+	 * Sets whether the group names are converted to upper case. Defaults to {@code true}.
+	 * @param convertToUpperCase the convert to upper case
+	 */
+	public void setConvertToUpperCase(boolean convertToUpperCase) {
+		this.convertToUpperCase = convertToUpperCase;
+	}
+
+	/**
+	 * Sets the maximum number of SIDs resolved in a single search. Defaults to 500.
+	 * @param sidBatchSize the sid batch size
+	 */
+	public void setSidBatchSize(int sidBatchSize) {
+		Assert.isTrue(sidBatchSize > 0, "sidBatchSize must be positive");
+		this.sidBatchSize = sidBatchSize;
+	}
+
+	/**
+	 * Sets how many users are cached and for how long. Defaults to 1000 users for 5
+	 * minutes.
+	 * @param maxSize the maximum number of cached users
+	 * @param timeToLive the time to live of cached authorities
+	 */
+	public void setCache(int maxSize, Duration timeToLive) {
+		this.cache = new ExpiringCache<>(maxSize, timeToLive);
+	}
+
+	private List<GrantedAuthority> resolveAuthorities(DirContext ctx, String userDn) throws NamingException {
+		List<byte[]> sids = new ArrayList<>();
+		SearchControls baseScope = new SearchControls();
+		baseScope.setSearchScope(SearchControls.OBJECT_SCOPE);
+		baseScope.setReturningAttributes(new String[] { TOKEN_GROUPS });
+		NamingEnumeration<SearchResult> results = ctx.search(userDn, "(objectClass=*)", baseScope);
+		try {
+			while (results.hasMore()) {
+				Attribute tokenGroups = results.next().getAttributes().get(TOKEN_GROUPS);
+				if (tokenGroups != null) {
+					for (int i = 0; i < tokenGroups.size(); i++) {
+						Object sid = tokenGroups.get(i);
+						if (!(sid instanceof byte[])) {
+							throw new IllegalStateException(TOKEN_GROUPS + " is not returned as binary attribute, "
+									+ "set the base environment properties of the context source to "
+									+ binaryAttributesEnvironment());
+						}
+						sids.add((byte[]) sid);
+					}
+				}
+			}
+		}
+		finally {
+			results.close();
+		}
+		if (sids.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		Set<GrantedAuthority> authorities = new LinkedHashSet<>();
+		SearchControls subtreeScope = new SearchControls();
+		subtreeScope.setSearchScope(SearchControls.SUBTREE_SCOPE);
+		subtreeScope.setReturningAttributes(new String[] { this.groupRoleAttribute });
+		for (int start = 0; start < sids.size(); start += this.sidBatchSize) {
+			List<byte[]> batch = sids.subList(start, Math.min(start + this.sidBatchSize, sids.size()));
+			results = ctx.search(this.groupSearchBase, buildSidFilter(batch), subtreeScope);
+			try {
+				while (results.hasMore()) {
+					Attributes attributes = results.next().getAttributes();
+					Attribute role = attributes.get(this.groupRoleAttribute);
+					if (role != null && role.get() != null) {
+						authorities.add(createAuthority(role.get().toString()));
+					}
+				}
+			}
+			finally {
+				results.close();
+			}
+		}
+		return Collections.unmodifiableList(new ArrayList<>(authorities));
+	}
+
+	private GrantedAuthority createAuthority(String groupName) {
+		String role = this.convertToUpperCase ? groupName.toUpperCase(Locale.ROOT) : groupName;
+		return new SimpleGrantedAuthority(this.rolePrefix + role);
+	}
+
+	static String buildSidFilter(List<byte[]> sids) {
+		StringBuilder filter = new StringBuilder(sids.size() * 90 + 3);
+		filter.append("(|");
+		for (byte[] sid : sids) {
+			filter.append('(').append(OBJECT_SID).append('=');
+			for (byte b : sid) {
+				filter.append('\\');
+				filter.append(Character.forDigit((b >> 4) & 0xF, 16));
+				filter.append(Character.forDigit(b & 0xF, 16));
+			}
+			filter.append(')');
+		}
+		return filter.append(')').toString();
+	}
+
+}
@@ -26,11 +26,17 @@ import javax.naming.NamingException;
 import javax.naming.directory.DirContext;
 import javax.security.auth.Subject;
 import javax.security.auth.login.Configuration;
-import javax.security.auth.login.LoginContext;
 import javax.security.auth.login.LoginException;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.ldap.core.ContextSource;
 import org.springframework.ldap.core.support.LdapContextSource;
+import org.springframework.ldap.pool2.factory.PoolConfig;
+import org.springframework.ldap.pool2.factory.PooledContextSource;
+import org.springframework.ldap.pool2.validation.DefaultDirContextValidator;
+import org.springframework.ldap.pool2.validation.DirContextValidator;
+import org.springframework.security.kerberos.client.KerberosCredentialManager;
 import org.springframework.security.kerberos.client.config.SunJaasKrb5LoginConfig;
 import org.springframework.security.ldap.DefaultSpringSecurityContextSource;
 import org.springframework.util.Assert;
@@ -60,14 +66,36 @@ import org.springframework.util.Assert;
  *       group-search-filter=&quot;(member={0})&quot; group-role-attribute=&quot;cn&quot; role-prefix=&quot;none&quot; /&gt;
  * </pre>
  *
+ * <p>
+ * The Kerberos login is done once and its subject is reused, and renewed before its
+ * ticket granting ticket expires, for all contexts opened afterwards. Instead of a login
+ * configuration a {@link KerberosCredentialManager} can be set to share a single login
+ * with other clients.
+ *
+ * <p>
+ * Contexts bound with GSSAPI are never pooled by the JNDI connection pool. Setting a
+ * {@link PoolConfig} enables a Spring LDAP pool of bound contexts instead, validated with
+ * a {@link DirContextValidator}, so read only and read write contexts are reused rather
+ * than connected and bound for every operation. Pooling requires
+ * <code>commons-pool2</code> on the classpath.
+ *
  * @author Nelson Rodrigues
  * @see SunJaasKrb5LoginConfig
  *
  */
-public class KerberosLdapContextSource extends DefaultSpringSecurityContextSource implements InitializingBean {
+public class KerberosLdapContextSource extends DefaultSpringSecurityContextSource
+		implements InitializingBean, DisposableBean {
 
 	private Configuration loginConfig;
 
+	private KerberosCredentialManager credentialManager;
+
+	private PoolConfig poolConfig;
+
+	private DirContextValidator dirContextValidator = new DefaultDirContextValidator();
+
+	private PooledContextSource pooledContextSource;
+
 	/**
 	 * Instantiates a new kerberos ldap context source.
 	 * @param url the url
@@ -97,7 +125,40 @@ public class KerberosLdapContextSource extends DefaultSpringSecurityContextSourc
 		catch (Exception ex) {
 			throw new RuntimeException(ex);
 		}
-		Assert.notNull(this.loginConfig, "loginConfig must be specified");
+		Assert.isTrue(this.loginConfig != null || this.credentialManager != null,
+				"loginConfig or credentialManager must be specified");
+		if (this.credentialManager == null) {
+			this.credentialManager = new KerberosCredentialManager(KerberosLdapContextSource.class.getSimpleName(),
+					this.loginConfig);
+		}
+		if (this.poolConfig != null) {
+			this.pooledContextSource = new PooledContextSource(this.poolConfig);
+			this.pooledContextSource.setContextSource(new UnpooledContextSource());
+			this.pooledContextSource.setDirContextValidator(this.dirContextValidator);
+		}
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		if (this.pooledContextSource != null) {
+			this.pooledContextSource.destroy();
+		}
+	}
+
+	@Override
+	public DirContext getReadOnlyContext() {
+		if (this.pooledContextSource != null) {
+			return this.pooledContextSource.getReadOnlyContext();
+		}
+		return super.getReadOnlyContext();
+	}
+
+	@Override
+	public DirContext getReadWriteContext() {
+		if (this.pooledContextSource != null) {
+			return this.pooledContextSource.getReadWriteContext();
+		}
+		return super.getReadWriteContext();
 	}
 
 	@SuppressWarnings("unchecked")
@@ -138,14 +199,44 @@ public class KerberosLdapContextSource extends DefaultSpringSecurityContextSourc
 		this.loginConfig = loginConfig;
 	}
 
-	private Subject login() throws AuthenticationException {
-		try {
-			LoginContext lc = new LoginContext(KerberosLdapContextSource.class.getSimpleName(), null, null,
-					this.loginConfig);
+	/**
+	 * The credential manager providing the subject, takes precedence over the login
+	 * config.
+	 * @param credentialManager the kerberos credential manager
+	 */
+	public void setCredentialManager(KerberosCredentialManager credentialManager) {
+		this.credentialManager = credentialManager;
+	}
 
-			lc.login();
+	/**
+	 * The pool configuration, enables pooling of read only and read write contexts.
+	 * @param poolConfig the pool config
+	 */
+	public void setPoolConfig(PoolConfig poolConfig) {
+		this.poolConfig = poolConfig;
+	}
 
-			return lc.getSubject();
+	/**
+	 * The validator for pooled contexts, defaults to {@link DefaultDirContextValidator}.
+	 * Only used when a pool config is set.
+	 * @param dirContextValidator the dir context validator
+	 */
+	public void setDirContextValidator(DirContextValidator dirContextValidator) {
+		Assert.notNull(dirContextValidator, "dirContextValidator cannot be null");
+		this.dirContextValidator = dirContextValidator;
+	}
+
+	/**
+	 * Returns the pool of bound contexts, for example to monitor its usage.
+	 * @return the pooled context source, or {@code null} if pooling is not enabled
+	 */
+	public PooledContextSource getPooledContextSource() {
+		return this.pooledContextSource;
+	}
+
+	private Subject login() throws AuthenticationException {
+		try {
+			return this.credentialManager.getSubject();
 		}
 		catch (LoginException ex) {
 			AuthenticationException ae = new AuthenticationException(ex.getMessage());
@@ -154,4 +245,26 @@ public class KerberosLdapContextSource extends DefaultSpringSecurityContextSourc
 		}
 	}
 
+	/**
+	 * Opens new bound contexts for the pool.
+	 */
+	private final class UnpooledContextSource implements ContextSource {
+
+		@Override
+		public DirContext getReadOnlyContext() {
+			return KerberosLdapContextSource.super.getReadOnlyContext();
+		}
+
+		@Override
+		public DirContext getReadWriteContext() {
+			return KerberosLdapContextSource.super.getReadWriteContext();
+		}
+
+		@Override
+		public DirContext getContext(String principal, String credentials) {
+			return KerberosLdapContextSource.super.getContext(principal, credentials);
+		}
+
+	}
+
 }
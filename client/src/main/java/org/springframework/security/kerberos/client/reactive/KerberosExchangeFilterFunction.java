@@ -0,0 +1,103 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.client.reactive;
+
+import java.net.URI;
+import java.util.function.Function;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.kerberos.client.KerberosCredentialManager;
+import org.springframework.util.Assert;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+
+/**
+ * {@link ExchangeFilterFunction} adding a SPNEGO <code>Authorization</code> header to
+ * every request sent with a {@code WebClient}.
+ *
+ * <p>
+ * Tokens are created by a shared {@link KerberosCredentialManager}, so the Kerberos login
+ * happens only once and service tickets are reused for all requests to the same service.
+ * As creating the first token for a service contacts the KDC, tokens are created on the
+ * given {@link Scheduler}, which defaults to {@link Schedulers#boundedElastic()}.
+ * Requests already having an <code>Authorization</code> header are passed as is.
+ *
+ * <pre>
+ * WebClient webClient = WebClient.builder()
+ *     .filter(new KerberosExchangeFilterFunction(credentialManager))
+ *     .build();
+ * </pre>
+ *
+ * @see KerberosCredentialManager
+ */
+public class KerberosExchangeFilterFunction implements ExchangeFilterFunction {
+
+	private final KerberosCredentialManager credentialManager;
+
+	private final Scheduler scheduler;
+
+	private Function<URI, String> servicePrincipalResolver = KerberosCredentialManager::getServicePrincipalName;
+
+	/**
+	 * Instantiates a new kerberos exchange filter function.
+	 * @param credentialManager the kerberos credential manager
+	 */
+	public KerberosExchangeFilterFunction(KerberosCredentialManager credentialManager) {
+		this(credentialManager, Schedulers.boundedElastic());
+	}
+
+	/**
+	 * Instantiates a new kerberos exchange filter function.
+	 * @param credentialManager the kerberos credential manager
+	 * @param scheduler the scheduler used to create tokens
+	 */
+	public KerberosExchangeFilterFunction(KerberosCredentialManager credentialManager, Scheduler scheduler) {
+		Assert.notNull(credentialManager, "credentialManager cannot be null");
+		Assert.notNull(scheduler, "scheduler cannot be null");
+		this.credentialManager = credentialManager;
+		this.scheduler = scheduler;
+	}
+
+	@Override
+	public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+		if (request.headers().containsKey(HttpHeaders.AUTHORIZATION)) {
+			return next.exchange(request);
+		}
+		String servicePrincipalName = this.servicePrincipalResolver.apply(request.url());
+		return Mono.fromCallable(() -> this.credentialManager.createNegotiateHeader(servicePrincipalName))
+				.subscribeOn(this.scheduler)
+				.map((header) -> ClientRequest.from(request).header(HttpHeaders.AUTHORIZATION, header).build())
+				.flatMap(next::exchange);
+	}
+
+	/**
+	 * Sets the function resolving the service principal name for the uri of a request.
+	 * Defaults to <code>HTTP@host</code>.
+	 * @param servicePrincipalResolver the service principal resolver
+	 */
+	public void setServicePrincipalResolver(Function<URI, String> servicePrincipalResolver) {
+		Assert.notNull(servicePrincipalResolver, "servicePrincipalResolver cannot be null");
+		this.servicePrincipalResolver = servicePrincipalResolver;
+	}
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.client;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.security.kerberos.authentication.sun.SunJaasKerberosTicketValidator;
+import org.springframework.security.kerberos.test.KerberosSecurityTestcase;
+import org.springframework.security.kerberos.test.MiniKdc;
+import org.springframework.web.client.RestTemplate;
+
+public class KerberosClientHttpRequestInterceptorTests extends KerberosSecurityTestcase {
+
+	private static final String CLIENT_PRINCIPAL = "client1@EXAMPLE.COM";
+
+	private static final String SERVICE_PRINCIPAL = "HTTP/localhost@EXAMPLE.COM";
+
+	private HttpServer server;
+
+	private KerberosCredentialManager credentialManager;
+
+	private String uri;
+
+	@BeforeEach
+	public void startServer() throws Exception {
+		MiniKdc kdc = getKdc();
+		File clientKeytab = new File(getWorkDir(), "client1.keytab");
+		kdc.createPrincipal(clientKeytab, "client1");
+		File serviceKeytab = new File(getWorkDir(), "localhost.keytab");
+		kdc.createPrincipal(serviceKeytab, "HTTP/localhost");
+
+		SunJaasKerberosTicketValidator validator = new SunJaasKerberosTicketValidator();
+		validator.setServicePrincipal(SERVICE_PRINCIPAL);
+		validator.setKeyTabLocation(new FileSystemResource(serviceKeytab));
+		validator.afterPropertiesSet();
+
+		this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		this.server.createContext("/", (exchange) -> {
+			String header = exchange.getRequestHeaders().getFirst("Authorization");
+			int status = 401;
+			byte[] body = new byte[0];
+			if (header != null && header.startsWith("Negotiate ")) {
+				try {
+					body = validator.validateTicket(Base64.getDecoder().decode(header.substring(10))).username()
+							.getBytes(StandardCharsets.UTF_8);
+					status = 200;
+				}
+				catch (Exception ex) {
+					status = 403;
+				}
+			}
+			else {
+				exchange.getResponseHeaders().set("WWW-Authenticate", "Negotiate");
+			}
+			exchange.sendResponseHeaders(status, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		this.server.start();
+		this.uri = "http://localhost:" + this.server.getAddress().getPort() + "/";
+		this.credentialManager = new KerberosCredentialManager(clientKeytab.getCanonicalPath(), CLIENT_PRINCIPAL);
+	}
+
+	@AfterEach
+	public void stopServer() {
+		this.server.stop(0);
+	}
+
+	@Test
+	public void testInterceptor() {
+		KerberosClientHttpRequestInterceptor interceptor = new KerberosClientHttpRequestInterceptor(
+				this.credentialManager);
+		interceptor.setServicePrincipalResolver((uri) -> SERVICE_PRINCIPAL);
+		RestTemplate restTemplate = new RestTemplate();
+		restTemplate.getInterceptors().add(interceptor);
+
+		for (int i = 0; i < 3; i++) {
+			Assertions.assertEquals(CLIENT_PRINCIPAL, restTemplate.getForObject(this.uri, String.class));
+		}
+	}
+
+	@Test
+	public void testRestTemplatesSharingCredentialManager() {
+		KerberosRestTemplate restTemplate1 = new KerberosRestTemplate(this.credentialManager);
+		KerberosRestTemplate restTemplate2 = new KerberosRestTemplate(this.credentialManager);
+
+		Assertions.assertEquals(CLIENT_PRINCIPAL, restTemplate1.getForObject(this.uri, String.class));
+		Assertions.assertEquals(CLIENT_PRINCIPAL, restTemplate2.getForObject(this.uri, String.class));
+	}
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.client;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.security.auth.Subject;
+import javax.security.auth.login.LoginException;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.security.kerberos.authentication.sun.SunJaasKerberosTicketValidator;
+import org.springframework.security.kerberos.client.config.SunJaasKrb5LoginConfig;
+import org.springframework.security.kerberos.test.KerberosSecurityTestcase;
+import org.springframework.security.kerberos.test.MiniKdc;
+
+public class KerberosCredentialManagerTests extends KerberosSecurityTestcase {
+
+	private static final String CLIENT_PRINCIPAL = "client1@EXAMPLE.COM";
+
+	private static final String SERVICE_PRINCIPAL = "HTTP/webtier@EXAMPLE.COM";
+
+	@Test
+	public void testConcurrentAsyncNegotiateHeaders() throws Exception {
+		MiniKdc kdc = getKdc();
+		File workDir = getWorkDir();
+		File clientKeytab = new File(workDir, "client1.keytab");
+		kdc.createPrincipal(clientKeytab, "client1");
+		File serviceKeytab = new File(workDir, "webtier.keytab");
+		kdc.createKeyabFile(serviceKeytab, SERVICE_PRINCIPAL, "secret");
+
+		SunJaasKerberosTicketValidator validator = new SunJaasKerberosTicketValidator();
+		validator.setServicePrincipal(SERVICE_PRINCIPAL);
+		validator.setKeyTabLocation(new FileSystemResource(serviceKeytab));
+		validator.afterPropertiesSet();
+
+		KerberosCredentialManager credentialManager = new KerberosCredentialManager(clientKeytab.getCanonicalPath(),
+				CLIENT_PRINCIPAL);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<CompletableFuture<String>> headers = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				headers.add(credentialManager.createNegotiateHeaderAsync(SERVICE_PRINCIPAL, executor));
+			}
+			for (CompletableFuture<String> header : headers) {
+				String value = header.join();
+				Assertions.assertTrue(value.startsWith(KerberosCredentialManager.NEGOTIATE_PREFIX));
+				byte[] token = Base64.getDecoder()
+						.decode(value.substring(KerberosCredentialManager.NEGOTIATE_PREFIX.length()));
+				Assertions.assertEquals(CLIENT_PRINCIPAL, validator.validateTicket(token).username());
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testLoginConfigSubjectIsShared() throws Exception {
+		File clientKeytab = new File(getWorkDir(), "client1.keytab");
+		getKdc().createPrincipal(clientKeytab, "client1");
+		SunJaasKrb5LoginConfig loginConfig = new SunJaasKrb5LoginConfig();
+		loginConfig.setServicePrincipal(CLIENT_PRINCIPAL);
+		loginConfig.setKeyTabLocation(new FileSystemResource(clientKeytab));
+		loginConfig.setIsInitiator(true);
+		loginConfig.afterPropertiesSet();
+
+		KerberosCredentialManager credentialManager = new KerberosCredentialManager(loginConfig);
+		Subject subject = credentialManager.getSubject();
+
+		Assertions.assertEquals(CLIENT_PRINCIPAL, subject.getPrincipals().iterator().next().getName());
+		Assertions.assertSame(subject, credentialManager.getSubject());
+		credentialManager.invalidate();
+		Assertions.assertNotSame(subject, credentialManager.getSubject());
+	}
+
+	@Test
+	public void testAsyncLoginFailure() throws Exception {
+		File missingKeytab = new File(getWorkDir(), "missing.keytab");
+		KerberosCredentialManager credentialManager = new KerberosCredentialManager(missingKeytab.getCanonicalPath(),
+				"nobody@EXAMPLE.COM");
+
+		CompletionException ex = Assertions.assertThrows(CompletionException.class,
+				() -> credentialManager.createNegotiateHeaderAsync(SERVICE_PRINCIPAL, Runnable::run).join());
+		Assertions.assertTrue(ex.getCause() instanceof LoginException);
+	}
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.client;
+
+import java.io.File;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.kerberos.authentication.KerberosReplayCache;
+import org.springframework.security.kerberos.authentication.TicketValidationOverloadedException;
+import org.springframework.security.kerberos.authentication.sun.SunJaasKerberosTicketValidator;
+import org.springframework.security.kerberos.test.KerberosSecurityTestcase;
+
+public class SunJaasKerberosTicketValidatorTests extends KerberosSecurityTestcase {
+
+	private static final String CLIENT_PRINCIPAL = "client1@EXAMPLE.COM";
+
+	private static final String SERVICE_PRINCIPAL = "HTTP/webtier@EXAMPLE.COM";
+
+	private File serviceKeytab;
+
+	private KerberosCredentialManager credentialManager;
+
+	@BeforeEach
+	public void createPrincipals() throws Exception {
+		File clientKeytab = new File(getWorkDir(), "client1.keytab");
+		getKdc().createPrincipal(clientKeytab, "client1");
+		this.serviceKeytab = new File(getWorkDir(), "webtier.keytab");
+		getKdc().createKeyabFile(this.serviceKeytab, SERVICE_PRINCIPAL, "secret");
+		this.credentialManager = new KerberosCredentialManager(clientKeytab.getCanonicalPath(), CLIENT_PRINCIPAL);
+	}
+
+	@Test
+	public void testReplayedTokenRejectedByReplayCache() throws Exception {
+		KerberosReplayCache replayCache = new KerberosReplayCache();
+		SunJaasKerberosTicketValidator validator = validator(replayCache);
+
+		byte[] token = this.credentialManager.createToken(SERVICE_PRINCIPAL);
+		Assertions.assertEquals(CLIENT_PRINCIPAL, validator.validateTicket(token).username());
+		BadCredentialsException ex = Assertions.assertThrows(BadCredentialsException.class,
+				() -> validator.validateTicket(token));
+		Assertions.assertTrue(ex.getMessage().contains("replay"));
+		Assertions.assertEquals(1, replayCache.getReplayCount());
+		Assertions.assertEquals(1, replayCache.size());
+		Assertions.assertEquals(CLIENT_PRINCIPAL,
+				validator.validateTicket(this.credentialManager.createToken(SERVICE_PRINCIPAL)).username());
+	}
+
+	@Test
+	public void testTokenRejectedAsOverloadedWhenReplayCacheFull() throws Exception {
+		KerberosReplayCache replayCache = new KerberosReplayCache(Duration.ofMinutes(5), 1);
+		SunJaasKerberosTicketValidator validator = validator(replayCache);
+
+		Assertions.assertEquals(CLIENT_PRINCIPAL,
+				validator.validateTicket(this.credentialManager.createToken(SERVICE_PRINCIPAL)).username());
+		byte[] token = this.credentialManager.createToken(SERVICE_PRINCIPAL);
+		TicketValidationOverloadedException ex = Assertions.assertThrows(TicketValidationOverloadedException.class,
+				() -> validator.validateTicket(token));
+		Assertions.assertTrue(ex.getMessage().contains("full"));
+		Assertions.assertEquals(1, replayCache.getOverflowCount());
+		Assertions.assertEquals(0, replayCache.getReplayCount());
+	}
+
+	@Test
+	public void testMalformedTokenRejected() throws Exception {
+		KerberosReplayCache replayCache = new KerberosReplayCache();
+		SunJaasKerberosTicketValidator validator = validator(replayCache);
+
+		BadCredentialsException ex = Assertions.assertThrows(BadCredentialsException.class,
+				() -> validator.validateTicket(new byte[] { 0x60, 0x05, 0x06 }));
+		Assertions.assertTrue(ex.getMessage().contains("malformed"));
+		Assertions.assertEquals(1, replayCache.getMalformedCount());
+		Assertions.assertEquals(0, replayCache.getReplayCount());
+	}
+
+	private SunJaasKerberosTicketValidator validator(KerberosReplayCache replayCache) throws Exception {
+		SunJaasKerberosTicketValidator validator = new SunJaasKerberosTicketValidator();
+		validator.setServicePrincipal(SERVICE_PRINCIPAL);
+		validator.setKeyTabLocation(new FileSystemResource(this.serviceKeytab));
+		validator.setReplayCache(replayCache);
+		validator.afterPropertiesSet();
+		return validator;
+	}
+
+}
@@ -18,6 +18,9 @@ package org.springframework.security.kerberos.client;
 
 import java.io.File;
 
+import javax.security.auth.Subject;
+import javax.security.auth.kerberos.KerberosTicket;
+
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -29,10 +32,12 @@ import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.kerberos.authentication.KerberosAuthentication;
 import org.springframework.security.kerberos.authentication.KerberosAuthenticationProvider;
 import org.springframework.security.kerberos.authentication.KerberosMultiTier;
 import org.springframework.security.kerberos.authentication.KerberosServiceAuthenticationProvider;
 import org.springframework.security.kerberos.authentication.KerberosServiceRequestToken;
+import org.springframework.security.kerberos.authentication.KerberosServiceTicketCache;
 import org.springframework.security.kerberos.authentication.sun.SunJaasKerberosClient;
 import org.springframework.security.kerberos.authentication.sun.SunJaasKerberosTicketValidator;
 import org.springframework.security.kerberos.test.KerberosSecurityTestcase;
@@ -130,6 +135,37 @@ public class TestMultiTierAuthentication extends KerberosSecurityTestcase {
 		Assertions.assertEquals(USER_FQDN_NAME, serviceTierAuthentication.getName());
 	}
 
+	@Test
+	public void testServiceTicketReusedAcrossAuthentications() throws Exception {
+		File webTierKeytabFile = new File(getWorkDir(), "webtier.keytab");
+		getKdc().createKeyabFile(webTierKeytabFile, WEB_TIER_SPN, WEB_TIER_USER_PASSWORD);
+		KerberosServiceAuthenticationProvider webTierAuthenticatorProvider = createServiceAuthenticator(true,
+				WEB_TIER_SPN, REALM_NAME, webTierKeytabFile.getCanonicalPath());
+		KerberosAuthenticationProvider kerberosAuthProvider = createUserPassAuthenticator(true);
+		KerberosServiceTicketCache serviceTicketCache = new KerberosServiceTicketCache();
+
+		Authentication first = kerberosAuthProvider
+				.authenticate(new UsernamePasswordAuthenticationToken(USER_LOGIN_NAME, USER_PASSWORD));
+		KerberosMultiTier.authenticateService(first, USER_LOGIN_NAME, 3600, WEB_TIER_SPN, serviceTicketCache);
+		KerberosTicket cachedTicket = serviceTicketCache.get(USER_FQDN_NAME, WEB_TIER_SPN);
+		Assertions.assertNotNull(cachedTicket);
+
+		Authentication second = kerberosAuthProvider
+				.authenticate(new UsernamePasswordAuthenticationToken(USER_LOGIN_NAME, USER_PASSWORD));
+		KerberosMultiTier.authenticateService(second, USER_LOGIN_NAME, 3600, WEB_TIER_SPN, serviceTicketCache);
+		Subject subject = ((KerberosAuthentication) second).getJaasSubjectHolder().getJaasSubject();
+		for (KerberosTicket ticket : subject.getPrivateCredentials(KerberosTicket.class)) {
+			if (ticket.getServer().getName().equals(WEB_TIER_SPN)) {
+				Assertions.assertSame(cachedTicket, ticket);
+			}
+		}
+
+		byte[] tokenData = KerberosMultiTier.getTokenForService(second, WEB_TIER_SPN);
+		Authentication webTierAuthentication = webTierAuthenticatorProvider
+				.authenticate(new KerberosServiceRequestToken(tokenData));
+		Assertions.assertEquals(USER_FQDN_NAME, webTierAuthentication.getName());
+	}
+
 	/**
 	 * Create a username/password authenticator.
 	 * @return
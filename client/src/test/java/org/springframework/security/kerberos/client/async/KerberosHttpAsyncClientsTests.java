@@ -0,0 +1,178 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.client.async;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.auth.AuthenticationException;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.security.kerberos.authentication.sun.SunJaasKerberosTicketValidator;
+import org.springframework.security.kerberos.client.KerberosCredentialManager;
+import org.springframework.security.kerberos.test.KerberosSecurityTestcase;
+import org.springframework.security.kerberos.test.MiniKdc;
+
+public class KerberosHttpAsyncClientsTests extends KerberosSecurityTestcase {
+
+	private static final String CLIENT_PRINCIPAL = "client1@EXAMPLE.COM";
+
+	private static final String SERVICE_PRINCIPAL = "HTTP/webtier@EXAMPLE.COM";
+
+	private HttpServer server;
+
+	private File clientKeytab;
+
+	@BeforeEach
+	public void startServer() throws Exception {
+		MiniKdc kdc = getKdc();
+		this.clientKeytab = new File(getWorkDir(), "client1.keytab");
+		kdc.createPrincipal(this.clientKeytab, "client1");
+		File serviceKeytab = new File(getWorkDir(), "webtier.keytab");
+		kdc.createKeyabFile(serviceKeytab, SERVICE_PRINCIPAL, "secret");
+
+		SunJaasKerberosTicketValidator validator = new SunJaasKerberosTicketValidator();
+		validator.setServicePrincipal(SERVICE_PRINCIPAL);
+		validator.setKeyTabLocation(new FileSystemResource(serviceKeytab));
+		validator.afterPropertiesSet();
+
+		this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		this.server.createContext("/", (exchange) -> {
+			String header = exchange.getRequestHeaders().getFirst("Authorization");
+			int status = 401;
+			byte[] body = new byte[0];
+			if (header != null && header.startsWith("Negotiate ")) {
+				try {
+					body = validator.validateTicket(Base64.getDecoder().decode(header.substring(10))).username()
+							.getBytes(StandardCharsets.UTF_8);
+					status = 200;
+				}
+				catch (Exception ex) {
+					status = 403;
+				}
+			}
+			exchange.sendResponseHeaders(status, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		this.server.start();
+	}
+
+	@AfterEach
+	public void stopServer() {
+		this.server.stop(0);
+	}
+
+	@Test
+	public void testConcurrentRequests() throws Exception {
+		KerberosCredentialManager credentialManager = new KerberosCredentialManager(
+				this.clientKeytab.getCanonicalPath(), CLIENT_PRINCIPAL);
+		AtomicInteger tokens = new AtomicInteger();
+		Executor executor = (task) -> {
+			tokens.incrementAndGet();
+			new Thread(task).start();
+		};
+		KerberosAsyncExecChainHandler handler = new KerberosAsyncExecChainHandler(credentialManager, executor);
+		handler.setServicePrincipalResolver((uri) -> SERVICE_PRINCIPAL);
+		String uri = "http://localhost:" + this.server.getAddress().getPort() + "/";
+
+		try (CloseableHttpAsyncClient client = KerberosHttpAsyncClients.create(handler, null)) {
+			client.start();
+			List<Future<SimpleHttpResponse>> responses = new ArrayList<>();
+			for (int i = 0; i < 5; i++) {
+				responses.add(client.execute(SimpleRequestBuilder.get(uri).build(), null));
+			}
+			for (Future<SimpleHttpResponse> response : responses) {
+				Assertions.assertEquals(200, response.get().getCode());
+				Assertions.assertEquals(CLIENT_PRINCIPAL, response.get().getBodyText());
+			}
+		}
+		Assertions.assertEquals(5, tokens.get());
+	}
+
+	@Test
+	public void testTokenFailureFailsRequest() throws Exception {
+		KerberosCredentialManager credentialManager = new KerberosCredentialManager(
+				this.clientKeytab.getCanonicalPath(), CLIENT_PRINCIPAL);
+		KerberosAsyncExecChainHandler handler = new KerberosAsyncExecChainHandler(credentialManager,
+				Executors.newSingleThreadExecutor());
+		handler.setServicePrincipalResolver((uri) -> "HTTP/unknown@EXAMPLE.COM");
+		String uri = "http://localhost:" + this.server.getAddress().getPort() + "/";
+
+		try (CloseableHttpAsyncClient client = KerberosHttpAsyncClients.create(handler, null)) {
+			client.start();
+			ExecutionException ex = Assertions.assertThrows(ExecutionException.class,
+					() -> client.execute(SimpleRequestBuilder.get(uri).build(), null).get());
+			Assertions.assertTrue(ex.getCause() instanceof AuthenticationException);
+		}
+	}
+
+	@Test
+	public void testRejectedTokenFailsRequest() throws Exception {
+		KerberosCredentialManager credentialManager = new KerberosCredentialManager(
+				this.clientKeytab.getCanonicalPath(), CLIENT_PRINCIPAL);
+		KerberosAsyncExecChainHandler handler = new KerberosAsyncExecChainHandler(credentialManager, (task) -> {
+			throw new RejectedExecutionException("full");
+		});
+		handler.setServicePrincipalResolver((uri) -> SERVICE_PRINCIPAL);
+		String uri = "http://localhost:" + this.server.getAddress().getPort() + "/";
+
+		try (CloseableHttpAsyncClient client = KerberosHttpAsyncClients.create(handler, null)) {
+			client.start();
+			ExecutionException ex = Assertions.assertThrows(ExecutionException.class,
+					() -> client.execute(SimpleRequestBuilder.get(uri).build(), null).get());
+			Assertions.assertTrue(ex.getCause() instanceof AuthenticationException);
+			Assertions.assertTrue(ex.getCause().getCause() instanceof RejectedExecutionException);
+		}
+	}
+
+	@Test
+	public void testExistingAuthorizationHeaderIsKept() throws Exception {
+		KerberosCredentialManager credentialManager = new KerberosCredentialManager(
+				this.clientKeytab.getCanonicalPath(), CLIENT_PRINCIPAL);
+		String uri = "http://localhost:" + this.server.getAddress().getPort() + "/";
+
+		try (CloseableHttpAsyncClient client = KerberosHttpAsyncClients.create(credentialManager)) {
+			client.start();
+			SimpleHttpRequest request = SimpleRequestBuilder.get(uri).setHeader("Authorization", "Basic Zm9vOmJhcg==")
+					.build();
+			Assertions.assertEquals(401, client.execute(request, null).get().getCode());
+		}
+	}
+
+}
@@ -16,7 +16,10 @@
 
 package org.springframework.security.kerberos.client.docs;
 
+import org.springframework.security.kerberos.client.KerberosClientHttpRequestInterceptor;
+import org.springframework.security.kerberos.client.KerberosCredentialManager;
 import org.springframework.security.kerberos.client.KerberosRestTemplate;
+import org.springframework.web.client.RestTemplate;
 
 public class KerberosRestTemplateConfig {
 
@@ -34,4 +37,17 @@ public class KerberosRestTemplateConfig {
 	}
 	// end::snippetB[]
 
+	// tag::snippetC[]
+	public void doWithCredentialManager() {
+		KerberosCredentialManager credentialManager = new KerberosCredentialManager("/tmp/user2.keytab",
+				"user2@EXAMPLE.ORG");
+		KerberosRestTemplate kerberosRestTemplate = new KerberosRestTemplate(credentialManager);
+		kerberosRestTemplate.getForObject("http://neo.example.org:8080/hello", String.class);
+
+		RestTemplate restTemplate = new RestTemplate();
+		restTemplate.getInterceptors().add(new KerberosClientHttpRequestInterceptor(credentialManager));
+		restTemplate.getForObject("http://neo.example.org:8080/hello", String.class);
+	}
+	// end::snippetC[]
+
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.client.docs;
+
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+
+import org.springframework.http.client.reactive.HttpComponentsClientHttpConnector;
+import org.springframework.security.kerberos.client.KerberosCredentialManager;
+import org.springframework.security.kerberos.client.async.KerberosHttpAsyncClients;
+import org.springframework.security.kerberos.client.reactive.KerberosExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+
+public class KerberosWebClientConfig {
+
+	// tag::snippetA[]
+	public void doWithKeytabFile() {
+		KerberosCredentialManager credentialManager = new KerberosCredentialManager("/tmp/user2.keytab",
+				"user2@EXAMPLE.ORG");
+		WebClient webClient = WebClient.builder().filter(new KerberosExchangeFilterFunction(credentialManager)).build();
+		webClient.get().uri("http://neo.example.org:8080/hello").retrieve().bodyToMono(String.class).block();
+	}
+	// end::snippetA[]
+
+	// tag::snippetB[]
+	public void doWithHttpAsyncClient() {
+		KerberosCredentialManager credentialManager = new KerberosCredentialManager("/tmp/user2.keytab",
+				"user2@EXAMPLE.ORG");
+		CloseableHttpAsyncClient httpClient = KerberosHttpAsyncClients.create(credentialManager,
+				(builder) -> builder.setIOReactorConfig(IOReactorConfig.custom().setIoThreadCount(2).build()));
+		WebClient webClient = WebClient.builder().clientConnector(new HttpComponentsClientHttpConnector(httpClient))
+				.build();
+		webClient.get().uri("http://neo.example.org:8080/hello").retrieve().bodyToMono(String.class).block();
+	}
+	// end::snippetB[]
+
+}
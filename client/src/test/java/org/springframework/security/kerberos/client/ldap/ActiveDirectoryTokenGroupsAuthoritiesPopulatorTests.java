@@ -0,0 +1,204 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.client.ldap;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Hashtable;
+
+import javax.naming.Context;
+import javax.naming.directory.BasicAttribute;
+import javax.naming.directory.BasicAttributes;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.InitialDirContext;
+import javax.naming.directory.ModificationItem;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.ldap.core.DirContextAdapter;
+import org.springframework.ldap.pool2.factory.PoolConfig;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.kerberos.client.config.SunJaasKrb5LoginConfig;
+import org.springframework.security.kerberos.test.KerberosSecurityTestcase;
+import org.springframework.security.kerberos.test.MiniKdc;
+
+public class ActiveDirectoryTokenGroupsAuthoritiesPopulatorTests extends KerberosSecurityTestcase {
+
+	private static final byte[] SID_1 = new byte[] { 1, 5, 0, 0, 0, 0, 0, 5, 21, 0, 0, 0, (byte) 0xab };
+
+	private static final byte[] SID_2 = new byte[] { 1, 5, 0, 0, 0, 0, 0, 5, 21, 0, 0, 0, (byte) 0xcd };
+
+	private static final byte[] SID_3 = new byte[] { 1, 5, 0, 0, 0, 0, 0, 5, 21, 0, 0, 0, (byte) 0xef };
+
+	private KerberosLdapContextSource contextSource;
+
+	@Override
+	public void createMiniKdcConf() {
+		super.createMiniKdcConf();
+		getConf().setProperty(MiniKdc.LDAP_PORT, "0");
+	}
+
+	@BeforeEach
+	public void createDirectory() throws Exception {
+		getKdc().createPrincipal(new File(getWorkDir(), "client1.keytab"), "client1");
+		Hashtable<String, Object> environment = new Hashtable<>();
+		environment.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
+		environment.put(Context.PROVIDER_URL, getKdc().getLdapUrl());
+		environment.put(Context.SECURITY_AUTHENTICATION, "simple");
+		environment.put(Context.SECURITY_PRINCIPAL, "uid=admin,ou=system");
+		environment.put(Context.SECURITY_CREDENTIALS, "secret");
+		DirContext ctx = new InitialDirContext(environment);
+		try {
+			// the active directory attributes are not part of the default schema
+			addAttributeType(ctx, "1.2.840.113556.1.4.146", "objectSid");
+			addAttributeType(ctx, "1.2.840.113556.1.4.1301", "tokenGroups");
+
+			String baseDn = getKdc().getBaseDn();
+			BasicAttributes groups = new BasicAttributes("objectClass", "organizationalUnit", true);
+			groups.put("ou", "groups");
+			ctx.createSubcontext("ou=groups," + baseDn, groups);
+			addGroup(ctx, "admins", SID_1);
+			addGroup(ctx, "users", SID_2);
+			addGroup(ctx, "others", SID_3);
+
+			BasicAttribute tokenGroups = new BasicAttribute("tokenGroups");
+			tokenGroups.add(SID_1);
+			tokenGroups.add(SID_2);
+			ctx.modifyAttributes("uid=client1,ou=users," + baseDn,
+					new ModificationItem[] {
+							new ModificationItem(DirContext.ADD_ATTRIBUTE,
+									new BasicAttribute("objectClass", "extensibleObject")),
+							new ModificationItem(DirContext.ADD_ATTRIBUTE, tokenGroups) });
+		}
+		finally {
+			ctx.close();
+		}
+	}
+
+	@AfterEach
+	public void destroyContextSource() throws Exception {
+		if (this.contextSource != null) {
+			this.contextSource.destroy();
+		}
+	}
+
+	@Test
+	public void testSidFilter() {
+		Assertions.assertEquals("(|(objectSid=\\01\\05)(objectSid=\\ff\\00))",
+				ActiveDirectoryTokenGroupsAuthoritiesPopulator
+						.buildSidFilter(Arrays.asList(new byte[] { 1, 5 }, new byte[] { (byte) 0xff, 0 })));
+	}
+
+	@Test
+	public void testAuthoritiesResolvedOnceAndCached() throws Exception {
+		this.contextSource = createContextSource(null, true);
+		assertAuthoritiesResolvedOnceAndCached();
+	}
+
+	@Test
+	public void testAuthoritiesResolvedWithPooledContexts() throws Exception {
+		this.contextSource = createContextSource(new PoolConfig(), true);
+		assertAuthoritiesResolvedOnceAndCached();
+		Assertions.assertEquals(1, this.contextSource.getPooledContextSource().getNumIdle());
+	}
+
+	@Test
+	public void testNoTokenGroups() throws Exception {
+		this.contextSource = createContextSource(new PoolConfig(), true);
+		ActiveDirectoryTokenGroupsAuthoritiesPopulator populator = new ActiveDirectoryTokenGroupsAuthoritiesPopulator(
+				this.contextSource);
+
+		Assertions.assertTrue(
+				populator.getGrantedAuthorities(new DirContextAdapter("uid=krbtgt,ou=users"), "krbtgt").isEmpty());
+	}
+
+	@Test
+	public void testBinaryAttributesRequired() throws Exception {
+		this.contextSource = createContextSource(null, false);
+		ActiveDirectoryTokenGroupsAuthoritiesPopulator populator = new ActiveDirectoryTokenGroupsAuthoritiesPopulator(
+				this.contextSource);
+
+		Assertions.assertThrows(IllegalStateException.class,
+				() -> populator.getGrantedAuthorities(new DirContextAdapter("uid=client1,ou=users"), "client1"));
+	}
+
+	private void assertAuthoritiesResolvedOnceAndCached() {
+		ActiveDirectoryTokenGroupsAuthoritiesPopulator populator = new ActiveDirectoryTokenGroupsAuthoritiesPopulator(
+				this.contextSource);
+		populator.setGroupSearchBase("ou=groups");
+		DirContextAdapter userData = new DirContextAdapter("uid=client1,ou=users");
+
+		Collection<? extends GrantedAuthority> authorities = populator.getGrantedAuthorities(userData, "client1");
+		Assertions.assertEquals(new HashSet<>(Arrays.asList("ROLE_ADMINS", "ROLE_USERS")),
+				AuthorityUtils.authorityListToSet(authorities));
+		Assertions.assertSame(authorities, populator.getGrantedAuthorities(userData, "client1"));
+	}
+
+	private KerberosLdapContextSource createContextSource(PoolConfig poolConfig, boolean binaryAttributes)
+			throws Exception {
+		SunJaasKrb5LoginConfig loginConfig = new SunJaasKrb5LoginConfig();
+		loginConfig.setServicePrincipal("client1@" + getKdc().getRealm());
+		loginConfig.setKeyTabLocation(new FileSystemResource(new File(getWorkDir(), "client1.keytab")));
+		loginConfig.setIsInitiator(true);
+		loginConfig.afterPropertiesSet();
+
+		KerberosLdapContextSource contextSource = new KerberosLdapContextSource(
+				getKdc().getLdapUrl() + "/" + getKdc().getBaseDn());
+		contextSource.setLoginConfig(loginConfig);
+		contextSource.setPoolConfig(poolConfig);
+		if (binaryAttributes) {
+			contextSource.setBaseEnvironmentProperties(
+					ActiveDirectoryTokenGroupsAuthoritiesPopulator.binaryAttributesEnvironment());
+		}
+		contextSource.afterPropertiesSet();
+		return contextSource;
+	}
+
+	private static void addAttributeType(DirContext ctx, String oid, String name) throws Exception {
+		BasicAttributes attributes = new BasicAttributes(true);
+		BasicAttribute objectClass = new BasicAttribute("objectClass");
+		objectClass.add("top");
+		objectClass.add("metaTop");
+		objectClass.add("metaAttributeType");
+		attributes.put(objectClass);
+		attributes.put("m-oid", oid);
+		attributes.put("m-name", name);
+		attributes.put("m-syntax", "1.3.6.1.4.1.1466.115.121.1.40");
+		attributes.put("m-equality", "octetStringMatch");
+		ctx.createSubcontext("m-oid=" + oid + ",ou=attributeTypes,cn=other,ou=schema", attributes);
+	}
+
+	private void addGroup(DirContext ctx, String name, byte[] sid) throws Exception {
+		BasicAttributes attributes = new BasicAttributes(true);
+		BasicAttribute objectClass = new BasicAttribute("objectClass");
+		objectClass.add("top");
+		objectClass.add("organizationalRole");
+		objectClass.add("extensibleObject");
+		attributes.put(objectClass);
+		attributes.put("cn", name);
+		attributes.put("objectSid", sid);
+		ctx.createSubcontext("cn=" + name + ",ou=groups," + getKdc().getBaseDn(), attributes);
+	}
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.client.ldap;
+
+import java.io.File;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.naming.NamingException;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.DirContext;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.ldap.core.LdapTemplate;
+import org.springframework.ldap.pool2.DirContextType;
+import org.springframework.ldap.pool2.factory.PoolConfig;
+import org.springframework.ldap.pool2.validation.DefaultDirContextValidator;
+import org.springframework.ldap.query.LdapQueryBuilder;
+import org.springframework.security.kerberos.client.config.SunJaasKrb5LoginConfig;
+import org.springframework.security.kerberos.test.KerberosSecurityTestcase;
+import org.springframework.security.kerberos.test.MiniKdc;
+
+public class KerberosLdapContextSourceTests extends KerberosSecurityTestcase {
+
+	private final AtomicInteger binds = new AtomicInteger();
+
+	private final AtomicInteger validations = new AtomicInteger();
+
+	private KerberosLdapContextSource contextSource;
+
+	@Override
+	public void createMiniKdcConf() {
+		super.createMiniKdcConf();
+		getConf().setProperty(MiniKdc.LDAP_PORT, "0");
+	}
+
+	@AfterEach
+	public void destroyContextSource() throws Exception {
+		if (this.contextSource != null) {
+			this.contextSource.destroy();
+		}
+	}
+
+	@Test
+	public void testUnpooledContextsBindEveryTime() throws Exception {
+		this.contextSource = createContextSource(null);
+		LdapTemplate ldapTemplate = new LdapTemplate(this.contextSource);
+
+		Assertions.assertNull(this.contextSource.getPooledContextSource());
+		for (int i = 0; i < 3; i++) {
+			Assertions.assertEquals(1, searchClient(ldapTemplate).size());
+		}
+		Assertions.assertEquals(3, this.binds.get());
+	}
+
+	@Test
+	public void testPooledContextsReusedAndValidated() throws Exception {
+		PoolConfig poolConfig = new PoolConfig();
+		poolConfig.setTestOnBorrow(true);
+		this.contextSource = createContextSource(poolConfig);
+		LdapTemplate ldapTemplate = new LdapTemplate(this.contextSource);
+
+		for (int i = 0; i < 3; i++) {
+			Assertions.assertEquals(1, searchClient(ldapTemplate).size());
+		}
+		Assertions.assertEquals(1, this.binds.get());
+		Assertions.assertEquals(3, this.validations.get());
+		Assertions.assertEquals(1, this.contextSource.getPooledContextSource().getNumIdle());
+		Assertions.assertEquals(0, this.contextSource.getPooledContextSource().getNumActive());
+
+		// read only and read write contexts are pooled separately
+		DirContext ctx = this.contextSource.getReadWriteContext();
+		ctx.close();
+		Assertions.assertEquals(2, this.binds.get());
+		Assertions.assertEquals(2, this.contextSource.getPooledContextSource().getNumIdle());
+	}
+
+	@Test
+	public void testPoolClosedOnDestroy() throws Exception {
+		this.contextSource = createContextSource(new PoolConfig());
+		this.contextSource.getReadOnlyContext().close();
+		Assertions.assertEquals(1, this.contextSource.getPooledContextSource().getNumIdle());
+
+		this.contextSource.destroy();
+		Assertions.assertEquals(0, this.contextSource.getPooledContextSource().getNumIdle());
+		Assertions.assertThrows(DataAccessResourceFailureException.class,
+				() -> this.contextSource.getReadOnlyContext());
+		this.contextSource = null;
+	}
+
+	private List<String> searchClient(LdapTemplate ldapTemplate) {
+		return ldapTemplate.search(LdapQueryBuilder.query().base("ou=users").where("uid").is("client1"),
+				(Attributes attributes) -> attributes.get("uid").get().toString());
+	}
+
+	private KerberosLdapContextSource createContextSource(PoolConfig poolConfig) throws Exception {
+		File keytab = new File(getWorkDir(), "client1.keytab");
+		getKdc().createPrincipal(keytab, "client1");
+		SunJaasKrb5LoginConfig loginConfig = new SunJaasKrb5LoginConfig();
+		loginConfig.setServicePrincipal("client1@" + getKdc().getRealm());
+		loginConfig.setKeyTabLocation(new FileSystemResource(keytab));
+		loginConfig.setIsInitiator(true);
+		loginConfig.afterPropertiesSet();
+
+		KerberosLdapContextSource contextSource = new KerberosLdapContextSource(
+				getKdc().getLdapUrl() + "/" + getKdc().getBaseDn()) {
+
+			@Override
+			protected DirContext getDirContextInstance(@SuppressWarnings("rawtypes") Hashtable environment)
+					throws NamingException {
+				KerberosLdapContextSourceTests.this.binds.incrementAndGet();
+				return super.getDirContextInstance(environment);
+			}
+
+		};
+		contextSource.setLoginConfig(loginConfig);
+		contextSource.setPoolConfig(poolConfig);
+		contextSource.setDirContextValidator(new DefaultDirContextValidator() {
+
+			@Override
+			public boolean validateDirContext(DirContextType contextType, DirContext dirContext) {
+				KerberosLdapContextSourceTests.this.validations.incrementAndGet();
+				return super.validateDirContext(contextType, dirContext);
+			}
+
+		});
+		contextSource.afterPropertiesSet();
+		return contextSource;
+	}
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.client.reactive;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import javax.security.auth.kerberos.KerberosTicket;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.kerberos.authentication.KerberosTicketValidation;
+import org.springframework.security.kerberos.authentication.sun.SunJaasKerberosTicketValidator;
+import org.springframework.security.kerberos.client.KerberosCredentialManager;
+import org.springframework.security.kerberos.test.KerberosSecurityTestcase;
+import org.springframework.security.kerberos.test.MiniKdc;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+
+public class KerberosExchangeFilterFunctionTests extends KerberosSecurityTestcase {
+
+	private static final String CLIENT_PRINCIPAL = "client1@EXAMPLE.COM";
+
+	private static final String SERVICE_PRINCIPAL = "HTTP/webtier@EXAMPLE.COM";
+
+	@Test
+	public void testTokensCreatedFromSharedSubject() throws Exception {
+		MiniKdc kdc = getKdc();
+		File workDir = getWorkDir();
+		File clientKeytab = new File(workDir, "client1.keytab");
+		kdc.createPrincipal(clientKeytab, "client1");
+		File serviceKeytab = new File(workDir, "webtier.keytab");
+		kdc.createKeyabFile(serviceKeytab, SERVICE_PRINCIPAL, "secret");
+
+		SunJaasKerberosTicketValidator validator = new SunJaasKerberosTicketValidator();
+		validator.setServicePrincipal(SERVICE_PRINCIPAL);
+		validator.setKeyTabLocation(new FileSystemResource(serviceKeytab));
+		validator.afterPropertiesSet();
+
+		KerberosCredentialManager credentialManager = new KerberosCredentialManager(clientKeytab.getCanonicalPath(),
+				CLIENT_PRINCIPAL);
+		KerberosExchangeFilterFunction filter = new KerberosExchangeFilterFunction(credentialManager);
+		filter.setServicePrincipalResolver((uri) -> SERVICE_PRINCIPAL);
+
+		List<ClientRequest> requests = new ArrayList<>();
+		ExchangeFunction exchange = (request) -> {
+			requests.add(request);
+			return Mono.just(ClientResponse.create(HttpStatus.OK).build());
+		};
+
+		for (int i = 0; i < 2; i++) {
+			ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create("http://webtier/")).build();
+			filter.filter(request, exchange).block();
+		}
+
+		Assertions.assertEquals(2, requests.size());
+		for (ClientRequest request : requests) {
+			String header = request.headers().getFirst(HttpHeaders.AUTHORIZATION);
+			Assertions.assertTrue(header.startsWith("Negotiate "));
+			KerberosTicketValidation validation = validator
+					.validateTicket(Base64.getDecoder().decode(header.substring(10)));
+			Assertions.assertEquals(CLIENT_PRINCIPAL, validation.username());
+		}
+
+		Assertions.assertSame(credentialManager.getSubject(), credentialManager.getSubject());
+		boolean serviceTicketCached = false;
+		for (KerberosTicket ticket : credentialManager.getSubject().getPrivateCredentials(KerberosTicket.class)) {
+			serviceTicketCached |= ticket.getServer().getName().equals(SERVICE_PRINCIPAL);
+		}
+		Assertions.assertTrue(serviceTicketCached);
+	}
+
+	@Test
+	public void testExistingAuthorizationHeaderIsKept() {
+		KerberosExchangeFilterFunction filter = new KerberosExchangeFilterFunction(new KerberosCredentialManager());
+		List<ClientRequest> requests = new ArrayList<>();
+		ExchangeFunction exchange = (request) -> {
+			requests.add(request);
+			return Mono.just(ClientResponse.create(HttpStatus.OK).build());
+		};
+
+		ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create("http://webtier/"))
+				.header(HttpHeaders.AUTHORIZATION, "Basic Zm9vOmJhcg==").build();
+		filter.filter(request, exchange).block();
+
+		Assertions.assertEquals("Basic Zm9vOmJhcg==", requests.get(0).headers().getFirst(HttpHeaders.AUTHORIZATION));
+	}
+
+}
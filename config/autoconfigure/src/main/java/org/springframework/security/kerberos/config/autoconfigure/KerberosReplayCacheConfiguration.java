@@ -0,0 +1,57 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.config.autoconfigure;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.kerberos.authentication.KerberosReplayCache;
+import org.springframework.security.kerberos.authentication.sun.GlobalSunJaasKerberosConfig;
+
+/**
+ * Configuration of the {@link KerberosReplayCache} checked by the ticket validator of the
+ * auto-configuration. It is opt-in with
+ * {@code spring.security.kerberos.server.replay-cache.enabled}, as the replay cache of
+ * the JDK is used as well unless it is disabled with
+ * {@code spring.security.kerberos.server.replay-cache.disable-jdk-replay-cache}, which
+ * affects the whole JVM.
+ */
+@Configuration(proxyBeanMethods = false)
+@EnableConfigurationProperties(KerberosServerProperties.class)
+@ConditionalOnProperty(value = "spring.security.kerberos.server.replay-cache.enabled", havingValue = "true")
+public class KerberosReplayCacheConfiguration {
+
+	@Bean
+	@ConditionalOnMissingBean
+	KerberosReplayCache kerberosReplayCache(KerberosServerProperties kerberosServerProperties) {
+		KerberosServerProperties.ReplayCache properties = kerberosServerProperties.getReplayCache();
+		return new KerberosReplayCache(properties.getClockSkew(), properties.getMaxSize());
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty(value = "spring.security.kerberos.server.replay-cache.disable-jdk-replay-cache",
+			havingValue = "true")
+	static GlobalSunJaasKerberosConfig globalSunJaasKerberosConfig() {
+		GlobalSunJaasKerberosConfig config = new GlobalSunJaasKerberosConfig();
+		config.setJdkReplayCache("none");
+		return config;
+	}
+
+}
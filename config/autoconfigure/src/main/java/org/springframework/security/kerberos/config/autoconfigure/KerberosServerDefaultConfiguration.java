@@ -19,14 +19,17 @@ package org.springframework.security.kerberos.config.autoconfigure;
 import java.util.Collection;
 import java.util.Collections;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.kerberos.authentication.KerberosTicketValidator;
+import org.springframework.security.kerberos.authentication.KerberosReplayCache;
 import org.springframework.security.kerberos.authentication.sun.SunJaasKerberosTicketValidator;
 
 @Configuration(proxyBeanMethods = false)
+@Import(KerberosReplayCacheConfiguration.class)
 public class KerberosServerDefaultConfiguration {
 
 	private final KerberosServerProperties kerberosServerProperties;
@@ -35,11 +38,22 @@ public class KerberosServerDefaultConfiguration {
 		this.kerberosServerProperties = kerberosServerProperties;
 	}
 
+	/**
+	 * Declared as a {@link SunJaasKerberosTicketValidator} rather than a
+	 * {@link org.springframework.security.kerberos.authentication.KerberosTicketValidator}
+	 * so that conditions and injection points of the actuator auto-configuration match it
+	 * before it is instantiated. It can still be injected as a
+	 * {@code KerberosTicketValidator}.
+	 * @param replayCache the replay cache to check authenticators with, if any
+	 * @return the ticket validator
+	 */
 	@Bean
-	KerberosTicketValidator kerberosTicketValidator() {
+	SunJaasKerberosTicketValidator kerberosTicketValidator(ObjectProvider<KerberosReplayCache> replayCache) {
 		SunJaasKerberosTicketValidator sunJaasKerberosTicketValidator = new SunJaasKerberosTicketValidator();
 		sunJaasKerberosTicketValidator.setServicePrincipal(this.kerberosServerProperties.getServicePrincipal());
 		sunJaasKerberosTicketValidator.setKeyTabLocation(this.kerberosServerProperties.getKeytabLocation());
+		sunJaasKerberosTicketValidator.setMultiTier(this.kerberosServerProperties.isMultiTier());
+		replayCache.ifAvailable(sunJaasKerberosTicketValidator::setReplayCache);
 		return sunJaasKerberosTicketValidator;
 	}
 
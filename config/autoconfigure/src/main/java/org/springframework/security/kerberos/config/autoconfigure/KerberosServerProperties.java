@@ -16,6 +16,8 @@
 
 package org.springframework.security.kerberos.config.autoconfigure;
 
+import java.time.Duration;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.core.io.Resource;
 
@@ -26,6 +28,14 @@ public class KerberosServerProperties {
 
 	private Resource keytabLocation;
 
+	private boolean multiTier;
+
+	private final Health health = new Health();
+
+	private final Metrics metrics = new Metrics();
+
+	private final ReplayCache replayCache = new ReplayCache();
+
 	public String getServicePrincipal() {
 		return this.servicePrincipal;
 	}
@@ -42,4 +52,132 @@ public class KerberosServerProperties {
 		this.keytabLocation = keytabLocation;
 	}
 
+	public boolean isMultiTier() {
+		return this.multiTier;
+	}
+
+	public void setMultiTier(boolean multiTier) {
+		this.multiTier = multiTier;
+	}
+
+	public Health getHealth() {
+		return this.health;
+	}
+
+	public Metrics getMetrics() {
+		return this.metrics;
+	}
+
+	public ReplayCache getReplayCache() {
+		return this.replayCache;
+	}
+
+	public static class Health {
+
+		/**
+		 * Whether to report the state of the Kerberos login to the health endpoint.
+		 */
+		private boolean enabled = true;
+
+		/**
+		 * Remaining lifetime of the ticket granting ticket of the service below which it
+		 * is reported out of service, in multi tier mode.
+		 */
+		private Duration minTicketLifetime = Duration.ofMinutes(5);
+
+		public boolean isEnabled() {
+			return this.enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public Duration getMinTicketLifetime() {
+			return this.minTicketLifetime;
+		}
+
+		public void setMinTicketLifetime(Duration minTicketLifetime) {
+			this.minTicketLifetime = minTicketLifetime;
+		}
+
+	}
+
+	public static class Metrics {
+
+		/**
+		 * Whether to register metrics of Kerberos validators, caches and executors.
+		 */
+		private boolean enabled = true;
+
+		public boolean isEnabled() {
+			return this.enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+	}
+
+	public static class ReplayCache {
+
+		/**
+		 * Whether to check tokens with a replay cache of the application before they are
+		 * accepted.
+		 */
+		private boolean enabled;
+
+		/**
+		 * Clock skew allowed by the Kerberos configuration, authenticators are kept for
+		 * twice as long.
+		 */
+		private Duration clockSkew = Duration.ofMinutes(5);
+
+		/**
+		 * Maximum number of authenticators kept, should exceed the validations in twice
+		 * the clock skew.
+		 */
+		private int maxSize = 200000;
+
+		/**
+		 * Whether to disable the replay cache of the JDK, which is shared by the whole
+		 * JVM. Only safe if every validator of the JVM checks a replay cache.
+		 */
+		private boolean disableJdkReplayCache;
+
+		public boolean isEnabled() {
+			return this.enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public Duration getClockSkew() {
+			return this.clockSkew;
+		}
+
+		public void setClockSkew(Duration clockSkew) {
+			this.clockSkew = clockSkew;
+		}
+
+		public int getMaxSize() {
+			return this.maxSize;
+		}
+
+		public void setMaxSize(int maxSize) {
+			this.maxSize = maxSize;
+		}
+
+		public boolean isDisableJdkReplayCache() {
+			return this.disableJdkReplayCache;
+		}
+
+		public void setDisableJdkReplayCache(boolean disableJdkReplayCache) {
+			this.disableJdkReplayCache = disableJdkReplayCache;
+		}
+
+	}
+
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.config.autoconfigure.actuate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+
+import org.springframework.security.kerberos.authentication.support.ExpiringCache;
+
+/**
+ * Binds the common cache metrics of an {@link ExpiringCache}.
+ */
+public class ExpiringCacheMetrics extends CacheMeterBinder<ExpiringCache<?, ?>> {
+
+	/**
+	 * Instantiates a new expiring cache metrics.
+	 * @param cache the cache
+	 * @param cacheName the name of the cache
+	 * @param tags the additional tags
+	 */
+	public ExpiringCacheMetrics(ExpiringCache<?, ?> cache, String cacheName, Iterable<Tag> tags) {
+		super(cache, cacheName, tags);
+	}
+
+	@Override
+	protected Long size() {
+		ExpiringCache<?, ?> cache = getCache();
+		return (cache != null) ? (long) cache.size() : null;
+	}
+
+	@Override
+	protected long hitCount() {
+		ExpiringCache<?, ?> cache = getCache();
+		return (cache != null) ? cache.getHitCount() : 0L;
+	}
+
+	@Override
+	protected Long missCount() {
+		ExpiringCache<?, ?> cache = getCache();
+		return (cache != null) ? cache.getMissCount() : null;
+	}
+
+	@Override
+	protected Long evictionCount() {
+		ExpiringCache<?, ?> cache = getCache();
+		return (cache != null) ? cache.getEvictionCount() : null;
+	}
+
+	@Override
+	protected long putCount() {
+		ExpiringCache<?, ?> cache = getCache();
+		return (cache != null) ? cache.getPutCount() : 0L;
+	}
+
+	@Override
+	protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+	}
+
+}
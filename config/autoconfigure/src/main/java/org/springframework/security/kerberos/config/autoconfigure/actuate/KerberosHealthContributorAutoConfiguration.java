@@ -0,0 +1,61 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.config.autoconfigure.actuate;
+
+import java.util.Map;
+
+import org.springframework.boot.actuate.autoconfigure.health.CompositeHealthContributorConfiguration;
+import org.springframework.boot.actuate.health.HealthContributor;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.security.kerberos.authentication.sun.SunJaasKerberosTicketValidator;
+import org.springframework.security.kerberos.config.autoconfigure.KerberosServerProperties;
+import org.springframework.security.kerberos.config.autoconfigure.reactive.ReactiveKerberosServerAutoConfiguration;
+import org.springframework.security.kerberos.config.autoconfigure.servlet.KerberosServerAutoConfiguration;
+
+@AutoConfiguration(after = { KerberosServerAutoConfiguration.class, ReactiveKerberosServerAutoConfiguration.class })
+@EnableConfigurationProperties(KerberosServerProperties.class)
+@ConditionalOnClass(HealthContributor.class)
+@ConditionalOnBean(SunJaasKerberosTicketValidator.class)
+@ConditionalOnProperty(value = "spring.security.kerberos.server.health.enabled", matchIfMissing = true)
+public class KerberosHealthContributorAutoConfiguration
+		extends CompositeHealthContributorConfiguration<KerberosHealthIndicator, SunJaasKerberosTicketValidator> {
+
+	private final KerberosServerProperties kerberosServerProperties;
+
+	public KerberosHealthContributorAutoConfiguration(KerberosServerProperties kerberosServerProperties) {
+		this.kerberosServerProperties = kerberosServerProperties;
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(name = { "kerberosHealthIndicator", "kerberosHealthContributor" })
+	public HealthContributor kerberosHealthContributor(Map<String, SunJaasKerberosTicketValidator> ticketValidators) {
+		return createContributor(ticketValidators);
+	}
+
+	@Override
+	protected KerberosHealthIndicator createIndicator(SunJaasKerberosTicketValidator ticketValidator) {
+		return new KerberosHealthIndicator(ticketValidator,
+				this.kerberosServerProperties.getHealth().getMinTicketLifetime());
+	}
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.config.autoconfigure.actuate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Date;
+
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.core.io.Resource;
+import org.springframework.security.kerberos.authentication.sun.SunJaasKerberosTicketValidator;
+import org.springframework.util.Assert;
+
+/**
+ * {@link org.springframework.boot.actuate.health.HealthIndicator} reporting whether a
+ * {@link SunJaasKerberosTicketValidator} is able to validate tickets.
+ *
+ * <p>
+ * The service is down if its keytab is not readable, has no key for the service
+ * principal, or has only keys older than the ones the service logged in with. In multi
+ * tier mode it is also down once its ticket granting ticket expired, and out of service
+ * shortly before, so that load balancers can drain it while it still works.
+ */
+public class KerberosHealthIndicator extends AbstractHealthIndicator {
+
+	private final SunJaasKerberosTicketValidator ticketValidator;
+
+	private final Duration minTicketLifetime;
+
+	private Clock clock = Clock.systemUTC();
+
+	/**
+	 * Instantiates a new kerberos health indicator.
+	 * @param ticketValidator the ticket validator
+	 * @param minTicketLifetime the remaining lifetime of the ticket granting ticket below
+	 * which the service is out of service
+	 */
+	public KerberosHealthIndicator(SunJaasKerberosTicketValidator ticketValidator, Duration minTicketLifetime) {
+		super("Kerberos health check failed");
+		Assert.notNull(ticketValidator, "ticketValidator cannot be null");
+		Assert.notNull(minTicketLifetime, "minTicketLifetime cannot be null");
+		this.ticketValidator = ticketValidator;
+		this.minTicketLifetime = minTicketLifetime;
+	}
+
+	@Override
+	protected void doHealthCheck(Health.Builder builder) throws Exception {
+		builder.up().withDetail("servicePrincipal", String.valueOf(this.ticketValidator.getServicePrincipal()));
+		Resource keyTabLocation = this.ticketValidator.getKeyTabLocation();
+		if (keyTabLocation == null || !keyTabLocation.isReadable()) {
+			builder.down().withDetail("error", "Keytab is not readable");
+			return;
+		}
+		int loginKeyVersion = this.ticketValidator.getLoginKeyVersion();
+		int keyTabKeyVersion = this.ticketValidator.getKeyTabKeyVersion();
+		builder.withDetail("loginKeyVersion", loginKeyVersion).withDetail("keyTabKeyVersion", keyTabKeyVersion);
+		if (keyTabKeyVersion < 0) {
+			builder.down().withDetail("error", "Keytab has no key for the service principal");
+			return;
+		}
+		if (keyTabKeyVersion < loginKeyVersion) {
+			builder.down().withDetail("error", "Keytab has older keys than the service logged in with");
+			return;
+		}
+		if (this.ticketValidator.isMultiTier()) {
+			checkTicketGrantingTicket(builder);
+		}
+	}
+
+	private void checkTicketGrantingTicket(Health.Builder builder) {
+		Date endTime = this.ticketValidator.getTicketGrantingTicketEndTime();
+		if (endTime == null) {
+			builder.down().withDetail("error", "Service holds no ticket granting ticket");
+			return;
+		}
+		builder.withDetail("ticketGrantingTicketEndTime", endTime);
+		Duration remaining = Duration.ofMillis(endTime.getTime() - this.clock.millis());
+		if (remaining.isNegative() || remaining.isZero()) {
+			builder.down().withDetail("error", "Ticket granting ticket expired");
+		}
+		else if (remaining.compareTo(this.minTicketLifetime) < 0) {
+			builder.status(Status.OUT_OF_SERVICE);
+		}
+	}
+
+	/**
+	 * Sets the clock the remaining lifetime of tickets is measured with.
+	 * @param clock the clock
+	 */
+	public void setClock(Clock clock) {
+		Assert.notNull(clock, "clock cannot be null");
+		this.clock = clock;
+	}
+
+}
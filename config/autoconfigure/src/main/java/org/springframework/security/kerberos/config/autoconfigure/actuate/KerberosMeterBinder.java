@@ -0,0 +1,234 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.config.autoconfigure.actuate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.security.kerberos.authentication.AsyncKerberosClient;
+import org.springframework.security.kerberos.authentication.CachingKerberosClient;
+import org.springframework.security.kerberos.authentication.ConcurrencyLimitingKerberosTicketValidator;
+import org.springframework.security.kerberos.authentication.GSSContextRegistry;
+import org.springframework.security.kerberos.authentication.KerberosMultiTier;
+import org.springframework.security.kerberos.authentication.KerberosReplayCache;
+import org.springframework.security.kerberos.authentication.KerberosServiceTicketCache;
+import org.springframework.security.kerberos.authentication.NegativeCachingKerberosTicketValidator;
+import org.springframework.security.kerberos.authentication.sun.SunJaasKerberosConstrainedDelegation;
+import org.springframework.security.kerberos.authentication.sun.SunJaasKerberosTicketValidator;
+import org.springframework.security.kerberos.authentication.support.ExpiringCache;
+import org.springframework.util.Assert;
+
+/**
+ * {@link MeterBinder} for the Kerberos validators, caches, context registries and login
+ * executors of an application context, each tagged with its bean name.
+ *
+ * <p>
+ * The beans are looked up once all singletons are instantiated, so that binding to a
+ * registry created early does not create them early as well. The default service ticket
+ * cache of {@link KerberosMultiTier} is only bound if a validator runs in multi tier
+ * mode, as nothing else fills it.
+ */
+public class KerberosMeterBinder implements MeterBinder, SmartInitializingSingleton {
+
+	private final ListableBeanFactory beanFactory;
+
+	private final List<MeterRegistry> pendingRegistries = new ArrayList<MeterRegistry>();
+
+	private boolean initialized;
+
+	/**
+	 * Instantiates a new kerberos meter binder.
+	 * @param beanFactory the bean factory to look up the beans in
+	 */
+	public KerberosMeterBinder(ListableBeanFactory beanFactory) {
+		Assert.notNull(beanFactory, "beanFactory cannot be null");
+		this.beanFactory = beanFactory;
+	}
+
+	@Override
+	public synchronized void bindTo(MeterRegistry registry) {
+		if (this.initialized) {
+			bind(registry);
+		}
+		else {
+			this.pendingRegistries.add(registry);
+		}
+	}
+
+	@Override
+	public synchronized void afterSingletonsInstantiated() {
+		this.initialized = true;
+		for (MeterRegistry registry : this.pendingRegistries) {
+			bind(registry);
+		}
+		this.pendingRegistries.clear();
+	}
+
+	private void bind(MeterRegistry registry) {
+		Map<KerberosReplayCache, String> replayCaches = new IdentityHashMap<KerberosReplayCache, String>();
+		for (Map.Entry<String, KerberosReplayCache> entry : beansOfType(KerberosReplayCache.class)) {
+			replayCaches.put(entry.getValue(), entry.getKey());
+		}
+		boolean multiTier = false;
+		for (Map.Entry<String, SunJaasKerberosTicketValidator> entry : beansOfType(
+				SunJaasKerberosTicketValidator.class)) {
+			bindTicketValidator(registry, entry.getKey(), entry.getValue());
+			multiTier |= entry.getValue().isMultiTier();
+			if (entry.getValue().getReplayCache() != null) {
+				replayCaches.putIfAbsent(entry.getValue().getReplayCache(), entry.getKey());
+			}
+		}
+		for (Map.Entry<KerberosReplayCache, String> entry : replayCaches.entrySet()) {
+			bindReplayCache(registry, entry.getValue(), entry.getKey());
+		}
+		for (Map.Entry<String, NegativeCachingKerberosTicketValidator> entry : beansOfType(
+				NegativeCachingKerberosTicketValidator.class)) {
+			bindNegativeCachingTicketValidator(registry, entry.getKey(), entry.getValue());
+		}
+		for (Map.Entry<String, ConcurrencyLimitingKerberosTicketValidator> entry : beansOfType(
+				ConcurrencyLimitingKerberosTicketValidator.class)) {
+			bindConcurrencyLimitingTicketValidator(registry, entry.getKey(), entry.getValue());
+		}
+		for (Map.Entry<String, GSSContextRegistry> entry : beansOfType(GSSContextRegistry.class)) {
+			bindContextRegistry(registry, entry.getKey(), entry.getValue());
+		}
+		for (Map.Entry<String, AsyncKerberosClient> entry : beansOfType(AsyncKerberosClient.class)) {
+			new ExecutorServiceMetrics(entry.getValue().getExecutor(), entry.getKey(), Tags.empty()).bindTo(registry);
+		}
+		boolean defaultServiceTicketCacheBound = false;
+		for (Map.Entry<String, KerberosServiceTicketCache> entry : beansOfType(KerberosServiceTicketCache.class)) {
+			bindCache(registry, entry.getKey(), entry.getValue().getCache());
+			defaultServiceTicketCacheBound |= entry.getValue() == KerberosMultiTier.getDefaultServiceTicketCache();
+		}
+		if (multiTier && !defaultServiceTicketCacheBound) {
+			bindCache(registry, "kerberosServiceTicketCache",
+					KerberosMultiTier.getDefaultServiceTicketCache().getCache());
+		}
+		for (Map.Entry<String, CachingKerberosClient> entry : beansOfType(CachingKerberosClient.class)) {
+			bindCache(registry, entry.getKey(), entry.getValue().getCache());
+		}
+		for (Map.Entry<String, SunJaasKerberosConstrainedDelegation> entry : beansOfType(
+				SunJaasKerberosConstrainedDelegation.class)) {
+			bindCache(registry, entry.getKey(), entry.getValue().getCache());
+		}
+	}
+
+	private void bindTicketValidator(MeterRegistry registry, String name, SunJaasKerberosTicketValidator validator) {
+		Tags tags = Tags.of("name", name);
+		FunctionTimer
+				.builder("kerberos.validations", validator, SunJaasKerberosTicketValidator::getValidationCount,
+						SunJaasKerberosTicketValidator::getTotalValidationTime, TimeUnit.NANOSECONDS)
+				.description("Kerberos tickets validated").tags(tags).register(registry);
+		FunctionCounter
+				.builder("kerberos.validations.failed", validator,
+						SunJaasKerberosTicketValidator::getFailedValidationCount)
+				.description("Kerberos tickets which failed to validate").tags(tags).register(registry);
+		if (validator.isMultiTier()) {
+			TimeGauge
+					.builder("kerberos.tgt.remaining", validator, TimeUnit.MILLISECONDS,
+							KerberosMeterBinder::getRemainingTicketLifetime)
+					.description("Remaining lifetime of the ticket granting ticket of the service").tags(tags)
+					.register(registry);
+		}
+	}
+
+	private void bindNegativeCachingTicketValidator(MeterRegistry registry, String name,
+			NegativeCachingKerberosTicketValidator validator) {
+		FunctionCounter
+				.builder("kerberos.validations.rejected.cached", validator,
+						NegativeCachingKerberosTicketValidator::getShortCircuitedCount)
+				.description("Kerberos tickets rejected again without validation").tags(Tags.of("name", name))
+				.register(registry);
+		bindCache(registry, name, validator.getCache());
+	}
+
+	private void bindConcurrencyLimitingTicketValidator(MeterRegistry registry, String name,
+			ConcurrencyLimitingKerberosTicketValidator validator) {
+		Tags tags = Tags.of("name", name);
+		Gauge.builder("kerberos.validations.limit", validator, ConcurrencyLimitingKerberosTicketValidator::getLimit)
+				.description("Limit of concurrent Kerberos validations").tags(tags).register(registry);
+		Gauge.builder("kerberos.validations.active", validator, ConcurrencyLimitingKerberosTicketValidator::getInFlight)
+				.description("Kerberos validations in progress").tags(tags).register(registry);
+		FunctionCounter
+				.builder("kerberos.validations.rejected.overloaded", validator,
+						ConcurrencyLimitingKerberosTicketValidator::getRejectedCount)
+				.description("Kerberos tickets rejected because of the concurrency limit").tags(tags)
+				.register(registry);
+	}
+
+	private void bindReplayCache(MeterRegistry registry, String name, KerberosReplayCache replayCache) {
+		Tags tags = Tags.of("name", name);
+		Gauge.builder("kerberos.replay.cache.size", replayCache, KerberosReplayCache::size)
+				.description("Authenticators in the replay cache").tags(tags).register(registry);
+		bindReplayCacheResult(registry, tags, "stored", replayCache, KerberosReplayCache::getStoredCount);
+		bindReplayCacheResult(registry, tags, "replay", replayCache, KerberosReplayCache::getReplayCount);
+		bindReplayCacheResult(registry, tags, "overflow", replayCache, KerberosReplayCache::getOverflowCount);
+		bindReplayCacheResult(registry, tags, "malformed", replayCache, KerberosReplayCache::getMalformedCount);
+		FunctionCounter.builder("kerberos.replay.cache.expired", replayCache, KerberosReplayCache::getExpiredCount)
+				.description("Authenticators expired from the replay cache").tags(tags).register(registry);
+	}
+
+	private void bindReplayCacheResult(MeterRegistry registry, Tags tags, String result,
+			KerberosReplayCache replayCache, ToDoubleFunction<KerberosReplayCache> count) {
+		FunctionCounter.builder("kerberos.replay.cache.checks", replayCache, count)
+				.description("Tokens checked with the replay cache").tags(tags.and("result", result))
+				.register(registry);
+	}
+
+	private void bindContextRegistry(MeterRegistry registry, String name, GSSContextRegistry contextRegistry) {
+		Tags tags = Tags.of("name", name);
+		Gauge.builder("kerberos.gss.contexts", contextRegistry, GSSContextRegistry::size)
+				.description("Retained GSS contexts").tags(tags).register(registry);
+		FunctionCounter
+				.builder("kerberos.gss.contexts.registered", contextRegistry, GSSContextRegistry::getRegisteredCount)
+				.description("GSS contexts registered").tags(tags).register(registry);
+		FunctionCounter.builder("kerberos.gss.contexts.disposed", contextRegistry, GSSContextRegistry::getDisposedCount)
+				.description("GSS contexts disposed").tags(tags).register(registry);
+	}
+
+	private void bindCache(MeterRegistry registry, String name, ExpiringCache<?, ?> cache) {
+		if (cache != null) {
+			new ExpiringCacheMetrics(cache, name, Tags.empty()).bindTo(registry);
+		}
+	}
+
+	private <T> Iterable<Map.Entry<String, T>> beansOfType(Class<T> type) {
+		return this.beanFactory.getBeansOfType(type).entrySet();
+	}
+
+	private static double getRemainingTicketLifetime(SunJaasKerberosTicketValidator validator) {
+		Date endTime = validator.getTicketGrantingTicketEndTime();
+		return (endTime != null) ? Math.max(0, endTime.getTime() - System.currentTimeMillis()) : 0;
+	}
+
+}
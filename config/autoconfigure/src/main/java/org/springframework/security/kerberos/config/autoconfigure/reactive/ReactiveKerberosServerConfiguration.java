@@ -37,6 +37,7 @@ import org.springframework.security.kerberos.config.autoconfigure.KerberosServer
 import org.springframework.security.kerberos.webflux.authentication.SpnegoReactiveAuthenticationManager;
 import org.springframework.security.kerberos.webflux.authentication.SpnegoServerAuthenticationConverter;
 import org.springframework.security.kerberos.webflux.authentication.SpnegoServerAuthenticationEntryPoint;
+import org.springframework.security.kerberos.webflux.authentication.SpnegoServerAuthenticationFailureHandler;
 import org.springframework.security.web.server.SecurityWebFilterChain;
 import org.springframework.security.web.server.authentication.AuthenticationWebFilter;
 import org.springframework.security.web.server.context.WebSessionServerSecurityContextRepository;
@@ -69,6 +70,7 @@ public class ReactiveKerberosServerConfiguration {
 				spnegoReactiveAuthenticationManager);
 		spnegoAuthenticationWebFilter.setServerAuthenticationConverter(new SpnegoServerAuthenticationConverter());
 		spnegoAuthenticationWebFilter.setSecurityContextRepository(new WebSessionServerSecurityContextRepository());
+		spnegoAuthenticationWebFilter.setAuthenticationFailureHandler(new SpnegoServerAuthenticationFailureHandler());
 		return http.authorizeExchange(optionalCustomizer.orElse((exchanges) -> exchanges.anyExchange().authenticated()))
 				.exceptionHandling().authenticationEntryPoint(new SpnegoServerAuthenticationEntryPoint()).and()
 				.addFilterAt(spnegoAuthenticationWebFilter, SecurityWebFiltersOrder.AUTHENTICATION).build();
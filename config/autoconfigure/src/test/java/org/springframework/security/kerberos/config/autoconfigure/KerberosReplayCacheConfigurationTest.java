@@ -0,0 +1,76 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.config.autoconfigure;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.security.kerberos.authentication.KerberosReplayCache;
+import org.springframework.security.kerberos.authentication.sun.GlobalSunJaasKerberosConfig;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KerberosReplayCacheConfigurationTest {
+
+	private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+			.withUserConfiguration(KerberosReplayCacheConfiguration.class);
+
+	@AfterEach
+	void clearJdkReplayCache() {
+		System.clearProperty("sun.security.krb5.rcache");
+	}
+
+	@Test
+	void noReplayCacheByDefault() {
+		this.contextRunner.run((context) -> assertThat(context).doesNotHaveBean(KerberosReplayCache.class)
+				.doesNotHaveBean(GlobalSunJaasKerberosConfig.class));
+	}
+
+	@Test
+	void replayCacheIfEnabled() {
+		this.contextRunner.withPropertyValues("spring.security.kerberos.server.replay-cache.enabled=true",
+				"spring.security.kerberos.server.replay-cache.max-size=1").run((context) -> {
+					KerberosReplayCache replayCache = context.getBean(KerberosReplayCache.class);
+					assertThat(replayCache.checkAndStore(new byte[] { 0x04, 0x01, 0x01 })).isTrue();
+					assertThat(replayCache.store(new byte[] { 0x04, 0x01, 0x02 }))
+							.isEqualTo(KerberosReplayCache.Result.OVERFLOW);
+					assertThat(context).doesNotHaveBean(GlobalSunJaasKerberosConfig.class);
+					assertThat(System.getProperty("sun.security.krb5.rcache")).isNull();
+				});
+	}
+
+	@Test
+	void jdkReplayCacheDisabled() {
+		this.contextRunner.withPropertyValues("spring.security.kerberos.server.replay-cache.enabled=true",
+				"spring.security.kerberos.server.replay-cache.disable-jdk-replay-cache=true").run((context) -> {
+					assertThat(context).hasSingleBean(GlobalSunJaasKerberosConfig.class);
+					assertThat(System.getProperty("sun.security.krb5.rcache")).isEqualTo("none");
+				});
+	}
+
+	@Test
+	void userReplayCacheKept() {
+		KerberosReplayCache replayCache = new KerberosReplayCache(Duration.ofMinutes(1), 10);
+		this.contextRunner.withBean(KerberosReplayCache.class, () -> replayCache)
+				.withPropertyValues("spring.security.kerberos.server.replay-cache.enabled=true")
+				.run((context) -> assertThat(context.getBean(KerberosReplayCache.class)).isSameAs(replayCache));
+	}
+
+}
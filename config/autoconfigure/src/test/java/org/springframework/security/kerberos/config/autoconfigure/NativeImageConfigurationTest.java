@@ -0,0 +1,59 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.config.autoconfigure;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+import org.springframework.util.StreamUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NativeImageConfigurationTest {
+
+	private static final String REFLECT_CONFIG = "META-INF/native-image/io.github.openprojectx.security.kerberos/"
+			+ "spring-security-kerberos-autoconfigure/reflect-config.json";
+
+	private static final Pattern TYPE = Pattern.compile("^ {4}\"name\": \"([^\"]+)\"");
+
+	@Test
+	void propertiesBoundReflectively() throws Exception {
+		String config;
+		try (InputStream in = getClass().getClassLoader().getResourceAsStream(REFLECT_CONFIG)) {
+			assertThat(in).as("Missing " + REFLECT_CONFIG).isNotNull();
+			config = StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+		}
+		Set<String> types = new HashSet<String>();
+		for (String line : config.split("\n")) {
+			Matcher matcher = TYPE.matcher(line);
+			if (matcher.find()) {
+				types.add(matcher.group(1));
+			}
+		}
+		assertThat(types).contains(KerberosServerProperties.class.getName());
+		for (Class<?> type : KerberosServerProperties.class.getDeclaredClasses()) {
+			assertThat(types).contains(type.getName());
+		}
+	}
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.config.autoconfigure.actuate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration;
+import org.springframework.boot.actuate.health.HealthContributor;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.kerberos.authentication.AsyncKerberosClient;
+import org.springframework.security.kerberos.authentication.CachingKerberosClient;
+import org.springframework.security.kerberos.authentication.ConcurrencyLimitingKerberosTicketValidator;
+import org.springframework.security.kerberos.authentication.GSSContextRegistry;
+import org.springframework.security.kerberos.authentication.KerberosClient;
+import org.springframework.security.kerberos.authentication.KerberosReplayCache;
+import org.springframework.security.kerberos.authentication.NegativeCachingKerberosTicketValidator;
+import org.springframework.security.kerberos.authentication.sun.SunJaasKerberosTicketValidator;
+import org.springframework.security.kerberos.config.autoconfigure.actuate.KerberosHealthIndicatorTest.StubTicketValidator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KerberosActuatorAutoConfigurationTest {
+
+	private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+			.withConfiguration(AutoConfigurations.of(KerberosHealthContributorAutoConfiguration.class,
+					KerberosMetricsAutoConfiguration.class));
+
+	@Test
+	void healthIndicatorForTicketValidator() {
+		this.contextRunner.withUserConfiguration(TestKerberosConfiguration.class).run((context) -> assertThat(context)
+				.getBean("kerberosHealthContributor").isInstanceOf(KerberosHealthIndicator.class));
+	}
+
+	@Test
+	void noHealthIndicatorWithoutTicketValidator() {
+		this.contextRunner.run((context) -> assertThat(context).doesNotHaveBean(HealthContributor.class));
+	}
+
+	@Test
+	void noHealthIndicatorIfDisabled() {
+		this.contextRunner.withUserConfiguration(TestKerberosConfiguration.class)
+				.withPropertyValues("spring.security.kerberos.server.health.enabled=false")
+				.run((context) -> assertThat(context).doesNotHaveBean(HealthContributor.class));
+	}
+
+	@Test
+	void metricsBoundToRegistry() {
+		this.contextRunner.withUserConfiguration(TestKerberosConfiguration.class, TestMetricsConfiguration.class)
+				.withConfiguration(AutoConfigurations.of(MetricsAutoConfiguration.class)).run((context) -> {
+					MeterRegistry registry = context.getBean(MeterRegistry.class);
+					assertThat(
+							registry.get("kerberos.validations").tag("name", "ticketValidator").functionTimer().count())
+									.isEqualTo(0);
+					assertThat(registry.get("kerberos.gss.contexts").tag("name", "contextRegistry").gauge().value())
+							.isEqualTo(0);
+					assertThat(registry.get("cache.size").tag("cache", "cachingKerberosClient").gauge().value())
+							.isEqualTo(0);
+					assertThat(registry.find("cache.size").tag("cache", "kerberosServiceTicketCache").gauge()).isNull();
+					assertThat(registry.get("kerberos.validations.rejected.cached")
+							.tag("name", "negativeCachingTicketValidator").functionCounter().count()).isEqualTo(0);
+					assertThat(registry.get("cache.size").tag("cache", "negativeCachingTicketValidator").gauge())
+							.isNotNull();
+					assertThat(registry.get("kerberos.validations.limit").tag("name", "limitingTicketValidator").gauge()
+							.value()).isEqualTo(4);
+					assertThat(registry.get("kerberos.replay.cache.checks").tag("name", "replayCache")
+							.tag("result", "replay").functionCounter().count()).isEqualTo(0);
+					assertThat(registry.get("executor.pool.max").tag("name", "asyncKerberosClient").gauge().value())
+							.isEqualTo(8);
+				});
+	}
+
+	@Test
+	void defaultServiceTicketCacheBoundInMultiTierMode() {
+		this.contextRunner
+				.withUserConfiguration(TestKerberosConfiguration.class, TestMetricsConfiguration.class,
+						TestMultiTierConfiguration.class)
+				.withConfiguration(AutoConfigurations.of(MetricsAutoConfiguration.class)).run((context) -> {
+					MeterRegistry registry = context.getBean(MeterRegistry.class);
+					assertThat(registry.get("cache.size").tag("cache", "kerberosServiceTicketCache").gauge())
+							.isNotNull();
+				});
+	}
+
+	@Test
+	void noMetricsIfDisabled() {
+		this.contextRunner.withUserConfiguration(TestKerberosConfiguration.class, TestMetricsConfiguration.class)
+				.withPropertyValues("spring.security.kerberos.server.metrics.enabled=false")
+				.run((context) -> assertThat(context).doesNotHaveBean(KerberosMeterBinder.class));
+	}
+
+	@Configuration(proxyBeanMethods = false)
+	static class TestKerberosConfiguration {
+
+		@Bean
+		SunJaasKerberosTicketValidator ticketValidator() {
+			return new StubTicketValidator(1, 1, null);
+		}
+
+		@Bean
+		NegativeCachingKerberosTicketValidator negativeCachingTicketValidator() {
+			return new NegativeCachingKerberosTicketValidator((token) -> {
+				throw new UnsupportedOperationException();
+			});
+		}
+
+		@Bean
+		ConcurrencyLimitingKerberosTicketValidator limitingTicketValidator() {
+			return new ConcurrencyLimitingKerberosTicketValidator((token) -> {
+				throw new UnsupportedOperationException();
+			}, 4);
+		}
+
+		@Bean
+		KerberosReplayCache replayCache() {
+			return new KerberosReplayCache();
+		}
+
+		@Bean
+		GSSContextRegistry contextRegistry() {
+			return new GSSContextRegistry();
+		}
+
+		@Bean
+		CachingKerberosClient cachingKerberosClient() {
+			return new CachingKerberosClient(kerberosClient());
+		}
+
+		@Bean
+		AsyncKerberosClient asyncKerberosClient() {
+			return new AsyncKerberosClient(kerberosClient());
+		}
+
+		private static KerberosClient kerberosClient() {
+			return (username, password) -> {
+				throw new UnsupportedOperationException();
+			};
+		}
+
+	}
+
+	@Configuration(proxyBeanMethods = false)
+	static class TestMultiTierConfiguration {
+
+		@Bean
+		SunJaasKerberosTicketValidator multiTierTicketValidator() {
+			SunJaasKerberosTicketValidator ticketValidator = new StubTicketValidator(1, 1, null);
+			ticketValidator.setMultiTier(true);
+			return ticketValidator;
+		}
+
+	}
+
+	@Configuration(proxyBeanMethods = false)
+	static class TestMetricsConfiguration {
+
+		@Bean
+		MeterRegistry meterRegistry() {
+			return new SimpleMeterRegistry();
+		}
+
+	}
+
+}
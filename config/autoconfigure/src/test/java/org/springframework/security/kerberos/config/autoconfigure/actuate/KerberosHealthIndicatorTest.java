@@ -0,0 +1,143 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.config.autoconfigure.actuate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Date;
+
+import org.junit.jupiter.api.Test;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.security.kerberos.authentication.sun.SunJaasKerberosTicketValidator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KerberosHealthIndicatorTest {
+
+	private static final Instant NOW = Instant.parse("2023-01-01T00:00:00Z");
+
+	@Test
+	void upIfKeyTabHasCurrentKeys() {
+		StubTicketValidator validator = new StubTicketValidator(2, 2, null);
+		Health health = health(validator);
+		assertThat(health.getStatus()).isEqualTo(Status.UP);
+		assertThat(health.getDetails()).containsEntry("servicePrincipal", "HTTP/localhost@EXAMPLE.COM")
+				.containsEntry("loginKeyVersion", 2).containsEntry("keyTabKeyVersion", 2);
+	}
+
+	@Test
+	void upIfKeyTabWasRotated() {
+		assertThat(health(new StubTicketValidator(2, 3, null)).getStatus()).isEqualTo(Status.UP);
+	}
+
+	@Test
+	void downIfKeyTabIsNotReadable() {
+		StubTicketValidator validator = new StubTicketValidator(2, 2, null);
+		validator.setKeyTabLocation(new FileSystemResource("/does/not/exist.keytab"));
+		assertThat(health(validator).getStatus()).isEqualTo(Status.DOWN);
+	}
+
+	@Test
+	void downIfKeyTabHasNoKeys() {
+		assertThat(health(new StubTicketValidator(2, -1, null)).getStatus()).isEqualTo(Status.DOWN);
+	}
+
+	@Test
+	void downIfKeyTabHasOlderKeys() {
+		assertThat(health(new StubTicketValidator(3, 2, null)).getStatus()).isEqualTo(Status.DOWN);
+	}
+
+	@Test
+	void multiTierUpWithEnoughTicketLifetime() {
+		StubTicketValidator validator = new StubTicketValidator(2, 2, Date.from(NOW.plus(Duration.ofHours(1))));
+		validator.setMultiTier(true);
+		Health health = health(validator);
+		assertThat(health.getStatus()).isEqualTo(Status.UP);
+		assertThat(health.getDetails()).containsKey("ticketGrantingTicketEndTime");
+	}
+
+	@Test
+	void multiTierOutOfServiceShortlyBeforeTicketExpires() {
+		StubTicketValidator validator = new StubTicketValidator(2, 2, Date.from(NOW.plus(Duration.ofMinutes(1))));
+		validator.setMultiTier(true);
+		assertThat(health(validator).getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+	}
+
+	@Test
+	void multiTierDownOnceTicketExpired() {
+		StubTicketValidator validator = new StubTicketValidator(2, 2, Date.from(NOW.minusSeconds(1)));
+		validator.setMultiTier(true);
+		assertThat(health(validator).getStatus()).isEqualTo(Status.DOWN);
+	}
+
+	@Test
+	void multiTierDownWithoutTicket() {
+		StubTicketValidator validator = new StubTicketValidator(2, 2, null);
+		validator.setMultiTier(true);
+		assertThat(health(validator).getStatus()).isEqualTo(Status.DOWN);
+	}
+
+	private static Health health(SunJaasKerberosTicketValidator validator) {
+		KerberosHealthIndicator indicator = new KerberosHealthIndicator(validator, Duration.ofMinutes(5));
+		indicator.setClock(Clock.fixed(NOW, ZoneOffset.UTC));
+		return indicator.health();
+	}
+
+	static class StubTicketValidator extends SunJaasKerberosTicketValidator {
+
+		private final int loginKeyVersion;
+
+		private final int keyTabKeyVersion;
+
+		private final Date ticketGrantingTicketEndTime;
+
+		StubTicketValidator(int loginKeyVersion, int keyTabKeyVersion, Date ticketGrantingTicketEndTime) {
+			this.loginKeyVersion = loginKeyVersion;
+			this.keyTabKeyVersion = keyTabKeyVersion;
+			this.ticketGrantingTicketEndTime = ticketGrantingTicketEndTime;
+			setServicePrincipal("HTTP/localhost@EXAMPLE.COM");
+			setKeyTabLocation(new ByteArrayResource(new byte[0]));
+		}
+
+		@Override
+		public void afterPropertiesSet() {
+		}
+
+		@Override
+		public int getLoginKeyVersion() {
+			return this.loginKeyVersion;
+		}
+
+		@Override
+		public int getKeyTabKeyVersion() {
+			return this.keyTabKeyVersion;
+		}
+
+		@Override
+		public Date getTicketGrantingTicketEndTime() {
+			return this.ticketGrantingTicketEndTime;
+		}
+
+	}
+
+}
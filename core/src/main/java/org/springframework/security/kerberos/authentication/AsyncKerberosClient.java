@@ -0,0 +1,186 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.util.Assert;
+
+/**
+ * {@link KerberosClient} running the logins of another client on a bounded pool of
+ * threads, returning a {@link CompletableFuture} from
+ * {@link #loginAsync(String, String)}.
+ *
+ * <p>
+ * Logins of the JDK login module block on the exchange with the KDC. Running them on a
+ * separate pool keeps a burst of logins from tying up request threads: at most the
+ * configured number of logins run at the same time, a bounded number of logins wait for a
+ * thread and any further login fails immediately. The future of a login fails as soon as
+ * the timeout elapsed, without waiting for the login: a waiting login is removed from the
+ * queue and a running one is interrupted. The JDK login module does not react to
+ * interrupts, so a thread stuck with an unresponsive KDC is only freed by the
+ * <code>kdc_timeout</code> of the Kerberos configuration, which should be shorter than
+ * the timeout.
+ *
+ * <p>
+ * {@code KerberosReactiveAuthenticationManager} of the webflux module authenticates with
+ * {@link #loginAsync(String, String)} without blocking. Used as a {@link KerberosClient}
+ * of a {@link KerberosAuthenticationProvider}, {@link #login(String, String)} still
+ * blocks the calling thread until the login completed or timed out, and only bounds the
+ * number of logins reaching the KDC.
+ *
+ * @see KerberosAuthenticationProvider#setKerberosClient(KerberosClient)
+ */
+public class AsyncKerberosClient implements KerberosClient, DisposableBean {
+
+	private final KerberosClient delegate;
+
+	private final ThreadPoolExecutor executor;
+
+	private final ScheduledExecutorService timeoutScheduler;
+
+	private Duration timeout = Duration.ofSeconds(30);
+
+	/**
+	 * Instantiates a new async kerberos client running up to 8 logins at the same time,
+	 * with up to 1000 waiting logins.
+	 * @param delegate the client used to login
+	 */
+	public AsyncKerberosClient(KerberosClient delegate) {
+		this(delegate, 8, 1000);
+	}
+
+	/**
+	 * Instantiates a new async kerberos client.
+	 * @param delegate the client used to login
+	 * @param maxConcurrentLogins the maximum number of logins running at the same time
+	 * @param maxPendingLogins the maximum number of logins waiting for a thread
+	 */
+	public AsyncKerberosClient(KerberosClient delegate, int maxConcurrentLogins, int maxPendingLogins) {
+		Assert.notNull(delegate, "delegate cannot be null");
+		Assert.isTrue(maxConcurrentLogins > 0, "maxConcurrentLogins must be positive");
+		Assert.isTrue(maxPendingLogins > 0, "maxPendingLogins must be positive");
+		this.delegate = delegate;
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("kerberos-login-");
+		threadFactory.setDaemon(true);
+		this.executor = new ThreadPoolExecutor(maxConcurrentLogins, maxConcurrentLogins, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(maxPendingLogins), threadFactory);
+		this.executor.allowCoreThreadTimeOut(true);
+		CustomizableThreadFactory timeoutThreadFactory = new CustomizableThreadFactory("kerberos-login-timeout-");
+		timeoutThreadFactory.setDaemon(true);
+		ScheduledThreadPoolExecutor timeoutScheduler = new ScheduledThreadPoolExecutor(1, timeoutThreadFactory);
+		timeoutScheduler.setRemoveOnCancelPolicy(true);
+		this.timeoutScheduler = timeoutScheduler;
+	}
+
+	/**
+	 * Logs in the given user on the login pool.
+	 * @param username the username
+	 * @param password the password
+	 * @return the future completed with the subject holder of the user, or exceptionally
+	 * with the failure of the login, an {@link AuthenticationServiceException} if the
+	 * login timed out or too many logins are pending
+	 */
+	public CompletableFuture<JaasSubjectHolder> loginAsync(final String username, final String password) {
+		final CompletableFuture<JaasSubjectHolder> result = new CompletableFuture<JaasSubjectHolder>();
+		final Future<?> task;
+		try {
+			task = this.executor.submit(() -> {
+				if (result.isDone()) {
+					return;
+				}
+				try {
+					result.complete(this.delegate.login(username, password));
+				}
+				catch (RuntimeException ex) {
+					result.completeExceptionally(ex);
+				}
+			});
+		}
+		catch (RejectedExecutionException ex) {
+			result.completeExceptionally(new AuthenticationServiceException("Too many pending Kerberos logins", ex));
+			return result;
+		}
+		final ScheduledFuture<?> timeoutTask = this.timeoutScheduler.schedule(() -> {
+			if (result.completeExceptionally(new AuthenticationServiceException("Kerberos login timed out"))) {
+				task.cancel(true);
+				this.executor.remove((Runnable) task);
+			}
+		}, this.timeout.toMillis(), TimeUnit.MILLISECONDS);
+		result.whenComplete((holder, ex) -> timeoutTask.cancel(false));
+		return result;
+	}
+
+	/**
+	 * Logs in the given user on the login pool, blocking the calling thread until the
+	 * login completed or timed out. Non-blocking callers use
+	 * {@link #loginAsync(String, String)} instead.
+	 * @param username the username
+	 * @param password the password
+	 * @return the subject holder of the user
+	 */
+	@Override
+	public JaasSubjectHolder login(String username, String password) {
+		try {
+			return loginAsync(username, password).join();
+		}
+		catch (CompletionException ex) {
+			if (ex.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) ex.getCause();
+			}
+			throw ex;
+		}
+	}
+
+	/**
+	 * Sets the time after which a login fails. Defaults to 30 seconds.
+	 * @param timeout the login timeout
+	 */
+	public void setTimeout(Duration timeout) {
+		Assert.notNull(timeout, "timeout cannot be null");
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Returns the executor running the logins, for example to monitor it.
+	 * @return the login executor
+	 */
+	public ExecutorService getExecutor() {
+		return this.executor;
+	}
+
+	@Override
+	public void destroy() {
+		this.executor.shutdownNow();
+		this.timeoutScheduler.shutdownNow();
+	}
+
+}
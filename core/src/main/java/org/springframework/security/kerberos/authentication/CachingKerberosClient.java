@@ -0,0 +1,195 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.security.auth.Subject;
+import javax.security.auth.kerberos.KerberosTicket;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+import org.springframework.security.kerberos.authentication.sun.JaasUtil;
+import org.springframework.security.kerberos.authentication.support.ExpiringCache;
+import org.springframework.util.Assert;
+
+/**
+ * {@link KerberosClient} caching successful logins of another client for a short time, so
+ * that repeated logins with the same credentials, like Basic authentication sent with
+ * every request, do not each need an exchange with the KDC.
+ *
+ * <p>
+ * Passwords are not kept. A login is only reused if the password matches a salted, slow
+ * hash of the password it was made with, created with a {@link PasswordEncoder}. A login
+ * with a different password, or a failed login, removes the cached login of the user.
+ * Concurrent logins of the same user are coalesced into one login with the delegate.
+ * Cached logins expire after the time to live, by default a minute, or shortly before
+ * their ticket granting ticket expires.
+ *
+ * <p>
+ * Each login returns a new {@link JaasSubjectHolder} with its own copy of the cached
+ * subject, so tickets obtained with one login are not seen by others.
+ *
+ * @see KerberosAuthenticationProvider#setKerberosClient(KerberosClient)
+ */
+public class CachingKerberosClient implements KerberosClient {
+
+	private static final long TICKET_EXPIRY_MARGIN = Duration.ofMinutes(1).toMillis();
+
+	private final KerberosClient delegate;
+
+	private final ExpiringCache<String, CachedLogin> logins;
+
+	private final ConcurrentHashMap<String, CompletableFuture<CachedLogin>> pendingLogins = new ConcurrentHashMap<String, CompletableFuture<CachedLogin>>();
+
+	private PasswordEncoder passwordEncoder = new Pbkdf2PasswordEncoder("", 16, 10000, 256);
+
+	/**
+	 * Instantiates a new caching kerberos client caching up to 1000 logins for a minute.
+	 * @param delegate the client used to login
+	 */
+	public CachingKerberosClient(KerberosClient delegate) {
+		this(delegate, 1000, Duration.ofMinutes(1));
+	}
+
+	/**
+	 * Instantiates a new caching kerberos client.
+	 * @param delegate the client used to login
+	 * @param maxSize the maximum number of cached logins
+	 * @param timeToLive the maximum time a login is cached
+	 */
+	public CachingKerberosClient(KerberosClient delegate, int maxSize, Duration timeToLive) {
+		Assert.notNull(delegate, "delegate cannot be null");
+		this.delegate = delegate;
+		this.logins = new ExpiringCache<String, CachedLogin>(maxSize, timeToLive);
+	}
+
+	@Override
+	public JaasSubjectHolder login(String username, String password) {
+		CachedLogin cachedLogin = this.logins.get(username);
+		if (cachedLogin != null) {
+			if (this.passwordEncoder.matches(password, cachedLogin.passwordHash)) {
+				return cachedLogin.createHolder();
+			}
+			this.logins.remove(username);
+		}
+		CompletableFuture<CachedLogin> pendingLogin = new CompletableFuture<CachedLogin>();
+		CompletableFuture<CachedLogin> existing = this.pendingLogins.putIfAbsent(username, pendingLogin);
+		if (existing != null) {
+			CachedLogin coalesced = join(existing);
+			if (coalesced != null && this.passwordEncoder.matches(password, coalesced.passwordHash)) {
+				return coalesced.createHolder();
+			}
+			// the pending login failed or was made with another password
+			return this.delegate.login(username, password);
+		}
+		try {
+			JaasSubjectHolder holder = this.delegate.login(username, password);
+			cachedLogin = new CachedLogin(JaasUtil.copySubject(holder.getJaasSubject()), holder.getUsername(),
+					this.passwordEncoder.encode(password));
+			this.logins.put(username, cachedLogin, getExpiry(holder.getJaasSubject()));
+			pendingLogin.complete(cachedLogin);
+			return holder;
+		}
+		catch (RuntimeException ex) {
+			this.logins.remove(username);
+			pendingLogin.completeExceptionally(ex);
+			throw ex;
+		}
+		finally {
+			this.pendingLogins.remove(username, pendingLogin);
+		}
+	}
+
+	/**
+	 * Removes the cached login of the given user.
+	 * @param username the username
+	 */
+	public void invalidate(String username) {
+		this.logins.remove(username);
+	}
+
+	/**
+	 * Removes all cached logins.
+	 */
+	public void clear() {
+		this.logins.clear();
+	}
+
+	/**
+	 * Returns the cache holding the logins, for example to monitor it.
+	 * @return the cache of logins
+	 */
+	public ExpiringCache<?, ?> getCache() {
+		return this.logins;
+	}
+
+	/**
+	 * Sets the encoder used to hash and match passwords of cached logins. Defaults to a
+	 * {@link Pbkdf2PasswordEncoder} with 10000 iterations, which is slow enough to make
+	 * guessing passwords from a heap dump expensive while staying much cheaper than an
+	 * exchange with the KDC.
+	 * @param passwordEncoder the password encoder
+	 */
+	public void setPasswordEncoder(PasswordEncoder passwordEncoder) {
+		Assert.notNull(passwordEncoder, "passwordEncoder cannot be null");
+		this.passwordEncoder = passwordEncoder;
+	}
+
+	private static CachedLogin join(CompletableFuture<CachedLogin> pendingLogin) {
+		try {
+			return pendingLogin.join();
+		}
+		catch (CompletionException ex) {
+			return null;
+		}
+	}
+
+	private static long getExpiry(Subject subject) {
+		long expiresAt = Long.MAX_VALUE;
+		for (KerberosTicket ticket : subject.getPrivateCredentials(KerberosTicket.class)) {
+			if (ticket.getServer().getName().startsWith("krbtgt/") && ticket.getEndTime() != null) {
+				expiresAt = Math.min(expiresAt, ticket.getEndTime().getTime() - TICKET_EXPIRY_MARGIN);
+			}
+		}
+		return expiresAt;
+	}
+
+	private static final class CachedLogin {
+
+		private final Subject subject;
+
+		private final String username;
+
+		private final String passwordHash;
+
+		private CachedLogin(Subject subject, String username, String passwordHash) {
+			this.subject = subject;
+			this.username = username;
+			this.passwordHash = passwordHash;
+		}
+
+		private JaasSubjectHolder createHolder() {
+			return new JaasSubjectHolder(JaasUtil.copySubject(this.subject), this.username);
+		}
+
+	}
+
+}
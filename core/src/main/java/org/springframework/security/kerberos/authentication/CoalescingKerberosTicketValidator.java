@@ -0,0 +1,166 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.util.Assert;
+
+/**
+ * {@link KerberosTicketValidator} coalescing concurrent validations of the same token
+ * into one validation with another validator.
+ *
+ * <p>
+ * Browsers and proxies often send several requests with the same token at once after
+ * being challenged. Validated one by one, all but the first of them are rejected as
+ * replays and need another round trip. With this validator, requests arriving while a
+ * byte-identical token is being validated wait for that validation and share its result,
+ * whether it succeeds or fails. Nothing is kept once the validation completed, so a token
+ * sent again afterwards is still validated, and rejected, by the delegate.
+ *
+ * <p>
+ * A {@link org.ietf.jgss.GSSContext} retained by the delegate belongs to the request
+ * which started the validation. Requests sharing its result get a
+ * {@link KerberosTicketValidation} without the context, so that no context is used or
+ * registered for several sessions at once.
+ *
+ * <p>
+ * {@link #validateTicketAsync(byte[])} does not wait for a pending validation, and is
+ * used by {@code SpnegoReactiveAuthenticationManager} so that requests sharing a
+ * validation do not hold on to a thread.
+ *
+ * @see KerberosServiceAuthenticationProvider#setTicketValidator(KerberosTicketValidator)
+ */
+public class CoalescingKerberosTicketValidator implements KerberosTicketValidator {
+
+	private final KerberosTicketValidator delegate;
+
+	private final ConcurrentHashMap<Token, CompletableFuture<KerberosTicketValidation>> pendingValidations = new ConcurrentHashMap<Token, CompletableFuture<KerberosTicketValidation>>();
+
+	private final AtomicLong coalesced = new AtomicLong();
+
+	/**
+	 * Instantiates a new coalescing kerberos ticket validator.
+	 * @param delegate the validator used to validate tokens
+	 */
+	public CoalescingKerberosTicketValidator(KerberosTicketValidator delegate) {
+		Assert.notNull(delegate, "delegate cannot be null");
+		this.delegate = delegate;
+	}
+
+	@Override
+	public KerberosTicketValidation validateTicket(byte[] token) throws BadCredentialsException {
+		try {
+			return validateTicketAsync(token).join();
+		}
+		catch (CompletionException ex) {
+			if (ex.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) ex.getCause();
+			}
+			throw (Error) ex.getCause();
+		}
+	}
+
+	/**
+	 * Validates a token, or shares the result of a pending validation of the same token
+	 * without waiting for it. A new validation runs with the delegate on the calling
+	 * thread, and the returned future is then already completed.
+	 * @param token the token
+	 * @return the future result of the validation
+	 */
+	public CompletableFuture<KerberosTicketValidation> validateTicketAsync(byte[] token) {
+		Token key = new Token(token);
+		CompletableFuture<KerberosTicketValidation> pendingValidation = new CompletableFuture<KerberosTicketValidation>();
+		CompletableFuture<KerberosTicketValidation> existing = this.pendingValidations.putIfAbsent(key,
+				pendingValidation);
+		if (existing != null) {
+			this.coalesced.incrementAndGet();
+			return existing.thenApply(CoalescingKerberosTicketValidator::withoutContext);
+		}
+		try {
+			pendingValidation.complete(this.delegate.validateTicket(token));
+		}
+		catch (RuntimeException | Error ex) {
+			pendingValidation.completeExceptionally(ex);
+		}
+		finally {
+			this.pendingValidations.remove(key, pendingValidation);
+		}
+		return pendingValidation;
+	}
+
+	/**
+	 * Returns the number of validations which shared the result of a pending validation.
+	 * @return the number of coalesced validations
+	 */
+	public long getCoalescedCount() {
+		return this.coalesced.get();
+	}
+
+	/**
+	 * Returns the number of validations currently in progress with the delegate.
+	 * @return the number of pending validations
+	 */
+	public int getPendingCount() {
+		return this.pendingValidations.size();
+	}
+
+	private static KerberosTicketValidation withoutContext(KerberosTicketValidation validation) {
+		if (validation.getGssContext() == null) {
+			return validation;
+		}
+		return new KerberosTicketValidation(validation.username(), validation.subject(), validation.responseToken(),
+				null, validation.getDelegationCredential());
+	}
+
+	private static final class Token {
+
+		private final byte[] token;
+
+		private final int hash;
+
+		private Token(byte[] token) {
+			Assert.notNull(token, "token cannot be null");
+			this.token = token;
+			this.hash = Arrays.hashCode(token);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Token)) {
+				return false;
+			}
+			Token other = (Token) obj;
+			return this.hash == other.hash && Arrays.equals(this.token, other.token);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+
+	}
+
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleUnaryOperator;
+
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.util.Assert;
+
+/**
+ * {@link KerberosTicketValidator} limiting the number of concurrent validations with
+ * another validator, rejecting tokens above the limit right away with a
+ * {@link TicketValidationOverloadedException}.
+ *
+ * <p>
+ * Validation is bound by CPU. Once it is saturated, requests otherwise queue without
+ * bound in the servlet container or on the event loop and every client waits until it
+ * times out. Rejected requests are answered with {@code 503 Service Unavailable} and a
+ * {@code Retry-After} header by the {@code SpnegoAuthenticationProcessingFilter} and the
+ * {@code SpnegoServerAuthenticationFailureHandler}, so that the requests which are
+ * admitted still complete in time.
+ *
+ * <p>
+ * The limit is fixed unless the validator is {@link #setAdaptive(boolean) adaptive}. An
+ * adaptive limit starts at the given limit and is adjusted from the latency of
+ * validations, like the congestion window of TCP Vegas. While latencies stay within the
+ * {@link #setLatencyTolerance(double) tolerance} of the lowest recently measured latency
+ * of a successful validation and the limit is used, it grows by one every round of
+ * successful validations. A slower validation shrinks it by the
+ * {@link #setBackoffRatio(double) backoff ratio}, at most once for the validations
+ * admitted before the previous decrease. Failed validations count as well, so that a
+ * flood of bad tokens backs the limit off, but cannot lower the lowest latency, as they
+ * may end early. The lowest latency is measured anew every 500 successful validations, so
+ * that the limit follows lasting changes like larger tokens.
+ *
+ * @see TicketValidationOverloadedException
+ */
+public class ConcurrencyLimitingKerberosTicketValidator implements KerberosTicketValidator {
+
+	private static final int BASELINE_SAMPLES = 500;
+
+	private final KerberosTicketValidator delegate;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	private final AtomicLong rejected = new AtomicLong();
+
+	// bits of the limit as a double, updated with compare and set
+	private final AtomicLong limit;
+
+	private boolean adaptive;
+
+	private int minLimit = 1;
+
+	private int maxLimit = 200;
+
+	private double latencyTolerance = 2;
+
+	private double backoffRatio = 0.9;
+
+	private Duration retryAfter = Duration.ofSeconds(1);
+
+	private final AtomicLong minLatency = new AtomicLong(Long.MAX_VALUE);
+
+	private final AtomicLong baselineMinLatency = new AtomicLong(Long.MAX_VALUE);
+
+	private final AtomicLong samples = new AtomicLong();
+
+	private final AtomicLong lastDecrease = new AtomicLong(System.nanoTime());
+
+	/**
+	 * Instantiates a new concurrency limiting kerberos ticket validator.
+	 * @param delegate the validator used to validate tokens
+	 * @param limit the maximum number of concurrent validations, or the initial one if
+	 * the limit is adaptive
+	 */
+	public ConcurrencyLimitingKerberosTicketValidator(KerberosTicketValidator delegate, int limit) {
+		Assert.notNull(delegate, "delegate cannot be null");
+		Assert.isTrue(limit > 0, "limit must be positive");
+		this.delegate = delegate;
+		this.limit = new AtomicLong(Double.doubleToLongBits(limit));
+	}
+
+	@Override
+	public KerberosTicketValidation validateTicket(byte[] token) throws BadCredentialsException {
+		int admitted;
+		do {
+			admitted = this.inFlight.get();
+			if (admitted >= getLimit()) {
+				this.rejected.incrementAndGet();
+				throw new TicketValidationOverloadedException("Too many concurrent Kerberos validations",
+						this.retryAfter);
+			}
+		}
+		while (!this.inFlight.compareAndSet(admitted, admitted + 1));
+		long start = System.nanoTime();
+		boolean valid = false;
+		try {
+			KerberosTicketValidation validation = this.delegate.validateTicket(token);
+			valid = true;
+			return validation;
+		}
+		finally {
+			if (this.adaptive) {
+				update(start, System.nanoTime() - start, admitted + 1, valid);
+			}
+			this.inFlight.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Sets if the limit adapts to the measured latency of validations. Defaults to
+	 * {@code false}. An adaptive limit starts at the given limit, moved into the range of
+	 * the {@link #setMinLimit(int) lowest} and {@link #setMaxLimit(int) highest} limit.
+	 * @param adaptive if the limit is adaptive
+	 */
+	public void setAdaptive(boolean adaptive) {
+		this.adaptive = adaptive;
+		clampLimit();
+	}
+
+	/**
+	 * Sets the lowest adaptive limit. Defaults to 1.
+	 * @param minLimit the lowest limit
+	 */
+	public void setMinLimit(int minLimit) {
+		Assert.isTrue(minLimit > 0, "minLimit must be positive");
+		this.minLimit = minLimit;
+		clampLimit();
+	}
+
+	/**
+	 * Sets the highest adaptive limit. Defaults to 200.
+	 * @param maxLimit the highest limit
+	 */
+	public void setMaxLimit(int maxLimit) {
+		Assert.isTrue(maxLimit > 0, "maxLimit must be positive");
+		this.maxLimit = maxLimit;
+		clampLimit();
+	}
+
+	/**
+	 * Sets how many times slower than the lowest measured latency a validation may be
+	 * before the adaptive limit is decreased. Defaults to 2.
+	 * @param latencyTolerance the latency tolerance
+	 */
+	public void setLatencyTolerance(double latencyTolerance) {
+		Assert.isTrue(latencyTolerance >= 1, "latencyTolerance must be at least 1");
+		this.latencyTolerance = latencyTolerance;
+	}
+
+	/**
+	 * Sets the factor the adaptive limit is multiplied with when it is decreased.
+	 * Defaults to 0.9.
+	 * @param backoffRatio the backoff ratio
+	 */
+	public void setBackoffRatio(double backoffRatio) {
+		Assert.isTrue(backoffRatio > 0 && backoffRatio < 1, "backoffRatio must be between 0 and 1");
+		this.backoffRatio = backoffRatio;
+	}
+
+	/**
+	 * Sets the time after which rejected clients are asked to try again. Defaults to one
+	 * second.
+	 * @param retryAfter the retry after duration
+	 */
+	public void setRetryAfter(Duration retryAfter) {
+		Assert.notNull(retryAfter, "retryAfter cannot be null");
+		this.retryAfter = retryAfter;
+	}
+
+	/**
+	 * Returns the current limit of concurrent validations.
+	 * @return the limit
+	 */
+	public int getLimit() {
+		return (int) Double.longBitsToDouble(this.limit.get());
+	}
+
+	/**
+	 * Returns the number of validations in progress.
+	 * @return the number of validations in progress
+	 */
+	public int getInFlight() {
+		return this.inFlight.get();
+	}
+
+	/**
+	 * Returns the number of tokens rejected because the limit was reached.
+	 * @return the number of rejected tokens
+	 */
+	public long getRejectedCount() {
+		return this.rejected.get();
+	}
+
+	private void update(long start, long latency, int admitted, boolean valid) {
+		// failed validations may end early, so only successful ones set the baseline
+		if (valid) {
+			this.minLatency.accumulateAndGet(latency, Math::min);
+			this.baselineMinLatency.accumulateAndGet(latency, Math::min);
+			if (this.samples.incrementAndGet() % BASELINE_SAMPLES == 0) {
+				this.minLatency.set(this.baselineMinLatency.getAndSet(Long.MAX_VALUE));
+			}
+		}
+		if (latency > this.minLatency.get() * this.latencyTolerance) {
+			// one decrease per round, validations admitted before it saw the old limit
+			long lastDecrease = this.lastDecrease.get();
+			if (start - lastDecrease > 0 && this.lastDecrease.compareAndSet(lastDecrease, System.nanoTime())) {
+				updateLimit((limit) -> limit * this.backoffRatio);
+			}
+		}
+		else if (valid && admitted * 2 >= Double.longBitsToDouble(this.limit.get())) {
+			updateLimit((limit) -> limit + 1 / limit);
+		}
+	}
+
+	private void clampLimit() {
+		if (this.adaptive) {
+			updateLimit((limit) -> limit);
+		}
+	}
+
+	private void updateLimit(DoubleUnaryOperator function) {
+		long current;
+		double next;
+		do {
+			current = this.limit.get();
+			next = function.applyAsDouble(Double.longBitsToDouble(current));
+			next = Math.max(this.minLimit, Math.min(this.maxLimit, next));
+		}
+		while (!this.limit.compareAndSet(current, Double.doubleToLongBits(next)));
+	}
+
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.ietf.jgss.GSSContext;
+import org.ietf.jgss.GSSException;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.Assert;
+
+/**
+ * Registry of the {@link GSSContext}s retained by a validator holding on to them, keyed
+ * by an application defined key like the id of a session.
+ *
+ * <p>
+ * A retained context keeps the keys and state of the security context until it is
+ * disposed. This registry caps the number of retained contexts and disposes contexts
+ * which were not used for the idle timeout or whose lifetime, which is bound by the end
+ * time of the ticket they were established with, has passed. Contexts are disposed
+ * lazily, when they are looked up or are the least recently used context, and with
+ * {@link #evictExpired()}. When the registry is full, the least recently used context is
+ * disposed.
+ *
+ * <p>
+ * A context registered with several keys is disposed once it is no longer registered with
+ * any of them.
+ *
+ * @see org.springframework.security.kerberos.authentication.sun.SunJaasKerberosTicketValidator#setHoldOnToGSSContext(boolean)
+ */
+public class GSSContextRegistry implements DisposableBean {
+
+	private static final Log LOG = LogFactory.getLog(GSSContextRegistry.class);
+
+	private final LinkedHashMap<String, Entry> contexts = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+	private final IdentityHashMap<GSSContext, Integer> references = new IdentityHashMap<GSSContext, Integer>();
+
+	private final Object lock = new Object();
+
+	private long registered;
+
+	private long disposed;
+
+	private final int maxContexts;
+
+	private final Duration idleTimeout;
+
+	private final Clock clock;
+
+	/**
+	 * Instantiates a new registry holding up to 10000 contexts, disposed after 30 minutes
+	 * without use.
+	 */
+	public GSSContextRegistry() {
+		this(10000, Duration.ofMinutes(30));
+	}
+
+	/**
+	 * Instantiates a new registry.
+	 * @param maxContexts the maximum number of retained contexts
+	 * @param idleTimeout how long a context is retained without being used
+	 */
+	public GSSContextRegistry(int maxContexts, Duration idleTimeout) {
+		this(maxContexts, idleTimeout, Clock.systemUTC());
+	}
+
+	/**
+	 * Instantiates a new registry.
+	 * @param maxContexts the maximum number of retained contexts
+	 * @param idleTimeout how long a context is retained without being used
+	 * @param clock the clock used to expire contexts
+	 */
+	public GSSContextRegistry(int maxContexts, Duration idleTimeout, Clock clock) {
+		Assert.isTrue(maxContexts > 0, "maxContexts must be positive");
+		Assert.notNull(idleTimeout, "idleTimeout cannot be null");
+		Assert.notNull(clock, "clock cannot be null");
+		this.maxContexts = maxContexts;
+		this.idleTimeout = idleTimeout;
+		this.clock = clock;
+	}
+
+	/**
+	 * Registers a context, releasing a context previously registered with the same key.
+	 * Contexts which are not established or already expired are not registered, and stay
+	 * the responsibility of the caller.
+	 * @param key the key
+	 * @param context the context
+	 * @return true if the context was registered
+	 */
+	public boolean register(String key, GSSContext context) {
+		Assert.notNull(key, "key cannot be null");
+		Assert.notNull(context, "context cannot be null");
+		long now = this.clock.millis();
+		int lifetime = context.isEstablished() ? context.getLifetime() : 0;
+		if (lifetime <= 0) {
+			return false;
+		}
+		long expiresAt = (lifetime == GSSContext.INDEFINITE_LIFETIME) ? Long.MAX_VALUE : now + lifetime * 1000L;
+		synchronized (this.lock) {
+			if (!this.contexts.containsKey(key)) {
+				while (this.contexts.size() >= this.maxContexts) {
+					evictEldest();
+				}
+			}
+			retain(context);
+			Entry previous = this.contexts.put(key, new Entry(context, expiresAt, now));
+			if (previous != null) {
+				release(previous.context);
+			}
+			this.registered++;
+			if (this.contexts.values().iterator().next().isExpired(now, this.idleTimeout)) {
+				evictEldest();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the context registered with the given key, unless it is missing, idle or
+	 * expired, and marks it as used.
+	 * @param key the key
+	 * @return the context or {@code null}
+	 */
+	public GSSContext get(String key) {
+		long now = this.clock.millis();
+		synchronized (this.lock) {
+			Entry entry = this.contexts.get(key);
+			if (entry == null) {
+				return null;
+			}
+			if (entry.isExpired(now, this.idleTimeout)) {
+				this.contexts.remove(key);
+				release(entry.context);
+				return null;
+			}
+			entry.lastAccess = now;
+			return entry.context;
+		}
+	}
+
+	/**
+	 * Removes the context registered with the given key, disposing it unless it is still
+	 * registered with another key.
+	 * @param key the key
+	 * @return true if a context was removed
+	 */
+	public boolean remove(String key) {
+		synchronized (this.lock) {
+			Entry entry = this.contexts.remove(key);
+			if (entry == null) {
+				return false;
+			}
+			release(entry.context);
+			return true;
+		}
+	}
+
+	/**
+	 * Moves the context registered with the old key to the new key, for example when the
+	 * id of a session changes.
+	 * @param oldKey the old key
+	 * @param newKey the new key
+	 * @return true if a context was moved
+	 */
+	public boolean rename(String oldKey, String newKey) {
+		synchronized (this.lock) {
+			Entry entry = this.contexts.remove(oldKey);
+			if (entry == null) {
+				return false;
+			}
+			Entry previous = this.contexts.put(newKey, entry);
+			if (previous != null) {
+				release(previous.context);
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Disposes all idle and expired contexts.
+	 */
+	public void evictExpired() {
+		long now = this.clock.millis();
+		synchronized (this.lock) {
+			for (Iterator<Entry> it = this.contexts.values().iterator(); it.hasNext();) {
+				Entry entry = it.next();
+				if (entry.isExpired(now, this.idleTimeout)) {
+					it.remove();
+					release(entry.context);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Disposes all contexts.
+	 */
+	public void clear() {
+		synchronized (this.lock) {
+			for (Iterator<Entry> it = this.contexts.values().iterator(); it.hasNext();) {
+				Entry entry = it.next();
+				it.remove();
+				release(entry.context);
+			}
+		}
+	}
+
+	@Override
+	public void destroy() {
+		clear();
+	}
+
+	/**
+	 * Returns the number of keys with a retained context, which may include contexts
+	 * which are idle or expired but not yet disposed.
+	 * @return the number of retained contexts
+	 */
+	public int size() {
+		synchronized (this.lock) {
+			return this.contexts.size();
+		}
+	}
+
+	/**
+	 * Returns the maximum number of retained contexts.
+	 * @return the maximum number of retained contexts
+	 */
+	public int getMaxContexts() {
+		return this.maxContexts;
+	}
+
+	/**
+	 * Returns the number of contexts registered since this registry was created.
+	 * @return the number of registered contexts
+	 */
+	public long getRegisteredCount() {
+		synchronized (this.lock) {
+			return this.registered;
+		}
+	}
+
+	/**
+	 * Returns the number of registered contexts disposed by this registry since it was
+	 * created.
+	 * @return the number of disposed contexts
+	 */
+	public long getDisposedCount() {
+		synchronized (this.lock) {
+			return this.disposed;
+		}
+	}
+
+	private void evictEldest() {
+		Iterator<Entry> eldest = this.contexts.values().iterator();
+		Entry entry = eldest.next();
+		eldest.remove();
+		release(entry.context);
+	}
+
+	private void retain(GSSContext context) {
+		Integer count = this.references.get(context);
+		this.references.put(context, (count != null) ? count + 1 : 1);
+	}
+
+	private void release(GSSContext context) {
+		int count = this.references.remove(context) - 1;
+		if (count > 0) {
+			this.references.put(context, count);
+			return;
+		}
+		this.disposed++;
+		try {
+			context.dispose();
+		}
+		catch (GSSException ex) {
+			LOG.debug("Failed to dispose GSSContext", ex);
+		}
+	}
+
+	private static final class Entry {
+
+		private final GSSContext context;
+
+		private final long expiresAt;
+
+		private long lastAccess;
+
+		private Entry(GSSContext context, long expiresAt, long lastAccess) {
+			this.context = context;
+			this.expiresAt = expiresAt;
+			this.lastAccess = lastAccess;
+		}
+
+		private boolean isExpired(long now, Duration idleTimeout) {
+			return now >= this.expiresAt || now - this.lastAccess >= idleTimeout.toMillis();
+		}
+
+	}
+
+}
@@ -16,12 +16,12 @@
 
 package org.springframework.security.kerberos.authentication;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.time.Duration;
 
 import javax.security.auth.Subject;
 
 import org.springframework.security.kerberos.authentication.sun.SunJaasKerberosClient;
+import org.springframework.security.kerberos.authentication.support.ExpiringCache;
 
 /**
  * <p>
@@ -29,25 +29,55 @@ import org.springframework.security.kerberos.authentication.sun.SunJaasKerberosC
  * the credentials, and permits creating new credentials against other Kerberos services.
  * </p>
  *
+ * <p>
+ * Tokens created for other services are kept in a thread safe store, so a single
+ * authentication can be used to create tokens for many services in parallel. The store is
+ * bounded and each token expires at its own time, by default after
+ * {@link #DEFAULT_TOKEN_TIME_TO_LIVE}, as acceptors reject authenticators older than
+ * their allowed clock skew anyway.
+ * </p>
+ *
  * @author Bogdan Mustiata
  * @see SunJaasKerberosClient
  * @see org.springframework.security.kerberos.authentication.KerberosAuthenticationProvider
  */
 public class JaasSubjectHolder {
 
+	/**
+	 * The default maximum number of saved tokens.
+	 */
+	public static final int DEFAULT_MAX_TOKENS = 100;
+
+	/**
+	 * The default time to live of saved tokens.
+	 */
+	public static final Duration DEFAULT_TOKEN_TIME_TO_LIVE = Duration.ofMinutes(5);
+
 	private Subject jaasSubject;
 
 	private String username;
 
-	private Map<String, byte[]> savedTokens = new HashMap<String, byte[]>();
+	private final ExpiringCache<String, byte[]> savedTokens;
 
 	public JaasSubjectHolder(Subject jaasSubject) {
-		this.jaasSubject = jaasSubject;
+		this(jaasSubject, null);
 	}
 
 	public JaasSubjectHolder(Subject jaasSubject, String username) {
+		this(jaasSubject, username, DEFAULT_MAX_TOKENS, DEFAULT_TOKEN_TIME_TO_LIVE);
+	}
+
+	/**
+	 * Instantiates a new jaas subject holder.
+	 * @param jaasSubject the jaas subject
+	 * @param username the username
+	 * @param maxTokens the maximum number of saved tokens
+	 * @param tokenTimeToLive the maximum time tokens are saved
+	 */
+	public JaasSubjectHolder(Subject jaasSubject, String username, int maxTokens, Duration tokenTimeToLive) {
 		this.jaasSubject = jaasSubject;
 		this.username = username;
+		this.savedTokens = new ExpiringCache<String, byte[]>(maxTokens, tokenTimeToLive);
 	}
 
 	public String getUsername() {
@@ -62,8 +92,28 @@ public class JaasSubjectHolder {
 		this.savedTokens.put(targetService, outToken);
 	}
 
+	/**
+	 * Saves a token for the target service which is no longer returned after the given
+	 * time, or after the time to live of saved tokens if that is earlier.
+	 * @param targetService the target service
+	 * @param outToken the token
+	 * @param expiresAt the expiry time in milliseconds since the epoch
+	 */
+	public void addToken(String targetService, byte[] outToken, long expiresAt) {
+		this.savedTokens.put(targetService, outToken, expiresAt);
+	}
+
 	public byte[] getToken(String principalName) {
 		return this.savedTokens.get(principalName);
 	}
 
+	/**
+	 * Removes the saved token of the target service.
+	 * @param targetService the target service
+	 * @return the removed token, or {@code null} if there was none or it was expired
+	 */
+	public byte[] removeToken(String targetService) {
+		return this.savedTokens.remove(targetService);
+	}
+
 }
@@ -19,6 +19,8 @@ package org.springframework.security.kerberos.authentication;
 import java.security.PrivilegedAction;
 
 import javax.security.auth.Subject;
+import javax.security.auth.kerberos.KerberosPrincipal;
+import javax.security.auth.kerberos.KerberosTicket;
 
 import org.ietf.jgss.GSSContext;
 import org.ietf.jgss.GSSCredential;
@@ -36,6 +38,13 @@ import org.springframework.security.core.Authentication;
  * KerberosAuthentication's JaasSubjectHolder.
  * </p>
  *
+ * <p>
+ * Service tickets obtained for a user are kept in a {@link KerberosServiceTicketCache},
+ * so that only the first ticket per user and target service requires a request to the
+ * KDC. Later tickets for the same user and service, even for another authentication of
+ * that user, are created locally from the cached ticket.
+ * </p>
+ *
  * @author Bogdan Mustiata
  */
 public class KerberosMultiTier {
@@ -44,6 +53,8 @@ public class KerberosMultiTier {
 
 	public static final Oid KERBEROS_OID = createOid(KERBEROS_OID_STRING);
 
+	private static final KerberosServiceTicketCache DEFAULT_SERVICE_TICKET_CACHE = new KerberosServiceTicketCache();
+
 	/**
 	 * Create a new ticket for the
 	 * @param authentication
@@ -54,15 +65,33 @@ public class KerberosMultiTier {
 	 */
 	public static Authentication authenticateService(Authentication authentication, final String username,
 			final int lifetimeInSeconds, final String targetService) {
+		return authenticateService(authentication, username, lifetimeInSeconds, targetService,
+				DEFAULT_SERVICE_TICKET_CACHE);
+	}
+
+	/**
+	 * Create a new ticket for the target service, using and updating the given cache of
+	 * service tickets.
+	 * @param authentication the kerberos authentication
+	 * @param username the username
+	 * @param lifetimeInSeconds the lifetime of the credential in seconds
+	 * @param targetService the target service principal
+	 * @param serviceTicketCache the service ticket cache, {@code null} to not cache
+	 * @return the authentication
+	 */
+	public static Authentication authenticateService(Authentication authentication, final String username,
+			final int lifetimeInSeconds, final String targetService,
+			final KerberosServiceTicketCache serviceTicketCache) {
 
 		KerberosAuthentication kerberosAuthentication = (KerberosAuthentication) authentication;
 		final JaasSubjectHolder jaasSubjectHolder = kerberosAuthentication.getJaasSubjectHolder();
-		Subject subject = jaasSubjectHolder.getJaasSubject();
+		final Subject subject = jaasSubjectHolder.getJaasSubject();
 
 		Subject.doAs(subject, new PrivilegedAction<Object>() {
 			@Override
 			public Object run() {
-				runAuthentication(jaasSubjectHolder, username, lifetimeInSeconds, targetService);
+				runAuthentication(jaasSubjectHolder, username, lifetimeInSeconds, targetService, subject,
+						serviceTicketCache);
 
 				return null;
 			}
@@ -78,8 +107,16 @@ public class KerberosMultiTier {
 		return jaasSubjectHolder.getToken(principalName);
 	}
 
+	/**
+	 * Returns the service ticket cache used when no cache is given.
+	 * @return the default service ticket cache
+	 */
+	public static KerberosServiceTicketCache getDefaultServiceTicketCache() {
+		return DEFAULT_SERVICE_TICKET_CACHE;
+	}
+
 	private static void runAuthentication(JaasSubjectHolder jaasContext, String username, int lifetimeInSeconds,
-			String targetService) {
+			String targetService, Subject subject, KerberosServiceTicketCache serviceTicketCache) {
 		try {
 			GSSManager manager = GSSManager.getInstance();
 			GSSName clientName = manager.createName(username, GSSName.NT_USER_NAME);
@@ -89,6 +126,17 @@ public class KerberosMultiTier {
 
 			GSSName serverName = manager.createName(targetService, GSSName.NT_USER_NAME);
 
+			String clientPrincipal = new KerberosPrincipal(username).getName();
+			String servicePrincipal = new KerberosPrincipal(targetService).getName();
+			boolean useCache = serviceTicketCache != null && !subject.isReadOnly();
+			if (useCache) {
+				// a service ticket in the subject is used instead of asking the kdc
+				KerberosTicket cachedTicket = serviceTicketCache.get(clientPrincipal, servicePrincipal);
+				if (cachedTicket != null) {
+					subject.getPrivateCredentials().add(cachedTicket);
+				}
+			}
+
 			GSSContext securityContext = manager.createContext(serverName, KERBEROS_OID, clientCredential,
 					GSSContext.DEFAULT_LIFETIME);
 
@@ -110,7 +158,21 @@ public class KerberosMultiTier {
 				established = securityContext.isEstablished();
 			}
 
-			jaasContext.addToken(targetService, outToken);
+			// the token is of no use once the service ticket it was created with expires
+			long expiresAt = Long.MAX_VALUE;
+			for (KerberosTicket ticket : subject.getPrivateCredentials(KerberosTicket.class)) {
+				if (servicePrincipal.equals(ticket.getServer().getName())
+						&& clientPrincipal.equals(ticket.getClient().getName())) {
+					if (ticket.getEndTime() != null) {
+						expiresAt = Math.min(expiresAt, ticket.getEndTime().getTime());
+					}
+					if (useCache) {
+						serviceTicketCache.put(ticket);
+					}
+				}
+			}
+
+			jaasContext.addToken(targetService, outToken, expiresAt);
 		}
 		catch (Exception ex) {
 			throw new BadCredentialsException("Kerberos authentication failed", ex);
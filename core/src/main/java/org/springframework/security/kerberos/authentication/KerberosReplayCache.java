@@ -0,0 +1,555 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.util.Assert;
+
+/**
+ * Replay cache for Kerberos tokens, recognizing authenticators which were accepted
+ * before.
+ *
+ * <p>
+ * The replay cache of the JDK is a single cache for the whole JVM, kept either in a file
+ * written under a global lock or in memory behind a single monitor. This cache is split
+ * into stripes with their own locks, chosen by the digest of the authenticator, and
+ * expires entries with a timer wheel of one second slots spanning twice the clock skew,
+ * which is as long as an authenticator can be accepted. It holds up to a maximum number
+ * of entries, which should be larger than the number of validations in twice the clock
+ * skew. Once a stripe is full, further tokens are rejected until entries expire, so that
+ * a full cache never lets a replay through.
+ *
+ * <p>
+ * Entries are keyed by a digest of the encrypted authenticator of the AP-REQ in the
+ * token, whether it is a raw Kerberos or a SPNEGO token. The authenticator is encrypted
+ * with a random confounder, so the same authenticator is never sent twice by a client,
+ * and tokens with another wrapping of the same authenticator are still recognized. Tokens
+ * without an AP-REQ are keyed by a digest of the whole token, and tokens which are not
+ * valid DER are rejected, as their authenticator could not be found.
+ *
+ * @see org.springframework.security.kerberos.authentication.sun.SunJaasKerberosTicketValidator#setReplayCache(KerberosReplayCache)
+ */
+public class KerberosReplayCache {
+
+	private static final long TICK_MILLIS = 1000;
+
+	private static final MessageDigest DIGEST = digest();
+
+	private static final byte[] SPNEGO_OID = { 0x2b, 0x06, 0x01, 0x05, 0x05, 0x02 };
+
+	private static final byte[] KRB5_OID = { 0x2a, (byte) 0x86, 0x48, (byte) 0x86, (byte) 0xf7, 0x12, 0x01, 0x02,
+			0x02 };
+
+	private static final byte[] MS_KRB5_OID = { 0x2a, (byte) 0x86, 0x48, (byte) 0x82, (byte) 0xf7, 0x12, 0x01, 0x02,
+			0x02 };
+
+	private final Stripe[] stripes;
+
+	private final int ticksToLive;
+
+	private final Clock clock;
+
+	private final LongAdder stored = new LongAdder();
+
+	private final LongAdder replays = new LongAdder();
+
+	private final LongAdder overflows = new LongAdder();
+
+	private final LongAdder expired = new LongAdder();
+
+	private final LongAdder malformed = new LongAdder();
+
+	/**
+	 * Instantiates a new kerberos replay cache for a clock skew of 5 minutes, holding up
+	 * to 200000 entries.
+	 */
+	public KerberosReplayCache() {
+		this(Duration.ofMinutes(5), 200000);
+	}
+
+	/**
+	 * Instantiates a new kerberos replay cache.
+	 * @param clockSkew the clock skew allowed by the Kerberos configuration
+	 * @param maxSize the maximum number of entries
+	 */
+	public KerberosReplayCache(Duration clockSkew, int maxSize) {
+		this(clockSkew, maxSize, Clock.systemUTC());
+	}
+
+	/**
+	 * Instantiates a new kerberos replay cache.
+	 * @param clockSkew the clock skew allowed by the Kerberos configuration
+	 * @param maxSize the maximum number of entries
+	 * @param clock the clock used to expire entries
+	 */
+	public KerberosReplayCache(Duration clockSkew, int maxSize, Clock clock) {
+		Assert.notNull(clockSkew, "clockSkew cannot be null");
+		Assert.isTrue(!clockSkew.isNegative() && !clockSkew.isZero(), "clockSkew must be positive");
+		Assert.isTrue(maxSize > 0, "maxSize must be positive");
+		Assert.notNull(clock, "clock cannot be null");
+		this.ticksToLive = (int) ((clockSkew.toMillis() * 2 + TICK_MILLIS - 1) / TICK_MILLIS);
+		this.clock = clock;
+		int stripes = Integer
+				.highestOneBit(Math.max(1, Math.min(maxSize, Runtime.getRuntime().availableProcessors() * 4)));
+		this.stripes = new Stripe[stripes];
+		long now = tick();
+		for (int i = 0; i < stripes; i++) {
+			this.stripes[i] = new Stripe(Math.max(1, maxSize / stripes), this.ticksToLive + 1, now);
+		}
+	}
+
+	/**
+	 * Stores the authenticator of the given token, unless it is stored already.
+	 * @param token the Kerberos or SPNEGO token
+	 * @return {@code true} if the authenticator was stored, {@code false} if it is a
+	 * replay, the token is malformed or the cache is full
+	 * @see #store(byte[])
+	 */
+	public boolean checkAndStore(byte[] token) {
+		return store(token) == Result.STORED;
+	}
+
+	/**
+	 * Stores the authenticator of the given token, unless it is stored already, telling
+	 * why it was not stored otherwise.
+	 * @param token the Kerberos or SPNEGO token
+	 * @return the result of storing the authenticator
+	 */
+	public Result store(byte[] token) {
+		Key key;
+		try {
+			key = key(token);
+		}
+		catch (IllegalArgumentException ex) {
+			this.malformed.increment();
+			return Result.MALFORMED;
+		}
+		Stripe stripe = stripe(key);
+		long now = tick();
+		synchronized (stripe) {
+			expire(stripe, now);
+			if (stripe.entries.containsKey(key)) {
+				this.replays.increment();
+				return Result.REPLAY;
+			}
+			if (stripe.entries.size() >= stripe.capacity) {
+				this.overflows.increment();
+				return Result.OVERFLOW;
+			}
+			key.expiresAt = stripe.tick + this.ticksToLive;
+			stripe.entries.put(key, key);
+			stripe.link(key);
+		}
+		this.stored.increment();
+		return Result.STORED;
+	}
+
+	/**
+	 * Removes the authenticator of the given token, for example because it was stored
+	 * before the token failed to validate.
+	 * @param token the Kerberos or SPNEGO token
+	 */
+	public void remove(byte[] token) {
+		Key key;
+		try {
+			key = key(token);
+		}
+		catch (IllegalArgumentException ex) {
+			return;
+		}
+		Stripe stripe = stripe(key);
+		synchronized (stripe) {
+			Key stored = stripe.entries.remove(key);
+			if (stored != null) {
+				stripe.unlink(stored);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of stored authenticators.
+	 * @return the number of entries
+	 */
+	public int size() {
+		int size = 0;
+		for (Stripe stripe : this.stripes) {
+			synchronized (stripe) {
+				size += stripe.entries.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the number of authenticators stored.
+	 * @return the number of stored authenticators
+	 */
+	public long getStoredCount() {
+		return this.stored.sum();
+	}
+
+	/**
+	 * Returns the number of tokens recognized as replays.
+	 * @return the number of replays
+	 */
+	public long getReplayCount() {
+		return this.replays.sum();
+	}
+
+	/**
+	 * Returns the number of tokens rejected because the cache was full.
+	 * @return the number of overflows
+	 */
+	public long getOverflowCount() {
+		return this.overflows.sum();
+	}
+
+	/**
+	 * Returns the number of tokens rejected because they are not valid DER.
+	 * @return the number of malformed tokens
+	 */
+	public long getMalformedCount() {
+		return this.malformed.sum();
+	}
+
+	/**
+	 * Returns the number of expired authenticators.
+	 * @return the number of expired authenticators
+	 */
+	public long getExpiredCount() {
+		return this.expired.sum();
+	}
+
+	private long tick() {
+		return this.clock.millis() / TICK_MILLIS;
+	}
+
+	private Stripe stripe(Key key) {
+		return this.stripes[(int) key.high & (this.stripes.length - 1)];
+	}
+
+	private void expire(Stripe stripe, long now) {
+		long last = Math.min(now, stripe.tick + stripe.wheel.length);
+		for (long tick = stripe.tick + 1; tick <= last; tick++) {
+			int slot = (int) (tick % stripe.wheel.length);
+			for (Key key = stripe.wheel[slot]; key != null; key = key.next) {
+				stripe.entries.remove(key);
+				this.expired.increment();
+			}
+			stripe.wheel[slot] = null;
+		}
+		stripe.tick = Math.max(stripe.tick, now);
+	}
+
+	private static Key key(byte[] token) {
+		Assert.notNull(token, "token cannot be null");
+		MessageDigest digest;
+		try {
+			// cloning skips the provider lookup of getInstance
+			digest = (MessageDigest) DIGEST.clone();
+		}
+		catch (CloneNotSupportedException ex) {
+			digest = digest();
+		}
+		int[] authenticator = findAuthenticator(token, 0, token.length);
+		if (authenticator != null) {
+			digest.update(token, authenticator[0], authenticator[1]);
+		}
+		else {
+			digest.update(token);
+		}
+		byte[] bytes = digest.digest();
+		return new Key(toLong(bytes, 0), toLong(bytes, 8));
+	}
+
+	private static MessageDigest digest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	private static long toLong(byte[] bytes, int offset) {
+		long value = 0;
+		for (int i = offset; i < offset + 8; i++) {
+			value = (value << 8) | (bytes[i] & 0xff);
+		}
+		return value;
+	}
+
+	/**
+	 * Finds the cipher of the authenticator in a GSS token of the Kerberos mechanism, or
+	 * in the mechanism token of a SPNEGO token.
+	 * @param token the token
+	 * @param offset the offset of the token
+	 * @param limit the end of the token
+	 * @return the offset and length of the cipher, or {@code null} if there is none
+	 * @throws IllegalArgumentException if the token is not valid DER
+	 */
+	private static int[] findAuthenticator(byte[] token, int offset, int limit) {
+		Der gss = new Der(token, offset, limit);
+		if (!gss.next(0x60)) {
+			return null;
+		}
+		Der content = gss.content();
+		if (!content.next(0x06)) {
+			return null;
+		}
+		if (content.contentEquals(SPNEGO_OID)) {
+			// NegTokenInit with its mechToken
+			if (!content.next(0xa0)) {
+				return null;
+			}
+			Der negTokenInit = content.content();
+			if (!negTokenInit.next(0x30)) {
+				return null;
+			}
+			Der fields = negTokenInit.content();
+			while (fields.next(-1)) {
+				if (fields.tag == 0xa2) {
+					Der mechToken = fields.content();
+					if (mechToken.next(0x04)) {
+						return findAuthenticator(token, mechToken.offset, mechToken.end);
+					}
+				}
+			}
+			return null;
+		}
+		if (!content.contentEquals(KRB5_OID) && !content.contentEquals(MS_KRB5_OID)) {
+			return null;
+		}
+		// AP-REQ token id followed by the AP-REQ
+		int apReq = content.end;
+		if (apReq + 2 > content.limit || token[apReq] != 0x01 || token[apReq + 1] != 0x00) {
+			return null;
+		}
+		Der message = new Der(token, apReq + 2, content.limit);
+		if (!message.next(0x6e)) {
+			return null;
+		}
+		Der sequence = message.content();
+		if (!sequence.next(0x30)) {
+			return null;
+		}
+		Der fields = sequence.content();
+		while (fields.next(-1)) {
+			if (fields.tag == 0xa4) {
+				Der encryptedData = fields.content();
+				if (!encryptedData.next(0x30)) {
+					return null;
+				}
+				Der encryptedFields = encryptedData.content();
+				while (encryptedFields.next(-1)) {
+					if (encryptedFields.tag == 0xa2) {
+						Der cipher = encryptedFields.content();
+						return cipher.next(0x04) ? new int[] { cipher.offset, cipher.length } : null;
+					}
+				}
+				return null;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Result of {@link KerberosReplayCache#store(byte[]) storing} an authenticator.
+	 */
+	public enum Result {
+
+		/**
+		 * The authenticator was stored.
+		 */
+		STORED,
+
+		/**
+		 * The authenticator is stored already, the token is a replay.
+		 */
+		REPLAY,
+
+		/**
+		 * The cache is full, the authenticator could not be stored.
+		 */
+		OVERFLOW,
+
+		/**
+		 * The token is not valid DER, its authenticator could not be found.
+		 */
+		MALFORMED
+
+	}
+
+	/**
+	 * Entries of a stripe, and a timer wheel of the entries expiring in each tick as
+	 * linked lists.
+	 */
+	private static final class Stripe {
+
+		private final HashMap<Key, Key> entries = new HashMap<Key, Key>();
+
+		private final Key[] wheel;
+
+		private final int capacity;
+
+		private long tick;
+
+		private Stripe(int capacity, int slots, long tick) {
+			this.capacity = capacity;
+			this.wheel = new Key[slots];
+			this.tick = tick;
+		}
+
+		private void link(Key key) {
+			int slot = (int) (key.expiresAt % this.wheel.length);
+			key.next = this.wheel[slot];
+			if (key.next != null) {
+				key.next.previous = key;
+			}
+			this.wheel[slot] = key;
+		}
+
+		private void unlink(Key key) {
+			if (key.previous != null) {
+				key.previous.next = key.next;
+			}
+			else {
+				this.wheel[(int) (key.expiresAt % this.wheel.length)] = key.next;
+			}
+			if (key.next != null) {
+				key.next.previous = key.previous;
+			}
+		}
+
+	}
+
+	private static final class Key {
+
+		private final long high;
+
+		private final long low;
+
+		private long expiresAt;
+
+		private Key previous;
+
+		private Key next;
+
+		private Key(long high, long low) {
+			this.high = high;
+			this.low = low;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return this.high == other.high && this.low == other.low;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (this.low ^ (this.low >>> 32));
+		}
+
+	}
+
+	/**
+	 * Cursor over the DER encoded elements between an offset and a limit of a buffer.
+	 */
+	private static final class Der {
+
+		private final byte[] buffer;
+
+		private final int limit;
+
+		private int end;
+
+		private int tag;
+
+		private int offset;
+
+		private int length;
+
+		private Der(byte[] buffer, int offset, int limit) {
+			this.buffer = buffer;
+			this.end = offset;
+			this.limit = limit;
+		}
+
+		private boolean next(int expectedTag) {
+			if (this.end >= this.limit) {
+				return false;
+			}
+			int position = this.end;
+			this.tag = this.buffer[position++] & 0xff;
+			if (position >= this.limit) {
+				throw new IllegalArgumentException("Truncated element");
+			}
+			int length = this.buffer[position++] & 0xff;
+			if (length == 0x80 || length > 0x84) {
+				throw new IllegalArgumentException("Unsupported length");
+			}
+			if (length > 0x80) {
+				int bytes = length - 0x80;
+				length = 0;
+				for (int i = 0; i < bytes; i++) {
+					if (position >= this.limit) {
+						throw new IllegalArgumentException("Truncated length");
+					}
+					length = (length << 8) | (this.buffer[position++] & 0xff);
+				}
+			}
+			if (length < 0 || length > this.limit - position) {
+				throw new IllegalArgumentException("Invalid length");
+			}
+			this.offset = position;
+			this.length = length;
+			this.end = position + length;
+			return expectedTag < 0 || this.tag == expectedTag;
+		}
+
+		private Der content() {
+			return new Der(this.buffer, this.offset, this.end);
+		}
+
+		private boolean contentEquals(byte[] bytes) {
+			if (this.length != bytes.length) {
+				return false;
+			}
+			for (int i = 0; i < bytes.length; i++) {
+				if (this.buffer[this.offset + i] != bytes[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+	}
+
+}
@@ -16,15 +16,24 @@
 
 package org.springframework.security.kerberos.authentication;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 import javax.security.auth.Subject;
 
 import org.ietf.jgss.GSSContext;
+import org.ietf.jgss.GSSException;
 import org.ietf.jgss.MessageProp;
 
 import org.springframework.security.authentication.AbstractAuthenticationToken;
@@ -43,6 +52,13 @@ import org.springframework.security.crypto.codec.Base64;
  * </p>
  * <p>
  * This token cannot be re-authenticated, as you will get a Kerberos Reply error.
+ * <p>
+ * If the validator holds on to the GSS context, messages can be wrapped and unwrapped
+ * with it one at a time, from and to {@link ByteBuffer}s, in batches or as streams. A
+ * stream is wrapped in chunks, each written as a four byte big endian length followed by
+ * the wrap token of the chunk, and batches and streams run under a single
+ * {@link Subject#doAs} call. Lengths read from a stream are bound by a maximum token
+ * size.
  *
  * @author Mike Wiesner
  * @author Jeremy Stone
@@ -52,6 +68,17 @@ import org.springframework.security.crypto.codec.Base64;
  */
 public class KerberosServiceRequestToken extends AbstractAuthenticationToken implements KerberosAuthentication {
 
+	/**
+	 * The default size of the chunks a stream is wrapped in.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+	/**
+	 * The default maximum size of a wrap token read from a stream, which leaves room for
+	 * the overhead of wrapping chunks of {@link #DEFAULT_CHUNK_SIZE} bytes.
+	 */
+	public static final int DEFAULT_MAX_TOKEN_SIZE = DEFAULT_CHUNK_SIZE + 1024;
+
 	private static final long serialVersionUID = 395488921064775014L;
 
 	private final byte[] token;
@@ -185,9 +212,9 @@ public class KerberosServiceRequestToken extends AbstractAuthenticationToken imp
 	 * @throws PrivilegedActionException if jaas throws and error
 	 */
 	public byte[] decrypt(final byte[] data, final int offset, final int length) throws PrivilegedActionException {
-		return Subject.doAs(getTicketValidation().subject(), new PrivilegedExceptionAction<byte[]>() {
-			public byte[] run() throws Exception {
-				final GSSContext context = getTicketValidation().getGssContext();
+		return doAs(new ContextAction<byte[]>() {
+			@Override
+			public byte[] run(GSSContext context) throws Exception {
 				return context.unwrap(data, offset, length, new MessageProp(true));
 			}
 		});
@@ -203,6 +230,102 @@ public class KerberosServiceRequestToken extends AbstractAuthenticationToken imp
 		return decrypt(data, 0, data.length);
 	}
 
+	/**
+	 * Unwraps the remaining bytes of the source buffer into the destination buffer using
+	 * the gss context. As a decrypted message is never longer than its wrap token, the
+	 * destination buffer must have at least as many bytes remaining as the source buffer.
+	 * Otherwise neither buffer nor the gss context are touched.
+	 * @param src the encrypted message
+	 * @param dst the buffer the decrypted message is put into
+	 * @return the length of the decrypted message
+	 * @throws PrivilegedActionException if jaas throws and error
+	 * @throws BufferOverflowException if dst has fewer bytes remaining than src
+	 */
+	public int decrypt(final ByteBuffer src, final ByteBuffer dst) throws PrivilegedActionException {
+		return doAs(new ContextAction<Integer>() {
+			@Override
+			public Integer run(GSSContext context) throws Exception {
+				return transfer(src, dst, false, context, new MessageProp(true));
+			}
+		});
+	}
+
+	/**
+	 * Unwraps a batch of encrypted messages using the gss context.
+	 * @param messages the encrypted messages
+	 * @return the decrypted messages, in the same order
+	 * @throws PrivilegedActionException if jaas throws and error
+	 */
+	public List<byte[]> decrypt(final List<byte[]> messages) throws PrivilegedActionException {
+		return doAs(new ContextAction<List<byte[]>>() {
+			@Override
+			public List<byte[]> run(GSSContext context) throws Exception {
+				return transfer(messages, false, context);
+			}
+		});
+	}
+
+	/**
+	 * Unwraps a stream written by {@link #encrypt(InputStream, OutputStream, int)} using
+	 * the gss context, accepting wrap tokens of up to {@link #DEFAULT_MAX_TOKEN_SIZE}
+	 * bytes. Neither stream is closed.
+	 * @param in the stream of encrypted chunks
+	 * @param out the stream the decrypted data is written to
+	 * @return the number of decrypted bytes written
+	 * @throws PrivilegedActionException if jaas throws and error
+	 * @see #decrypt(InputStream, OutputStream, int)
+	 */
+	public long decrypt(InputStream in, OutputStream out) throws PrivilegedActionException {
+		return decrypt(in, out, DEFAULT_MAX_TOKEN_SIZE);
+	}
+
+	/**
+	 * Unwraps a stream written by {@link #encrypt(InputStream, OutputStream, int)} using
+	 * the gss context. The length of each wrap token is read from the stream, so it is
+	 * checked against the given maximum before any buffer is allocated for it. Neither
+	 * stream is closed.
+	 * @param in the stream of encrypted chunks
+	 * @param out the stream the decrypted data is written to
+	 * @param maxTokenSize the maximum length of a wrap token
+	 * @return the number of decrypted bytes written
+	 * @throws PrivilegedActionException if jaas throws and error, or a wrap token is
+	 * longer than the maximum
+	 */
+	public long decrypt(final InputStream in, final OutputStream out, final int maxTokenSize)
+			throws PrivilegedActionException {
+		if (maxTokenSize <= 0) {
+			throw new IllegalArgumentException("maxTokenSize must be positive");
+		}
+		return doAs(new ContextAction<Long>() {
+			@Override
+			public Long run(GSSContext context) throws Exception {
+				MessageProp messageProp = new MessageProp(true);
+				byte[] header = new byte[4];
+				byte[] buffer = new byte[0];
+				long written = 0;
+				while (readFully(in, header, 0, 4, true)) {
+					int length = ((header[0] & 0xff) << 24) | ((header[1] & 0xff) << 16) | ((header[2] & 0xff) << 8)
+							| (header[3] & 0xff);
+					if (length < 0) {
+						throw new IOException("Invalid wrap token length " + length);
+					}
+					if (length > maxTokenSize) {
+						throw new IOException(
+								"Wrap token length " + length + " exceeds the maximum of " + maxTokenSize);
+					}
+					if (buffer.length < length) {
+						buffer = new byte[length];
+					}
+					readFully(in, buffer, 0, length, false);
+					byte[] chunk = context.unwrap(buffer, 0, length, messageProp);
+					out.write(chunk);
+					written += chunk.length;
+				}
+				return written;
+			}
+		});
+	}
+
 	/**
 	 * Wraps an message using the gss context
 	 * @param data the data
@@ -212,9 +335,9 @@ public class KerberosServiceRequestToken extends AbstractAuthenticationToken imp
 	 * @throws PrivilegedActionException if jaas throws and error
 	 */
 	public byte[] encrypt(final byte[] data, final int offset, final int length) throws PrivilegedActionException {
-		return Subject.doAs(getTicketValidation().subject(), new PrivilegedExceptionAction<byte[]>() {
-			public byte[] run() throws Exception {
-				final GSSContext context = getTicketValidation().getGssContext();
+		return doAs(new ContextAction<byte[]>() {
+			@Override
+			public byte[] run(GSSContext context) throws Exception {
 				return context.wrap(data, offset, length, new MessageProp(true));
 			}
 		});
@@ -230,9 +353,172 @@ public class KerberosServiceRequestToken extends AbstractAuthenticationToken imp
 		return encrypt(data, 0, data.length);
 	}
 
+	/**
+	 * Wraps the remaining bytes of the source buffer into the destination buffer using
+	 * the gss context. The message must not be longer than the
+	 * {@link GSSContext#getWrapSizeLimit(int, boolean, int) wrap size limit} for the
+	 * bytes remaining in the destination buffer. Otherwise neither buffer nor the gss
+	 * context are touched.
+	 * @param src the message
+	 * @param dst the buffer the encrypted message is put into
+	 * @return the length of the encrypted message
+	 * @throws PrivilegedActionException if jaas throws and error
+	 * @throws BufferOverflowException if the encrypted message may not fit into dst
+	 */
+	public int encrypt(final ByteBuffer src, final ByteBuffer dst) throws PrivilegedActionException {
+		return doAs(new ContextAction<Integer>() {
+			@Override
+			public Integer run(GSSContext context) throws Exception {
+				return transfer(src, dst, true, context, new MessageProp(true));
+			}
+		});
+	}
+
+	/**
+	 * Wraps a batch of messages using the gss context.
+	 * @param messages the messages
+	 * @return the encrypted messages, in the same order
+	 * @throws PrivilegedActionException if jaas throws and error
+	 */
+	public List<byte[]> encrypt(final List<byte[]> messages) throws PrivilegedActionException {
+		return doAs(new ContextAction<List<byte[]>>() {
+			@Override
+			public List<byte[]> run(GSSContext context) throws Exception {
+				return transfer(messages, true, context);
+			}
+		});
+	}
+
+	/**
+	 * Wraps a stream in chunks of {@link #DEFAULT_CHUNK_SIZE} bytes using the gss
+	 * context. Neither stream is closed.
+	 * @param in the stream of data
+	 * @param out the stream the encrypted chunks are written to
+	 * @return the number of bytes read from the input stream
+	 * @throws PrivilegedActionException if jaas throws and error
+	 * @see #encrypt(InputStream, OutputStream, int)
+	 */
+	public long encrypt(InputStream in, OutputStream out) throws PrivilegedActionException {
+		return encrypt(in, out, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Wraps a stream in chunks using the gss context. Each chunk is written as a four
+	 * byte big endian length followed by its wrap token. Neither stream is closed.
+	 * @param in the stream of data
+	 * @param out the stream the encrypted chunks are written to
+	 * @param chunkSize the maximum number of bytes wrapped into one token
+	 * @return the number of bytes read from the input stream
+	 * @throws PrivilegedActionException if jaas throws and error
+	 * @see #decrypt(InputStream, OutputStream)
+	 */
+	public long encrypt(final InputStream in, final OutputStream out, final int chunkSize)
+			throws PrivilegedActionException {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("chunkSize must be positive");
+		}
+		return doAs(new ContextAction<Long>() {
+			@Override
+			public Long run(GSSContext context) throws Exception {
+				MessageProp messageProp = new MessageProp(true);
+				byte[] buffer = new byte[chunkSize];
+				byte[] header = new byte[4];
+				long read = 0;
+				int length;
+				while ((length = fill(in, buffer)) > 0) {
+					byte[] chunk = context.wrap(buffer, 0, length, messageProp);
+					header[0] = (byte) (chunk.length >>> 24);
+					header[1] = (byte) (chunk.length >>> 16);
+					header[2] = (byte) (chunk.length >>> 8);
+					header[3] = (byte) chunk.length;
+					out.write(header);
+					out.write(chunk);
+					read += length;
+				}
+				return read;
+			}
+		});
+	}
+
 	@Override
 	public JaasSubjectHolder getJaasSubjectHolder() {
 		return this.jaasSubjectHolder;
 	}
 
+	private <T> T doAs(final ContextAction<T> action) throws PrivilegedActionException {
+		final KerberosTicketValidation validation = getTicketValidation();
+		return Subject.doAs(validation.subject(), new PrivilegedExceptionAction<T>() {
+			public T run() throws Exception {
+				return action.run(validation.getGssContext());
+			}
+		});
+	}
+
+	private static int transfer(ByteBuffer src, ByteBuffer dst, boolean wrap, GSSContext context,
+			MessageProp messageProp) throws GSSException {
+		int length = src.remaining();
+		int limit = wrap ? context.getWrapSizeLimit(messageProp.getQOP(), messageProp.getPrivacy(), dst.remaining())
+				: dst.remaining();
+		if (length > limit) {
+			throw new BufferOverflowException();
+		}
+		byte[] data;
+		int offset;
+		if (src.hasArray()) {
+			data = src.array();
+			offset = src.arrayOffset() + src.position();
+		}
+		else {
+			data = new byte[length];
+			offset = 0;
+			src.duplicate().get(data);
+		}
+		byte[] result = wrap ? context.wrap(data, offset, length, messageProp)
+				: context.unwrap(data, offset, length, messageProp);
+		dst.put(result);
+		src.position(src.limit());
+		return result.length;
+	}
+
+	private static List<byte[]> transfer(List<byte[]> messages, boolean wrap, GSSContext context) throws GSSException {
+		MessageProp messageProp = new MessageProp(true);
+		List<byte[]> results = new ArrayList<byte[]>(messages.size());
+		for (byte[] message : messages) {
+			results.add(wrap ? context.wrap(message, 0, message.length, messageProp)
+					: context.unwrap(message, 0, message.length, messageProp));
+		}
+		return results;
+	}
+
+	private static int fill(InputStream in, byte[] buffer) throws IOException {
+		int length = 0;
+		int read;
+		while (length < buffer.length && (read = in.read(buffer, length, buffer.length - length)) != -1) {
+			length += read;
+		}
+		return length;
+	}
+
+	private static boolean readFully(InputStream in, byte[] buffer, int offset, int length, boolean eofAllowed)
+			throws IOException {
+		int total = 0;
+		while (total < length) {
+			int read = in.read(buffer, offset + total, length - total);
+			if (read == -1) {
+				if (eofAllowed && total == 0) {
+					return false;
+				}
+				throw new EOFException("Unexpected end of wrap token stream");
+			}
+			total += read;
+		}
+		return true;
+	}
+
+	private interface ContextAction<T> {
+
+		T run(GSSContext context) throws Exception;
+
+	}
+
 }
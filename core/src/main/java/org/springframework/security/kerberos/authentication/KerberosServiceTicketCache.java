@@ -0,0 +1,175 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Date;
+
+import javax.security.auth.kerberos.KerberosTicket;
+
+import org.springframework.security.kerberos.authentication.support.ExpiringCache;
+import org.springframework.util.Assert;
+
+/**
+ * Cache of Kerberos service tickets per client and service principal.
+ *
+ * <p>
+ * A service ticket can be used to create any number of tokens for its service, each one
+ * with a new authenticator, without contacting the KDC. Caching the tickets outside of
+ * the subject they were obtained with allows them to be reused for later authentications
+ * of the same user, until shortly before they expire.
+ *
+ * @see KerberosMultiTier
+ */
+public class KerberosServiceTicketCache {
+
+	private final ExpiringCache<Key, KerberosTicket> tickets;
+
+	private final Duration refreshMargin;
+
+	private final Clock clock;
+
+	/**
+	 * Instantiates a new kerberos service ticket cache holding up to 10000 tickets,
+	 * refreshed a minute before they expire.
+	 */
+	public KerberosServiceTicketCache() {
+		this(10000, Duration.ofMinutes(1));
+	}
+
+	/**
+	 * Instantiates a new kerberos service ticket cache.
+	 * @param maxSize the maximum number of tickets
+	 * @param refreshMargin how long before their end time tickets are no longer used
+	 */
+	public KerberosServiceTicketCache(int maxSize, Duration refreshMargin) {
+		this(maxSize, refreshMargin, Clock.systemUTC());
+	}
+
+	/**
+	 * Instantiates a new kerberos service ticket cache.
+	 * @param maxSize the maximum number of tickets
+	 * @param refreshMargin how long before their end time tickets are no longer used
+	 * @param clock the clock used to expire tickets
+	 */
+	public KerberosServiceTicketCache(int maxSize, Duration refreshMargin, Clock clock) {
+		Assert.notNull(refreshMargin, "refreshMargin cannot be null");
+		// expiry is bound by the end times of the tickets
+		this.tickets = new ExpiringCache<>(maxSize, Duration.ofDays(365), clock);
+		this.refreshMargin = refreshMargin;
+		this.clock = clock;
+	}
+
+	/**
+	 * Returns a cached ticket of the client for the service.
+	 * @param clientPrincipal the client principal name including the realm
+	 * @param servicePrincipal the service principal name including the realm
+	 * @return the ticket, or {@code null} if none is cached or it is about to expire
+	 */
+	public KerberosTicket get(String clientPrincipal, String servicePrincipal) {
+		Key key = new Key(clientPrincipal, servicePrincipal);
+		KerberosTicket ticket = this.tickets.get(key);
+		if (ticket != null && !ticket.isCurrent()) {
+			this.tickets.remove(key);
+			return null;
+		}
+		return ticket;
+	}
+
+	/**
+	 * Caches the given ticket until its refresh margin before its end time.
+	 * @param ticket the service ticket
+	 */
+	public void put(KerberosTicket ticket) {
+		Assert.notNull(ticket, "ticket cannot be null");
+		Date endTime = ticket.getEndTime();
+		if (endTime == null || ticket.isDestroyed()) {
+			return;
+		}
+		long expiresAt = endTime.getTime() - this.refreshMargin.toMillis();
+		if (expiresAt > this.clock.millis()) {
+			this.tickets.put(new Key(ticket.getClient().getName(), ticket.getServer().getName()), ticket, expiresAt);
+		}
+	}
+
+	/**
+	 * Removes the cached ticket of the client for the service.
+	 * @param clientPrincipal the client principal name including the realm
+	 * @param servicePrincipal the service principal name including the realm
+	 */
+	public void remove(String clientPrincipal, String servicePrincipal) {
+		this.tickets.remove(new Key(clientPrincipal, servicePrincipal));
+	}
+
+	/**
+	 * Removes all cached tickets.
+	 */
+	public void clear() {
+		this.tickets.clear();
+	}
+
+	/**
+	 * Returns the number of cached tickets.
+	 * @return the number of cached tickets
+	 */
+	public int size() {
+		return this.tickets.size();
+	}
+
+	/**
+	 * Returns the cache holding the tickets, for example to monitor it.
+	 * @return the cache of tickets
+	 */
+	public ExpiringCache<?, ?> getCache() {
+		return this.tickets;
+	}
+
+	private static final class Key {
+
+		private final String clientPrincipal;
+
+		private final String servicePrincipal;
+
+		private Key(String clientPrincipal, String servicePrincipal) {
+			Assert.notNull(clientPrincipal, "clientPrincipal cannot be null");
+			Assert.notNull(servicePrincipal, "servicePrincipal cannot be null");
+			this.clientPrincipal = clientPrincipal;
+			this.servicePrincipal = servicePrincipal;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return this.clientPrincipal.equals(other.clientPrincipal)
+					&& this.servicePrincipal.equals(other.servicePrincipal);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * this.clientPrincipal.hashCode() + this.servicePrincipal.hashCode();
+		}
+
+	}
+
+}
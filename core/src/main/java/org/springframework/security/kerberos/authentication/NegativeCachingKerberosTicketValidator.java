@@ -0,0 +1,206 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ietf.jgss.GSSException;
+
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.kerberos.authentication.support.ExpiringCache;
+import org.springframework.util.Assert;
+
+/**
+ * {@link KerberosTicketValidator} remembering tokens which another validator rejected for
+ * a short time, and rejecting them again without validating them.
+ *
+ * <p>
+ * A misconfigured client, or anyone replaying a bad token, otherwise costs a full
+ * validation with its cryptography, an exception and a log entry for every attempt.
+ * Tokens rejected with a {@link BadCredentialsException} are kept as a SHA-256 digest, by
+ * default up to 10000 of them for 30 seconds, and repeated attempts fail with a
+ * {@link RecentlyRejectedTicketException} without a stack trace. Clients creating a new
+ * token for every request are not affected, as a new authenticator makes every token
+ * different.
+ *
+ * <p>
+ * Validators like {@code SunJaasKerberosTicketValidator} report every failure as a
+ * {@link BadCredentialsException}, including failures of the service itself, such as a
+ * keytab without a key for the ticket. A rejection is therefore only remembered if the
+ * {@link GSSException} causing it, if any, blames the token, see
+ * {@link #isRejectedToken(BadCredentialsException)}. Other exceptions are never
+ * remembered.
+ *
+ * @see KerberosServiceAuthenticationProvider#setTicketValidator(KerberosTicketValidator)
+ */
+public class NegativeCachingKerberosTicketValidator implements KerberosTicketValidator {
+
+	private static final Boolean REJECTED = Boolean.TRUE;
+
+	private final KerberosTicketValidator delegate;
+
+	private final ExpiringCache<Digest, Boolean> rejectedTokens;
+
+	private final AtomicLong shortCircuited = new AtomicLong();
+
+	/**
+	 * Instantiates a new negative caching kerberos ticket validator remembering up to
+	 * 10000 rejected tokens for 30 seconds.
+	 * @param delegate the validator used to validate tokens
+	 */
+	public NegativeCachingKerberosTicketValidator(KerberosTicketValidator delegate) {
+		this(delegate, 10000, Duration.ofSeconds(30));
+	}
+
+	/**
+	 * Instantiates a new negative caching kerberos ticket validator.
+	 * @param delegate the validator used to validate tokens
+	 * @param maxSize the maximum number of remembered tokens
+	 * @param timeToLive how long rejected tokens are remembered
+	 */
+	public NegativeCachingKerberosTicketValidator(KerberosTicketValidator delegate, int maxSize, Duration timeToLive) {
+		this(delegate, maxSize, timeToLive, Clock.systemUTC());
+	}
+
+	/**
+	 * Instantiates a new negative caching kerberos ticket validator.
+	 * @param delegate the validator used to validate tokens
+	 * @param maxSize the maximum number of remembered tokens
+	 * @param timeToLive how long rejected tokens are remembered
+	 * @param clock the clock used to expire remembered tokens
+	 */
+	public NegativeCachingKerberosTicketValidator(KerberosTicketValidator delegate, int maxSize, Duration timeToLive,
+			Clock clock) {
+		Assert.notNull(delegate, "delegate cannot be null");
+		this.delegate = delegate;
+		this.rejectedTokens = new ExpiringCache<Digest, Boolean>(maxSize, timeToLive, clock);
+	}
+
+	@Override
+	public KerberosTicketValidation validateTicket(byte[] token) throws BadCredentialsException {
+		Digest digest = new Digest(token);
+		if (this.rejectedTokens.get(digest) != null) {
+			this.shortCircuited.incrementAndGet();
+			throw new RecentlyRejectedTicketException("Kerberos token was rejected recently");
+		}
+		try {
+			return this.delegate.validateTicket(token);
+		}
+		catch (BadCredentialsException ex) {
+			if (isRejectedToken(ex)) {
+				this.rejectedTokens.put(digest, REJECTED);
+			}
+			throw ex;
+		}
+	}
+
+	/**
+	 * Decides whether the given failure of the delegate was caused by the token, and the
+	 * token should be rejected again without validating it. By default, failures caused
+	 * by a {@link GSSException} are only caused by the token if its major code is
+	 * {@link GSSException#DEFECTIVE_TOKEN}, {@link GSSException#BAD_MIC},
+	 * {@link GSSException#DUPLICATE_TOKEN}, {@link GSSException#OLD_TOKEN},
+	 * {@link GSSException#CREDENTIALS_EXPIRED} or
+	 * {@link GSSException#DEFECTIVE_CREDENTIAL}, while failures without one always are.
+	 * @param ex the failure of the delegate
+	 * @return {@code true} if the token should be remembered as rejected
+	 */
+	protected boolean isRejectedToken(BadCredentialsException ex) {
+		for (Throwable cause = ex.getCause(); cause != null; cause = cause.getCause()) {
+			if (cause instanceof GSSException) {
+				switch (((GSSException) cause).getMajor()) {
+					case GSSException.DEFECTIVE_TOKEN:
+					case GSSException.BAD_MIC:
+					case GSSException.DUPLICATE_TOKEN:
+					case GSSException.OLD_TOKEN:
+					case GSSException.CREDENTIALS_EXPIRED:
+					case GSSException.DEFECTIVE_CREDENTIAL:
+						return true;
+					default:
+						return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of validations rejected because their token was rejected
+	 * recently.
+	 * @return the number of short circuited validations
+	 */
+	public long getShortCircuitedCount() {
+		return this.shortCircuited.get();
+	}
+
+	/**
+	 * Forgets all rejected tokens.
+	 */
+	public void clear() {
+		this.rejectedTokens.clear();
+	}
+
+	/**
+	 * Returns the cache holding the digests of rejected tokens, for example to monitor
+	 * it.
+	 * @return the cache of rejected tokens
+	 */
+	public ExpiringCache<?, ?> getCache() {
+		return this.rejectedTokens;
+	}
+
+	private static final class Digest {
+
+		private final byte[] digest;
+
+		private final int hash;
+
+		private Digest(byte[] token) {
+			Assert.notNull(token, "token cannot be null");
+			try {
+				this.digest = MessageDigest.getInstance("SHA-256").digest(token);
+			}
+			catch (NoSuchAlgorithmException ex) {
+				throw new IllegalStateException(ex);
+			}
+			this.hash = Arrays.hashCode(this.digest);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Digest)) {
+				return false;
+			}
+			return Arrays.equals(this.digest, ((Digest) obj).digest);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+
+	}
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication;
+
+import org.springframework.security.authentication.BadCredentialsException;
+
+/**
+ * Thrown by {@link NegativeCachingKerberosTicketValidator} for a token which was rejected
+ * recently and is rejected again without being validated. It has no stack trace, as it is
+ * thrown for every repeated attempt, and is not worth logging at warn level.
+ */
+public class RecentlyRejectedTicketException extends BadCredentialsException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Instantiates a new recently rejected ticket exception.
+	 * @param msg the detail message
+	 */
+	public RecentlyRejectedTicketException(String msg) {
+		super(msg);
+	}
+
+	@Override
+	public synchronized Throwable fillInStackTrace() {
+		return this;
+	}
+
+}
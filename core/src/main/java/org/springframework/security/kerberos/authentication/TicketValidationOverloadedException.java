@@ -0,0 +1,72 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication;
+
+import java.time.Duration;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.util.Assert;
+
+/**
+ * Thrown by {@link ConcurrencyLimitingKerberosTicketValidator} for a token which is not
+ * validated because too many validations are in progress, and for a token whose
+ * authenticator cannot be stored because the {@link KerberosReplayCache} is full. Web
+ * filters answer it with {@code 503 Service Unavailable} and a {@code Retry-After}
+ * header. It has no stack trace, as it is thrown for every request while the service is
+ * overloaded.
+ */
+public class TicketValidationOverloadedException extends AuthenticationServiceException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Duration retryAfter;
+
+	/**
+	 * Instantiates a new ticket validation overloaded exception.
+	 * @param msg the detail message
+	 * @param retryAfter the time after which clients may try again
+	 */
+	public TicketValidationOverloadedException(String msg, Duration retryAfter) {
+		super(msg);
+		Assert.notNull(retryAfter, "retryAfter cannot be null");
+		this.retryAfter = retryAfter;
+	}
+
+	/**
+	 * Returns the time after which clients may try again.
+	 * @return the retry after duration
+	 */
+	public Duration getRetryAfter() {
+		return this.retryAfter;
+	}
+
+	/**
+	 * Returns the time after which clients may try again in whole seconds, as used in a
+	 * {@code Retry-After} header.
+	 * @return the retry after seconds, at least 1
+	 */
+	public long getRetryAfterSeconds() {
+		long seconds = this.retryAfter.getSeconds() + ((this.retryAfter.getNano() > 0) ? 1 : 0);
+		return Math.max(1, seconds);
+	}
+
+	@Override
+	public synchronized Throwable fillInStackTrace() {
+		return this;
+	}
+
+}
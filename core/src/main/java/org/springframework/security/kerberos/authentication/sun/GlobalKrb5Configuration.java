@@ -0,0 +1,191 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication.sun;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.function.UnaryOperator;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.core.io.FileSystemResource;
+
+/**
+ * Applies {@link Krb5Configuration}s to the Kerberos configuration of the JVM.
+ *
+ * <p>
+ * The JDK Kerberos implementation reads a single configuration per JVM, from the file
+ * given by the <code>java.security.krb5.conf</code> system property. Configurations
+ * applied here are merged into the configuration read from that file, written to a
+ * generated file the system property is then pointed at, and the cached configuration of
+ * the JDK is refreshed. Applying a configuration which does not change the merged
+ * configuration does nothing, so the file is only written and parsed again by the JDK
+ * when something changed.
+ *
+ * <p>
+ * This changes global state: the <code>java.security.krb5.conf</code> system property is
+ * overwritten, and the merged configuration is used by every Kerberos login of the JVM,
+ * including those of other libraries. Realms of different configurations are kept side by
+ * side, while relations like the defaults of the <code>libdefaults</code> section are
+ * shared by the whole JVM, so the component configured last wins.
+ *
+ * <p>
+ * Refreshing the cached configuration of the JDK needs access to
+ * <code>sun.security.krb5</code>, which on Java 16 and later requires
+ * <code>--add-exports java.security.jgss/sun.security.krb5=ALL-UNNAMED</code>. Without it
+ * a warning is logged, and components with a {@link Krb5Configuration} make their logins
+ * re-read the configuration with <code>refreshKrb5Config</code> instead, see
+ * {@link #isLoginRefreshRequired()}.
+ *
+ * @see Krb5Configuration
+ */
+public final class GlobalKrb5Configuration {
+
+	private static final Log LOG = LogFactory.getLog(GlobalKrb5Configuration.class);
+
+	private static final String KRB5_CONF_PROPERTY = "java.security.krb5.conf";
+
+	private static Krb5Configuration applied;
+
+	private static Path file;
+
+	private static volatile boolean refreshFailed;
+
+	private GlobalKrb5Configuration() {
+	}
+
+	/**
+	 * Merges the given configuration into the configuration of the JVM.
+	 * @param configuration the configuration
+	 * @return true if the configuration of the JVM changed
+	 * @see Krb5Configuration#merge(Krb5Configuration)
+	 */
+	public static boolean apply(final Krb5Configuration configuration) {
+		return update((current) -> current.merge(configuration));
+	}
+
+	/**
+	 * Updates the configuration of the JVM.
+	 * @param update the function returning the updated configuration
+	 * @return true if the configuration of the JVM changed
+	 */
+	public static synchronized boolean update(UnaryOperator<Krb5Configuration> update) {
+		Krb5Configuration current = getApplied();
+		Krb5Configuration updated = update.apply(current);
+		if (updated.equals(current) && isFileInUse()) {
+			return false;
+		}
+		try {
+			if (file == null) {
+				file = Files.createTempFile("krb5", ".conf");
+				file.toFile().deleteOnExit();
+			}
+			Path tmp = Files.createTempFile(file.getParent(), "krb5", ".tmp");
+			Files.write(tmp, updated.render().getBytes(StandardCharsets.UTF_8));
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException("Unable to write Kerberos configuration", ex);
+		}
+		applied = updated;
+		System.setProperty(KRB5_CONF_PROPERTY, file.toString());
+		refresh();
+		return true;
+	}
+
+	/**
+	 * Returns the configuration of the JVM, read from the file given by the
+	 * <code>java.security.krb5.conf</code> system property or the default location of the
+	 * JDK if no configuration was applied yet or the system property was changed since.
+	 * @return the configuration of the JVM
+	 */
+	public static synchronized Krb5Configuration getApplied() {
+		if (applied == null || !isFileInUse()) {
+			applied = load();
+		}
+		return applied;
+	}
+
+	/**
+	 * Returns whether the cached configuration of the JDK could not be refreshed after a
+	 * configuration was applied, so that logins have to re-read it with
+	 * <code>refreshKrb5Config</code>.
+	 * @return true if logins need to refresh the configuration
+	 */
+	public static boolean isLoginRefreshRequired() {
+		return refreshFailed;
+	}
+
+	private static boolean isFileInUse() {
+		return file != null && file.toString().equals(System.getProperty(KRB5_CONF_PROPERTY));
+	}
+
+	private static Krb5Configuration load() {
+		File krbConf = getKrbConfFile();
+		if (krbConf == null || !krbConf.isFile()) {
+			return Krb5Configuration.empty();
+		}
+		try {
+			return Krb5Configuration.load(new FileSystemResource(krbConf));
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException("Unable to read Kerberos configuration " + krbConf, ex);
+		}
+	}
+
+	private static File getKrbConfFile() {
+		String location = System.getProperty(KRB5_CONF_PROPERTY);
+		if (location != null) {
+			return new File(location);
+		}
+		// the locations the jdk falls back to
+		String javaHome = System.getProperty("java.home");
+		for (String candidate : new String[] { "lib/security/krb5.conf", "conf/security/krb5.conf" }) {
+			File krbConf = new File(javaHome, candidate);
+			if (krbConf.isFile()) {
+				return krbConf;
+			}
+		}
+		if (System.getProperty("os.name", "").startsWith("Windows")) {
+			return new File(System.getenv().getOrDefault("SystemRoot", "C:\\Windows"), "krb5.ini");
+		}
+		return new File("/etc/krb5.conf");
+	}
+
+	private static void refresh() {
+		try {
+			Class.forName("sun.security.krb5.Config").getMethod("refresh").invoke(null);
+		}
+		catch (ReflectiveOperationException | RuntimeException | LinkageError ex) {
+			if (!refreshFailed) {
+				LOG.warn(
+						"Unable to refresh the Kerberos configuration, add --add-exports "
+								+ "java.security.jgss/sun.security.krb5=ALL-UNNAMED to the JVM options. Until then "
+								+ "logins with a Krb5Configuration re-read the configuration with refreshKrb5Config",
+						ex);
+			}
+			refreshFailed = true;
+		}
+	}
+
+}
@@ -16,22 +16,54 @@
 
 package org.springframework.security.kerberos.authentication.sun;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
 /**
  * Config for global jaas.
  *
+ * <p>
+ * A {@link Krb5Configuration} set here is applied to the JVM with
+ * {@link GlobalKrb5Configuration}, as are the kdcs of the realm of a {@link KdcLocator}
+ * in the order of the locator. The kdcs can be probed periodically, and the order is
+ * applied again whenever it changes, be it by a probe or by logins reported to the
+ * locator.
+ *
  * @author Mike Wiesner
  * @since 1.0
  */
-public class GlobalSunJaasKerberosConfig implements BeanPostProcessor, InitializingBean {
+public class GlobalSunJaasKerberosConfig implements BeanPostProcessor, InitializingBean, DisposableBean {
+
+	private static final Log LOG = LogFactory.getLog(GlobalSunJaasKerberosConfig.class);
 
 	private boolean debug = false;
 
 	private String krbConfLocation;
 
+	private Krb5Configuration krb5Configuration;
+
+	private KdcLocator kdcLocator;
+
+	private Duration kdcProbeInterval;
+
+	private String jdkReplayCache;
+
+	private ScheduledExecutorService probeScheduler;
+
+	private final Runnable kdcOrderChangeListener = this::applyKdcs;
+
 	@Override
 	public void afterPropertiesSet() {
 		if (this.debug) {
@@ -40,9 +72,39 @@ public class GlobalSunJaasKerberosConfig implements BeanPostProcessor, Initializ
 		if (this.krbConfLocation != null) {
 			System.setProperty("java.security.krb5.conf", this.krbConfLocation);
 		}
+		if (this.jdkReplayCache != null) {
+			System.setProperty("sun.security.krb5.rcache", this.jdkReplayCache);
+		}
+		if (this.krb5Configuration != null) {
+			GlobalKrb5Configuration.apply(this.krb5Configuration);
+		}
+		if (this.kdcLocator != null) {
+			if (this.kdcProbeInterval != null) {
+				this.kdcLocator.probe();
+			}
+			applyKdcs();
+			this.kdcLocator.addOrderChangeListener(this.kdcOrderChangeListener);
+			if (this.kdcProbeInterval != null) {
+				CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("kerberos-kdc-probe-");
+				threadFactory.setDaemon(true);
+				this.probeScheduler = new ScheduledThreadPoolExecutor(1, threadFactory);
+				long interval = this.kdcProbeInterval.toMillis();
+				this.probeScheduler.scheduleWithFixedDelay(this::probeKdcs, interval, interval, TimeUnit.MILLISECONDS);
+			}
+		}
 
 	}
 
+	@Override
+	public void destroy() {
+		if (this.kdcLocator != null) {
+			this.kdcLocator.removeOrderChangeListener(this.kdcOrderChangeListener);
+		}
+		if (this.probeScheduler != null) {
+			this.probeScheduler.shutdownNow();
+		}
+	}
+
 	/**
 	 * Enable debug logs from the Sun Kerberos Implementation. Default is false.
 	 * @param debug true if debug should be enabled
@@ -59,6 +121,69 @@ public class GlobalSunJaasKerberosConfig implements BeanPostProcessor, Initializ
 		this.krbConfLocation = krbConfLocation;
 	}
 
+	/**
+	 * Sets a Kerberos configuration merged into the configuration of the JVM, read from
+	 * the <code>krbConfLocation</code> if set.
+	 * @param krb5Configuration the Kerberos configuration
+	 * @see GlobalKrb5Configuration#apply(Krb5Configuration)
+	 */
+	public void setKrb5Configuration(Krb5Configuration krb5Configuration) {
+		this.krb5Configuration = krb5Configuration;
+	}
+
+	/**
+	 * Sets the locator ordering the kdcs of its realm.
+	 * @param kdcLocator the kdc locator
+	 */
+	public void setKdcLocator(KdcLocator kdcLocator) {
+		this.kdcLocator = kdcLocator;
+	}
+
+	/**
+	 * Sets the interval in which the kdcs of the locator are probed. If not set, the kdcs
+	 * are ordered once with the measurements reported to the locator by then.
+	 * @param kdcProbeInterval the probe interval
+	 */
+	public void setKdcProbeInterval(Duration kdcProbeInterval) {
+		this.kdcProbeInterval = kdcProbeInterval;
+	}
+
+	/**
+	 * Sets the type of the replay cache of the JDK, {@code dfl} for a file based one or
+	 * {@code none}, instead of the default of the JDK. The JDK has a single replay cache
+	 * for all acceptors of the JVM, created once the first token is accepted, so this
+	 * must be set before that. It should only be {@code none} when every acceptor of the
+	 * JVM uses a {@link SunJaasKerberosTicketValidator} with a
+	 * {@link org.springframework.security.kerberos.authentication.KerberosReplayCache}.
+	 * @param jdkReplayCache the type of the replay cache of the JDK
+	 * @see SunJaasKerberosTicketValidator#setReplayCache(org.springframework.security.kerberos.authentication.KerberosReplayCache)
+	 */
+	public void setJdkReplayCache(String jdkReplayCache) {
+		this.jdkReplayCache = jdkReplayCache;
+	}
+
+	private void probeKdcs() {
+		try {
+			// applied by the listener if the order changed
+			this.kdcLocator.probe();
+		}
+		catch (RuntimeException ex) {
+			LOG.warn("Updating the KDCs of realm " + this.kdcLocator.getRealm() + " failed", ex);
+		}
+	}
+
+	private void applyKdcs() {
+		final String realm = this.kdcLocator.getRealm();
+		final List<String> kdcs = this.kdcLocator.getKdcs();
+		if (kdcs.isEmpty()) {
+			return;
+		}
+		if (GlobalKrb5Configuration.update((configuration) -> configuration.withKdcs(realm, kdcs))
+				&& LOG.isDebugEnabled()) {
+			LOG.debug("Using KDCs " + kdcs + " for realm " + realm);
+		}
+	}
+
 	// The following methods are not used here. This Bean implements only
 	// BeanPostProcessor to ensure that it
 	// is created before any other bean is created, because the system properties needed
@@ -0,0 +1,487 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication.sun;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.InitialDirContext;
+import javax.security.auth.login.LoginContext;
+import javax.security.auth.login.LoginException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.util.Assert;
+
+/**
+ * Orders the KDCs of a realm by their health and latency, so that the JDK Kerberos
+ * implementation, which tries the KDCs of a realm one after the other and waits for the
+ * timeout of each unresponsive one, tries the fastest healthy KDC first.
+ *
+ * <p>
+ * The KDCs are either given or discovered with DNS SRV records, which are cached. The
+ * latency of each KDC is tracked as an exponentially weighted moving average of the
+ * measured latencies, which are reported with {@link #recordSuccess(String, Duration)}
+ * and {@link #recordFailure(String)} or measured with {@link #probe()}. A failure counts
+ * as a latency of the probe timeout, and a KDC failing repeatedly is ejected for a while,
+ * during which it is ordered last.
+ *
+ * <p>
+ * Components logging in to the realm report their logins with
+ * {@link #recordLogin(Duration, Throwable)} or log in with {@link #login(LoginContext)}.
+ * The JDK does not tell which KDC answered, so a login is attributed to the KDC ordered
+ * first, which is the one the JDK tries first once the order is applied. It fails that
+ * KDC if the login could not reach any KDC, or took at least the
+ * {@link #setKdcTimeout(Duration) KDC timeout}, in which case the JDK gave up on the
+ * first KDC and failed over to another one. As logins cannot tell how the other KDCs
+ * fared, only {@link #probe() probes} measure every KDC. Listeners added with
+ * {@link #addOrderChangeListener(Runnable)} are notified whenever the order changes.
+ *
+ * @see GlobalSunJaasKerberosConfig#setKdcLocator(KdcLocator)
+ */
+public class KdcLocator {
+
+	private static final Log LOG = LogFactory.getLog(KdcLocator.class);
+
+	private static final int DEFAULT_KDC_PORT = 88;
+
+	private final String realm;
+
+	private final ConcurrentHashMap<String, KdcStats> stats = new ConcurrentHashMap<String, KdcStats>();
+
+	private final List<Runnable> orderChangeListeners = new CopyOnWriteArrayList<Runnable>();
+
+	private List<String> kdcs;
+
+	private volatile List<String> discoveredKdcs;
+
+	private volatile long discoveredAt;
+
+	private Duration dnsCacheTimeToLive = Duration.ofMinutes(5);
+
+	private double smoothingFactor = 0.3;
+
+	private int failureThreshold = 2;
+
+	private Duration ejectionDuration = Duration.ofSeconds(30);
+
+	private Duration probeTimeout = Duration.ofSeconds(1);
+
+	private Duration kdcTimeout = Duration.ofSeconds(30);
+
+	private Clock clock = Clock.systemUTC();
+
+	/**
+	 * Instantiates a new kdc locator.
+	 * @param realm the realm of the kdcs
+	 */
+	public KdcLocator(String realm) {
+		Assert.hasText(realm, "realm must be specified");
+		this.realm = realm;
+	}
+
+	/**
+	 * Returns the realm of the kdcs.
+	 * @return the realm
+	 */
+	public String getRealm() {
+		return this.realm;
+	}
+
+	/**
+	 * Returns the kdcs of the realm, healthy ones ordered by their average latency
+	 * followed by ejected ones. Kdcs without measurements keep their configured order
+	 * ahead of measured ones, so that they get measured.
+	 * @return the ordered kdcs as <code>host</code> or <code>host:port</code>
+	 */
+	public List<String> getKdcs() {
+		List<String> candidates = getCandidates();
+		long now = this.clock.millis();
+		// snapshot the stats, as they may change while sorting
+		List<Ranking> rankings = new ArrayList<Ranking>(candidates.size());
+		for (int i = 0; i < candidates.size(); i++) {
+			String kdc = candidates.get(i);
+			KdcStats kdcStats = this.stats.get(kdc);
+			rankings.add((kdcStats != null) ? kdcStats.rank(kdc, i, now) : new Ranking(kdc, i, false, -1));
+		}
+		Collections.sort(rankings);
+		List<String> kdcs = new ArrayList<String>(rankings.size());
+		for (Ranking ranking : rankings) {
+			kdcs.add(ranking.kdc);
+		}
+		return kdcs;
+	}
+
+	/**
+	 * Records a successful request to a kdc.
+	 * @param kdc the kdc
+	 * @param latency the latency of the request
+	 */
+	public void recordSuccess(String kdc, Duration latency) {
+		List<String> before = getKdcs();
+		getStats(kdc).record(latency.toMillis(), false, this.clock.millis());
+		notifyIfChanged(before);
+	}
+
+	/**
+	 * Records a failed request to a kdc.
+	 * @param kdc the kdc
+	 */
+	public void recordFailure(String kdc) {
+		List<String> before = getKdcs();
+		getStats(kdc).record(this.probeTimeout.toMillis(), true, this.clock.millis());
+		notifyIfChanged(before);
+	}
+
+	/**
+	 * Records a login to the realm against the kdc ordered first. A login failing with an
+	 * {@link IOException} in its causes, like a timeout, or taking at least the
+	 * {@link #setKdcTimeout(Duration) kdc timeout}, because the JDK failed over to
+	 * another kdc, is recorded as a failure. Any other login, including one with bad
+	 * credentials, is recorded as a success with its latency.
+	 * @param latency the time the login took
+	 * @param failure the exception the login failed with, or {@code null}
+	 */
+	public void recordLogin(Duration latency, Throwable failure) {
+		List<String> kdcs = getKdcs();
+		if (kdcs.isEmpty()) {
+			return;
+		}
+		if (isUnreachable(failure) || latency.compareTo(this.kdcTimeout) >= 0) {
+			recordFailure(kdcs.get(0));
+		}
+		else {
+			recordSuccess(kdcs.get(0), latency);
+		}
+	}
+
+	/**
+	 * Logs in with the given login context, which contacts a kdc of the realm, and
+	 * records the login.
+	 * @param loginContext the login context
+	 * @throws LoginException if the login failed
+	 * @see #recordLogin(Duration, Throwable)
+	 */
+	public void login(LoginContext loginContext) throws LoginException {
+		long start = System.nanoTime();
+		try {
+			loginContext.login();
+		}
+		catch (LoginException ex) {
+			recordLogin(Duration.ofNanos(System.nanoTime() - start), ex);
+			throw ex;
+		}
+		recordLogin(Duration.ofNanos(System.nanoTime() - start), null);
+	}
+
+	/**
+	 * Adds a listener notified whenever the order of the kdcs changed.
+	 * @param listener the listener
+	 */
+	public void addOrderChangeListener(Runnable listener) {
+		Assert.notNull(listener, "listener cannot be null");
+		this.orderChangeListeners.add(listener);
+	}
+
+	/**
+	 * Removes a listener added with {@link #addOrderChangeListener(Runnable)}.
+	 * @param listener the listener
+	 */
+	public void removeOrderChangeListener(Runnable listener) {
+		this.orderChangeListeners.remove(listener);
+	}
+
+	/**
+	 * Measures the latency of each kdc by opening a TCP connection to it.
+	 * @return true if the order of the kdcs changed
+	 */
+	public boolean probe() {
+		List<String> before = getKdcs();
+		for (String kdc : before) {
+			long start = System.nanoTime();
+			try (Socket socket = new Socket()) {
+				socket.connect(toAddress(kdc), (int) this.probeTimeout.toMillis());
+				getStats(kdc).record(Duration.ofNanos(System.nanoTime() - start).toMillis(), false,
+						this.clock.millis());
+			}
+			catch (IOException ex) {
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("Probing KDC " + kdc + " failed", ex);
+				}
+				getStats(kdc).record(this.probeTimeout.toMillis(), true, this.clock.millis());
+			}
+		}
+		return notifyIfChanged(before);
+	}
+
+	/**
+	 * Sets the kdcs of the realm as <code>host</code> or <code>host:port</code>. If not
+	 * set, the kdcs are discovered with DNS SRV records.
+	 * @param kdcs the kdcs
+	 */
+	public void setKdcs(List<String> kdcs) {
+		this.kdcs = (kdcs != null) ? new ArrayList<String>(kdcs) : null;
+	}
+
+	/**
+	 * Sets how long kdcs discovered with DNS are cached. Defaults to 5 minutes.
+	 * @param dnsCacheTimeToLive the time to live of discovered kdcs
+	 */
+	public void setDnsCacheTimeToLive(Duration dnsCacheTimeToLive) {
+		Assert.notNull(dnsCacheTimeToLive, "dnsCacheTimeToLive cannot be null");
+		this.dnsCacheTimeToLive = dnsCacheTimeToLive;
+	}
+
+	/**
+	 * Sets the weight of a new latency in the moving average, between 0 exclusive and 1.
+	 * Defaults to 0.3.
+	 * @param smoothingFactor the smoothing factor
+	 */
+	public void setSmoothingFactor(double smoothingFactor) {
+		Assert.isTrue(smoothingFactor > 0 && smoothingFactor <= 1, "smoothingFactor must be in (0, 1]");
+		this.smoothingFactor = smoothingFactor;
+	}
+
+	/**
+	 * Sets after how many consecutive failures a kdc is ejected. Defaults to 2.
+	 * @param failureThreshold the failure threshold
+	 */
+	public void setFailureThreshold(int failureThreshold) {
+		Assert.isTrue(failureThreshold > 0, "failureThreshold must be positive");
+		this.failureThreshold = failureThreshold;
+	}
+
+	/**
+	 * Sets how long a failing kdc is ejected. Defaults to 30 seconds.
+	 * @param ejectionDuration the ejection duration
+	 */
+	public void setEjectionDuration(Duration ejectionDuration) {
+		Assert.notNull(ejectionDuration, "ejectionDuration cannot be null");
+		this.ejectionDuration = ejectionDuration;
+	}
+
+	/**
+	 * Sets the connect timeout of probes, which is also the latency a failure counts as.
+	 * Defaults to 1 second.
+	 * @param probeTimeout the probe timeout
+	 */
+	public void setProbeTimeout(Duration probeTimeout) {
+		Assert.notNull(probeTimeout, "probeTimeout cannot be null");
+		this.probeTimeout = probeTimeout;
+	}
+
+	/**
+	 * Sets the time the JDK waits for a kdc before it tries the next one, the
+	 * {@code kdc_timeout} of the Kerberos configuration. A login taking at least as long
+	 * is recorded as a failure of the kdc ordered first. Defaults to 30 seconds, the
+	 * default of the JDK.
+	 * @param kdcTimeout the kdc timeout
+	 */
+	public void setKdcTimeout(Duration kdcTimeout) {
+		Assert.notNull(kdcTimeout, "kdcTimeout cannot be null");
+		this.kdcTimeout = kdcTimeout;
+	}
+
+	/**
+	 * Sets the clock used to eject kdcs and expire discovered kdcs.
+	 * @param clock the clock
+	 */
+	public void setClock(Clock clock) {
+		Assert.notNull(clock, "clock cannot be null");
+		this.clock = clock;
+	}
+
+	private List<String> getCandidates() {
+		if (this.kdcs != null) {
+			return this.kdcs;
+		}
+		long now = this.clock.millis();
+		List<String> discovered = this.discoveredKdcs;
+		if (discovered == null || now - this.discoveredAt >= this.dnsCacheTimeToLive.toMillis()) {
+			try {
+				discovered = discover();
+				this.discoveredKdcs = discovered;
+				this.discoveredAt = now;
+			}
+			catch (NamingException ex) {
+				LOG.warn("Discovering KDCs of realm " + this.realm + " failed", ex);
+				if (discovered == null) {
+					return Collections.emptyList();
+				}
+			}
+		}
+		return discovered;
+	}
+
+	private List<String> discover() throws NamingException {
+		Hashtable<String, String> env = new Hashtable<String, String>();
+		env.put("java.naming.factory.initial", "com.sun.jndi.dns.DnsContextFactory");
+		DirContext context = new InitialDirContext(env);
+		final List<String[]> records = new ArrayList<String[]>();
+		try {
+			String name = "_kerberos._tcp." + this.realm.toLowerCase(Locale.ROOT);
+			Attributes attributes = context.getAttributes(name, new String[] { "SRV" });
+			Attribute srv = attributes.get("SRV");
+			if (srv != null) {
+				NamingEnumeration<?> values = srv.getAll();
+				while (values.hasMore()) {
+					// priority weight port target
+					records.add(String.valueOf(values.next()).trim().split("\\s+"));
+				}
+			}
+		}
+		finally {
+			context.close();
+		}
+		Collections.sort(records, new Comparator<String[]>() {
+
+			@Override
+			public int compare(String[] record1, String[] record2) {
+				return Integer.parseInt(record1[0]) - Integer.parseInt(record2[0]);
+			}
+
+		});
+		List<String> kdcs = new ArrayList<String>(records.size());
+		for (String[] record : records) {
+			String host = record[3].endsWith(".") ? record[3].substring(0, record[3].length() - 1) : record[3];
+			kdcs.add(host + ":" + record[2]);
+		}
+		return kdcs;
+	}
+
+	private KdcStats getStats(String kdc) {
+		return this.stats.computeIfAbsent(kdc, (key) -> new KdcStats());
+	}
+
+	private boolean notifyIfChanged(List<String> before) {
+		if (before.equals(getKdcs())) {
+			return false;
+		}
+		for (Runnable listener : this.orderChangeListeners) {
+			try {
+				listener.run();
+			}
+			catch (RuntimeException ex) {
+				LOG.warn("Applying the KDCs of realm " + this.realm + " failed", ex);
+			}
+		}
+		return true;
+	}
+
+	private static boolean isUnreachable(Throwable failure) {
+		for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+			if (cause instanceof IOException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	static InetSocketAddress toAddress(String kdc) {
+		String host = kdc;
+		int port = DEFAULT_KDC_PORT;
+		if (kdc.startsWith("[")) {
+			// [address] or [address]:port
+			int end = kdc.indexOf(']');
+			Assert.isTrue(end > 0, "Invalid KDC address " + kdc);
+			host = kdc.substring(1, end);
+			if (kdc.length() > end + 1) {
+				Assert.isTrue(kdc.charAt(end + 1) == ':', "Invalid KDC address " + kdc);
+				port = Integer.parseInt(kdc.substring(end + 2));
+			}
+		}
+		else if (kdc.indexOf(':') > 0 && kdc.indexOf(':') == kdc.lastIndexOf(':')) {
+			// host:port, while more colons are a bare IPv6 address
+			int index = kdc.indexOf(':');
+			host = kdc.substring(0, index);
+			port = Integer.parseInt(kdc.substring(index + 1));
+		}
+		return new InetSocketAddress(host, port);
+	}
+
+	private final class KdcStats {
+
+		private double averageLatency = -1;
+
+		private int consecutiveFailures;
+
+		private long ejectedUntil;
+
+		private synchronized void record(long latency, boolean failure, long now) {
+			this.averageLatency = (this.averageLatency < 0) ? latency : (KdcLocator.this.smoothingFactor * latency)
+					+ ((1 - KdcLocator.this.smoothingFactor) * this.averageLatency);
+			if (!failure) {
+				this.consecutiveFailures = 0;
+				this.ejectedUntil = 0;
+			}
+			else if (++this.consecutiveFailures >= KdcLocator.this.failureThreshold) {
+				this.ejectedUntil = now + KdcLocator.this.ejectionDuration.toMillis();
+			}
+		}
+
+		private synchronized Ranking rank(String kdc, int index, long now) {
+			return new Ranking(kdc, index, now < this.ejectedUntil, this.averageLatency);
+		}
+
+	}
+
+	private static final class Ranking implements Comparable<Ranking> {
+
+		private final String kdc;
+
+		private final int index;
+
+		private final boolean ejected;
+
+		private final double averageLatency;
+
+		private Ranking(String kdc, int index, boolean ejected, double averageLatency) {
+			this.kdc = kdc;
+			this.index = index;
+			this.ejected = ejected;
+			this.averageLatency = averageLatency;
+		}
+
+		@Override
+		public int compareTo(Ranking other) {
+			if (this.ejected != other.ejected) {
+				return this.ejected ? 1 : -1;
+			}
+			int result = Double.compare(this.averageLatency, other.averageLatency);
+			return (result != 0) ? result : Integer.compare(this.index, other.index);
+		}
+
+	}
+
+}
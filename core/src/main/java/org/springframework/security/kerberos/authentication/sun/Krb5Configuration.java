@@ -0,0 +1,471 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication.sun;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Immutable, parsed Kerberos configuration in the format of <code>krb5.conf</code>.
+ *
+ * <p>
+ * A configuration is parsed once and changed by creating modified copies, for example to
+ * set the kdcs of a realm. Configurations given to different components can be merged
+ * into the configuration of the JVM with {@link GlobalKrb5Configuration}, which allows
+ * components using different realms side by side.
+ *
+ * <p>
+ * Sections hold relations, which are either a value or a group of relations in braces,
+ * and a relation may be repeated. The opening brace of a group may also be on the line
+ * after the name of the relation. The <code>include</code>, <code>includedir</code> and
+ * <code>module</code> directives are not followed, but kept as they are and rendered
+ * ahead of the sections, so that the files they refer to still apply.
+ *
+ * @see GlobalKrb5Configuration
+ */
+public final class Krb5Configuration {
+
+	private static final String[] DIRECTIVES = { "include", "includedir", "module" };
+
+	private static final Krb5Configuration EMPTY = new Krb5Configuration(Collections.<String>emptyList(),
+			Collections.<String, Map<String, List<Object>>>emptyMap());
+
+	private final List<String> directives;
+
+	private final Map<String, Map<String, List<Object>>> sections;
+
+	private Krb5Configuration(List<String> directives, Map<String, Map<String, List<Object>>> sections) {
+		this.directives = directives;
+		this.sections = sections;
+	}
+
+	/**
+	 * Returns an empty configuration.
+	 * @return the empty configuration
+	 */
+	public static Krb5Configuration empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Parses a configuration.
+	 * @param krbConf the configuration in the format of <code>krb5.conf</code>
+	 * @return the parsed configuration
+	 * @throws IllegalArgumentException if the configuration is malformed
+	 */
+	public static Krb5Configuration parse(String krbConf) {
+		List<String> directives = new ArrayList<String>();
+		Map<String, Map<String, List<Object>>> sections = new LinkedHashMap<String, Map<String, List<Object>>>();
+		Deque<Map<String, List<Object>>> groups = new ArrayDeque<Map<String, List<Object>>>();
+		String groupKey = null;
+		int lineNumber = 0;
+		for (String line : krbConf.split("\\r?\\n")) {
+			lineNumber++;
+			String trimmed = line.trim();
+			if (trimmed.isEmpty() || trimmed.startsWith("#") || trimmed.startsWith(";")) {
+				continue;
+			}
+			if (groupKey != null) {
+				// a relation without a value opens a group on the next line
+				if (!"{".equals(trimmed)) {
+					throw malformed(lineNumber, line);
+				}
+				Map<String, List<Object>> group = new LinkedHashMap<String, List<Object>>();
+				add(groups.peek(), groupKey, group);
+				groups.push(group);
+				groupKey = null;
+				continue;
+			}
+			if (groups.size() < 2 && isDirective(trimmed)) {
+				directives.add(trimmed);
+				continue;
+			}
+			if (trimmed.startsWith("[")) {
+				int end = trimmed.indexOf(']');
+				if (end < 0 || groups.size() > 1) {
+					throw malformed(lineNumber, line);
+				}
+				groups.clear();
+				groups.push(section(sections, trimmed.substring(1, end).trim()));
+				continue;
+			}
+			if (groups.isEmpty()) {
+				throw malformed(lineNumber, line);
+			}
+			if (trimmed.startsWith("}")) {
+				if (groups.size() < 2) {
+					throw malformed(lineNumber, line);
+				}
+				groups.pop();
+				continue;
+			}
+			int equals = trimmed.indexOf('=');
+			if (equals <= 0) {
+				throw malformed(lineNumber, line);
+			}
+			String key = trimmed.substring(0, equals).trim();
+			String value = trimmed.substring(equals + 1).trim();
+			if (value.isEmpty()) {
+				groupKey = key;
+			}
+			else if ("{".equals(value)) {
+				Map<String, List<Object>> group = new LinkedHashMap<String, List<Object>>();
+				add(groups.peek(), key, group);
+				groups.push(group);
+			}
+			else {
+				add(groups.peek(), key, unquote(value));
+			}
+		}
+		if (groups.size() > 1 || groupKey != null) {
+			throw new IllegalArgumentException("Unterminated group in Kerberos configuration");
+		}
+		return new Krb5Configuration(Collections.unmodifiableList(directives), freeze(sections));
+	}
+
+	/**
+	 * Loads and parses a configuration.
+	 * @param resource the resource of the configuration
+	 * @return the parsed configuration
+	 * @throws IOException if the resource cannot be read
+	 */
+	public static Krb5Configuration load(Resource resource) throws IOException {
+		try (InputStream in = resource.getInputStream()) {
+			return parse(StreamUtils.copyToString(in, StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * Returns the default realm.
+	 * @return the default realm, or {@code null} if not set
+	 */
+	public String getDefaultRealm() {
+		List<String> values = getValues("libdefaults", "default_realm");
+		return values.isEmpty() ? null : values.get(0);
+	}
+
+	/**
+	 * Returns the configured realms.
+	 * @return the realms
+	 */
+	public Set<String> getRealms() {
+		Map<String, List<Object>> realms = this.sections.get("realms");
+		return (realms != null) ? realms.keySet() : Collections.<String>emptySet();
+	}
+
+	/**
+	 * Returns the kdcs of a realm.
+	 * @param realm the realm
+	 * @return the kdcs, empty if none are configured
+	 */
+	public List<String> getKdcs(String realm) {
+		Map<String, List<Object>> group = getRealm(realm);
+		return (group != null) ? values(group.get("kdc")) : Collections.<String>emptyList();
+	}
+
+	/**
+	 * Returns the <code>include</code>, <code>includedir</code> and <code>module</code>
+	 * directives of this configuration.
+	 * @return the directives as they were given, like
+	 * <code>includedir /etc/krb5.conf.d/</code>
+	 */
+	public List<String> getDirectives() {
+		return this.directives;
+	}
+
+	/**
+	 * Returns the values of a relation of a section, ignoring groups.
+	 * @param section the section
+	 * @param key the key of the relation
+	 * @return the values, empty if the relation is not configured
+	 */
+	public List<String> getValues(String section, String key) {
+		Map<String, List<Object>> relations = this.sections.get(section);
+		return (relations != null) ? values(relations.get(key)) : Collections.<String>emptyList();
+	}
+
+	/**
+	 * Returns a copy of this configuration with the given default realm.
+	 * @param realm the default realm
+	 * @return the modified configuration
+	 */
+	public Krb5Configuration withDefaultRealm(String realm) {
+		return withValue("libdefaults", "default_realm", realm);
+	}
+
+	/**
+	 * Returns a copy of this configuration with a single value for a relation of a
+	 * section.
+	 * @param section the section
+	 * @param key the key of the relation
+	 * @param value the value
+	 * @return the modified configuration
+	 */
+	public Krb5Configuration withValue(String section, String key, String value) {
+		Assert.hasText(section, "section must be specified");
+		Assert.hasText(key, "key must be specified");
+		Assert.notNull(value, "value cannot be null");
+		Map<String, Map<String, List<Object>>> sections = copy(this.sections);
+		section(sections, section).put(key, new ArrayList<Object>(Collections.singletonList(value)));
+		return new Krb5Configuration(this.directives, freeze(sections));
+	}
+
+	/**
+	 * Returns a copy of this configuration with the given kdcs of a realm, adding the
+	 * realm if it is not configured.
+	 * @param realm the realm
+	 * @param kdcs the kdcs as <code>host</code> or <code>host:port</code>
+	 * @return the modified configuration
+	 */
+	public Krb5Configuration withKdcs(String realm, List<String> kdcs) {
+		Assert.hasText(realm, "realm must be specified");
+		Assert.notNull(kdcs, "kdcs cannot be null");
+		Map<String, Map<String, List<Object>>> sections = copy(this.sections);
+		Map<String, List<Object>> realms = section(sections, "realms");
+		Map<String, List<Object>> group = null;
+		if (realms.containsKey(realm)) {
+			for (Object value : realms.get(realm)) {
+				if (value instanceof Map) {
+					group = cast(value);
+				}
+			}
+		}
+		if (group == null) {
+			group = new LinkedHashMap<String, List<Object>>();
+			realms.put(realm, new ArrayList<Object>(Collections.singletonList(group)));
+		}
+		// replacing keeps the position of the kdcs within the realm
+		group.put("kdc", new ArrayList<Object>(kdcs));
+		return new Krb5Configuration(this.directives, freeze(sections));
+	}
+
+	/**
+	 * Returns a copy of this configuration with the relations of the given configuration
+	 * added. Relations of the given configuration replace relations of this configuration
+	 * with the same key, so realms of the given configuration replace realms of the same
+	 * name. Directives of the given configuration are added unless already present.
+	 * @param other the configuration to merge
+	 * @return the merged configuration
+	 */
+	public Krb5Configuration merge(Krb5Configuration other) {
+		List<String> directives = new ArrayList<String>(this.directives);
+		for (String directive : other.directives) {
+			if (!directives.contains(directive)) {
+				directives.add(directive);
+			}
+		}
+		Map<String, Map<String, List<Object>>> sections = copy(this.sections);
+		for (Map.Entry<String, Map<String, List<Object>>> section : other.sections.entrySet()) {
+			Map<String, List<Object>> relations = section(sections, section.getKey());
+			for (Map.Entry<String, List<Object>> relation : copyGroup(section.getValue()).entrySet()) {
+				relations.put(relation.getKey(), relation.getValue());
+			}
+		}
+		return new Krb5Configuration(Collections.unmodifiableList(directives), freeze(sections));
+	}
+
+	/**
+	 * Renders this configuration in the format of <code>krb5.conf</code>.
+	 * @return the rendered configuration
+	 */
+	public String render() {
+		StringBuilder builder = new StringBuilder();
+		for (String directive : this.directives) {
+			builder.append(directive).append('\n');
+		}
+		for (Map.Entry<String, Map<String, List<Object>>> section : this.sections.entrySet()) {
+			if (builder.length() > 0) {
+				builder.append('\n');
+			}
+			builder.append('[').append(section.getKey()).append("]\n");
+			render(builder, section.getValue(), "  ");
+		}
+		return builder.toString();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof Krb5Configuration)) {
+			return false;
+		}
+		Krb5Configuration other = (Krb5Configuration) obj;
+		return this.directives.equals(other.directives) && this.sections.equals(other.sections);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * this.directives.hashCode() + this.sections.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return render();
+	}
+
+	private Map<String, List<Object>> getRealm(String realm) {
+		Map<String, List<Object>> realms = this.sections.get("realms");
+		if (realms == null || !realms.containsKey(realm)) {
+			return null;
+		}
+		for (Object value : realms.get(realm)) {
+			if (value instanceof Map) {
+				return cast(value);
+			}
+		}
+		return null;
+	}
+
+	private static void render(StringBuilder builder, Map<String, List<Object>> group, String indent) {
+		for (Map.Entry<String, List<Object>> relation : group.entrySet()) {
+			for (Object value : relation.getValue()) {
+				builder.append(indent).append(relation.getKey()).append(" = ");
+				if (value instanceof Map) {
+					builder.append("{\n");
+					render(builder, cast(value), indent + "  ");
+					builder.append(indent).append("}\n");
+				}
+				else {
+					builder.append(quote((String) value)).append('\n');
+				}
+			}
+		}
+	}
+
+	private static List<String> values(List<Object> values) {
+		if (values == null) {
+			return Collections.emptyList();
+		}
+		List<String> result = new ArrayList<String>(values.size());
+		for (Object value : values) {
+			if (value instanceof String) {
+				result.add((String) value);
+			}
+		}
+		return Collections.unmodifiableList(result);
+	}
+
+	private static void add(Map<String, List<Object>> group, String key, Object value) {
+		List<Object> values = group.get(key);
+		if (values == null) {
+			values = new ArrayList<Object>();
+			group.put(key, values);
+		}
+		values.add(value);
+	}
+
+	private static boolean isDirective(String line) {
+		for (String directive : DIRECTIVES) {
+			if (line.startsWith(directive) && line.length() > directive.length()
+					&& Character.isWhitespace(line.charAt(directive.length()))) {
+				// unlike a relation of the same name
+				return !line.substring(directive.length()).trim().startsWith("=");
+			}
+		}
+		return false;
+	}
+
+	private static String quote(String value) {
+		// an empty value would open a group on the next line
+		if (value.isEmpty() || !value.equals(value.trim())) {
+			return "\"" + value + "\"";
+		}
+		return value;
+	}
+
+	private static String unquote(String value) {
+		if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+			return value.substring(1, value.length() - 1);
+		}
+		return value;
+	}
+
+	private static Map<String, List<Object>> section(Map<String, Map<String, List<Object>>> sections, String name) {
+		Map<String, List<Object>> section = sections.get(name);
+		if (section == null) {
+			section = new LinkedHashMap<String, List<Object>>();
+			sections.put(name, section);
+		}
+		return section;
+	}
+
+	private static Map<String, Map<String, List<Object>>> copy(Map<String, Map<String, List<Object>>> sections) {
+		Map<String, Map<String, List<Object>>> copy = new LinkedHashMap<String, Map<String, List<Object>>>();
+		for (Map.Entry<String, Map<String, List<Object>>> section : sections.entrySet()) {
+			copy.put(section.getKey(), copyGroup(section.getValue()));
+		}
+		return copy;
+	}
+
+	private static Map<String, List<Object>> copyGroup(Map<String, List<Object>> group) {
+		Map<String, List<Object>> copy = new LinkedHashMap<String, List<Object>>();
+		for (Map.Entry<String, List<Object>> relation : group.entrySet()) {
+			List<Object> values = new ArrayList<Object>(relation.getValue().size());
+			for (Object value : relation.getValue()) {
+				values.add((value instanceof Map) ? copyGroup(cast(value)) : value);
+			}
+			copy.put(relation.getKey(), values);
+		}
+		return copy;
+	}
+
+	private static Map<String, Map<String, List<Object>>> freeze(Map<String, Map<String, List<Object>>> sections) {
+		Map<String, Map<String, List<Object>>> frozen = new LinkedHashMap<String, Map<String, List<Object>>>();
+		for (Map.Entry<String, Map<String, List<Object>>> section : sections.entrySet()) {
+			frozen.put(section.getKey(), freezeGroup(section.getValue()));
+		}
+		return Collections.unmodifiableMap(frozen);
+	}
+
+	private static Map<String, List<Object>> freezeGroup(Map<String, List<Object>> group) {
+		Map<String, List<Object>> frozen = new LinkedHashMap<String, List<Object>>();
+		for (Map.Entry<String, List<Object>> relation : group.entrySet()) {
+			List<Object> values = new ArrayList<Object>(relation.getValue().size());
+			for (Object value : relation.getValue()) {
+				values.add((value instanceof Map) ? freezeGroup(cast(value)) : value);
+			}
+			frozen.put(relation.getKey(), Collections.unmodifiableList(values));
+		}
+		return Collections.unmodifiableMap(frozen);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, List<Object>> cast(Object group) {
+		return (Map<String, List<Object>>) group;
+	}
+
+	private static IllegalArgumentException malformed(int lineNumber, String line) {
+		return new IllegalArgumentException(
+				"Malformed Kerberos configuration at line " + lineNumber + ": " + line.trim());
+	}
+
+}
@@ -52,17 +52,33 @@ public class SunJaasKerberosClient implements KerberosClient {
 
 	private boolean multiTier = false;
 
+	private Krb5Configuration krb5Configuration;
+
+	private volatile boolean krb5ConfigurationApplied;
+
+	private KdcLocator kdcLocator;
+
 	private static final Log LOG = LogFactory.getLog(SunJaasKerberosClient.class);
 
 	@Override
 	public JaasSubjectHolder login(String username, String password) {
 		LOG.debug("Trying to authenticate " + username + " with Kerberos");
 		JaasSubjectHolder result;
+		if (this.krb5Configuration != null && !this.krb5ConfigurationApplied) {
+			GlobalKrb5Configuration.apply(this.krb5Configuration);
+			this.krb5ConfigurationApplied = true;
+		}
 
 		try {
 			LoginContext loginContext = new LoginContext("", null,
-					new KerberosClientCallbackHandler(username, password), new LoginConfig(this.debug));
-			loginContext.login();
+					new KerberosClientCallbackHandler(username, password), new LoginConfig(this.debug,
+							this.krb5Configuration != null && GlobalKrb5Configuration.isLoginRefreshRequired()));
+			if (this.kdcLocator != null) {
+				this.kdcLocator.login(loginContext);
+			}
+			else {
+				loginContext.login();
+			}
 
 			Subject jaasSubject = loginContext.getSubject();
 
@@ -85,6 +101,15 @@ public class SunJaasKerberosClient implements KerberosClient {
 		return result;
 	}
 
+	/**
+	 * Sets the locator the logins of this client are reported to.
+	 * @param kdcLocator the kdc locator of the realm of the users
+	 * @see KdcLocator#login(LoginContext)
+	 */
+	public void setKdcLocator(KdcLocator kdcLocator) {
+		this.kdcLocator = kdcLocator;
+	}
+
 	public void setDebug(boolean debug) {
 		this.debug = debug;
 	}
@@ -93,13 +118,30 @@ public class SunJaasKerberosClient implements KerberosClient {
 		this.multiTier = multiTier;
 	}
 
+	/**
+	 * Sets the Kerberos configuration of this client, which is merged into the
+	 * configuration of the JVM before the first login. Kdcs and other settings of its
+	 * realms are kept side by side with those of other components. If the configuration
+	 * of the JDK cannot be refreshed, the logins of this client re-read it with
+	 * <code>refreshKrb5Config</code>.
+	 * @param krb5Configuration the Kerberos configuration
+	 * @see GlobalKrb5Configuration
+	 */
+	public void setKrb5Configuration(Krb5Configuration krb5Configuration) {
+		this.krb5Configuration = krb5Configuration;
+		this.krb5ConfigurationApplied = false;
+	}
+
 	private static class LoginConfig extends Configuration {
 
 		private boolean debug;
 
-		LoginConfig(boolean debug) {
+		private boolean refreshKrb5Config;
+
+		LoginConfig(boolean debug, boolean refreshKrb5Config) {
 			super();
 			this.debug = debug;
+			this.refreshKrb5Config = refreshKrb5Config;
 		}
 
 		@Override
@@ -109,6 +151,9 @@ public class SunJaasKerberosClient implements KerberosClient {
 			if (this.debug) {
 				options.put("debug", "true");
 			}
+			if (this.refreshKrb5Config) {
+				options.put("refreshKrb5Config", "true");
+			}
 
 			return new AppConfigurationEntry[] {
 					new AppConfigurationEntry("com.sun.security.auth.module.Krb5LoginModule",
@@ -0,0 +1,467 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication.sun;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.security.auth.Subject;
+import javax.security.auth.kerberos.KerberosPrincipal;
+import javax.security.auth.kerberos.KerberosTicket;
+import javax.security.auth.login.LoginContext;
+import javax.security.auth.login.LoginException;
+
+import com.sun.security.jgss.ExtendedGSSCredential;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.ietf.jgss.GSSContext;
+import org.ietf.jgss.GSSCredential;
+import org.ietf.jgss.GSSException;
+import org.ietf.jgss.GSSManager;
+import org.ietf.jgss.GSSName;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.Resource;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.kerberos.authentication.JaasSubjectHolder;
+import org.springframework.security.kerberos.authentication.KerberosMultiTier;
+import org.springframework.security.kerberos.authentication.support.ExpiringCache;
+import org.springframework.util.Assert;
+
+/**
+ * Creates tickets for other services on behalf of users with Kerberos constrained
+ * delegation, using the SUN JAAS login module and the JDK's S4U support.
+ *
+ * <p>
+ * Unlike {@link KerberosMultiTier}, this does not need a delegated ticket granting ticket
+ * of the user, so it also works for users which did not authenticate with Kerberos, for
+ * example with a form login or a certificate. The service logs in with its own keytab and
+ * obtains a ticket for the user to itself (S4U2Self), which it then uses to obtain
+ * tickets for the user to other services (S4U2Proxy). The service account needs to be
+ * allowed to delegate to those services, and for users which did not authenticate with
+ * Kerberos it needs protocol transition.
+ *
+ * <p>
+ * The impersonation credential of a user is cached together with the tickets obtained
+ * with it, so a service fanning out to many other services on behalf of the same user
+ * only contacts the KDC for the first call to each service. Concurrent calls for a user
+ * without a cached credential share one impersonation, so a burst of requests of the same
+ * user obtains its credential from the KDC once.
+ *
+ * @see KerberosMultiTier
+ */
+public class SunJaasKerberosConstrainedDelegation implements InitializingBean {
+
+	private static final Log LOG = LogFactory.getLog(SunJaasKerberosConstrainedDelegation.class);
+
+	private String servicePrincipal;
+
+	private String realmName;
+
+	private Resource keyTabLocation;
+
+	private boolean debug = false;
+
+	private boolean refreshKrb5Config = false;
+
+	private Krb5Configuration krb5Configuration;
+
+	private KdcLocator kdcLocator;
+
+	private int maxCachedUsers = 1000;
+
+	private Duration cacheTimeToLive = Duration.ofMinutes(10);
+
+	private Duration renewalThreshold = Duration.ofMinutes(5);
+
+	private Clock clock = Clock.systemUTC();
+
+	private ExpiringCache<String, Impersonation> impersonations;
+
+	private final ConcurrentHashMap<String, CompletableFuture<Impersonation>> pendingImpersonations = new ConcurrentHashMap<String, CompletableFuture<Impersonation>>();
+
+	private volatile ServiceLogin serviceLogin;
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(this.servicePrincipal, "servicePrincipal must be specified");
+		Assert.notNull(this.keyTabLocation, "keyTab must be specified");
+		if (this.krb5Configuration != null) {
+			GlobalKrb5Configuration.apply(this.krb5Configuration);
+		}
+		this.impersonations = new ExpiringCache<>(this.maxCachedUsers, this.cacheTimeToLive, this.clock);
+		this.serviceLogin = login();
+	}
+
+	/**
+	 * Creates a new token for the target service on behalf of the given user.
+	 * @param username the name of the user
+	 * @param targetService the target service principal
+	 * @return the token
+	 */
+	public byte[] createToken(String username, final String targetService) {
+		final Impersonation impersonation = impersonate(username);
+		try {
+			return Subject.doAs(impersonation.subject, new PrivilegedExceptionAction<byte[]>() {
+
+				@Override
+				public byte[] run() throws GSSException {
+					GSSManager manager = GSSManager.getInstance();
+					GSSName serverName = manager.createName(targetService, GSSName.NT_USER_NAME);
+					GSSContext context = manager.createContext(serverName, KerberosMultiTier.KERBEROS_OID,
+							impersonation.credential, GSSContext.DEFAULT_LIFETIME);
+					try {
+						context.requestMutualAuth(false);
+						byte[] inToken = new byte[0];
+						return context.initSecContext(inToken, 0, inToken.length);
+					}
+					finally {
+						context.dispose();
+					}
+				}
+
+			});
+		}
+		catch (PrivilegedActionException ex) {
+			throw new BadCredentialsException("Kerberos constrained delegation failed", ex.getException());
+		}
+	}
+
+	/**
+	 * Creates a new token for the target service on behalf of the user of the given
+	 * holder and stores it in the holder.
+	 * @param jaasSubjectHolder the holder of the user
+	 * @param targetService the target service principal
+	 * @see JaasSubjectHolder#getToken(String)
+	 */
+	public void authenticateService(JaasSubjectHolder jaasSubjectHolder, String targetService) {
+		Assert.hasText(jaasSubjectHolder.getUsername(), "username of jaasSubjectHolder must be set");
+		jaasSubjectHolder.addToken(targetService, createToken(jaasSubjectHolder.getUsername(), targetService));
+	}
+
+	/**
+	 * Returns a credential of the given user, obtained with S4U2Self, which can be used
+	 * to initiate contexts with services the service principal is allowed to delegate to.
+	 * @param username the name of the user
+	 * @return the impersonation credential
+	 */
+	public GSSCredential getImpersonationCredential(String username) {
+		return impersonate(username).credential;
+	}
+
+	/**
+	 * Removes the cached credentials of all users.
+	 */
+	public void clearCache() {
+		this.impersonations.clear();
+	}
+
+	/**
+	 * The service principal of the application, its keytab must contain the key for this
+	 * principal.
+	 * @param servicePrincipal service principal to use
+	 */
+	public void setServicePrincipal(String servicePrincipal) {
+		this.servicePrincipal = servicePrincipal;
+	}
+
+	/**
+	 * The realm name of the application.
+	 * @param realmName the realm name
+	 */
+	public void setRealmName(String realmName) {
+		this.realmName = realmName;
+	}
+
+	/**
+	 * The location of the keytab.
+	 * @param keyTabLocation The location where the keytab resides
+	 * @see SunJaasKerberosTicketValidator#setKeyTabLocation(Resource)
+	 */
+	public void setKeyTabLocation(Resource keyTabLocation) {
+		this.keyTabLocation = keyTabLocation;
+	}
+
+	/**
+	 * Enables the debug mode of the JAAS Kerberos login module.
+	 * @param debug default is false
+	 */
+	public void setDebug(boolean debug) {
+		this.debug = debug;
+	}
+
+	/**
+	 * Enables configuration to be refreshed before the login method is called.
+	 * @param refreshKrb5Config default is false
+	 */
+	public void setRefreshKrb5Config(boolean refreshKrb5Config) {
+		this.refreshKrb5Config = refreshKrb5Config;
+	}
+
+	/**
+	 * Sets the Kerberos configuration of this service, which is merged into the
+	 * configuration of the JVM before the service logs in. Kdcs and other settings of its
+	 * realms are kept side by side with those of other components, so
+	 * <code>refreshKrb5Config</code> is not needed, unless the configuration of the JDK
+	 * cannot be refreshed and the logins enable it by themselves.
+	 * @param krb5Configuration the Kerberos configuration
+	 * @see GlobalKrb5Configuration
+	 */
+	public void setKrb5Configuration(Krb5Configuration krb5Configuration) {
+		this.krb5Configuration = krb5Configuration;
+	}
+
+	/**
+	 * Sets the locator the logins of the service are reported to.
+	 * @param kdcLocator the kdc locator of the realm of the service
+	 * @see KdcLocator#login(LoginContext)
+	 */
+	public void setKdcLocator(KdcLocator kdcLocator) {
+		this.kdcLocator = kdcLocator;
+	}
+
+	/**
+	 * Sets how many users the credentials are cached for and how long at most. Defaults
+	 * to 1000 users for 10 minutes. Credentials are never used beyond their own lifetime.
+	 * @param maxCachedUsers the maximum number of cached users
+	 * @param cacheTimeToLive the maximum time credentials are cached
+	 */
+	public void setCache(int maxCachedUsers, Duration cacheTimeToLive) {
+		Assert.notNull(cacheTimeToLive, "cacheTimeToLive cannot be null");
+		this.maxCachedUsers = maxCachedUsers;
+		this.cacheTimeToLive = cacheTimeToLive;
+	}
+
+	/**
+	 * Returns the cache holding the impersonation credentials, for example to monitor it.
+	 * @return the cache of credentials, or {@code null} before the bean is initialized
+	 */
+	public ExpiringCache<?, ?> getCache() {
+		return this.impersonations;
+	}
+
+	/**
+	 * Sets how long before the expiry of the ticket granting ticket of the service it
+	 * logs in again, and how long before their expiry cached credentials are no longer
+	 * used. Default is 5 minutes.
+	 * @param renewalThreshold the renewal threshold
+	 */
+	public void setRenewalThreshold(Duration renewalThreshold) {
+		Assert.notNull(renewalThreshold, "renewalThreshold cannot be null");
+		this.renewalThreshold = renewalThreshold;
+	}
+
+	/**
+	 * Sets the clock used to expire cached credentials and to renew the login of the
+	 * service.
+	 * @param clock the clock
+	 */
+	public void setClock(Clock clock) {
+		Assert.notNull(clock, "clock cannot be null");
+		this.clock = clock;
+	}
+
+	private Impersonation impersonate(String username) {
+		Assert.hasText(username, "username must be specified");
+		Impersonation impersonation = this.impersonations.get(username);
+		if (impersonation != null) {
+			return impersonation;
+		}
+		CompletableFuture<Impersonation> pendingImpersonation = new CompletableFuture<Impersonation>();
+		CompletableFuture<Impersonation> existing = this.pendingImpersonations.putIfAbsent(username,
+				pendingImpersonation);
+		if (existing != null) {
+			try {
+				return existing.join();
+			}
+			catch (CompletionException ex) {
+				if (ex.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) ex.getCause();
+				}
+				throw (Error) ex.getCause();
+			}
+		}
+		try {
+			impersonation = this.impersonations.get(username);
+			if (impersonation == null) {
+				impersonation = newImpersonation(username);
+			}
+			pendingImpersonation.complete(impersonation);
+			return impersonation;
+		}
+		catch (RuntimeException | Error ex) {
+			pendingImpersonation.completeExceptionally(ex);
+			throw ex;
+		}
+		finally {
+			this.pendingImpersonations.remove(username, pendingImpersonation);
+		}
+	}
+
+	private Impersonation newImpersonation(String username) {
+		ServiceLogin login = getServiceLogin();
+		// each user gets its own subject, so that the tickets obtained for the user are
+		// evicted together with the credential
+		Subject subject = JaasUtil.copySubject(login.subject);
+		try {
+			GSSCredential credential = impersonate(login.credential, subject, username);
+			Impersonation impersonation = new Impersonation(subject, credential);
+			long lifetime = (credential.getRemainingLifetime() * 1000L) - this.renewalThreshold.toMillis();
+			this.impersonations.put(username, impersonation, this.clock.millis() + lifetime);
+			return impersonation;
+		}
+		catch (PrivilegedActionException ex) {
+			throw new BadCredentialsException("Kerberos impersonation failed", ex.getException());
+		}
+		catch (GSSException ex) {
+			throw new BadCredentialsException("Kerberos impersonation failed", ex);
+		}
+	}
+
+	/**
+	 * Obtains a credential of the user for the service with S4U2Self.
+	 * @param serviceCredential the credential of the service
+	 * @param subject the subject the tickets for the user are stored in
+	 * @param username the name of the user
+	 * @return the impersonation credential
+	 * @throws PrivilegedActionException if the KDC refused the impersonation
+	 */
+	GSSCredential impersonate(final GSSCredential serviceCredential, Subject subject, final String username)
+			throws PrivilegedActionException {
+		return Subject.doAs(subject, new PrivilegedExceptionAction<GSSCredential>() {
+
+			@Override
+			public GSSCredential run() throws GSSException {
+				GSSManager manager = GSSManager.getInstance();
+				GSSName userName = manager.createName(username, GSSName.NT_USER_NAME);
+				return ((ExtendedGSSCredential) serviceCredential).impersonate(userName);
+			}
+
+		});
+	}
+
+	private ServiceLogin getServiceLogin() {
+		ServiceLogin login = this.serviceLogin;
+		if (login.renewAt > this.clock.millis()) {
+			return login;
+		}
+		synchronized (this) {
+			login = this.serviceLogin;
+			if (login.renewAt <= this.clock.millis()) {
+				try {
+					login = login();
+				}
+				catch (LoginException | GSSException | PrivilegedActionException ex) {
+					throw new BadCredentialsException("Kerberos login of service failed", ex);
+				}
+				this.serviceLogin = login;
+			}
+			return login;
+		}
+	}
+
+	/**
+	 * Logs the service in with its keytab.
+	 * @return the login of the service
+	 * @throws LoginException if the login failed
+	 * @throws GSSException if no credential could be created for the login
+	 * @throws PrivilegedActionException if no credential could be created for the login
+	 */
+	ServiceLogin login() throws LoginException, GSSException, PrivilegedActionException {
+		String keyTabLocationAsString;
+		try {
+			keyTabLocationAsString = SunJaasKerberosTicketValidator.getKeyTabPath(this.keyTabLocation);
+		}
+		catch (IOException ex) {
+			LoginException le = new LoginException(ex.getMessage());
+			le.initCause(ex);
+			throw le;
+		}
+		SunJaasKerberosTicketValidator.LoginConfig loginConfig = new SunJaasKerberosTicketValidator.LoginConfig(
+				keyTabLocationAsString, this.servicePrincipal, this.realmName, true, this.debug, this.refreshKrb5Config
+						|| (this.krb5Configuration != null && GlobalKrb5Configuration.isLoginRefreshRequired()));
+		Set<Principal> princ = new HashSet<Principal>(1);
+		princ.add(new KerberosPrincipal(this.servicePrincipal));
+		Subject sub = new Subject(false, princ, new HashSet<Object>(), new HashSet<Object>());
+		LoginContext lc = new LoginContext("", sub, null, loginConfig);
+		if (this.kdcLocator != null) {
+			this.kdcLocator.login(lc);
+		}
+		else {
+			lc.login();
+		}
+		final Subject subject = lc.getSubject();
+		GSSCredential credential = Subject.doAs(subject, new PrivilegedExceptionAction<GSSCredential>() {
+
+			@Override
+			public GSSCredential run() throws GSSException {
+				return GSSManager.getInstance().createCredential(null, GSSCredential.DEFAULT_LIFETIME,
+						KerberosMultiTier.KERBEROS_OID, GSSCredential.INITIATE_ONLY);
+			}
+
+		});
+		long renewAt = Long.MAX_VALUE;
+		for (KerberosTicket ticket : subject.getPrivateCredentials(KerberosTicket.class)) {
+			if (ticket.getServer().getName().startsWith("krbtgt/") && ticket.getEndTime() != null) {
+				renewAt = Math.min(renewAt, ticket.getEndTime().getTime() - this.renewalThreshold.toMillis());
+			}
+		}
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Logged in " + this.servicePrincipal + " for constrained delegation");
+		}
+		return new ServiceLogin(subject, credential, renewAt);
+	}
+
+	static final class ServiceLogin {
+
+		private final Subject subject;
+
+		private final GSSCredential credential;
+
+		private final long renewAt;
+
+		ServiceLogin(Subject subject, GSSCredential credential, long renewAt) {
+			this.subject = subject;
+			this.credential = credential;
+			this.renewAt = renewAt;
+		}
+
+	}
+
+	private static final class Impersonation {
+
+		private final Subject subject;
+
+		private final GSSCredential credential;
+
+		private Impersonation(Subject subject, GSSCredential credential) {
+			this.subject = subject;
+			this.credential = credential;
+		}
+
+	}
+
+}
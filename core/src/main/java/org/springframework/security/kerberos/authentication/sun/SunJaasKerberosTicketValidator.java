@@ -16,15 +16,22 @@
 
 package org.springframework.security.kerberos.authentication.sun;
 
+import java.io.IOException;
 import java.security.Principal;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
+import java.time.Duration;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.security.auth.Subject;
+import javax.security.auth.kerberos.KerberosKey;
 import javax.security.auth.kerberos.KerberosPrincipal;
+import javax.security.auth.kerberos.KerberosTicket;
+import javax.security.auth.kerberos.KeyTab;
 import javax.security.auth.login.AppConfigurationEntry;
 import javax.security.auth.login.Configuration;
 import javax.security.auth.login.LoginContext;
@@ -42,8 +49,10 @@ import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.kerberos.authentication.JaasSubjectHolder;
+import org.springframework.security.kerberos.authentication.KerberosReplayCache;
 import org.springframework.security.kerberos.authentication.KerberosTicketValidation;
 import org.springframework.security.kerberos.authentication.KerberosTicketValidator;
+import org.springframework.security.kerberos.authentication.TicketValidationOverloadedException;
 import org.springframework.util.Assert;
 
 /**
@@ -74,24 +83,74 @@ public class SunJaasKerberosTicketValidator implements KerberosTicketValidator,
 
 	private boolean refreshKrb5Config = false;
 
+	private Krb5Configuration krb5Configuration;
+
+	private KdcLocator kdcLocator;
+
+	private KerberosReplayCache replayCache;
+
+	private volatile int loginKeyVersion = -1;
+
+	private final AtomicLong validations = new AtomicLong();
+
+	private final AtomicLong failedValidations = new AtomicLong();
+
+	private final AtomicLong validationTime = new AtomicLong();
+
 	private static final Log LOG = LogFactory.getLog(SunJaasKerberosTicketValidator.class);
 
+	// entries of a replay cache expire every second
+	private static final Duration REPLAY_CACHE_RETRY_AFTER = Duration.ofSeconds(1);
+
 	@Override
 	public KerberosTicketValidation validateTicket(byte[] token) {
+		long start = System.nanoTime();
+		boolean valid = false;
+		boolean stored = false;
 		try {
+			if (this.replayCache != null) {
+				checkReplay(token);
+				stored = true;
+			}
+			KerberosTicketValidation validation;
 			if (!this.multiTier) {
-				return Subject.doAs(this.serviceSubject, new KerberosValidateAction(token));
+				validation = Subject.doAs(this.serviceSubject, new KerberosValidateAction(token));
 			}
-
-			Subject subjectCopy = JaasUtil.copySubject(this.serviceSubject);
-			JaasSubjectHolder subjectHolder = new JaasSubjectHolder(subjectCopy);
-
-			return Subject.doAs(subjectHolder.getJaasSubject(), new KerberosMultitierValidateAction(token));
-
+			else {
+				Subject subjectCopy = JaasUtil.copySubject(this.serviceSubject);
+				JaasSubjectHolder subjectHolder = new JaasSubjectHolder(subjectCopy);
+				validation = Subject.doAs(subjectHolder.getJaasSubject(), new KerberosMultitierValidateAction(token));
+			}
+			valid = true;
+			return validation;
 		}
 		catch (PrivilegedActionException ex) {
 			throw new BadCredentialsException("Kerberos validation not successful", ex);
 		}
+		finally {
+			this.validations.incrementAndGet();
+			this.validationTime.addAndGet(System.nanoTime() - start);
+			if (!valid) {
+				this.failedValidations.incrementAndGet();
+				if (stored) {
+					this.replayCache.remove(token);
+				}
+			}
+		}
+	}
+
+	private void checkReplay(byte[] token) {
+		switch (this.replayCache.store(token)) {
+			case STORED:
+				return;
+			case REPLAY:
+				throw new BadCredentialsException("Kerberos validation not successful, token is a replay");
+			case OVERFLOW:
+				throw new TicketValidationOverloadedException(
+						"Kerberos validation not successful, replay cache is full", REPLAY_CACHE_RETRY_AFTER);
+			default:
+				throw new BadCredentialsException("Kerberos validation not successful, token is malformed");
+		}
 	}
 
 	@Override
@@ -102,22 +161,118 @@ public class SunJaasKerberosTicketValidator implements KerberosTicketValidator,
 			LOG.warn(
 					"Your keytab is in the classpath. This file needs special protection and shouldn't be in the classpath. JAAS may also not be able to load this file from classpath.");
 		}
-		String keyTabLocationAsString = this.keyTabLocation.getURL().toExternalForm();
-		// We need to remove the file prefix (if there is one), as it is not supported in
-		// Java 7 anymore.
-		// As Java 6 accepts it with and without the prefix, we don't need to check for
-		// Java 7
-		if (keyTabLocationAsString.startsWith("file:")) {
-			keyTabLocationAsString = keyTabLocationAsString.substring(5);
+		if (this.krb5Configuration != null) {
+			GlobalKrb5Configuration.apply(this.krb5Configuration);
 		}
+		String keyTabLocationAsString = getKeyTabPath(this.keyTabLocation);
 		LoginConfig loginConfig = new LoginConfig(keyTabLocationAsString, this.servicePrincipal, this.realmName,
-				this.multiTier, this.debug, this.refreshKrb5Config);
+				this.multiTier, this.debug, this.refreshKrb5Config
+						|| (this.krb5Configuration != null && GlobalKrb5Configuration.isLoginRefreshRequired()));
 		Set<Principal> princ = new HashSet<Principal>(1);
 		princ.add(new KerberosPrincipal(this.servicePrincipal));
 		Subject sub = new Subject(false, princ, new HashSet<Object>(), new HashSet<Object>());
 		LoginContext lc = new LoginContext("", sub, null, loginConfig);
-		lc.login();
+		if (this.multiTier && this.kdcLocator != null) {
+			this.kdcLocator.login(lc);
+		}
+		else {
+			lc.login();
+		}
 		this.serviceSubject = lc.getSubject();
+		this.loginKeyVersion = getKeyVersion(this.serviceSubject);
+	}
+
+	/**
+	 * Returns the highest version of the keys of the service principal when the service
+	 * logged in.
+	 * @return the key version number, or -1 if the service did not log in yet or no key
+	 * was found
+	 */
+	public int getLoginKeyVersion() {
+		return this.loginKeyVersion;
+	}
+
+	/**
+	 * Reads the highest version of the keys of the service principal from the keytab the
+	 * service logged in with. Incoming tickets are decrypted with the current keys of the
+	 * keytab, so a version lower than the {@link #getLoginKeyVersion() login key version}
+	 * means that the keytab was replaced with an outdated one.
+	 * @return the key version number, or -1 if the service did not log in yet or no key
+	 * was found
+	 */
+	public int getKeyTabKeyVersion() {
+		Subject subject = this.serviceSubject;
+		return (subject != null) ? getKeyVersion(subject) : -1;
+	}
+
+	/**
+	 * Returns the end time of the ticket granting ticket of the service, which is only
+	 * obtained in {@link #setMultiTier(boolean) multi tier} mode.
+	 * @return the end time, or {@code null} if the service holds no ticket granting
+	 * ticket
+	 */
+	public Date getTicketGrantingTicketEndTime() {
+		Subject subject = this.serviceSubject;
+		if (subject == null) {
+			return null;
+		}
+		for (KerberosTicket ticket : subject.getPrivateCredentials(KerberosTicket.class)) {
+			if (ticket.getServer().getName().startsWith("krbtgt/")) {
+				return ticket.getEndTime();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the number of validated tickets, including failed validations.
+	 * @return the number of validations
+	 */
+	public long getValidationCount() {
+		return this.validations.get();
+	}
+
+	/**
+	 * Returns the number of tickets which failed to validate.
+	 * @return the number of failed validations
+	 */
+	public long getFailedValidationCount() {
+		return this.failedValidations.get();
+	}
+
+	/**
+	 * Returns the total time spent validating tickets.
+	 * @return the total validation time in nanoseconds
+	 */
+	public long getTotalValidationTime() {
+		return this.validationTime.get();
+	}
+
+	private int getKeyVersion(Subject subject) {
+		int version = -1;
+		for (KerberosKey key : subject.getPrivateCredentials(KerberosKey.class)) {
+			version = Math.max(version, key.getVersionNumber());
+		}
+		KerberosPrincipal principal = new KerberosPrincipal(this.servicePrincipal);
+		for (KeyTab keyTab : subject.getPrivateCredentials(KeyTab.class)) {
+			// reads the keytab file again
+			for (KerberosKey key : keyTab.getKeys(principal)) {
+				version = Math.max(version, key.getVersionNumber());
+			}
+		}
+		return version;
+	}
+
+	static String getKeyTabPath(Resource keyTabLocation) throws IOException {
+		String keyTabLocationAsString = keyTabLocation.getURL().toExternalForm();
+		// We need to remove the file prefix (if there is one), as it is not supported in
+		// Java 7 anymore.
+		// As Java 6 accepts it with and without the prefix, we don't need to check for
+		// Java 7
+		if (keyTabLocationAsString.startsWith("file:")) {
+			keyTabLocationAsString = keyTabLocationAsString.substring(5);
+		}
+		return keyTabLocationAsString;
 	}
 
 	/**
@@ -131,6 +286,14 @@ public class SunJaasKerberosTicketValidator implements KerberosTicketValidator,
 		this.servicePrincipal = servicePrincipal;
 	}
 
+	/**
+	 * Returns the service principal of the application.
+	 * @return the service principal
+	 */
+	public String getServicePrincipal() {
+		return this.servicePrincipal;
+	}
+
 	/**
 	 * The realm name of the application. For web apps this is <code>DOMAIN</code>
 	 * @param realmName
@@ -146,6 +309,25 @@ public class SunJaasKerberosTicketValidator implements KerberosTicketValidator,
 		this.multiTier = multiTier;
 	}
 
+	/**
+	 * Returns whether the service obtains tickets for other services on behalf of users.
+	 * @return true in multi tier mode
+	 */
+	public boolean isMultiTier() {
+		return this.multiTier;
+	}
+
+	/**
+	 * Sets the locator the login of the service is reported to in
+	 * {@link #setMultiTier(boolean) multi tier} mode, in which the service obtains a
+	 * ticket granting ticket from a kdc.
+	 * @param kdcLocator the kdc locator of the realm of the service
+	 * @see KdcLocator#login(LoginContext)
+	 */
+	public void setKdcLocator(KdcLocator kdcLocator) {
+		this.kdcLocator = kdcLocator;
+	}
+
 	/**
 	 * <p>
 	 * The location of the keytab. You can use the normale Spring Resource prefixes like
@@ -161,6 +343,14 @@ public class SunJaasKerberosTicketValidator implements KerberosTicketValidator,
 		this.keyTabLocation = keyTabLocation;
 	}
 
+	/**
+	 * Returns the location of the keytab.
+	 * @return the keytab location
+	 */
+	public Resource getKeyTabLocation() {
+		return this.keyTabLocation;
+	}
+
 	/**
 	 * Enables the debug mode of the JAAS Kerberos login module.
 	 * @param debug default is false
@@ -175,7 +365,9 @@ public class SunJaasKerberosTicketValidator implements KerberosTicketValidator,
 	 * behaviour).
 	 * <p>
 	 * Holding on to the GSS context allows decrypt and encrypt operations for subsequent
-	 * interactions with the principal.
+	 * interactions with the principal. Retained contexts should be tracked with a
+	 * {@link org.springframework.security.kerberos.authentication.GSSContextRegistry},
+	 * which disposes them once they are no longer used.
 	 * @param holdOnToGSSContext true if should hold on to context
 	 */
 	public void setHoldOnToGSSContext(boolean holdOnToGSSContext) {
@@ -191,6 +383,41 @@ public class SunJaasKerberosTicketValidator implements KerberosTicketValidator,
 		this.refreshKrb5Config = refreshKrb5Config;
 	}
 
+	/**
+	 * Sets the Kerberos configuration of this validator, which is merged into the
+	 * configuration of the JVM before the service logs in. Kdcs and other settings of its
+	 * realms are kept side by side with those of other components, so
+	 * <code>refreshKrb5Config</code> is not needed, unless the configuration of the JDK
+	 * cannot be refreshed and the login enables it by itself.
+	 * @param krb5Configuration the Kerberos configuration
+	 * @see GlobalKrb5Configuration
+	 */
+	public void setKrb5Configuration(Krb5Configuration krb5Configuration) {
+		this.krb5Configuration = krb5Configuration;
+	}
+
+	/**
+	 * Sets a replay cache checked before tokens are accepted. Tokens which fail to
+	 * validate are removed from it again, so that only accepted authenticators are kept.
+	 * Replayed and malformed tokens fail with a {@link BadCredentialsException}, while
+	 * tokens arriving when the cache is full fail with a
+	 * {@link TicketValidationOverloadedException}, as they may well be valid. The replay
+	 * cache of the JDK is still used unless it is disabled with
+	 * {@link GlobalSunJaasKerberosConfig#setJdkReplayCache(String)}.
+	 * @param replayCache the replay cache
+	 */
+	public void setReplayCache(KerberosReplayCache replayCache) {
+		this.replayCache = replayCache;
+	}
+
+	/**
+	 * Returns the replay cache checked before tokens are accepted.
+	 * @return the replay cache, or {@code null} if none is set
+	 */
+	public KerberosReplayCache getReplayCache() {
+		return this.replayCache;
+	}
+
 	/**
 	 * This class is needed, because the validation must run with previously generated
 	 * JAAS subject which belongs to the service principal and was loaded out of the
@@ -276,7 +503,7 @@ public class SunJaasKerberosTicketValidator implements KerberosTicketValidator,
 	 * Module, with this class it is not needed and you can have different configurations
 	 * in one JVM.
 	 */
-	private static class LoginConfig extends Configuration {
+	static class LoginConfig extends Configuration {
 
 		private String keyTabLocation;
 
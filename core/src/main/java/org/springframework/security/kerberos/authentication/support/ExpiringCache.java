@@ -0,0 +1,301 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication.support;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.util.Assert;
+
+/**
+ * Thread safe cache of a bounded number of entries, each expiring at its own time.
+ *
+ * <p>
+ * Lookups do not lock. Entries are put and removed under a lock, which keeps the cache
+ * within its maximum size, and kept in a list in the order they were put. A put into a
+ * full cache evicts the entry which was put first, live or not, so that puts take
+ * constant time. Expired entries are never returned and are evicted lazily, when they are
+ * looked up, when they are the oldest entry of the cache or with {@link #evictExpired()}.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class ExpiringCache<K, V> {
+
+	private final ConcurrentHashMap<K, Entry<K, V>> entries = new ConcurrentHashMap<K, Entry<K, V>>();
+
+	private final Object lock = new Object();
+
+	private Entry<K, V> head;
+
+	private Entry<K, V> tail;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong puts = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	private final int maxSize;
+
+	private final Duration timeToLive;
+
+	private final Clock clock;
+
+	/**
+	 * Instantiates a new expiring cache.
+	 * @param maxSize the maximum number of entries
+	 * @param timeToLive the time to live of entries put without an explicit expiry
+	 */
+	public ExpiringCache(int maxSize, Duration timeToLive) {
+		this(maxSize, timeToLive, Clock.systemUTC());
+	}
+
+	/**
+	 * Instantiates a new expiring cache.
+	 * @param maxSize the maximum number of entries
+	 * @param timeToLive the time to live of entries put without an explicit expiry
+	 * @param clock the clock used to expire entries
+	 */
+	public ExpiringCache(int maxSize, Duration timeToLive, Clock clock) {
+		Assert.isTrue(maxSize > 0, "maxSize must be positive");
+		Assert.notNull(timeToLive, "timeToLive cannot be null");
+		Assert.notNull(clock, "clock cannot be null");
+		this.maxSize = maxSize;
+		this.timeToLive = timeToLive;
+		this.clock = clock;
+	}
+
+	/**
+	 * Returns the value of the given key, unless it is missing or expired.
+	 * @param key the key
+	 * @return the value or {@code null}
+	 */
+	public V get(K key) {
+		Entry<K, V> entry = this.entries.get(key);
+		if (entry == null) {
+			this.misses.incrementAndGet();
+			return null;
+		}
+		if (entry.isExpired(this.clock.millis())) {
+			synchronized (this.lock) {
+				if (this.entries.remove(key, entry)) {
+					unlink(entry);
+					this.evictions.incrementAndGet();
+				}
+			}
+			this.misses.incrementAndGet();
+			return null;
+		}
+		this.hits.incrementAndGet();
+		return entry.value;
+	}
+
+	/**
+	 * Puts a value expiring after the time to live of this cache.
+	 * @param key the key
+	 * @param value the value
+	 */
+	public void put(K key, V value) {
+		put(key, value, this.clock.millis() + this.timeToLive.toMillis());
+	}
+
+	/**
+	 * Puts a value expiring at the given time, or after the time to live of this cache if
+	 * that is earlier.
+	 * @param key the key
+	 * @param value the value
+	 * @param expiresAt the expiry time in milliseconds since the epoch
+	 */
+	public void put(K key, V value, long expiresAt) {
+		Assert.notNull(key, "key cannot be null");
+		Assert.notNull(value, "value cannot be null");
+		long now = this.clock.millis();
+		long expiry = Math.min(expiresAt, now + this.timeToLive.toMillis());
+		if (expiry <= now) {
+			remove(key);
+			return;
+		}
+		Entry<K, V> entry = new Entry<K, V>(key, value, expiry);
+		synchronized (this.lock) {
+			Entry<K, V> previous = this.entries.get(key);
+			if (previous != null) {
+				unlink(previous);
+			}
+			else {
+				while (this.entries.size() >= this.maxSize) {
+					evict(this.head);
+				}
+			}
+			this.entries.put(key, entry);
+			link(entry);
+			if (this.head != entry && this.head.isExpired(now)) {
+				evict(this.head);
+			}
+		}
+		this.puts.incrementAndGet();
+	}
+
+	/**
+	 * Removes the value of the given key.
+	 * @param key the key
+	 * @return the removed value, or {@code null} if there was none or it was expired
+	 */
+	public V remove(K key) {
+		Entry<K, V> entry;
+		synchronized (this.lock) {
+			entry = this.entries.remove(key);
+			if (entry != null) {
+				unlink(entry);
+			}
+		}
+		return (entry != null && !entry.isExpired(this.clock.millis())) ? entry.value : null;
+	}
+
+	/**
+	 * Removes all values.
+	 */
+	public void clear() {
+		synchronized (this.lock) {
+			this.entries.clear();
+			this.head = null;
+			this.tail = null;
+		}
+	}
+
+	/**
+	 * Returns the number of entries, which may include entries which are expired but not
+	 * yet evicted.
+	 * @return the number of entries
+	 */
+	public int size() {
+		return this.entries.size();
+	}
+
+	/**
+	 * Evicts all expired entries.
+	 */
+	public void evictExpired() {
+		long now = this.clock.millis();
+		synchronized (this.lock) {
+			Entry<K, V> entry = this.head;
+			while (entry != null) {
+				Entry<K, V> next = entry.next;
+				if (entry.isExpired(now)) {
+					evict(entry);
+				}
+				entry = next;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of lookups which returned a value.
+	 * @return the number of hits
+	 */
+	public long getHitCount() {
+		return this.hits.get();
+	}
+
+	/**
+	 * Returns the number of lookups which found no value or an expired one.
+	 * @return the number of misses
+	 */
+	public long getMissCount() {
+		return this.misses.get();
+	}
+
+	/**
+	 * Returns the number of values put into this cache.
+	 * @return the number of puts
+	 */
+	public long getPutCount() {
+		return this.puts.get();
+	}
+
+	/**
+	 * Returns the number of entries evicted because they expired or the cache was full.
+	 * @return the number of evictions
+	 */
+	public long getEvictionCount() {
+		return this.evictions.get();
+	}
+
+	private void evict(Entry<K, V> entry) {
+		this.entries.remove(entry.key);
+		unlink(entry);
+		this.evictions.incrementAndGet();
+	}
+
+	private void link(Entry<K, V> entry) {
+		entry.previous = this.tail;
+		entry.next = null;
+		if (this.tail != null) {
+			this.tail.next = entry;
+		}
+		else {
+			this.head = entry;
+		}
+		this.tail = entry;
+	}
+
+	private void unlink(Entry<K, V> entry) {
+		if (entry.previous != null) {
+			entry.previous.next = entry.next;
+		}
+		else {
+			this.head = entry.next;
+		}
+		if (entry.next != null) {
+			entry.next.previous = entry.previous;
+		}
+		else {
+			this.tail = entry.previous;
+		}
+		entry.previous = null;
+		entry.next = null;
+	}
+
+	private static final class Entry<K, V> {
+
+		private final K key;
+
+		private final V value;
+
+		private final long expiresAt;
+
+		private Entry<K, V> previous;
+
+		private Entry<K, V> next;
+
+		private Entry(K key, V value, long expiresAt) {
+			this.key = key;
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+
+		private boolean isExpired(long now) {
+			return now >= this.expiresAt;
+		}
+
+	}
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.security.auth.Subject;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.authentication.BadCredentialsException;
+
+public class AsyncKerberosClientTest {
+
+	private final KerberosClient delegate = Mockito.mock(KerberosClient.class);
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	private AsyncKerberosClient client;
+
+	@AfterEach
+	public void tearDown() {
+		this.release.countDown();
+		this.client.destroy();
+	}
+
+	@Test
+	public void loginCompletesFuture() throws Exception {
+		JaasSubjectHolder holder = new JaasSubjectHolder(new Subject(), "user1@EXAMPLE.COM");
+		Mockito.when(this.delegate.login("user1", "secret")).thenReturn(holder);
+		this.client = new AsyncKerberosClient(this.delegate);
+
+		Assertions.assertSame(holder, this.client.loginAsync("user1", "secret").get(10, TimeUnit.SECONDS));
+		Assertions.assertSame(holder, this.client.login("user1", "secret"));
+	}
+
+	@Test
+	public void failedLoginRethrown() {
+		Mockito.when(this.delegate.login("user1", "wrong")).thenThrow(new BadCredentialsException("failed"));
+		this.client = new AsyncKerberosClient(this.delegate);
+
+		Assertions.assertThrows(BadCredentialsException.class, () -> this.client.login("user1", "wrong"));
+	}
+
+	@Test
+	public void loginTimesOut() throws Exception {
+		Mockito.when(this.delegate.login("user1", "secret")).thenAnswer((invocation) -> {
+			this.release.await();
+			return null;
+		});
+		this.client = new AsyncKerberosClient(this.delegate);
+		this.client.setTimeout(Duration.ofMillis(100));
+
+		ExecutionException exception = Assertions.assertThrows(ExecutionException.class,
+				() -> this.client.loginAsync("user1", "secret").get(10, TimeUnit.SECONDS));
+		Assertions.assertTrue(exception.getCause() instanceof AuthenticationServiceException);
+	}
+
+	@Test
+	public void loginRejectedWhenTooManyPending() throws Exception {
+		Mockito.when(this.delegate.login("user1", "secret")).thenAnswer((invocation) -> {
+			this.release.await();
+			return null;
+		});
+		this.client = new AsyncKerberosClient(this.delegate, 1, 1);
+
+		CompletableFuture<JaasSubjectHolder> running = this.client.loginAsync("user1", "secret");
+		CompletableFuture<JaasSubjectHolder> pending = this.client.loginAsync("user1", "secret");
+		CompletableFuture<JaasSubjectHolder> rejected = this.client.loginAsync("user1", "secret");
+
+		Assertions.assertFalse(running.isDone());
+		Assertions.assertFalse(pending.isDone());
+		Assertions.assertTrue(rejected.isCompletedExceptionally());
+	}
+
+	@Test
+	public void timedOutLoginLeavesQueue() throws Exception {
+		// like the JDK login module, ignore the interrupt when the login times out
+		Mockito.when(this.delegate.login("user1", "secret")).thenAnswer((invocation) -> {
+			while (true) {
+				try {
+					this.release.await();
+					return null;
+				}
+				catch (InterruptedException ex) {
+					// keep waiting
+				}
+			}
+		});
+		this.client = new AsyncKerberosClient(this.delegate, 1, 1);
+		this.client.setTimeout(Duration.ofMillis(100));
+
+		CompletableFuture<JaasSubjectHolder> running = this.client.loginAsync("user1", "secret");
+		CompletableFuture<JaasSubjectHolder> pending = this.client.loginAsync("user1", "secret");
+		ExecutionException exception = Assertions.assertThrows(ExecutionException.class,
+				() -> pending.get(10, TimeUnit.SECONDS));
+		Assertions.assertEquals("Kerberos login timed out", exception.getCause().getMessage());
+		Assertions.assertTrue(running.isCompletedExceptionally());
+		Assertions.assertTrue(((ThreadPoolExecutor) this.client.getExecutor()).getQueue().isEmpty());
+
+		exception = Assertions.assertThrows(ExecutionException.class,
+				() -> this.client.loginAsync("user1", "secret").get(10, TimeUnit.SECONDS));
+		Assertions.assertEquals("Kerberos login timed out", exception.getCause().getMessage());
+		Mockito.verify(this.delegate, Mockito.times(1)).login("user1", "secret");
+	}
+
+}
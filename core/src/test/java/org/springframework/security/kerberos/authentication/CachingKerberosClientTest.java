@@ -0,0 +1,104 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.security.auth.Subject;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import org.springframework.security.authentication.BadCredentialsException;
+
+public class CachingKerberosClientTest {
+
+	private final KerberosClient delegate = Mockito.mock(KerberosClient.class);
+
+	private final CachingKerberosClient client = new CachingKerberosClient(this.delegate);
+
+	@Test
+	public void repeatedLoginServedFromCache() {
+		Mockito.when(this.delegate.login("user1", "secret")).thenReturn(holder());
+
+		JaasSubjectHolder first = this.client.login("user1", "secret");
+		JaasSubjectHolder second = this.client.login("user1", "secret");
+
+		Mockito.verify(this.delegate, Mockito.times(1)).login("user1", "secret");
+		Assertions.assertEquals("user1@EXAMPLE.COM", second.getUsername());
+		Assertions.assertNotSame(first.getJaasSubject(), second.getJaasSubject());
+	}
+
+	@Test
+	public void otherPasswordNotServedFromCache() {
+		Mockito.when(this.delegate.login("user1", "secret")).thenReturn(holder());
+		Mockito.when(this.delegate.login("user1", "wrong")).thenThrow(new BadCredentialsException("failed"));
+
+		this.client.login("user1", "secret");
+		Assertions.assertThrows(BadCredentialsException.class, () -> this.client.login("user1", "wrong"));
+		this.client.login("user1", "secret");
+
+		Mockito.verify(this.delegate, Mockito.times(2)).login("user1", "secret");
+	}
+
+	@Test
+	public void invalidatedLoginNotServedFromCache() {
+		Mockito.when(this.delegate.login("user1", "secret")).thenReturn(holder());
+
+		this.client.login("user1", "secret");
+		this.client.invalidate("user1");
+		this.client.login("user1", "secret");
+
+		Mockito.verify(this.delegate, Mockito.times(2)).login("user1", "secret");
+	}
+
+	@Test
+	public void concurrentLoginsCoalesced() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Mockito.when(this.delegate.login("user1", "secret")).thenAnswer((invocation) -> {
+			started.countDown();
+			release.await(10, TimeUnit.SECONDS);
+			return holder();
+		});
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<JaasSubjectHolder> first = executor.submit(() -> this.client.login("user1", "secret"));
+			Assertions.assertTrue(started.await(10, TimeUnit.SECONDS));
+			Future<JaasSubjectHolder> second = executor.submit(() -> this.client.login("user1", "secret"));
+			// give the second login time to join the pending one
+			Thread.sleep(100);
+			release.countDown();
+			Assertions.assertNotNull(first.get(10, TimeUnit.SECONDS));
+			Assertions.assertNotNull(second.get(10, TimeUnit.SECONDS));
+		}
+		finally {
+			executor.shutdown();
+		}
+		Mockito.verify(this.delegate, Mockito.times(1)).login("user1", "secret");
+	}
+
+	private static JaasSubjectHolder holder() {
+		return new JaasSubjectHolder(new Subject(), "user1@EXAMPLE.COM");
+	}
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.security.auth.Subject;
+
+import org.ietf.jgss.GSSContext;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import org.springframework.security.authentication.BadCredentialsException;
+
+public class CoalescingKerberosTicketValidatorTest {
+
+	private final KerberosTicketValidator delegate = Mockito.mock(KerberosTicketValidator.class);
+
+	private final CoalescingKerberosTicketValidator validator = new CoalescingKerberosTicketValidator(this.delegate);
+
+	@Test
+	public void concurrentValidationsOfSameTokenCoalesced() throws Exception {
+		CountDownLatch release = blockValidations(TicketValidatorTestUtils.validation("user1"));
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<KerberosTicketValidation> first = executor
+					.submit(() -> this.validator.validateTicket(TicketValidatorTestUtils.token(1)));
+			awaitPending(1);
+			Future<KerberosTicketValidation> second = executor
+					.submit(() -> this.validator.validateTicket(TicketValidatorTestUtils.token(1)));
+			awaitCoalesced(1);
+			release.countDown();
+			Assertions.assertEquals("user1", first.get(10, TimeUnit.SECONDS).username());
+			Assertions.assertSame(first.get(), second.get(10, TimeUnit.SECONDS));
+		}
+		finally {
+			executor.shutdown();
+		}
+		Mockito.verify(this.delegate, Mockito.times(1)).validateTicket(ArgumentMatchers.any());
+		Assertions.assertEquals(0, this.validator.getPendingCount());
+	}
+
+	@Test
+	public void asyncValidationSharedWithoutWaiting() throws Exception {
+		GSSContext context = Mockito.mock(GSSContext.class);
+		CountDownLatch release = blockValidations(
+				new KerberosTicketValidation("user1", new Subject(), new byte[0], context));
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<KerberosTicketValidation> first = executor
+					.submit(() -> this.validator.validateTicketAsync(TicketValidatorTestUtils.token(1)).join());
+			awaitPending(1);
+			CompletableFuture<KerberosTicketValidation> second = this.validator
+					.validateTicketAsync(TicketValidatorTestUtils.token(1));
+			Assertions.assertFalse(second.isDone());
+			release.countDown();
+			Assertions.assertSame(context, first.get(10, TimeUnit.SECONDS).getGssContext());
+			KerberosTicketValidation shared = second.get(10, TimeUnit.SECONDS);
+			Assertions.assertEquals("user1", shared.username());
+			Assertions.assertNull(shared.getGssContext());
+		}
+		finally {
+			executor.shutdown();
+		}
+		Mockito.verify(this.delegate, Mockito.times(1)).validateTicket(ArgumentMatchers.any());
+	}
+
+	@Test
+	public void concurrentFailureShared() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Mockito.when(this.delegate.validateTicket(ArgumentMatchers.any())).thenAnswer((invocation) -> {
+			started.countDown();
+			release.await(10, TimeUnit.SECONDS);
+			throw new BadCredentialsException("replay");
+		});
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<KerberosTicketValidation> first = executor
+					.submit(() -> this.validator.validateTicket(TicketValidatorTestUtils.token(1)));
+			Assertions.assertTrue(started.await(10, TimeUnit.SECONDS));
+			Future<KerberosTicketValidation> second = executor
+					.submit(() -> this.validator.validateTicket(TicketValidatorTestUtils.token(1)));
+			awaitCoalesced(1);
+			release.countDown();
+			Exception ex = Assertions.assertThrows(Exception.class, () -> second.get(10, TimeUnit.SECONDS));
+			Assertions.assertTrue(ex.getCause() instanceof BadCredentialsException);
+			Assertions.assertThrows(Exception.class, () -> first.get(10, TimeUnit.SECONDS));
+		}
+		finally {
+			executor.shutdown();
+		}
+		Mockito.verify(this.delegate, Mockito.times(1)).validateTicket(ArgumentMatchers.any());
+	}
+
+	@Test
+	public void differentTokensNotCoalesced() throws Exception {
+		CountDownLatch release = blockValidations(TicketValidatorTestUtils.validation("user1"));
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<KerberosTicketValidation> first = executor
+					.submit(() -> this.validator.validateTicket(TicketValidatorTestUtils.token(1)));
+			Future<KerberosTicketValidation> second = executor
+					.submit(() -> this.validator.validateTicket(TicketValidatorTestUtils.token(2)));
+			awaitPending(2);
+			release.countDown();
+			first.get(10, TimeUnit.SECONDS);
+			second.get(10, TimeUnit.SECONDS);
+		}
+		finally {
+			executor.shutdown();
+		}
+		Mockito.verify(this.delegate, Mockito.times(2)).validateTicket(ArgumentMatchers.any());
+		Assertions.assertEquals(0, this.validator.getCoalescedCount());
+	}
+
+	@Test
+	public void sequentialValidationsNotCoalesced() {
+		Mockito.when(this.delegate.validateTicket(ArgumentMatchers.any()))
+				.thenReturn(TicketValidatorTestUtils.validation("user1"))
+				.thenThrow(new BadCredentialsException("replay"));
+
+		this.validator.validateTicket(TicketValidatorTestUtils.token(1));
+		Assertions.assertThrows(BadCredentialsException.class,
+				() -> this.validator.validateTicket(TicketValidatorTestUtils.token(1)));
+	}
+
+	private CountDownLatch blockValidations(KerberosTicketValidation validation) {
+		CountDownLatch release = new CountDownLatch(1);
+		Mockito.when(this.delegate.validateTicket(ArgumentMatchers.any())).thenAnswer((invocation) -> {
+			release.await(10, TimeUnit.SECONDS);
+			return validation;
+		});
+		return release;
+	}
+
+	private void awaitPending(int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (this.validator.getPendingCount() < count && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		Assertions.assertEquals(count, this.validator.getPendingCount());
+	}
+
+	private void awaitCoalesced(long count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (this.validator.getCoalescedCount() < count && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		Assertions.assertEquals(count, this.validator.getCoalescedCount());
+	}
+
+}
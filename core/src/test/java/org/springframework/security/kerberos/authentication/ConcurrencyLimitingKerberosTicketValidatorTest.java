@@ -0,0 +1,208 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import org.springframework.security.authentication.BadCredentialsException;
+
+public class ConcurrencyLimitingKerberosTicketValidatorTest {
+
+	private static final KerberosTicketValidation VALIDATION = TicketValidatorTestUtils.validation("user1");
+
+	private final KerberosTicketValidator delegate = Mockito.mock(KerberosTicketValidator.class);
+
+	@Test
+	public void validationsAboveLimitRejected() throws Exception {
+		ConcurrencyLimitingKerberosTicketValidator validator = new ConcurrencyLimitingKerberosTicketValidator(
+				this.delegate, 1);
+		validator.setRetryAfter(Duration.ofSeconds(5));
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Mockito.when(this.delegate.validateTicket(ArgumentMatchers.any())).thenAnswer((invocation) -> {
+			started.countDown();
+			release.await(10, TimeUnit.SECONDS);
+			return VALIDATION;
+		});
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<KerberosTicketValidation> first = executor
+					.submit(() -> validator.validateTicket(TicketValidatorTestUtils.token(1)));
+			Assertions.assertTrue(started.await(10, TimeUnit.SECONDS));
+			TicketValidationOverloadedException ex = Assertions.assertThrows(TicketValidationOverloadedException.class,
+					() -> validator.validateTicket(TicketValidatorTestUtils.token(2)));
+			Assertions.assertEquals(5, ex.getRetryAfterSeconds());
+			Assertions.assertEquals(1, validator.getInFlight());
+			release.countDown();
+			Assertions.assertSame(VALIDATION, first.get(10, TimeUnit.SECONDS));
+		}
+		finally {
+			executor.shutdown();
+		}
+		Assertions.assertSame(VALIDATION, validator.validateTicket(TicketValidatorTestUtils.token(3)));
+		Assertions.assertEquals(1, validator.getRejectedCount());
+		Assertions.assertEquals(0, validator.getInFlight());
+	}
+
+	@Test
+	public void failedValidationReleasesPermit() {
+		ConcurrencyLimitingKerberosTicketValidator validator = new ConcurrencyLimitingKerberosTicketValidator(
+				this.delegate, 1);
+		Mockito.when(this.delegate.validateTicket(ArgumentMatchers.any()))
+				.thenThrow(new IllegalStateException("failed")).thenReturn(VALIDATION);
+
+		Assertions.assertThrows(IllegalStateException.class,
+				() -> validator.validateTicket(TicketValidatorTestUtils.token(1)));
+
+		Assertions.assertSame(VALIDATION, validator.validateTicket(TicketValidatorTestUtils.token(2)));
+	}
+
+	@Test
+	public void adaptiveLimitFollowsLatency() {
+		ConcurrencyLimitingKerberosTicketValidator validator = new ConcurrencyLimitingKerberosTicketValidator(
+				this.delegate, 1);
+		validator.setAdaptive(true);
+		validator.setLatencyTolerance(100);
+		validator.setBackoffRatio(0.5);
+		Mockito.when(this.delegate.validateTicket(ArgumentMatchers.any())).thenReturn(VALIDATION);
+		for (int i = 0; i < 10; i++) {
+			validator.validateTicket(TicketValidatorTestUtils.token(i));
+		}
+		// grows while the limit is used and latencies are low
+		Assertions.assertEquals(2, validator.getLimit());
+
+		Mockito.when(this.delegate.validateTicket(ArgumentMatchers.any())).thenAnswer((invocation) -> {
+			Thread.sleep(200);
+			return VALIDATION;
+		});
+		validator.validateTicket(TicketValidatorTestUtils.token(11));
+		Assertions.assertEquals(1, validator.getLimit());
+	}
+
+	@Test
+	public void slowFailuresShrinkAdaptiveLimit() {
+		ConcurrencyLimitingKerberosTicketValidator validator = new ConcurrencyLimitingKerberosTicketValidator(
+				this.delegate, 4);
+		validator.setAdaptive(true);
+		validator.setLatencyTolerance(10);
+		validator.setBackoffRatio(0.5);
+		Mockito.when(this.delegate.validateTicket(ArgumentMatchers.any())).thenReturn(VALIDATION);
+		validator.validateTicket(TicketValidatorTestUtils.token(1));
+		Assertions.assertEquals(4, validator.getLimit());
+
+		Mockito.when(this.delegate.validateTicket(ArgumentMatchers.any())).thenAnswer((invocation) -> {
+			Thread.sleep(200);
+			throw new BadCredentialsException("bad token");
+		});
+		Assertions.assertThrows(BadCredentialsException.class,
+				() -> validator.validateTicket(TicketValidatorTestUtils.token(2)));
+		Assertions.assertEquals(2, validator.getLimit());
+	}
+
+	@Test
+	public void fastFailuresDoNotLowerBaseline() {
+		ConcurrencyLimitingKerberosTicketValidator validator = new ConcurrencyLimitingKerberosTicketValidator(
+				this.delegate, 4);
+		validator.setAdaptive(true);
+		validator.setLatencyTolerance(10);
+		validator.setBackoffRatio(0.5);
+		Mockito.when(this.delegate.validateTicket(ArgumentMatchers.any()))
+				.thenThrow(new BadCredentialsException("malformed"));
+		for (int i = 0; i < 10; i++) {
+			Assertions.assertThrows(BadCredentialsException.class,
+					() -> validator.validateTicket(TicketValidatorTestUtils.token(1)));
+		}
+		Mockito.doAnswer((invocation) -> {
+			Thread.sleep(20);
+			return VALIDATION;
+		}).when(this.delegate).validateTicket(ArgumentMatchers.any());
+		validator.validateTicket(TicketValidatorTestUtils.token(2));
+		Assertions.assertEquals(4, validator.getLimit());
+	}
+
+	@Test
+	public void adaptiveLimitStartsWithinBounds() {
+		ConcurrencyLimitingKerberosTicketValidator validator = new ConcurrencyLimitingKerberosTicketValidator(
+				this.delegate, 500);
+		validator.setAdaptive(true);
+		validator.setMaxLimit(64);
+		Assertions.assertEquals(64, validator.getLimit());
+		validator.setMaxLimit(200);
+		validator.setMinLimit(100);
+		Assertions.assertEquals(100, validator.getLimit());
+	}
+
+	@Test
+	public void concurrentAdaptiveUpdatesStayWithinBounds() throws Exception {
+		ConcurrencyLimitingKerberosTicketValidator validator = new ConcurrencyLimitingKerberosTicketValidator(
+				this.delegate, 4);
+		validator.setAdaptive(true);
+		validator.setMinLimit(2);
+		validator.setMaxLimit(8);
+		validator.setLatencyTolerance(1);
+		Mockito.when(this.delegate.validateTicket(ArgumentMatchers.any())).thenReturn(VALIDATION);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (int i = 0; i < 8; i++) {
+				futures.add(executor.submit(() -> {
+					for (int j = 0; j < 10000; j++) {
+						try {
+							validator.validateTicket(TicketValidatorTestUtils.token(j));
+						}
+						catch (TicketValidationOverloadedException ex) {
+							// expected once the limit is reached
+						}
+						int limit = validator.getLimit();
+						Assertions.assertTrue(limit >= 2 && limit <= 8, "limit " + limit);
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get(30, TimeUnit.SECONDS);
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+		Assertions.assertEquals(0, validator.getInFlight());
+	}
+
+	@Test
+	public void fixedLimitDoesNotAdapt() {
+		ConcurrencyLimitingKerberosTicketValidator validator = new ConcurrencyLimitingKerberosTicketValidator(
+				this.delegate, 2);
+		Mockito.when(this.delegate.validateTicket(ArgumentMatchers.any())).thenReturn(VALIDATION);
+		for (int i = 0; i < 10; i++) {
+			validator.validateTicket(TicketValidatorTestUtils.token(i));
+		}
+		Assertions.assertEquals(2, validator.getLimit());
+	}
+
+}
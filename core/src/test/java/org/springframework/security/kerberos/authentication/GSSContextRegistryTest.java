@@ -0,0 +1,152 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication;
+
+import java.time.Duration;
+
+import org.ietf.jgss.GSSContext;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import org.springframework.security.kerberos.authentication.support.MutableClock;
+
+public class GSSContextRegistryTest {
+
+	private final MutableClock clock = new MutableClock();
+
+	@Test
+	public void contextDisposedWhenLifetimeEnds() throws Exception {
+		GSSContextRegistry registry = new GSSContextRegistry(10, Duration.ofHours(1), this.clock);
+		GSSContext context = context(600);
+		Assertions.assertTrue(registry.register("session1", context));
+		Assertions.assertSame(context, registry.get("session1"));
+
+		this.clock.advance(Duration.ofMinutes(10));
+		Assertions.assertNull(registry.get("session1"));
+		Mockito.verify(context).dispose();
+		Assertions.assertEquals(0, registry.size());
+	}
+
+	@Test
+	public void idleContextDisposed() throws Exception {
+		GSSContextRegistry registry = new GSSContextRegistry(10, Duration.ofMinutes(5), this.clock);
+		GSSContext used = context(3600);
+		GSSContext idle = context(3600);
+		registry.register("used", used);
+		registry.register("idle", idle);
+
+		this.clock.advance(Duration.ofMinutes(3));
+		registry.get("used");
+		this.clock.advance(Duration.ofMinutes(3));
+		registry.evictExpired();
+
+		Assertions.assertSame(used, registry.get("used"));
+		Assertions.assertNull(registry.get("idle"));
+		Mockito.verify(idle).dispose();
+		Assertions.assertEquals(1, registry.getDisposedCount());
+	}
+
+	@Test
+	public void leastRecentlyUsedContextDisposedWhenFull() throws Exception {
+		GSSContextRegistry registry = new GSSContextRegistry(2, Duration.ofHours(1), this.clock);
+		GSSContext first = context(3600);
+		GSSContext second = context(3600);
+		GSSContext third = context(3600);
+		registry.register("first", first);
+		this.clock.advance(Duration.ofSeconds(1));
+		registry.register("second", second);
+		this.clock.advance(Duration.ofSeconds(1));
+		registry.get("first");
+		registry.register("third", third);
+
+		Assertions.assertEquals(2, registry.size());
+		Assertions.assertNull(registry.get("second"));
+		Mockito.verify(second).dispose();
+		Assertions.assertSame(first, registry.get("first"));
+		Assertions.assertSame(third, registry.get("third"));
+		Assertions.assertEquals(3, registry.getRegisteredCount());
+	}
+
+	@Test
+	public void replacedAndRemovedContextsDisposed() throws Exception {
+		GSSContextRegistry registry = new GSSContextRegistry(10, Duration.ofHours(1), this.clock);
+		GSSContext first = context(3600);
+		GSSContext second = context(3600);
+		registry.register("session1", first);
+		registry.register("session1", second);
+		Mockito.verify(first).dispose();
+
+		Assertions.assertTrue(registry.rename("session1", "session2"));
+		Assertions.assertNull(registry.get("session1"));
+		Assertions.assertTrue(registry.remove("session2"));
+		Mockito.verify(second).dispose();
+	}
+
+	@Test
+	public void unestablishedContextNotRegistered() throws Exception {
+		GSSContextRegistry registry = new GSSContextRegistry(10, Duration.ofHours(1), this.clock);
+		GSSContext context = Mockito.mock(GSSContext.class);
+		Assertions.assertFalse(registry.register("session1", context));
+		Mockito.verify(context, Mockito.never()).dispose();
+		Assertions.assertEquals(0, registry.size());
+		Assertions.assertEquals(0, registry.getDisposedCount());
+	}
+
+	@Test
+	public void contextRegisteredWithSeveralKeysDisposedWithLastKey() throws Exception {
+		GSSContextRegistry registry = new GSSContextRegistry(10, Duration.ofHours(1), this.clock);
+		GSSContext context = context(3600);
+		registry.register("session1", context);
+		registry.register("session2", context);
+		registry.register("session2", context);
+
+		Assertions.assertTrue(registry.remove("session1"));
+		Mockito.verify(context, Mockito.never()).dispose();
+		Assertions.assertSame(context, registry.get("session2"));
+
+		Assertions.assertTrue(registry.rename("session2", "session1"));
+		Assertions.assertTrue(registry.remove("session1"));
+		Mockito.verify(context).dispose();
+		Assertions.assertEquals(1, registry.getDisposedCount());
+	}
+
+	@Test
+	public void evictingOneKeyOfSharedContextKeepsContext() throws Exception {
+		GSSContextRegistry registry = new GSSContextRegistry(2, Duration.ofHours(1), this.clock);
+		GSSContext shared = context(3600);
+		GSSContext other = context(3600);
+		registry.register("session1", shared);
+		registry.register("session2", shared);
+		registry.register("session3", other);
+
+		Assertions.assertNull(registry.get("session1"));
+		Mockito.verify(shared, Mockito.never()).dispose();
+		registry.clear();
+		Mockito.verify(shared).dispose();
+		Mockito.verify(other).dispose();
+		Assertions.assertEquals(2, registry.getDisposedCount());
+	}
+
+	private static GSSContext context(int lifetime) {
+		GSSContext context = Mockito.mock(GSSContext.class);
+		Mockito.when(context.isEstablished()).thenReturn(true);
+		Mockito.when(context.getLifetime()).thenReturn(lifetime);
+		return context;
+	}
+
+}
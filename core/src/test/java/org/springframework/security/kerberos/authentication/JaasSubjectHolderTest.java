@@ -0,0 +1,83 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.security.auth.Subject;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class JaasSubjectHolderTest {
+
+	@Test
+	public void expiredTokenNotReturned() {
+		JaasSubjectHolder holder = new JaasSubjectHolder(new Subject(), "user1");
+		holder.addToken("HTTP/a", new byte[] { 1 }, System.currentTimeMillis() + 60000);
+		holder.addToken("HTTP/b", new byte[] { 2 }, System.currentTimeMillis() - 1);
+		Assertions.assertArrayEquals(new byte[] { 1 }, holder.getToken("HTTP/a"));
+		Assertions.assertNull(holder.getToken("HTTP/b"));
+		Assertions.assertArrayEquals(new byte[] { 1 }, holder.removeToken("HTTP/a"));
+		Assertions.assertNull(holder.getToken("HTTP/a"));
+	}
+
+	@Test
+	public void tokensBounded() {
+		JaasSubjectHolder holder = new JaasSubjectHolder(new Subject(), "user1", 2, Duration.ofMinutes(1));
+		holder.addToken("HTTP/a", new byte[] { 1 });
+		holder.addToken("HTTP/b", new byte[] { 2 });
+		holder.addToken("HTTP/c", new byte[] { 3 });
+		int saved = 0;
+		for (String service : new String[] { "HTTP/a", "HTTP/b", "HTTP/c" }) {
+			if (holder.getToken(service) != null) {
+				saved++;
+			}
+		}
+		Assertions.assertEquals(2, saved);
+		Assertions.assertArrayEquals(new byte[] { 3 }, holder.getToken("HTTP/c"));
+	}
+
+	@Test
+	public void tokensAddedConcurrently() throws Exception {
+		JaasSubjectHolder holder = new JaasSubjectHolder(new Subject(), "user1");
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < 64; i++) {
+				byte[] token = new byte[] { (byte) i };
+				String service = "HTTP/service" + i;
+				futures.add(executor.submit(() -> holder.addToken(service, token)));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+		for (int i = 0; i < 64; i++) {
+			Assertions.assertArrayEquals(new byte[] { (byte) i }, holder.getToken("HTTP/service" + i));
+		}
+	}
+
+}
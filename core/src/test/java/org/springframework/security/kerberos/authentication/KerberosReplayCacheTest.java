@@ -0,0 +1,161 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.security.kerberos.authentication.support.MutableClock;
+
+public class KerberosReplayCacheTest {
+
+	private static final byte[] SPNEGO_OID = { 0x2b, 0x06, 0x01, 0x05, 0x05, 0x02 };
+
+	private static final byte[] KRB5_OID = { 0x2a, (byte) 0x86, 0x48, (byte) 0x86, (byte) 0xf7, 0x12, 0x01, 0x02,
+			0x02 };
+
+	private final MutableClock clock = new MutableClock();
+
+	private final KerberosReplayCache cache = new KerberosReplayCache(Duration.ofMinutes(5), 1000, this.clock);
+
+	@Test
+	public void authenticatorStoredOnce() {
+		Assertions.assertTrue(this.cache.checkAndStore(krb5Token(1)));
+		Assertions.assertFalse(this.cache.checkAndStore(krb5Token(1)));
+
+		Assertions.assertEquals(1, this.cache.size());
+		Assertions.assertEquals(1, this.cache.getStoredCount());
+		Assertions.assertEquals(1, this.cache.getReplayCount());
+	}
+
+	@Test
+	public void rewrappedAuthenticatorIsReplay() {
+		Assertions.assertTrue(this.cache.checkAndStore(spnegoToken(krb5Token(1))));
+
+		Assertions.assertFalse(this.cache.checkAndStore(krb5Token(1)));
+		Assertions.assertEquals(1, this.cache.getReplayCount());
+	}
+
+	@Test
+	public void otherAuthenticatorsStored() {
+		Assertions.assertTrue(this.cache.checkAndStore(krb5Token(1)));
+		Assertions.assertTrue(this.cache.checkAndStore(krb5Token(2)));
+		Assertions.assertTrue(this.cache.checkAndStore(spnegoToken(krb5Token(3))));
+
+		Assertions.assertEquals(3, this.cache.size());
+		Assertions.assertEquals(0, this.cache.getReplayCount());
+	}
+
+	@Test
+	public void authenticatorExpiresAfterTwiceClockSkew() {
+		Assertions.assertTrue(this.cache.checkAndStore(krb5Token(1)));
+		this.clock.advance(Duration.ofMinutes(9));
+		Assertions.assertFalse(this.cache.checkAndStore(krb5Token(1)));
+
+		this.clock.advance(Duration.ofMinutes(1).plusSeconds(1));
+		Assertions.assertTrue(this.cache.checkAndStore(krb5Token(1)));
+		Assertions.assertEquals(1, this.cache.getExpiredCount());
+		Assertions.assertEquals(1, this.cache.size());
+	}
+
+	@Test
+	public void expiresAfterClockJump() {
+		Assertions.assertTrue(this.cache.checkAndStore(krb5Token(1)));
+		this.clock.advance(Duration.ofDays(1));
+
+		Assertions.assertTrue(this.cache.checkAndStore(krb5Token(1)));
+		Assertions.assertEquals(1, this.cache.getExpiredCount());
+	}
+
+	@Test
+	public void fullCacheRejectsTokens() {
+		KerberosReplayCache cache = new KerberosReplayCache(Duration.ofMinutes(5), 1, this.clock);
+
+		Assertions.assertTrue(cache.checkAndStore(krb5Token(1)));
+		Assertions.assertFalse(cache.checkAndStore(krb5Token(2)));
+		Assertions.assertEquals(1, cache.getOverflowCount());
+		Assertions.assertEquals(0, cache.getReplayCount());
+	}
+
+	@Test
+	public void removedAuthenticatorStoredAgain() {
+		Assertions.assertTrue(this.cache.checkAndStore(krb5Token(1)));
+		this.cache.remove(spnegoToken(krb5Token(1)));
+
+		Assertions.assertEquals(0, this.cache.size());
+		Assertions.assertTrue(this.cache.checkAndStore(krb5Token(1)));
+		this.clock.advance(Duration.ofMinutes(11));
+		Assertions.assertTrue(this.cache.checkAndStore(krb5Token(1)));
+		Assertions.assertEquals(1, this.cache.getExpiredCount());
+	}
+
+	@Test
+	public void malformedTokensRejected() {
+		Assertions.assertFalse(this.cache.checkAndStore(new byte[] { 0x60, (byte) 0x80, 0x00, 0x00 }));
+		Assertions.assertFalse(this.cache.checkAndStore(new byte[] { 0x60, 0x05, 0x06 }));
+
+		Assertions.assertEquals(2, this.cache.getMalformedCount());
+		Assertions.assertEquals(0, this.cache.size());
+	}
+
+	@Test
+	public void storeTellsWhyTokenNotStored() {
+		KerberosReplayCache cache = new KerberosReplayCache(Duration.ofMinutes(5), 1, this.clock);
+
+		Assertions.assertEquals(KerberosReplayCache.Result.STORED, cache.store(krb5Token(1)));
+		Assertions.assertEquals(KerberosReplayCache.Result.REPLAY, cache.store(krb5Token(1)));
+		Assertions.assertEquals(KerberosReplayCache.Result.OVERFLOW, cache.store(krb5Token(2)));
+		Assertions.assertEquals(KerberosReplayCache.Result.MALFORMED, cache.store(new byte[] { 0x60, 0x05, 0x06 }));
+	}
+
+	private static byte[] krb5Token(int authenticator) {
+		byte[] encryptedData = der(0x30, der(0xa0, der(0x02, new byte[] { 0x12 })),
+				der(0xa2, der(0x04, new byte[] { 0x01, 0x02, (byte) authenticator })));
+		byte[] apReq = der(0x6e, der(0x30, der(0xa0, der(0x02, new byte[] { 0x05 })),
+				der(0xa1, der(0x02, new byte[] { 0x0e })), der(0xa4, encryptedData)));
+		return der(0x60, der(0x06, KRB5_OID), new byte[] { 0x01, 0x00 }, apReq);
+	}
+
+	private static byte[] spnegoToken(byte[] mechToken) {
+		byte[] negTokenInit = der(0x30, der(0xa0, der(0x30, der(0x06, KRB5_OID))), der(0xa2, der(0x04, mechToken)));
+		return der(0x60, der(0x06, SPNEGO_OID), der(0xa0, negTokenInit));
+	}
+
+	private static byte[] der(int tag, byte[]... contents) {
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		for (byte[] bytes : contents) {
+			content.write(bytes, 0, bytes.length);
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(tag);
+		if (content.size() < 0x80) {
+			out.write(content.size());
+		}
+		else {
+			out.write(0x82);
+			out.write(content.size() >> 8);
+			out.write(content.size());
+		}
+		byte[] bytes = content.toByteArray();
+		out.write(bytes, 0, bytes.length);
+		return out.toByteArray();
+	}
+
+}
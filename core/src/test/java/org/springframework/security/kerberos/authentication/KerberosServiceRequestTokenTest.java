@@ -0,0 +1,162 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.security.PrivilegedActionException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.security.auth.Subject;
+
+import org.ietf.jgss.GSSContext;
+import org.ietf.jgss.MessageProp;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+public class KerberosServiceRequestTokenTest {
+
+	private static final byte MARKER = 42;
+
+	private GSSContext gssContext = Mockito.mock(GSSContext.class);
+
+	private KerberosServiceRequestToken token;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		// wrapping prepends a marker byte, unwrapping checks and strips it
+		Mockito.when(this.gssContext.wrap(ArgumentMatchers.any(byte[].class), ArgumentMatchers.anyInt(),
+				ArgumentMatchers.anyInt(), ArgumentMatchers.any(MessageProp.class))).thenAnswer((invocation) -> {
+					byte[] data = invocation.getArgument(0);
+					int offset = invocation.getArgument(1);
+					int length = invocation.getArgument(2);
+					byte[] result = new byte[length + 1];
+					result[0] = MARKER;
+					System.arraycopy(data, offset, result, 1, length);
+					return result;
+				});
+		Mockito.when(this.gssContext.unwrap(ArgumentMatchers.any(byte[].class), ArgumentMatchers.anyInt(),
+				ArgumentMatchers.anyInt(), ArgumentMatchers.any(MessageProp.class))).thenAnswer((invocation) -> {
+					byte[] data = invocation.getArgument(0);
+					int offset = invocation.getArgument(1);
+					int length = invocation.getArgument(2);
+					Assertions.assertEquals(MARKER, data[offset]);
+					return Arrays.copyOfRange(data, offset + 1, offset + length);
+				});
+		Mockito.when(this.gssContext.getWrapSizeLimit(ArgumentMatchers.anyInt(), ArgumentMatchers.anyBoolean(),
+				ArgumentMatchers.anyInt())).thenAnswer((invocation) -> (int) invocation.getArgument(2) - 1);
+		KerberosTicketValidation validation = new KerberosTicketValidation("user1", new Subject(), null,
+				this.gssContext);
+		this.token = new KerberosServiceRequestToken("user1", validation, Collections.emptyList(), new byte[0]);
+	}
+
+	@Test
+	public void byteBuffersWrappedAndUnwrapped() throws Exception {
+		ByteBuffer src = ByteBuffer.allocate(16);
+		src.put(new byte[] { 9, 1, 2, 3 });
+		src.flip();
+		src.get();
+		ByteBuffer wrapped = ByteBuffer.allocateDirect(16);
+		Assertions.assertEquals(4, this.token.encrypt(src, wrapped));
+		Assertions.assertFalse(src.hasRemaining());
+
+		wrapped.flip();
+		ByteBuffer unwrapped = ByteBuffer.allocate(4);
+		Assertions.assertEquals(3, this.token.decrypt(wrapped, unwrapped));
+		Assertions.assertEquals(3, unwrapped.position());
+		Assertions.assertArrayEquals(new byte[] { 1, 2, 3 }, Arrays.copyOf(unwrapped.array(), 3));
+	}
+
+	@Test
+	public void sourceNotConsumedOnOverflow() throws Exception {
+		ByteBuffer src = ByteBuffer.wrap(new byte[] { 1, 2, 3 });
+		Assertions.assertThrows(BufferOverflowException.class, () -> this.token.encrypt(src, ByteBuffer.allocate(3)));
+		Assertions.assertEquals(3, src.remaining());
+		Mockito.verify(this.gssContext, Mockito.never()).wrap(ArgumentMatchers.any(byte[].class),
+				ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt(), ArgumentMatchers.any(MessageProp.class));
+	}
+
+	@Test
+	public void tokenNotUnwrappedOnOverflow() throws Exception {
+		ByteBuffer src = ByteBuffer.wrap(new byte[] { MARKER, 1, 2, 3 });
+		Assertions.assertThrows(BufferOverflowException.class, () -> this.token.decrypt(src, ByteBuffer.allocate(3)));
+		Assertions.assertEquals(4, src.remaining());
+		Mockito.verify(this.gssContext, Mockito.never()).unwrap(ArgumentMatchers.any(byte[].class),
+				ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt(), ArgumentMatchers.any(MessageProp.class));
+	}
+
+	@Test
+	public void batchWrappedAndUnwrapped() throws Exception {
+		List<byte[]> messages = Arrays.asList(new byte[] { 1 }, new byte[] { 2, 3 }, new byte[0]);
+		List<byte[]> wrapped = this.token.encrypt(messages);
+		Assertions.assertEquals(3, wrapped.size());
+		List<byte[]> unwrapped = this.token.decrypt(wrapped);
+		for (int i = 0; i < messages.size(); i++) {
+			Assertions.assertArrayEquals(messages.get(i), unwrapped.get(i));
+		}
+	}
+
+	@Test
+	public void streamWrappedInChunks() throws Exception {
+		byte[] data = new byte[1000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) i;
+		}
+		ByteArrayOutputStream wrapped = new ByteArrayOutputStream();
+		Assertions.assertEquals(1000, this.token.encrypt(new ByteArrayInputStream(data), wrapped, 300));
+		// four chunks, each with a length header and a marker byte
+		Assertions.assertEquals(1000 + 4 * 5, wrapped.size());
+
+		ByteArrayOutputStream unwrapped = new ByteArrayOutputStream();
+		Assertions.assertEquals(1000, this.token.decrypt(new ByteArrayInputStream(wrapped.toByteArray()), unwrapped));
+		Assertions.assertArrayEquals(data, unwrapped.toByteArray());
+	}
+
+	@Test
+	public void truncatedStreamFails() throws Exception {
+		ByteArrayOutputStream wrapped = new ByteArrayOutputStream();
+		this.token.encrypt(new ByteArrayInputStream(new byte[10]), wrapped);
+		byte[] truncated = Arrays.copyOf(wrapped.toByteArray(), wrapped.size() - 1);
+		PrivilegedActionException exception = Assertions.assertThrows(PrivilegedActionException.class,
+				() -> this.token.decrypt(new ByteArrayInputStream(truncated), new ByteArrayOutputStream()));
+		Assertions.assertTrue(exception.getException() instanceof EOFException);
+	}
+
+	@Test
+	public void oversizedStreamTokenRejected() throws Exception {
+		ByteArrayOutputStream wrapped = new ByteArrayOutputStream();
+		this.token.encrypt(new ByteArrayInputStream(new byte[100]), wrapped);
+		PrivilegedActionException exception = Assertions.assertThrows(PrivilegedActionException.class, () -> this.token
+				.decrypt(new ByteArrayInputStream(wrapped.toByteArray()), new ByteArrayOutputStream(), 100));
+		Assertions.assertTrue(exception.getException() instanceof IOException);
+
+		byte[] huge = new byte[] { 0x7f, (byte) 0xff, (byte) 0xff, (byte) 0xff };
+		exception = Assertions.assertThrows(PrivilegedActionException.class,
+				() -> this.token.decrypt(new ByteArrayInputStream(huge), new ByteArrayOutputStream()));
+		Assertions.assertTrue(exception.getException() instanceof IOException);
+	}
+
+}
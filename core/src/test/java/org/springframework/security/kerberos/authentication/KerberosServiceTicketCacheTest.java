@@ -0,0 +1,70 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Date;
+
+import javax.security.auth.kerberos.KerberosPrincipal;
+import javax.security.auth.kerberos.KerberosTicket;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class KerberosServiceTicketCacheTest {
+
+	private static final String CLIENT = "user1@EXAMPLE.COM";
+
+	private static final String SERVICE = "HTTP/webtier@EXAMPLE.COM";
+
+	@Test
+	public void ticketCachedUntilRefreshMargin() {
+		Instant now = Instant.now();
+		KerberosTicket ticket = ticket(now.plus(Duration.ofMinutes(10)));
+
+		KerberosServiceTicketCache cache = new KerberosServiceTicketCache(10, Duration.ofMinutes(1),
+				Clock.fixed(now, ZoneOffset.UTC));
+		cache.put(ticket);
+		Assertions.assertSame(ticket, cache.get(CLIENT, SERVICE));
+		Assertions.assertNull(cache.get("user2@EXAMPLE.COM", SERVICE));
+
+		cache = new KerberosServiceTicketCache(10, Duration.ofMinutes(1),
+				Clock.fixed(now.plus(Duration.ofMinutes(9)), ZoneOffset.UTC));
+		cache.put(ticket);
+		Assertions.assertNull(cache.get(CLIENT, SERVICE));
+	}
+
+	@Test
+	public void destroyedTicketNotReturned() throws Exception {
+		KerberosTicket ticket = ticket(Instant.now().plus(Duration.ofMinutes(10)));
+		KerberosServiceTicketCache cache = new KerberosServiceTicketCache();
+		cache.put(ticket);
+
+		ticket.destroy();
+		Assertions.assertNull(cache.get(CLIENT, SERVICE));
+		Assertions.assertEquals(0, cache.size());
+	}
+
+	private static KerberosTicket ticket(Instant endTime) {
+		return new KerberosTicket(new byte[] { 1 }, new KerberosPrincipal(CLIENT), new KerberosPrincipal(SERVICE),
+				new byte[16], 17, null, new Date(), new Date(), Date.from(endTime), null, null);
+	}
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication;
+
+import java.security.PrivilegedActionException;
+import java.time.Duration;
+
+import org.ietf.jgss.GSSException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.kerberos.authentication.support.MutableClock;
+
+public class NegativeCachingKerberosTicketValidatorTest {
+
+	private final KerberosTicketValidator delegate = Mockito.mock(KerberosTicketValidator.class);
+
+	private final MutableClock clock = new MutableClock();
+
+	private final NegativeCachingKerberosTicketValidator validator = new NegativeCachingKerberosTicketValidator(
+			this.delegate, 100, Duration.ofSeconds(30), this.clock);
+
+	@Test
+	public void rejectedTokenRejectedAgainWithoutValidation() {
+		Mockito.when(this.delegate.validateTicket(ArgumentMatchers.any()))
+				.thenThrow(new BadCredentialsException("invalid"));
+
+		Assertions.assertThrows(BadCredentialsException.class,
+				() -> this.validator.validateTicket(TicketValidatorTestUtils.token(1)));
+		RecentlyRejectedTicketException ex = Assertions.assertThrows(RecentlyRejectedTicketException.class,
+				() -> this.validator.validateTicket(TicketValidatorTestUtils.token(1)));
+
+		Assertions.assertEquals(0, ex.getStackTrace().length);
+		Assertions.assertEquals(1, this.validator.getShortCircuitedCount());
+		Mockito.verify(this.delegate, Mockito.times(1)).validateTicket(ArgumentMatchers.any());
+	}
+
+	@Test
+	public void rejectedTokenValidatedAgainAfterTimeToLive() {
+		Mockito.when(this.delegate.validateTicket(ArgumentMatchers.any()))
+				.thenThrow(new BadCredentialsException("invalid"));
+
+		Assertions.assertThrows(BadCredentialsException.class,
+				() -> this.validator.validateTicket(TicketValidatorTestUtils.token(1)));
+		this.clock.advance(Duration.ofSeconds(31));
+		BadCredentialsException ex = Assertions.assertThrows(BadCredentialsException.class,
+				() -> this.validator.validateTicket(TicketValidatorTestUtils.token(1)));
+
+		Assertions.assertFalse(ex instanceof RecentlyRejectedTicketException);
+		Mockito.verify(this.delegate, Mockito.times(2)).validateTicket(ArgumentMatchers.any());
+	}
+
+	@Test
+	public void otherTokensValidated() {
+		KerberosTicketValidation validation = TicketValidatorTestUtils.validation("user1");
+		Mockito.when(this.delegate.validateTicket(TicketValidatorTestUtils.token(1)))
+				.thenThrow(new BadCredentialsException("invalid"));
+		Mockito.when(this.delegate.validateTicket(TicketValidatorTestUtils.token(2))).thenReturn(validation);
+
+		Assertions.assertThrows(BadCredentialsException.class,
+				() -> this.validator.validateTicket(TicketValidatorTestUtils.token(1)));
+
+		Assertions.assertSame(validation, this.validator.validateTicket(TicketValidatorTestUtils.token(2)));
+		Assertions.assertEquals(0, this.validator.getShortCircuitedCount());
+	}
+
+	@Test
+	public void serviceFailuresNotCached() {
+		Mockito.when(this.delegate.validateTicket(ArgumentMatchers.any()))
+				.thenThrow(new AuthenticationServiceException("keytab not readable"));
+
+		Assertions.assertThrows(AuthenticationServiceException.class,
+				() -> this.validator.validateTicket(TicketValidatorTestUtils.token(1)));
+		Assertions.assertThrows(AuthenticationServiceException.class,
+				() -> this.validator.validateTicket(TicketValidatorTestUtils.token(1)));
+
+		Mockito.verify(this.delegate, Mockito.times(2)).validateTicket(ArgumentMatchers.any());
+		Assertions.assertEquals(0, this.validator.getCache().size());
+	}
+
+	@Test
+	public void defectiveTokenCached() {
+		Mockito.when(this.delegate.validateTicket(ArgumentMatchers.any())).thenThrow(new BadCredentialsException(
+				"invalid", new PrivilegedActionException(new GSSException(GSSException.DEFECTIVE_TOKEN))));
+
+		Assertions.assertThrows(BadCredentialsException.class,
+				() -> this.validator.validateTicket(TicketValidatorTestUtils.token(1)));
+		Assertions.assertThrows(RecentlyRejectedTicketException.class,
+				() -> this.validator.validateTicket(TicketValidatorTestUtils.token(1)));
+
+		Mockito.verify(this.delegate, Mockito.times(1)).validateTicket(ArgumentMatchers.any());
+	}
+
+	@Test
+	public void serviceFailuresReportedAsBadCredentialsNotCached() {
+		Mockito.when(this.delegate.validateTicket(ArgumentMatchers.any()))
+				.thenThrow(new BadCredentialsException("invalid",
+						new PrivilegedActionException(new GSSException(GSSException.NO_CRED))))
+				.thenThrow(new BadCredentialsException("invalid",
+						new PrivilegedActionException(new GSSException(GSSException.FAILURE))));
+
+		Assertions.assertThrows(BadCredentialsException.class,
+				() -> this.validator.validateTicket(TicketValidatorTestUtils.token(1)));
+		BadCredentialsException ex = Assertions.assertThrows(BadCredentialsException.class,
+				() -> this.validator.validateTicket(TicketValidatorTestUtils.token(1)));
+
+		Assertions.assertFalse(ex instanceof RecentlyRejectedTicketException);
+		Mockito.verify(this.delegate, Mockito.times(2)).validateTicket(ArgumentMatchers.any());
+		Assertions.assertEquals(0, this.validator.getCache().size());
+	}
+
+}
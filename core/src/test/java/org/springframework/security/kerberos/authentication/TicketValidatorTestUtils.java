@@ -0,0 +1,37 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication;
+
+import javax.security.auth.Subject;
+
+/**
+ * Tokens and validations for tests of ticket validator decorators.
+ */
+final class TicketValidatorTestUtils {
+
+	private TicketValidatorTestUtils() {
+	}
+
+	static byte[] token(int value) {
+		return new byte[] { 0x60, 0x01, (byte) value };
+	}
+
+	static KerberosTicketValidation validation(String username) {
+		return new KerberosTicketValidation(username, new Subject(), null, null);
+	}
+
+}
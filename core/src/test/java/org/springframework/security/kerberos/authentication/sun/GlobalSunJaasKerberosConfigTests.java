@@ -0,0 +1,65 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication.sun;
+
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.Arrays;
+
+import javax.security.auth.login.LoginException;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class GlobalSunJaasKerberosConfigTests {
+
+	@Test
+	public void kdcOrderAppliedWhenChanged() {
+		String krbConfLocation = System.getProperty("java.security.krb5.conf");
+		KdcLocator locator = new KdcLocator("LOCATED.COM");
+		locator.setKdcs(Arrays.asList("kdc1:88", "kdc2:88"));
+		locator.setFailureThreshold(1);
+		GlobalSunJaasKerberosConfig config = new GlobalSunJaasKerberosConfig();
+		config.setKdcLocator(locator);
+		try {
+			config.afterPropertiesSet();
+			Assertions.assertEquals(Arrays.asList("kdc1:88", "kdc2:88"),
+					GlobalKrb5Configuration.getApplied().getKdcs("LOCATED.COM"));
+
+			LoginException unreachable = new LoginException("Receive timed out");
+			unreachable.initCause(new SocketTimeoutException("Receive timed out"));
+			locator.recordLogin(Duration.ofSeconds(30), unreachable);
+			Assertions.assertEquals(Arrays.asList("kdc2:88", "kdc1:88"),
+					GlobalKrb5Configuration.getApplied().getKdcs("LOCATED.COM"));
+
+			config.destroy();
+			locator.recordFailure("kdc2:88");
+			Assertions.assertEquals(Arrays.asList("kdc2:88", "kdc1:88"),
+					GlobalKrb5Configuration.getApplied().getKdcs("LOCATED.COM"));
+		}
+		finally {
+			config.destroy();
+			if (krbConfLocation != null) {
+				System.setProperty("java.security.krb5.conf", krbConfLocation);
+			}
+			else {
+				System.clearProperty("java.security.krb5.conf");
+			}
+		}
+	}
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication.sun;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.security.auth.login.LoginException;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.security.kerberos.authentication.support.MutableClock;
+
+public class KdcLocatorTests {
+
+	private final MutableClock clock = new MutableClock();
+
+	@Test
+	public void fastestKdcFirst() {
+		KdcLocator locator = locator("kdc1", "kdc2", "kdc3");
+		locator.recordSuccess("kdc1", Duration.ofMillis(50));
+		locator.recordSuccess("kdc2", Duration.ofMillis(10));
+		Assertions.assertEquals(Arrays.asList("kdc3", "kdc2", "kdc1"), locator.getKdcs());
+
+		locator.recordSuccess("kdc3", Duration.ofMillis(30));
+		Assertions.assertEquals(Arrays.asList("kdc2", "kdc3", "kdc1"), locator.getKdcs());
+	}
+
+	@Test
+	public void failingKdcEjected() {
+		KdcLocator locator = locator("kdc1", "kdc2");
+		locator.setEjectionDuration(Duration.ofSeconds(30));
+		locator.recordSuccess("kdc1", Duration.ofMillis(10));
+		locator.recordSuccess("kdc2", Duration.ofMillis(20));
+		locator.recordFailure("kdc1");
+		locator.recordFailure("kdc1");
+		Assertions.assertEquals(Arrays.asList("kdc2", "kdc1"), locator.getKdcs());
+
+		// back in after the ejection, but slower on average
+		this.clock.advance(Duration.ofSeconds(31));
+		Assertions.assertEquals(Arrays.asList("kdc2", "kdc1"), locator.getKdcs());
+		for (int i = 0; i < 20; i++) {
+			locator.recordSuccess("kdc1", Duration.ofMillis(5));
+		}
+		Assertions.assertEquals(Arrays.asList("kdc1", "kdc2"), locator.getKdcs());
+	}
+
+	@Test
+	public void probeEjectsUnreachableKdc() throws Exception {
+		int closedPort;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			closedPort = socket.getLocalPort();
+		}
+		try (ServerSocket socket = new ServerSocket(0)) {
+			String down = "localhost:" + closedPort;
+			String up = "localhost:" + socket.getLocalPort();
+			KdcLocator locator = locator(down, up);
+			locator.setFailureThreshold(1);
+			Assertions.assertTrue(locator.probe());
+			Assertions.assertEquals(Arrays.asList(up, down), locator.getKdcs());
+		}
+	}
+
+	@Test
+	public void loginsAttributedToFirstKdc() {
+		KdcLocator locator = locator("kdc1", "kdc2");
+		locator.setFailureThreshold(1);
+		AtomicInteger changes = new AtomicInteger();
+		locator.addOrderChangeListener(changes::incrementAndGet);
+
+		LoginException badPassword = new LoginException("Pre-authentication information was invalid");
+		locator.recordLogin(Duration.ofMillis(10), badPassword);
+		Assertions.assertEquals(Arrays.asList("kdc2", "kdc1"), locator.getKdcs());
+		Assertions.assertEquals(1, changes.get());
+
+		LoginException unreachable = new LoginException("Receive timed out");
+		unreachable.initCause(new SocketTimeoutException("Receive timed out"));
+		locator.recordLogin(Duration.ofSeconds(30), unreachable);
+		Assertions.assertEquals(Arrays.asList("kdc1", "kdc2"), locator.getKdcs());
+		Assertions.assertEquals(2, changes.get());
+	}
+
+	@Test
+	public void failoverLoginFailsFirstKdc() {
+		KdcLocator locator = locator("kdc1", "kdc2");
+		locator.setFailureThreshold(1);
+		locator.setKdcTimeout(Duration.ofSeconds(3));
+		locator.recordSuccess("kdc2", Duration.ofMillis(20));
+		locator.recordSuccess("kdc1", Duration.ofMillis(10));
+		Assertions.assertEquals(Arrays.asList("kdc1", "kdc2"), locator.getKdcs());
+
+		// the jdk waited for kdc1 and the login succeeded with kdc2
+		locator.recordLogin(Duration.ofMillis(3020), null);
+		Assertions.assertEquals(Arrays.asList("kdc2", "kdc1"), locator.getKdcs());
+
+		locator.recordLogin(Duration.ofMillis(20), null);
+		Assertions.assertEquals(Arrays.asList("kdc2", "kdc1"), locator.getKdcs());
+	}
+
+	@Test
+	public void kdcAddressesParsed() throws Exception {
+		assertAddress("localhost", "localhost", 88);
+		assertAddress("localhost:750", "localhost", 750);
+		assertAddress("127.0.0.1:750", "127.0.0.1", 750);
+		assertAddress("::1", "::1", 88);
+		assertAddress("fe80::1:2", "fe80::1:2", 88);
+		assertAddress("[::1]", "::1", 88);
+		assertAddress("[::1]:750", "::1", 750);
+	}
+
+	private static void assertAddress(String kdc, String host, int port) throws Exception {
+		InetSocketAddress address = KdcLocator.toAddress(kdc);
+		Assertions.assertEquals(InetAddress.getByName(host), address.getAddress());
+		Assertions.assertEquals(port, address.getPort());
+	}
+
+	private KdcLocator locator(String... kdcs) {
+		KdcLocator locator = new KdcLocator("EXAMPLE.COM");
+		locator.setKdcs(Arrays.asList(kdcs));
+		locator.setClock(this.clock);
+		return locator;
+	}
+
+}
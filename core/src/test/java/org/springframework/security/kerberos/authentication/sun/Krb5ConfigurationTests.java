@@ -0,0 +1,176 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication.sun;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.core.io.ClassPathResource;
+
+public class Krb5ConfigurationTests {
+
+	private static final String KRB5_CONF = "# comment\n[libdefaults]\n  default_realm = EXAMPLE.COM\n\n[realms]\n"
+			+ "  EXAMPLE.COM = {\n    kdc = kdc1:88\n    kdc = kdc2:88\n    admin_server = kdc1\n  }\n"
+			+ "  OTHER.COM = {\n    kdc = other:88\n  }\n\n[domain_realm]\n  .other.com = OTHER.COM\n";
+
+	@Test
+	public void configurationParsed() {
+		Krb5Configuration configuration = Krb5Configuration.parse(KRB5_CONF);
+		Assertions.assertEquals("EXAMPLE.COM", configuration.getDefaultRealm());
+		Assertions.assertEquals(Arrays.asList("EXAMPLE.COM", "OTHER.COM"),
+				Arrays.asList(configuration.getRealms().toArray()));
+		Assertions.assertEquals(Arrays.asList("kdc1:88", "kdc2:88"), configuration.getKdcs("EXAMPLE.COM"));
+		Assertions.assertEquals(Collections.singletonList("OTHER.COM"),
+				configuration.getValues("domain_realm", ".other.com"));
+		Assertions.assertEquals(configuration, Krb5Configuration.parse(configuration.render()));
+	}
+
+	@Test
+	public void kdcsOfRealmReplaced() {
+		Krb5Configuration configuration = Krb5Configuration.parse(KRB5_CONF);
+		Krb5Configuration updated = configuration.withKdcs("EXAMPLE.COM", Arrays.asList("kdc2:88", "kdc1:88"));
+		Assertions.assertEquals(Arrays.asList("kdc2:88", "kdc1:88"), updated.getKdcs("EXAMPLE.COM"));
+		Assertions.assertEquals(Arrays.asList("kdc1:88", "kdc2:88"), configuration.getKdcs("EXAMPLE.COM"));
+		Assertions.assertTrue(updated.render().contains("kdc = kdc1:88\n    admin_server = kdc1\n"));
+
+		Krb5Configuration added = Krb5Configuration.empty().withKdcs("NEW.COM", Arrays.asList("kdc3"));
+		Assertions.assertEquals("[realms]\n  NEW.COM = {\n    kdc = kdc3\n  }\n", added.render());
+	}
+
+	@Test
+	public void realmsMergedSideBySide() {
+		Krb5Configuration configuration = Krb5Configuration.parse(KRB5_CONF);
+		Krb5Configuration other = Krb5Configuration.empty().withKdcs("OTHER.COM", Arrays.asList("other2:88"))
+				.withKdcs("NEW.COM", Arrays.asList("kdc3:88"));
+		Krb5Configuration merged = configuration.merge(other);
+		Assertions.assertEquals(Arrays.asList("kdc1:88", "kdc2:88"), merged.getKdcs("EXAMPLE.COM"));
+		Assertions.assertEquals(Arrays.asList("other2:88"), merged.getKdcs("OTHER.COM"));
+		Assertions.assertEquals(Arrays.asList("kdc3:88"), merged.getKdcs("NEW.COM"));
+		Assertions.assertEquals(merged, merged.merge(other));
+	}
+
+	@Test
+	public void malformedConfigurationRejected() {
+		Assertions.assertThrows(IllegalArgumentException.class,
+				() -> Krb5Configuration.parse("[realms]\n  EXAMPLE.COM = {\n    kdc = kdc1\n"));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> Krb5Configuration.parse("kdc = kdc1\n"));
+		Assertions.assertThrows(IllegalArgumentException.class,
+				() -> Krb5Configuration.parse("[realms]\n  EXAMPLE.COM =\n    kdc = kdc1\n"));
+		Assertions.assertThrows(IllegalArgumentException.class,
+				() -> Krb5Configuration.parse("[realms]\n  EXAMPLE.COM =\n"));
+	}
+
+	@Test
+	public void openingBraceOnNextLine() {
+		Krb5Configuration configuration = Krb5Configuration
+				.parse("[realms]\n  EXAMPLE.COM =\n  # the kdcs\n  {\n    kdc = kdc1:88\n  }\n");
+		Assertions.assertEquals(Arrays.asList("kdc1:88"), configuration.getKdcs("EXAMPLE.COM"));
+		Assertions.assertEquals(configuration, Krb5Configuration.parse(configuration.render()));
+	}
+
+	@Test
+	public void directivesKept() {
+		Krb5Configuration configuration = Krb5Configuration.parse("include /etc/krb5.local.conf\n[libdefaults]\n"
+				+ "  include = relation\n\nmodule /usr/lib/krb5/plugins/db.so:residual\n[realms]\n");
+		Assertions.assertEquals(
+				Arrays.asList("include /etc/krb5.local.conf", "module /usr/lib/krb5/plugins/db.so:residual"),
+				configuration.getDirectives());
+		Assertions.assertEquals(Arrays.asList("relation"), configuration.getValues("libdefaults", "include"));
+		Assertions.assertTrue(configuration.render().startsWith(
+				"include /etc/krb5.local.conf\nmodule /usr/lib/krb5/plugins/db.so:residual\n\n[libdefaults]\n"));
+
+		Krb5Configuration merged = configuration
+				.merge(Krb5Configuration.parse("includedir /etc/krb5.conf.d/\ninclude /etc/krb5.local.conf\n"));
+		Assertions.assertEquals(Arrays.asList("include /etc/krb5.local.conf",
+				"module /usr/lib/krb5/plugins/db.so:residual", "includedir /etc/krb5.conf.d/"), merged.getDirectives());
+	}
+
+	@Test
+	public void fedoraConfigurationParsed() throws Exception {
+		Krb5Configuration configuration = Krb5Configuration
+				.load(new ClassPathResource("fedora-krb5.conf", Krb5ConfigurationTests.class));
+		Assertions.assertEquals(Collections.singletonList("includedir /etc/krb5.conf.d/"),
+				configuration.getDirectives());
+		Assertions.assertNull(configuration.getDefaultRealm());
+		Assertions.assertTrue(configuration.getRealms().isEmpty());
+		Assertions.assertEquals(Collections.singletonList("KEYRING:persistent:%{uid}"),
+				configuration.getValues("libdefaults", "default_ccache_name"));
+		Assertions.assertEquals(Collections.singletonList(""),
+				configuration.getValues("libdefaults", "qualify_shortname"));
+		Assertions.assertEquals(configuration, Krb5Configuration.parse(configuration.render()));
+
+		Krb5Configuration updated = configuration.withKdcs("EXAMPLE.COM", Arrays.asList("kdc1:88"));
+		Assertions.assertTrue(updated.render().startsWith("includedir /etc/krb5.conf.d/\n"));
+		Assertions.assertTrue(updated.render().contains("  qualify_shortname = \"\"\n"));
+	}
+
+	@Test
+	public void configurationAppliedOnlyWhenChanged() throws Exception {
+		String krbConfLocation = System.getProperty("java.security.krb5.conf");
+		try {
+			Krb5Configuration configuration = Krb5Configuration.empty().withKdcs("APPLIED.COM",
+					Arrays.asList("kdc1:88"));
+			GlobalKrb5Configuration.apply(configuration);
+			Assertions.assertFalse(GlobalKrb5Configuration.apply(configuration));
+			Assertions
+					.assertEquals(Arrays.asList("kdc1:88"),
+							Krb5Configuration.parse(new String(
+									Files.readAllBytes(Paths.get(System.getProperty("java.security.krb5.conf"))),
+									StandardCharsets.UTF_8)).getKdcs("APPLIED.COM"));
+			Assertions.assertTrue(GlobalKrb5Configuration
+					.apply(Krb5Configuration.empty().withKdcs("APPLIED.COM", Arrays.asList("kdc2:88"))));
+		}
+		finally {
+			if (krbConfLocation != null) {
+				System.setProperty("java.security.krb5.conf", krbConfLocation);
+			}
+			else {
+				System.clearProperty("java.security.krb5.conf");
+			}
+		}
+	}
+
+	@Test
+	public void appliedConfigurationRefreshesJdk() throws Exception {
+		String krbConfLocation = System.getProperty("java.security.krb5.conf");
+		try {
+			GlobalKrb5Configuration
+					.apply(Krb5Configuration.empty().withKdcs("REFRESHED.COM", Arrays.asList("kdc3:88")));
+			Assumptions.assumeFalse(GlobalKrb5Configuration.isLoginRefreshRequired());
+			Class<?> configClass = Class.forName("sun.security.krb5.Config");
+			Object config = configClass.getMethod("getInstance").invoke(null);
+			Assertions.assertEquals("kdc3:88",
+					configClass.getMethod("getKDCList", String.class).invoke(config, "REFRESHED.COM"));
+		}
+		finally {
+			if (krbConfLocation != null) {
+				System.setProperty("java.security.krb5.conf", krbConfLocation);
+			}
+			else {
+				System.clearProperty("java.security.krb5.conf");
+			}
+		}
+	}
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication.sun;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.util.StreamUtils;
+
+public class NativeImageConfigurationTests {
+
+	private static final String REFLECT_CONFIG = "META-INF/native-image/io.github.openprojectx.security.kerberos/"
+			+ "spring-security-kerberos-core/reflect-config.json";
+
+	private static final Pattern TYPE = Pattern.compile("^ {4}\"name\": \"([^\"]+)\"");
+
+	private static final Pattern METHOD = Pattern
+			.compile("\\{ \"name\": \"([^\"]+)\", \"parameterTypes\": \\[([^\\]]*)\\] \\}");
+
+	@Test
+	public void reflectiveTypesAndMembersExist() throws Exception {
+		String config;
+		try (InputStream in = getClass().getClassLoader().getResourceAsStream(REFLECT_CONFIG)) {
+			Assertions.assertNotNull(in, "Missing " + REFLECT_CONFIG);
+			config = StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+		}
+		int types = 0;
+		Class<?> type = null;
+		for (String line : config.split("\n")) {
+			Matcher typeMatcher = TYPE.matcher(line);
+			if (typeMatcher.find()) {
+				type = Class.forName(typeMatcher.group(1), false, getClass().getClassLoader());
+				types++;
+			}
+			Matcher methodMatcher = METHOD.matcher(line);
+			while (methodMatcher.find()) {
+				List<Class<?>> parameterTypes = new ArrayList<Class<?>>();
+				for (String parameterType : methodMatcher.group(2).split(",")) {
+					if (!parameterType.trim().isEmpty()) {
+						parameterTypes.add(Class.forName(parameterType.trim().replace("\"", ""), false,
+								getClass().getClassLoader()));
+					}
+				}
+				Class<?>[] parameters = parameterTypes.toArray(new Class<?>[0]);
+				if ("<init>".equals(methodMatcher.group(1))) {
+					type.getDeclaredConstructor(parameters);
+				}
+				else {
+					type.getDeclaredMethod(methodMatcher.group(1), parameters);
+				}
+			}
+		}
+		Assertions.assertEquals(6, types);
+	}
+
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication.sun;
+
+import java.security.PrivilegedActionException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.security.auth.Subject;
+
+import org.ietf.jgss.GSSCredential;
+import org.ietf.jgss.GSSException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.kerberos.authentication.support.MutableClock;
+
+public class SunJaasKerberosConstrainedDelegationTests {
+
+	@Test
+	public void testServicePrincipalRequired() {
+		SunJaasKerberosConstrainedDelegation delegation = new SunJaasKerberosConstrainedDelegation();
+		delegation.setKeyTabLocation(new FileSystemResource("/tmp/service.keytab"));
+		IllegalArgumentException exception = Assertions.assertThrows(IllegalArgumentException.class,
+				delegation::afterPropertiesSet);
+		Assertions.assertEquals("servicePrincipal must be specified", exception.getMessage());
+	}
+
+	@Test
+	public void testKeyTabRequired() {
+		SunJaasKerberosConstrainedDelegation delegation = new SunJaasKerberosConstrainedDelegation();
+		delegation.setServicePrincipal("HTTP/webtier@EXAMPLE.COM");
+		IllegalArgumentException exception = Assertions.assertThrows(IllegalArgumentException.class,
+				delegation::afterPropertiesSet);
+		Assertions.assertEquals("keyTab must be specified", exception.getMessage());
+	}
+
+	@Test
+	public void testImpersonationIsCached() throws Exception {
+		StubDelegation delegation = new StubDelegation(3600);
+		delegation.afterPropertiesSet();
+		GSSCredential credential = delegation.getImpersonationCredential("user1");
+		Assertions.assertSame(credential, delegation.getImpersonationCredential("user1"));
+		Assertions.assertNotSame(credential, delegation.getImpersonationCredential("user2"));
+		Assertions.assertEquals(2, delegation.impersonations.get());
+		Assertions.assertEquals(1, delegation.logins.get());
+	}
+
+	@Test
+	public void testImpersonationExpiresBeforeCredential() throws Exception {
+		StubDelegation delegation = new StubDelegation(600);
+		delegation.setRenewalThreshold(Duration.ofMinutes(5));
+		delegation.afterPropertiesSet();
+		GSSCredential credential = delegation.getImpersonationCredential("user1");
+		delegation.clock.advance(Duration.ofMinutes(4));
+		Assertions.assertSame(credential, delegation.getImpersonationCredential("user1"));
+		delegation.clock.advance(Duration.ofMinutes(2));
+		Assertions.assertNotSame(credential, delegation.getImpersonationCredential("user1"));
+		Assertions.assertEquals(2, delegation.impersonations.get());
+	}
+
+	@Test
+	public void testImpersonationExpiresAfterTimeToLive() throws Exception {
+		StubDelegation delegation = new StubDelegation(36000);
+		delegation.setCache(10, Duration.ofMinutes(10));
+		delegation.afterPropertiesSet();
+		GSSCredential credential = delegation.getImpersonationCredential("user1");
+		delegation.clock.advance(Duration.ofMinutes(9));
+		Assertions.assertSame(credential, delegation.getImpersonationCredential("user1"));
+		delegation.clock.advance(Duration.ofMinutes(2));
+		Assertions.assertNotSame(credential, delegation.getImpersonationCredential("user1"));
+	}
+
+	@Test
+	public void testServiceLogsInAgainBeforeExpiry() throws Exception {
+		StubDelegation delegation = new StubDelegation(60);
+		delegation.afterPropertiesSet();
+		delegation.getImpersonationCredential("user1");
+		delegation.clock.advance(Duration.ofMinutes(30));
+		delegation.getImpersonationCredential("user2");
+		Assertions.assertEquals(1, delegation.logins.get());
+		delegation.clock.advance(Duration.ofMinutes(31));
+		delegation.getImpersonationCredential("user3");
+		Assertions.assertEquals(2, delegation.logins.get());
+	}
+
+	@Test
+	public void testConcurrentImpersonationsAreCoalesced() throws Exception {
+		StubDelegation delegation = new StubDelegation(3600);
+		delegation.afterPropertiesSet();
+		delegation.blocked = new CountDownLatch(1);
+		List<GSSCredential> credentials = new ArrayList<GSSCredential>();
+		List<Thread> threads = startImpersonations(delegation, credentials, new ArrayList<RuntimeException>());
+		delegation.blocked.countDown();
+		for (Thread thread : threads) {
+			thread.join(10000);
+		}
+		Assertions.assertEquals(4, credentials.size());
+		for (GSSCredential credential : credentials) {
+			Assertions.assertSame(credentials.get(0), credential);
+		}
+		Assertions.assertEquals(1, delegation.impersonations.get());
+		Assertions.assertSame(credentials.get(0), delegation.getImpersonationCredential("user1"));
+	}
+
+	@Test
+	public void testFailedImpersonationIsSharedAndNotCached() throws Exception {
+		StubDelegation delegation = new StubDelegation(3600);
+		delegation.afterPropertiesSet();
+		delegation.blocked = new CountDownLatch(1);
+		delegation.failure = new GSSException(GSSException.NO_CRED);
+		List<RuntimeException> failures = new ArrayList<RuntimeException>();
+		List<Thread> threads = startImpersonations(delegation, new ArrayList<GSSCredential>(), failures);
+		delegation.blocked.countDown();
+		for (Thread thread : threads) {
+			thread.join(10000);
+		}
+		Assertions.assertEquals(4, failures.size());
+		for (RuntimeException failure : failures) {
+			Assertions.assertSame(failures.get(0), failure);
+		}
+		Assertions.assertTrue(failures.get(0) instanceof BadCredentialsException);
+		Assertions.assertEquals(1, delegation.impersonations.get());
+		delegation.failure = null;
+		Assertions.assertNotNull(delegation.getImpersonationCredential("user1"));
+		Assertions.assertEquals(2, delegation.impersonations.get());
+	}
+
+	private static List<Thread> startImpersonations(StubDelegation delegation, List<GSSCredential> credentials,
+			List<RuntimeException> failures) throws InterruptedException {
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < 4; i++) {
+			Thread thread = new Thread(() -> {
+				try {
+					GSSCredential credential = delegation.getImpersonationCredential("user1");
+					synchronized (credentials) {
+						credentials.add(credential);
+					}
+				}
+				catch (RuntimeException ex) {
+					synchronized (failures) {
+						failures.add(ex);
+					}
+				}
+			});
+			thread.start();
+			threads.add(thread);
+			if (i == 0) {
+				Assertions.assertTrue(delegation.entered.await(10, TimeUnit.SECONDS));
+			}
+		}
+		// all threads waiting, the first one in the impersonation and the others for it
+		for (Thread thread : threads) {
+			while (thread.getState() != Thread.State.WAITING) {
+				Thread.sleep(10);
+			}
+		}
+		Assertions.assertEquals(1, delegation.impersonations.get());
+		return threads;
+	}
+
+	private static final class StubDelegation extends SunJaasKerberosConstrainedDelegation {
+
+		private final MutableClock clock = new MutableClock();
+
+		private final int credentialLifetime;
+
+		private final AtomicInteger logins = new AtomicInteger();
+
+		private final AtomicInteger impersonations = new AtomicInteger();
+
+		private final CountDownLatch entered = new CountDownLatch(1);
+
+		private volatile CountDownLatch blocked;
+
+		private volatile GSSException failure;
+
+		private StubDelegation(int credentialLifetime) {
+			this.credentialLifetime = credentialLifetime;
+			setServicePrincipal("HTTP/webtier@EXAMPLE.COM");
+			setKeyTabLocation(new FileSystemResource("/tmp/service.keytab"));
+			setClock(this.clock);
+		}
+
+		@Override
+		ServiceLogin login() {
+			this.logins.incrementAndGet();
+			return new ServiceLogin(new Subject(), Mockito.mock(GSSCredential.class),
+					this.clock.millis() + Duration.ofHours(1).toMillis());
+		}
+
+		@Override
+		GSSCredential impersonate(GSSCredential serviceCredential, Subject subject, String username)
+				throws PrivilegedActionException {
+			this.impersonations.incrementAndGet();
+			this.entered.countDown();
+			if (this.blocked != null) {
+				try {
+					this.blocked.await();
+				}
+				catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			if (this.failure != null) {
+				throw new PrivilegedActionException(this.failure);
+			}
+			GSSCredential credential = Mockito.mock(GSSCredential.class);
+			try {
+				Mockito.when(credential.getRemainingLifetime()).thenReturn(this.credentialLifetime);
+			}
+			catch (GSSException ex) {
+				throw new IllegalStateException(ex);
+			}
+			return credential;
+		}
+
+	}
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.authentication.support;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ExpiringCacheTest {
+
+	private final MutableClock clock = new MutableClock();
+
+	@Test
+	public void entriesExpireAfterTimeToLive() {
+		ExpiringCache<String, String> cache = new ExpiringCache<>(10, Duration.ofSeconds(10), this.clock);
+		cache.put("key", "value");
+		Assertions.assertEquals("value", cache.get("key"));
+
+		this.clock.advance(Duration.ofSeconds(10));
+		Assertions.assertNull(cache.get("key"));
+		Assertions.assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void entriesExpireAtGivenTime() {
+		ExpiringCache<String, String> cache = new ExpiringCache<>(10, Duration.ofSeconds(10), this.clock);
+		cache.put("key", "value", this.clock.millis() + 2000);
+
+		this.clock.advance(Duration.ofSeconds(1));
+		Assertions.assertEquals("value", cache.get("key"));
+		this.clock.advance(Duration.ofSeconds(1));
+		Assertions.assertNull(cache.get("key"));
+
+		cache.put("key", "value", this.clock.millis());
+		Assertions.assertNull(cache.get("key"));
+	}
+
+	@Test
+	public void timeToLiveLimitsGivenExpiry() {
+		ExpiringCache<String, String> cache = new ExpiringCache<>(10, Duration.ofSeconds(10), this.clock);
+		cache.put("key", "value", this.clock.millis() + 60000);
+
+		this.clock.advance(Duration.ofSeconds(10));
+		Assertions.assertNull(cache.get("key"));
+	}
+
+	@Test
+	public void sizeIsBounded() {
+		ExpiringCache<Integer, String> cache = new ExpiringCache<>(10, Duration.ofSeconds(10), this.clock);
+		for (int i = 0; i < 100; i++) {
+			cache.put(i, "value");
+		}
+		Assertions.assertTrue(cache.size() <= 10);
+		Assertions.assertEquals("value", cache.get(99));
+	}
+
+	@Test
+	public void expiredEntriesAreEvictedFirst() {
+		ExpiringCache<Integer, String> cache = new ExpiringCache<>(2, Duration.ofSeconds(10), this.clock);
+		cache.put(1, "value", this.clock.millis() + 1000);
+		cache.put(2, "value");
+		this.clock.advance(Duration.ofSeconds(1));
+
+		cache.put(3, "value");
+		Assertions.assertEquals("value", cache.get(2));
+		Assertions.assertEquals("value", cache.get(3));
+	}
+
+	@Test
+	public void oldestEntryIsEvictedWhenFull() {
+		ExpiringCache<Integer, String> cache = new ExpiringCache<>(2, Duration.ofSeconds(10), this.clock);
+		cache.put(1, "value");
+		cache.put(2, "value");
+		cache.put(1, "other");
+
+		cache.put(3, "value");
+		Assertions.assertEquals("other", cache.get(1));
+		Assertions.assertNull(cache.get(2));
+		Assertions.assertEquals("value", cache.get(3));
+		Assertions.assertEquals(1, cache.getEvictionCount());
+	}
+
+	@Test
+	public void concurrentPutsStayWithinMaxSize() throws Exception {
+		ExpiringCache<Integer, String> cache = new ExpiringCache<>(100, Duration.ofSeconds(10), this.clock);
+		int threads = 8;
+		int puts = 10000;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicBoolean done = new AtomicBoolean();
+		AtomicInteger maxSize = new AtomicInteger();
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				int offset = i * puts;
+				futures.add(executor.submit(() -> {
+					start.await();
+					for (int j = 0; j < puts; j++) {
+						cache.put(offset + j, "value");
+					}
+					return null;
+				}));
+			}
+			Thread watcher = new Thread(() -> {
+				while (!done.get()) {
+					maxSize.accumulateAndGet(cache.size(), Math::max);
+				}
+			});
+			watcher.start();
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get(30, TimeUnit.SECONDS);
+			}
+			done.set(true);
+			watcher.join();
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		Assertions.assertTrue(maxSize.get() <= 100, "size exceeded maximum: " + maxSize.get());
+		Assertions.assertEquals(100, cache.size());
+		Assertions.assertEquals(threads * puts, cache.getPutCount());
+		Assertions.assertEquals(threads * puts - 100, cache.getEvictionCount());
+	}
+
+	@Test
+	public void removeReturnsLiveValue() {
+		ExpiringCache<String, String> cache = new ExpiringCache<>(10, Duration.ofSeconds(10), this.clock);
+		cache.put("key", "value");
+		Assertions.assertEquals("value", cache.remove("key"));
+		Assertions.assertNull(cache.get("key"));
+	}
+
+	@Test
+	public void statisticsAreCounted() {
+		ExpiringCache<Integer, String> cache = new ExpiringCache<>(2, Duration.ofSeconds(10), this.clock);
+		cache.put(1, "value", this.clock.millis() + 1000);
+		cache.put(2, "value");
+		Assertions.assertEquals("value", cache.get(2));
+		Assertions.assertNull(cache.get(3));
+
+		this.clock.advance(Duration.ofSeconds(1));
+		Assertions.assertNull(cache.get(1));
+		cache.put(3, "value");
+		cache.put(4, "value");
+
+		Assertions.assertEquals(1, cache.getHitCount());
+		Assertions.assertEquals(2, cache.getMissCount());
+		Assertions.assertEquals(4, cache.getPutCount());
+		Assertions.assertEquals(2, cache.getEvictionCount());
+	}
+
+}
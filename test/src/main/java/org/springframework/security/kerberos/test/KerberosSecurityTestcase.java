@@ -27,6 +27,10 @@ import org.junit.jupiter.api.BeforeEach;
  * KerberosSecurityTestcase starts the MiniKdc (@Before) before running tests, and stop
  * the MiniKdc (@After) after the testcases, using default settings (working dir and kdc
  * configurations).
+ * <p>
+ * Testcases running in parallel can override {@link #createMiniKdcConf()} to give each
+ * one its own realm with {@link MiniKdc#ORG_NAME}, and should use principal names
+ * qualified with the realm of their KDC.
  *
  * @author Original Hadoop MiniKdc Authors
  * @author Janne Valkealahti
@@ -55,7 +59,16 @@ public class KerberosSecurityTestcase {
 	 * the MiniKdc stops.
 	 */
 	public void createTestDir() {
-		this.workDir = new File(System.getProperty("test.dir", "target"));
+		this.workDir = defaultWorkDir();
+	}
+
+	/**
+	 * Returns the default working directory, given by the {@code test.dir} system
+	 * property and {@code target} if not set.
+	 * @return the working directory
+	 */
+	public static File defaultWorkDir() {
+		return new File(System.getProperty("test.dir", "target"));
 	}
 
 	/**
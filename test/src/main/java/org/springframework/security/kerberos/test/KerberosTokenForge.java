@@ -0,0 +1,588 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import javax.security.auth.kerberos.KerberosPrincipal;
+
+import org.apache.directory.api.asn1.AbstractAsn1Object;
+import org.apache.directory.server.kerberos.shared.crypto.encryption.CipherTextHandler;
+import org.apache.directory.server.kerberos.shared.crypto.encryption.KeyUsage;
+import org.apache.directory.server.kerberos.shared.crypto.encryption.NFold;
+import org.apache.directory.server.kerberos.shared.crypto.encryption.RandomKeyFactory;
+import org.apache.directory.server.kerberos.shared.keytab.Keytab;
+import org.apache.directory.server.kerberos.shared.keytab.KeytabEntry;
+import org.apache.directory.shared.kerberos.KerberosTime;
+import org.apache.directory.shared.kerberos.codec.types.AuthorizationType;
+import org.apache.directory.shared.kerberos.codec.types.EncryptionType;
+import org.apache.directory.shared.kerberos.codec.types.TransitedEncodingType;
+import org.apache.directory.shared.kerberos.components.AuthorizationData;
+import org.apache.directory.shared.kerberos.components.AuthorizationDataEntry;
+import org.apache.directory.shared.kerberos.components.EncKrbCredPart;
+import org.apache.directory.shared.kerberos.components.EncTicketPart;
+import org.apache.directory.shared.kerberos.components.EncryptedData;
+import org.apache.directory.shared.kerberos.components.EncryptionKey;
+import org.apache.directory.shared.kerberos.components.KrbCredInfo;
+import org.apache.directory.shared.kerberos.components.PrincipalName;
+import org.apache.directory.shared.kerberos.components.TransitedEncoding;
+import org.apache.directory.shared.kerberos.flags.TicketFlag;
+import org.apache.directory.shared.kerberos.flags.TicketFlags;
+import org.apache.directory.shared.kerberos.messages.KrbCred;
+import org.apache.directory.shared.kerberos.messages.Ticket;
+
+/**
+ * Creates Kerberos and SPNEGO tokens for a service without a KDC, to benchmark and load
+ * test ticket validation without being limited by the throughput of a KDC. Service
+ * tickets are encrypted with the key of the service from its keytab, as a KDC would do,
+ * for synthetic client principals which do not need to exist anywhere.
+ * <p>
+ * A ticket is created once for every client principal and reused until half of its
+ * lifetime passed, like a real client would do. Every token has its own authenticator
+ * with increasing times for each client, so that no token is rejected as a replay. The
+ * replay cache of the JDK keeps a list per client, spreading tokens over a few clients
+ * with {@link #setClientCount(int)} keeps these lists short. Tokens need to be validated
+ * within the clock skew of the service after they were created.
+ * <p>
+ * The forge is configured before the first token is created and is thread safe
+ * afterwards.
+ */
+public class KerberosTokenForge {
+
+	private static final byte[] KRB5_OID = { 0x06, 0x09, 0x2a, (byte) 0x86, 0x48, (byte) 0x86, (byte) 0xf7, 0x12, 0x01,
+			0x02, 0x02 };
+
+	private static final byte[] SPNEGO_OID = { 0x06, 0x06, 0x2b, 0x06, 0x01, 0x05, 0x05, 0x02 };
+
+	private static final byte[] AP_REQ_TOKEN_ID = { 0x01, 0x00 };
+
+	private static final int GSS_CHECKSUM_TYPE = 0x8003;
+
+	private static final int GSS_DELEG_FLAG = 1;
+
+	private static final int GSS_CONF_FLAG = 16;
+
+	private static final int GSS_INTEG_FLAG = 32;
+
+	private static final int PAC_HEADER_SIZE = 24;
+
+	private final KerberosPrincipal servicePrincipal;
+
+	private final Keytab keytab;
+
+	private final CipherTextHandler cipherTextHandler = new CipherTextHandler();
+
+	private final SecureRandom random = new SecureRandom();
+
+	private String encryptionType = "aes128-cts-hmac-sha1-96";
+
+	private Duration ticketLifetime = Duration.ofHours(10);
+
+	private boolean forwardable = true;
+
+	private boolean requestCredDeleg;
+
+	private int pacSize;
+
+	private String clientPrincipal = "client";
+
+	private int clientCount = 1;
+
+	private EncryptionKey serviceKey;
+
+	private Client[] clients;
+
+	private long tokenCount;
+
+	/**
+	 * Creates a forge for tokens to the given service.
+	 * @param servicePrincipal the service principal, including the realm
+	 * @param keyTab the keytab with the keys of the service principal
+	 * @throws IOException if the keytab could not be read
+	 */
+	public KerberosTokenForge(String servicePrincipal, File keyTab) throws IOException {
+		this.servicePrincipal = new KerberosPrincipal(servicePrincipal);
+		this.keytab = Keytab.read(keyTab);
+	}
+
+	/**
+	 * Sets the encryption type of tickets and authenticators, by its name in krb5.conf.
+	 * Defaults to aes128-cts-hmac-sha1-96. The keytab needs a key of this type.
+	 * @param encryptionType the encryption type
+	 */
+	public void setEncryptionType(String encryptionType) {
+		this.encryptionType = encryptionType;
+	}
+
+	/**
+	 * Sets the lifetime of created tickets. Defaults to 10 hours.
+	 * @param ticketLifetime the ticket lifetime
+	 */
+	public void setTicketLifetime(Duration ticketLifetime) {
+		this.ticketLifetime = ticketLifetime;
+	}
+
+	/**
+	 * Sets if tickets are marked as forwardable. Defaults to {@code true}.
+	 * @param forwardable if tickets are forwardable
+	 */
+	public void setForwardable(boolean forwardable) {
+		this.forwardable = forwardable;
+	}
+
+	/**
+	 * Sets if tokens delegate a ticket granting ticket of the client to the service, as
+	 * {@code GSSContext.requestCredDeleg(true)} does. The delegated ticket can not be
+	 * used with a KDC. Defaults to {@code false}.
+	 * @param requestCredDeleg if credentials are delegated
+	 */
+	public void setRequestCredDeleg(boolean requestCredDeleg) {
+		this.requestCredDeleg = requestCredDeleg;
+	}
+
+	/**
+	 * Sets the size in bytes of an unsigned PAC added to tickets, to have tickets as
+	 * large as those of Active Directory. The PAC has a valid header and random content.
+	 * Defaults to 0 for no PAC.
+	 * @param pacSize the PAC size
+	 */
+	public void setPacSize(int pacSize) {
+		if (pacSize != 0 && pacSize < PAC_HEADER_SIZE) {
+			throw new IllegalArgumentException("PAC size needs to be 0 or at least " + PAC_HEADER_SIZE);
+		}
+		this.pacSize = pacSize;
+	}
+
+	/**
+	 * Sets the client principal, without a realm for the realm of the service. Defaults
+	 * to {@code client}.
+	 * @param clientPrincipal the client principal
+	 */
+	public void setClientPrincipal(String clientPrincipal) {
+		this.clientPrincipal = clientPrincipal;
+	}
+
+	/**
+	 * Sets the number of clients tokens are created for in turn. With more than one
+	 * client the index of the client is appended to the name of the client principal.
+	 * Defaults to 1.
+	 * @param clientCount the number of clients
+	 */
+	public void setClientCount(int clientCount) {
+		if (clientCount < 1) {
+			throw new IllegalArgumentException("At least one client is needed");
+		}
+		this.clientCount = clientCount;
+	}
+
+	/**
+	 * Creates a Kerberos token, the initial context token of the Kerberos GSS mechanism.
+	 * @return a new Kerberos token
+	 * @throws Exception if the token could not be created
+	 */
+	public byte[] createKerberosToken() throws Exception {
+		Client client = nextClient();
+		Authentication authentication;
+		synchronized (client) {
+			authentication = client.next();
+		}
+		// Authenticator and AP-REQ of RFC 4120, encoded here as the codec of ApacheDS
+		// does not know the checksum type of RFC 4121 carrying the GSS flags
+		byte[] authenticator = der(0x62,
+				der(0x30, der(0xa0, derInteger(5)), der(0xa1, derString(client.realm)), der(0xa2, client.name),
+						der(0xa3,
+								der(0x30, der(0xa0, derInteger(GSS_CHECKSUM_TYPE)),
+										der(0xa1, der(0x04, authentication.checksum)))),
+						der(0xa4, derInteger(authentication.cusec)), der(0xa5, der(0x18, authentication.ctime)),
+						der(0xa7, derInteger(authentication.seqNumber))));
+		byte[] encryptedAuthenticator;
+		if (authentication.authenticatorCipher != null) {
+			encryptedAuthenticator = der(0x30, der(0xa0, derInteger(authentication.sessionKey.getKeyType().getValue())),
+					der(0xa2, der(0x04, authentication.authenticatorCipher.encrypt(authenticator))));
+		}
+		else {
+			encryptedAuthenticator = encode(this.cipherTextHandler.encrypt(authentication.sessionKey, authenticator,
+					KeyUsage.AP_REQ_AUTHNT_SESS_KEY));
+		}
+		byte[] apReq = der(0x6e,
+				der(0x30, der(0xa0, derInteger(5)), der(0xa1, derInteger(14)),
+						der(0xa2, new byte[] { 0x03, 0x05, 0x00, 0x00, 0x00, 0x00, 0x00 }),
+						der(0xa3, authentication.ticket), der(0xa4, encryptedAuthenticator)));
+		return der(0x60, KRB5_OID, AP_REQ_TOKEN_ID, apReq);
+	}
+
+	/**
+	 * Creates a SPNEGO token, an initial negotiation token with a Kerberos token as the
+	 * optimistic mechanism token, as sent in a {@code Negotiate} authorization header.
+	 * @return a new SPNEGO token
+	 * @throws Exception if the token could not be created
+	 */
+	public byte[] createSpnegoToken() throws Exception {
+		byte[] negTokenInit = der(0x30, der(0xa0, der(0x30, KRB5_OID)), der(0xa2, der(0x04, createKerberosToken())));
+		return der(0x60, SPNEGO_OID, der(0xa0, negTokenInit));
+	}
+
+	private synchronized Client nextClient() throws Exception {
+		if (this.clients == null) {
+			EncryptionType type = EncryptionType.getByName(this.encryptionType);
+			if (type == EncryptionType.UNKNOWN) {
+				throw new IllegalArgumentException("Unknown encryption type " + this.encryptionType);
+			}
+			for (KeytabEntry entry : this.keytab.getEntries()) {
+				// components are read with a backslash as separator
+				if (entry.getPrincipalName().replace('\\', '/').equals(this.servicePrincipal.getName())
+						&& entry.getKey().getKeyType() == type && (this.serviceKey == null
+								|| (entry.getKeyVersion() & 0xff) > this.serviceKey.getKeyVersion())) {
+					this.serviceKey = new EncryptionKey(type, entry.getKey().getKeyValue(),
+							entry.getKeyVersion() & 0xff);
+				}
+			}
+			if (this.serviceKey == null) {
+				throw new IllegalArgumentException(
+						"No " + this.encryptionType + " key for " + this.servicePrincipal + " in keytab");
+			}
+			this.clients = new Client[this.clientCount];
+			for (int i = 0; i < this.clientCount; i++) {
+				String name = this.clientPrincipal;
+				if (this.clientCount > 1) {
+					int at = name.indexOf('@');
+					name = (at < 0) ? name + i : name.substring(0, at) + i + name.substring(at);
+				}
+				if (name.indexOf('@') < 0) {
+					name = name + "@" + this.servicePrincipal.getRealm();
+				}
+				this.clients[i] = new Client(new KerberosPrincipal(name));
+			}
+		}
+		return this.clients[(int) (this.tokenCount++ % this.clients.length)];
+	}
+
+	private byte[] createPac() {
+		byte[] pac = new byte[this.pacSize];
+		this.random.nextBytes(pac);
+		ByteBuffer header = ByteBuffer.wrap(pac).order(ByteOrder.LITTLE_ENDIAN);
+		// one logon information buffer after the header
+		header.putInt(1).putInt(0).putInt(1).putInt(this.pacSize - PAC_HEADER_SIZE).putLong(PAC_HEADER_SIZE);
+		return pac;
+	}
+
+	private static byte[] encode(AbstractAsn1Object object) throws Exception {
+		return object.encode(ByteBuffer.allocate(object.computeLength())).array();
+	}
+
+	private static byte[] der(int tag, byte[]... contents) {
+		int length = 0;
+		for (byte[] content : contents) {
+			length += content.length;
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream(length + 6);
+		out.write(tag);
+		if (length < 0x80) {
+			out.write(length);
+		}
+		else {
+			int bytes = (length < 0x100) ? 1 : (length < 0x10000) ? 2 : (length < 0x1000000) ? 3 : 4;
+			out.write(0x80 | bytes);
+			for (int i = bytes - 1; i >= 0; i--) {
+				out.write(length >>> (8 * i));
+			}
+		}
+		for (byte[] content : contents) {
+			out.write(content, 0, content.length);
+		}
+		return out.toByteArray();
+	}
+
+	private static byte[] derInteger(long value) {
+		int bytes = 1;
+		while (bytes < 8 && (value >> (8 * bytes - 1)) != 0 && (value >> (8 * bytes - 1)) != -1) {
+			bytes++;
+		}
+		byte[] content = new byte[bytes];
+		for (int i = 0; i < bytes; i++) {
+			content[i] = (byte) (value >>> (8 * (bytes - 1 - i)));
+		}
+		return der(0x02, content);
+	}
+
+	private static byte[] derString(String value) {
+		return der(0x1b, value.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	private static final class Authentication {
+
+		private byte[] ticket;
+
+		private EncryptionKey sessionKey;
+
+		private AesCtsHmacSha1 authenticatorCipher;
+
+		private byte[] checksum;
+
+		private byte[] ctime;
+
+		private int cusec;
+
+		private long seqNumber;
+
+	}
+
+	private final class Client {
+
+		private final KerberosPrincipal principal;
+
+		private final String realm;
+
+		private final byte[] name;
+
+		private byte[] ticket;
+
+		private EncryptionKey sessionKey;
+
+		private AesCtsHmacSha1 authenticatorCipher;
+
+		private byte[] checksum;
+
+		private long renewAt;
+
+		private long ctime;
+
+		private byte[] ctimeBytes;
+
+		private int cusec;
+
+		private long seqNumber;
+
+		private Client(KerberosPrincipal principal) throws Exception {
+			this.principal = principal;
+			this.realm = principal.getRealm();
+			this.name = encode(new PrincipalName(principal));
+			this.seqNumber = KerberosTokenForge.this.random.nextInt() & 0x7fffffffL;
+		}
+
+		private Authentication next() throws Exception {
+			long now = System.currentTimeMillis();
+			if (now >= this.renewAt) {
+				createTicket(now);
+			}
+			// authenticators of a client need distinct times, which are ahead of the
+			// clock if more than a million tokens per second are created
+			long second = now / 1000;
+			if (second > this.ctime) {
+				this.ctime = second;
+				this.cusec = 0;
+				this.ctimeBytes = null;
+			}
+			else if (++this.cusec == 1000000) {
+				this.ctime++;
+				this.cusec = 0;
+				this.ctimeBytes = null;
+			}
+			if (this.ctimeBytes == null) {
+				this.ctimeBytes = new KerberosTime(this.ctime * 1000).getBytes();
+			}
+			Authentication authentication = new Authentication();
+			authentication.ticket = this.ticket;
+			authentication.sessionKey = this.sessionKey;
+			authentication.authenticatorCipher = this.authenticatorCipher;
+			authentication.checksum = this.checksum;
+			authentication.ctime = this.ctimeBytes;
+			authentication.cusec = this.cusec;
+			authentication.seqNumber = this.seqNumber;
+			this.seqNumber = (this.seqNumber + 1) & 0xffffffffL;
+			return authentication;
+		}
+
+		private void createTicket(long now) throws Exception {
+			KerberosTokenForge forge = KerberosTokenForge.this;
+			EncryptionKey serviceKey = forge.serviceKey;
+			KerberosTime authTime = new KerberosTime(now);
+			KerberosTime endTime = new KerberosTime(now + forge.ticketLifetime.toMillis());
+			EncryptionKey sessionKey = RandomKeyFactory.getRandomKey(serviceKey.getKeyType());
+
+			EncTicketPart encTicketPart = new EncTicketPart();
+			encTicketPart.setFlag(TicketFlag.PRE_AUTHENT);
+			if (forge.forwardable) {
+				encTicketPart.setFlag(TicketFlag.FORWARDABLE);
+			}
+			encTicketPart.setKey(sessionKey);
+			encTicketPart.setCRealm(this.realm);
+			encTicketPart.setCName(new PrincipalName(this.principal));
+			TransitedEncoding transited = new TransitedEncoding();
+			transited.setTrType(TransitedEncodingType.DOMAIN_X500_COMPRESS);
+			transited.setContents(new byte[0]);
+			encTicketPart.setTransited(transited);
+			encTicketPart.setAuthTime(authTime);
+			encTicketPart.setStartTime(authTime);
+			encTicketPart.setEndTime(endTime);
+			if (forge.pacSize > 0) {
+				AuthorizationData pac = new AuthorizationData();
+				pac.addEntry(new AuthorizationDataEntry(AuthorizationType.AD_WIN2K_PAC, forge.createPac()));
+				AuthorizationData authorizationData = new AuthorizationData();
+				authorizationData.addEntry(new AuthorizationDataEntry(AuthorizationType.AD_IF_RELEVANT, encode(pac)));
+				encTicketPart.setAuthorizationData(authorizationData);
+			}
+			EncryptedData encryptedTicketPart = forge.cipherTextHandler.seal(serviceKey, encTicketPart,
+					KeyUsage.AS_OR_TGS_REP_TICKET_WITH_SRVKEY);
+			encryptedTicketPart.setKvno(serviceKey.getKeyVersion());
+			Ticket ticket = new Ticket(new PrincipalName(forge.servicePrincipal), encryptedTicketPart);
+			ticket.setRealm(forge.servicePrincipal.getRealm());
+
+			ByteBuffer checksum;
+			if (forge.requestCredDeleg) {
+				byte[] credential = createDelegatedCredential(authTime, endTime);
+				checksum = ByteBuffer.allocate(28 + credential.length).order(ByteOrder.LITTLE_ENDIAN);
+				checksum.putInt(16).put(new byte[16]).putInt(GSS_CONF_FLAG | GSS_INTEG_FLAG | GSS_DELEG_FLAG);
+				checksum.putShort((short) 1).putShort((short) credential.length).put(credential);
+			}
+			else {
+				checksum = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+				checksum.putInt(16).put(new byte[16]).putInt(GSS_CONF_FLAG | GSS_INTEG_FLAG);
+			}
+
+			this.ticket = encode(ticket);
+			this.sessionKey = sessionKey;
+			if (sessionKey.getKeyType() == EncryptionType.AES128_CTS_HMAC_SHA1_96
+					|| sessionKey.getKeyType() == EncryptionType.AES256_CTS_HMAC_SHA1_96) {
+				this.authenticatorCipher = new AesCtsHmacSha1(sessionKey.getKeyValue(),
+						KeyUsage.AP_REQ_AUTHNT_SESS_KEY.getOrdinal());
+			}
+			this.checksum = checksum.array();
+			this.renewAt = now + forge.ticketLifetime.toMillis() / 2;
+		}
+
+		private byte[] createDelegatedCredential(KerberosTime authTime, KerberosTime endTime) throws Exception {
+			// a ticket granting ticket nobody can decrypt, in a credential which is not
+			// encrypted like the JDK does for older encryption types
+			String realm = KerberosTokenForge.this.servicePrincipal.getRealm();
+			PrincipalName tgsName = new PrincipalName(new KerberosPrincipal("krbtgt/" + realm + "@" + realm));
+			EncryptionKey tgtKey = RandomKeyFactory.getRandomKey(EncryptionType.AES128_CTS_HMAC_SHA1_96);
+			byte[] tgtCipher = new byte[256];
+			KerberosTokenForge.this.random.nextBytes(tgtCipher);
+			Ticket tgt = new Ticket(tgsName, new EncryptedData(tgtKey.getKeyType(), 1, tgtCipher));
+			tgt.setRealm(realm);
+
+			TicketFlags flags = new TicketFlags();
+			flags.setFlag(TicketFlag.FORWARDABLE);
+			flags.setFlag(TicketFlag.FORWARDED);
+			KrbCredInfo credInfo = new KrbCredInfo();
+			credInfo.setKey(tgtKey);
+			credInfo.setpRealm(this.realm);
+			credInfo.setpName(new PrincipalName(this.principal));
+			credInfo.setTicketFlags(flags);
+			credInfo.setAuthTime(authTime);
+			credInfo.setStartTime(authTime);
+			credInfo.setEndTime(endTime);
+			credInfo.setsRealm(realm);
+			credInfo.setsName(tgsName);
+			EncKrbCredPart encKrbCredPart = new EncKrbCredPart();
+			encKrbCredPart.addTicketInfo(credInfo);
+
+			KrbCred krbCred = new KrbCred();
+			krbCred.addTicket(tgt);
+			krbCred.setEncPart(new EncryptedData(EncryptionType.NULL, encode(encKrbCredPart)));
+			return encode(krbCred);
+		}
+
+	}
+
+	/**
+	 * The aes128-cts-hmac-sha1-96 and aes256-cts-hmac-sha1-96 encryption of RFC 3962 with
+	 * keys derived once for a session key and a key usage, as deriving them takes longer
+	 * than encrypting an authenticator.
+	 */
+	private static final class AesCtsHmacSha1 {
+
+		private static final int BLOCK_SIZE = 16;
+
+		private static final int HMAC_SIZE = 12;
+
+		private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
+			try {
+				return Cipher.getInstance("AES/CTS/NoPadding");
+			}
+			catch (GeneralSecurityException ex) {
+				throw new IllegalStateException(ex);
+			}
+		});
+
+		private static final ThreadLocal<Mac> MAC = ThreadLocal.withInitial(() -> {
+			try {
+				return Mac.getInstance("HmacSHA1");
+			}
+			catch (GeneralSecurityException ex) {
+				throw new IllegalStateException(ex);
+			}
+		});
+
+		private static final IvParameterSpec ZERO_IV = new IvParameterSpec(new byte[BLOCK_SIZE]);
+
+		private final SecretKeySpec encryptionKey;
+
+		private final SecretKeySpec integrityKey;
+
+		private AesCtsHmacSha1(byte[] baseKey, int usage) throws GeneralSecurityException {
+			this.encryptionKey = new SecretKeySpec(deriveKey(baseKey, usage, 0xaa), "AES");
+			this.integrityKey = new SecretKeySpec(deriveKey(baseKey, usage, 0x55), "HmacSHA1");
+		}
+
+		private byte[] encrypt(byte[] plainText) throws GeneralSecurityException {
+			byte[] data = new byte[BLOCK_SIZE + plainText.length];
+			byte[] confounder = new byte[BLOCK_SIZE];
+			ThreadLocalRandom.current().nextBytes(confounder);
+			System.arraycopy(confounder, 0, data, 0, BLOCK_SIZE);
+			System.arraycopy(plainText, 0, data, BLOCK_SIZE, plainText.length);
+
+			Cipher cipher = CIPHER.get();
+			cipher.init(Cipher.ENCRYPT_MODE, this.encryptionKey, ZERO_IV);
+			byte[] cipherText = new byte[data.length + HMAC_SIZE];
+			cipher.doFinal(data, 0, data.length, cipherText);
+			Mac mac = MAC.get();
+			mac.init(this.integrityKey);
+			System.arraycopy(mac.doFinal(data), 0, cipherText, data.length, HMAC_SIZE);
+			return cipherText;
+		}
+
+		private static byte[] deriveKey(byte[] baseKey, int usage, int constant) throws GeneralSecurityException {
+			byte[] block = NFold.nFold(BLOCK_SIZE * 8, new byte[] { (byte) (usage >>> 24), (byte) (usage >>> 16),
+					(byte) (usage >>> 8), (byte) usage, (byte) constant });
+			Cipher cipher = Cipher.getInstance("AES/ECB/NoPadding");
+			cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(baseKey, "AES"));
+			byte[] key = new byte[baseKey.length];
+			for (int i = 0; i < key.length; i += BLOCK_SIZE) {
+				block = cipher.doFinal(block);
+				System.arraycopy(block, 0, key, i, BLOCK_SIZE);
+			}
+			return key;
+		}
+
+	}
+
+}
@@ -22,12 +22,14 @@ import java.io.FileInputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.StringReader;
-import java.lang.reflect.Method;
 import java.net.InetAddress;
 import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -40,6 +42,7 @@ import org.apache.commons.io.Charsets;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.text.StrSubstitutor;
+import org.apache.directory.api.ldap.model.constants.SupportedSaslMechanisms;
 import org.apache.directory.api.ldap.model.entry.DefaultEntry;
 import org.apache.directory.api.ldap.model.entry.Entry;
 import org.apache.directory.api.ldap.model.ldif.LdifEntry;
@@ -58,6 +61,8 @@ import org.apache.directory.server.core.api.DirectoryService;
 import org.apache.directory.server.core.api.InstanceLayout;
 import org.apache.directory.server.core.api.schema.SchemaPartition;
 import org.apache.directory.server.core.kerberos.KeyDerivationInterceptor;
+import org.apache.directory.server.core.partition.impl.avl.AvlPartition;
+import org.apache.directory.server.core.partition.impl.btree.AbstractBTreePartition;
 import org.apache.directory.server.core.partition.impl.btree.jdbm.JdbmIndex;
 import org.apache.directory.server.core.partition.impl.btree.jdbm.JdbmPartition;
 import org.apache.directory.server.core.partition.ldif.LdifPartition;
@@ -65,9 +70,12 @@ import org.apache.directory.server.kerberos.kdc.KdcServer;
 import org.apache.directory.server.kerberos.shared.crypto.encryption.KerberosKeyFactory;
 import org.apache.directory.server.kerberos.shared.keytab.Keytab;
 import org.apache.directory.server.kerberos.shared.keytab.KeytabEntry;
+import org.apache.directory.server.ldap.LdapServer;
+import org.apache.directory.server.ldap.handlers.sasl.gssapi.GssapiMechanismHandler;
 import org.apache.directory.server.protocol.shared.transport.TcpTransport;
 import org.apache.directory.server.protocol.shared.transport.UdpTransport;
 import org.apache.directory.server.xdbm.Index;
+import org.apache.directory.server.xdbm.impl.avl.AvlIndex;
 import org.apache.directory.shared.kerberos.KerberosTime;
 import org.apache.directory.shared.kerberos.codec.types.EncryptionType;
 import org.apache.directory.shared.kerberos.components.EncryptionKey;
@@ -81,16 +89,18 @@ import org.slf4j.LoggerFactory;
  * </p>
  * <b>From within testcases:</b>
  * <p>
- * MiniKdc sets 2 System properties when started and un-sets them when stopped:
+ * MiniKdc sets 2 System properties when the first instance is started and restores them
+ * when the last one is stopped:
  * </p>
  * <ul>
- * <li>java.security.krb5.conf: set to the MiniKDC real/host/port</li>
- * <li>sun.security.krb5.debug: set to the debug value provided in the configuration</li>
+ * <li>java.security.krb5.conf: set to a krb5.conf with the realm/host/port of every
+ * running MiniKdc</li>
+ * <li>sun.security.krb5.debug: set to true if debug is enabled in the configuration</li>
  * </ul>
  * <p>
- * Because of this, multiple MiniKdc instances cannot be started in parallel. For example,
- * running testcases in parallel that start a KDC each. To accomplish this a single
- * MiniKdc should be used for all testcases running in parallel.
+ * Multiple MiniKdc instances can run in parallel, for example in testcases running in
+ * parallel that start a KDC each, as long as each one serves its own realm. See
+ * {@link MiniKdcKrb5Conf} for the shared configuration.
  * </p>
  * <p>
  * MiniKdc default configuration values are:
@@ -104,8 +114,22 @@ import org.slf4j.LoggerFactory;
  * <li>max.renewable.lifetime=604800000 (7 days)</li>
  * <li>transport=TCP</li>
  * <li>debug=false</li>
+ * <li>partition=jdbm</li>
  * </ul>
  * The generated krb5.conf forces TCP connections.
+ * <p>
+ * With partition=memory the realm is kept in memory instead of JDBM files. If
+ * snapshot.dir is set to a directory, the first MiniKdc started for a realm stores its
+ * initialized directory there and later ones, also of other JVMs, start from it instead
+ * of extracting the schema and importing the realm again. The schema is used in place,
+ * only the JDBM files are copied. With partition=memory only the schema is stored.
+ * </p>
+ * <p>
+ * If ldap.port is set, 0 for an ephemeral port, an LDAP server is started on the
+ * directory of the KDC. It accepts simple binds of <code>uid=admin,ou=system</code> with
+ * password <code>secret</code> and GSSAPI binds for the <code>ldap/host</code> service
+ * principal of the minikdc.ldiff.
+ * </p>
  *
  * @author Original Hadoop MiniKdc Authors
  * @author Janne Valkealahti
@@ -194,6 +218,12 @@ public class MiniKdc {
 
 	public static final String DEBUG = "debug";
 
+	public static final String PARTITION = "partition";
+
+	public static final String SNAPSHOT_DIR = "snapshot.dir";
+
+	public static final String LDAP_PORT = "ldap.port";
+
 	private static final Set<String> PROPERTIES = new HashSet<String>();
 
 	private static final Properties DEFAULT_CONFIG = new Properties();
@@ -218,6 +248,7 @@ public class MiniKdc {
 		DEFAULT_CONFIG.setProperty(MAX_TICKET_LIFETIME, "86400000");
 		DEFAULT_CONFIG.setProperty(MAX_RENEWABLE_LIFETIME, "604800000");
 		DEFAULT_CONFIG.setProperty(DEBUG, "false");
+		DEFAULT_CONFIG.setProperty(PARTITION, "jdbm");
 	}
 
 	/**
@@ -240,8 +271,12 @@ public class MiniKdc {
 
 	private KdcServer kdc;
 
+	private LdapServer ldapServer;
+
 	private int port;
 
+	private int ldapPort = -1;
+
 	private String realm;
 
 	private File workDir;
@@ -262,7 +297,8 @@ public class MiniKdc {
 			missingProperties.removeAll(conf.keySet());
 			throw new IllegalArgumentException("Missing configuration properties: " + missingProperties);
 		}
-		this.workDir = new File(workDir, Long.toString(System.currentTimeMillis()));
+		// instances started at the same time need their own directories
+		this.workDir = new File(workDir, System.currentTimeMillis() + "-" + UUID.randomUUID());
 		if (!workDir.exists() && !workDir.mkdirs()) {
 			throw new RuntimeException("Cannot create directory " + workDir);
 		}
@@ -281,6 +317,15 @@ public class MiniKdc {
 			this.port = ss.getLocalPort();
 			ss.close();
 		}
+		if (conf.getProperty(LDAP_PORT) != null) {
+			this.ldapPort = Integer.parseInt(conf.getProperty(LDAP_PORT));
+			if (this.ldapPort == 0) {
+				ServerSocket ss = new ServerSocket(0, 1,
+						InetAddress.getByName(this.conf.getProperty(KDC_BIND_ADDRESS)));
+				this.ldapPort = ss.getLocalPort();
+				ss.close();
+			}
+		}
 		String orgName = conf.getProperty(ORG_NAME);
 		String orgDomain = conf.getProperty(ORG_DOMAIN);
 		this.realm = orgName.toUpperCase() + "." + orgDomain.toUpperCase();
@@ -310,6 +355,28 @@ public class MiniKdc {
 		return this.realm;
 	}
 
+	/**
+	 * Returns the url of the LDAP server of the MiniKdc.
+	 * @return the LDAP url, or {@code null} if no LDAP server is configured.
+	 */
+	public String getLdapUrl() {
+		return (this.ldapPort != -1) ? "ldap://" + getHost() + ":" + this.ldapPort : null;
+	}
+
+	/**
+	 * Returns the base dn of the directory of the MiniKdc.
+	 * @return the base dn.
+	 */
+	public String getBaseDn() {
+		return "dc=" + this.conf.getProperty(ORG_NAME).toLowerCase() + ",dc="
+				+ this.conf.getProperty(ORG_DOMAIN).toLowerCase();
+	}
+
+	/**
+	 * Returns the krb5.conf of this MiniKdc only. The JVM uses the shared
+	 * {@link MiniKdcKrb5Conf#getKrb5conf() krb5.conf} of all running instances.
+	 * @return the krb5.conf of this MiniKdc.
+	 */
 	public File getKrb5conf() {
 		return this.krb5conf;
 	}
@@ -324,9 +391,61 @@ public class MiniKdc {
 		}
 		initDirectoryService();
 		initKDCServer();
+		if (this.ldapPort != -1) {
+			initLdapServer();
+		}
 	}
 
 	private void initDirectoryService() throws Exception {
+		String partitionType = this.conf.getProperty(PARTITION, "jdbm").trim();
+		boolean memory;
+		if (partitionType.equals("jdbm")) {
+			memory = false;
+		}
+		else if (partitionType.equals("memory")) {
+			memory = true;
+		}
+		else {
+			throw new IllegalArgumentException("Invalid partition: " + partitionType);
+		}
+		String ldiff = createLdiff();
+		File partitionsDirectory = new InstanceLayout(this.workDir).getPartitionsDirectory();
+		File schemaDirectory = new File(partitionsDirectory, "schema");
+
+		// jdbm partitions are only consistent on disk after a shutdown, the snapshot is
+		// created from a directory which was initialized and shut down again
+		boolean populated = false;
+		if (this.conf.getProperty(SNAPSHOT_DIR) != null) {
+			String key = UUID.nameUUIDFromBytes((partitionType + ldiff).getBytes(Charsets.UTF_8)).toString();
+			File snapshot = new File(this.conf.getProperty(SNAPSHOT_DIR), partitionType + "-" + key).getAbsoluteFile();
+			if (snapshot.isDirectory()) {
+				// the schema partition only reads its files, it is used in place
+				final File snapshotSchemaDirectory = new File(snapshot, "schema");
+				FileUtils.copyDirectory(snapshot, partitionsDirectory, (file) -> !file.equals(snapshotSchemaDirectory));
+				schemaDirectory = snapshotSchemaDirectory;
+				LOG.info("Restored directory from snapshot {}", snapshot);
+			}
+			else {
+				if (memory) {
+					extractSchema(schemaDirectory);
+				}
+				else {
+					startDirectoryService(false, schemaDirectory);
+					importLdiff(ldiff);
+					this.ds.shutdown();
+				}
+				createSnapshot(partitionsDirectory, snapshot);
+			}
+			populated = !memory;
+		}
+
+		startDirectoryService(memory, schemaDirectory);
+		if (!populated) {
+			importLdiff(ldiff);
+		}
+	}
+
+	private void startDirectoryService(boolean memory, File schemaPartitionDirectory) throws Exception {
 		this.ds = new DefaultDirectoryService();
 		this.ds.setInstanceLayout(new InstanceLayout(this.workDir));
 
@@ -334,10 +453,7 @@ public class MiniKdc {
 		this.ds.setCacheService(cacheService);
 
 		// first load the schema
-		InstanceLayout instanceLayout = this.ds.getInstanceLayout();
-		File schemaPartitionDirectory = new File(instanceLayout.getPartitionsDirectory(), "schema");
-		SchemaLdifExtractor extractor = new DefaultSchemaLdifExtractor(instanceLayout.getPartitionsDirectory());
-		extractor.extractOrCopy();
+		extractSchema(schemaPartitionDirectory);
 
 		SchemaLoader loader = new LdifSchemaLoader(schemaPartitionDirectory);
 		SchemaManager schemaManager = new DefaultSchemaManager(loader);
@@ -352,12 +468,7 @@ public class MiniKdc {
 		schemaPartition.setWrappedPartition(schemaLdifPartition);
 		this.ds.setSchemaPartition(schemaPartition);
 
-		JdbmPartition systemPartition = new JdbmPartition(this.ds.getSchemaManager());
-		systemPartition.setId("system");
-		systemPartition.setPartitionPath(
-				new File(this.ds.getInstanceLayout().getPartitionsDirectory(), systemPartition.getId()).toURI());
-		systemPartition.setSuffixDn(new Dn(ServerDNConstants.SYSTEM_DN));
-		systemPartition.setSchemaManager(this.ds.getSchemaManager());
+		AbstractBTreePartition systemPartition = createPartition("system", new Dn(ServerDNConstants.SYSTEM_DN), memory);
 		this.ds.setSystemPartition(systemPartition);
 
 		this.ds.getChangeLog().setEnabled(false);
@@ -368,58 +479,109 @@ public class MiniKdc {
 		String orgName = this.conf.getProperty(ORG_NAME).toLowerCase();
 		String orgDomain = this.conf.getProperty(ORG_DOMAIN).toLowerCase();
 
-		JdbmPartition partition = new JdbmPartition(this.ds.getSchemaManager());
-		partition.setId(orgName);
-		partition.setPartitionPath(new File(this.ds.getInstanceLayout().getPartitionsDirectory(), orgName).toURI());
-		partition.setSuffixDn(new Dn("dc=" + orgName + ",dc=" + orgDomain));
+		AbstractBTreePartition partition = createPartition(orgName, new Dn("dc=" + orgName + ",dc=" + orgDomain),
+				memory);
 		this.ds.addPartition(partition);
 		// indexes
 		Set<Index<?, ?, String>> indexedAttributes = new HashSet<Index<?, ?, String>>();
-		indexedAttributes.add(new JdbmIndex<String, Entry>("objectClass", false));
-		indexedAttributes.add(new JdbmIndex<String, Entry>("dc", false));
-		indexedAttributes.add(new JdbmIndex<String, Entry>("ou", false));
+		for (String attribute : new String[] { "objectClass", "dc", "ou" }) {
+			if (memory) {
+				indexedAttributes.add(new AvlIndex<String, Entry>(attribute, false));
+			}
+			else {
+				indexedAttributes.add(new JdbmIndex<String, Entry>(attribute, false));
+			}
+		}
 		partition.setIndexedAttributes(indexedAttributes);
 
 		// And start the ds
 		this.ds.setInstanceId(this.conf.getProperty(INSTANCE));
 		this.ds.startup();
+	}
+
+	private void extractSchema(File schemaPartitionDirectory) throws Exception {
+		if (!schemaPartitionDirectory.exists()) {
+			SchemaLdifExtractor extractor = new DefaultSchemaLdifExtractor(schemaPartitionDirectory.getParentFile());
+			extractor.extractOrCopy();
+		}
+	}
+
+	private void importLdiff(String ldiff) throws Exception {
 		// context entry, after ds.startup()
+		String orgName = this.conf.getProperty(ORG_NAME).toLowerCase();
+		String orgDomain = this.conf.getProperty(ORG_DOMAIN).toLowerCase();
 		Dn dn = new Dn("dc=" + orgName + ",dc=" + orgDomain);
 		Entry entry = this.ds.newEntry(dn);
 		entry.add("objectClass", "top", "domain");
 		entry.add("dc", orgName);
 		this.ds.getAdminSession().add(entry);
+
+		LdifReader reader = new LdifReader(new StringReader(ldiff));
+		try {
+			for (LdifEntry ldifEntry : reader) {
+				this.ds.getAdminSession().add(new DefaultEntry(this.ds.getSchemaManager(), ldifEntry.getEntry()));
+			}
+		}
+		finally {
+			IOUtils.closeQuietly(reader);
+		}
 	}
 
-	private void initKDCServer() throws Exception {
-		String orgName = this.conf.getProperty(ORG_NAME);
-		String orgDomain = this.conf.getProperty(ORG_DOMAIN);
-		String bindAddress = this.conf.getProperty(KDC_BIND_ADDRESS);
+	private AbstractBTreePartition createPartition(String id, Dn suffixDn, boolean memory) throws Exception {
+		AbstractBTreePartition partition;
+		if (memory) {
+			partition = new AvlPartition(this.ds.getSchemaManager());
+		}
+		else {
+			partition = new JdbmPartition(this.ds.getSchemaManager());
+			partition.setPartitionPath(new File(this.ds.getInstanceLayout().getPartitionsDirectory(), id).toURI());
+		}
+		partition.setId(id);
+		partition.setSuffixDn(suffixDn);
+		partition.setSchemaManager(this.ds.getSchemaManager());
+		return partition;
+	}
+
+	private String createLdiff() throws Exception {
 		final Map<String, String> map = new HashMap<String, String>();
-		map.put("0", orgName.toLowerCase());
-		map.put("1", orgDomain.toLowerCase());
-		map.put("2", orgName.toUpperCase());
-		map.put("3", orgDomain.toUpperCase());
-		map.put("4", bindAddress);
+		map.put("0", this.conf.getProperty(ORG_NAME).toLowerCase());
+		map.put("1", this.conf.getProperty(ORG_DOMAIN).toLowerCase());
+		map.put("2", this.conf.getProperty(ORG_NAME).toUpperCase());
+		map.put("3", this.conf.getProperty(ORG_DOMAIN).toUpperCase());
+		map.put("4", this.conf.getProperty(KDC_BIND_ADDRESS));
 
 		ClassLoader cl = Thread.currentThread().getContextClassLoader();
-		InputStream is1 = cl.getResourceAsStream("minikdc.ldiff");
-
-		SchemaManager schemaManager = this.ds.getSchemaManager();
-		LdifReader reader = null;
-
+		InputStream is = cl.getResourceAsStream("minikdc.ldiff");
 		try {
-			final String content = StrSubstitutor.replace(IOUtils.toString(is1), map);
-			reader = new LdifReader(new StringReader(content));
+			return StrSubstitutor.replace(IOUtils.toString(is), map);
+		}
+		finally {
+			IOUtils.closeQuietly(is);
+		}
+	}
 
-			for (LdifEntry ldifEntry : reader) {
-				this.ds.getAdminSession().add(new DefaultEntry(schemaManager, ldifEntry.getEntry()));
+	private void createSnapshot(File partitionsDirectory, File snapshot) {
+		// copied aside and renamed, other instances either see the whole snapshot or none
+		File tmp = new File(snapshot.getParentFile(), snapshot.getName() + "-" + UUID.randomUUID() + ".tmp");
+		try {
+			FileUtils.copyDirectory(partitionsDirectory, tmp);
+			Files.move(tmp.toPath(), snapshot.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			LOG.info("Created directory snapshot {}", snapshot);
+		}
+		catch (Exception ex) {
+			if (!snapshot.isDirectory()) {
+				LOG.warn("Could not create directory snapshot {}: {}", snapshot, ex.toString());
 			}
 		}
-		finally {
-			IOUtils.closeQuietly(reader);
-			IOUtils.closeQuietly(is1);
+		if (tmp.exists()) {
+			delete(tmp);
 		}
+	}
+
+	private void initKDCServer() throws Exception {
+		String orgName = this.conf.getProperty(ORG_NAME);
+		String orgDomain = this.conf.getProperty(ORG_DOMAIN);
+		String bindAddress = this.conf.getProperty(KDC_BIND_ADDRESS);
 
 		this.kdc = new KdcServer();
 		this.kdc.setDirectoryService(this.ds);
@@ -439,11 +601,16 @@ public class MiniKdc {
 		this.kdc.getConfig().setMaximumRenewableLifetime(Long.parseLong(this.conf.getProperty(MAX_RENEWABLE_LIFETIME)));
 		this.kdc.getConfig().setMaximumTicketLifetime(Long.parseLong(this.conf.getProperty(MAX_TICKET_LIFETIME)));
 
+		// the defaults only fit the EXAMPLE.COM realm
+		this.kdc.getConfig().setPrimaryRealm(getRealm());
+		this.kdc.getConfig().setServicePrincipal("krbtgt/" + getRealm() + "@" + getRealm());
+		this.kdc.setSearchBaseDn("ou=users,dc=" + orgName.toLowerCase() + ",dc=" + orgDomain.toLowerCase());
 		this.kdc.getConfig().setPaEncTimestampRequired(false);
 		this.kdc.getConfig().setBodyChecksumVerified(false);
 		this.kdc.start();
 
 		StringBuilder sb = new StringBuilder();
+		ClassLoader cl = Thread.currentThread().getContextClassLoader();
 		InputStream is2 = cl.getResourceAsStream("minikdc-krb5.conf");
 
 		BufferedReader r = null;
@@ -465,32 +632,56 @@ public class MiniKdc {
 		this.krb5conf = new File(this.workDir, "krb5.conf").getAbsoluteFile();
 		FileUtils.writeStringToFile(this.krb5conf, MessageFormat.format(sb.toString(), getRealm(), getHost(),
 				Integer.toString(getPort()), System.getProperty("line.separator")));
-		System.setProperty("java.security.krb5.conf", this.krb5conf.getAbsolutePath());
-
-		System.setProperty("sun.security.krb5.debug", this.conf.getProperty(DEBUG, "false"));
-
-		// refresh the config
-		Class<?> classRef;
-		if (System.getProperty("java.vendor").contains("IBM")) {
-			classRef = Class.forName("com.ibm.security.krb5.internal.Config");
+		try {
+			MiniKdcKrb5Conf.register(this, Boolean.parseBoolean(this.conf.getProperty(DEBUG, "false")));
 		}
-		else {
-			classRef = Class.forName("sun.security.krb5.Config");
+		catch (Exception ex) {
+			stop();
+			this.kdc = null;
+			throw ex;
 		}
-		Method refreshMethod = classRef.getMethod("refresh", new Class[0]);
-		refreshMethod.invoke(classRef, new Object[0]);
 
 		LOG.info("MiniKdc listening at port: {}", getPort());
-		LOG.info("MiniKdc setting JVM krb5.conf to: {}", this.krb5conf.getAbsolutePath());
+	}
+
+	private void initLdapServer() throws Exception {
+		String bindAddress = this.conf.getProperty(KDC_BIND_ADDRESS);
+		// the principal is part of the minikdc.ldiff
+		String servicePrincipal = "ldap/" + getHost();
+
+		this.ldapServer = new LdapServer();
+		this.ldapServer.setDirectoryService(this.ds);
+		this.ldapServer.setTransports(new TcpTransport(bindAddress, this.ldapPort, 3, 50));
+		this.ldapServer.setSearchBaseDn("ou=users," + getBaseDn());
+		this.ldapServer.setSaslHost(getHost());
+		this.ldapServer.setSaslPrincipal(servicePrincipal + "@" + getRealm());
+		this.ldapServer.setSaslRealms(Collections.singletonList(getRealm()));
+		this.ldapServer.addSaslMechanismHandler(SupportedSaslMechanisms.GSSAPI, new GssapiMechanismHandler());
+		try {
+			this.ldapServer.start();
+		}
+		catch (Exception ex) {
+			stop();
+			throw ex;
+		}
+		LOG.info("MiniKdc LDAP server listening at port: {}", this.ldapPort);
 	}
 
 	/**
 	 * Stops the MiniKdc
 	 */
 	public synchronized void stop() {
+		if (this.ldapServer != null) {
+			this.ldapServer.stop();
+			this.ldapServer = null;
+		}
 		if (this.kdc != null) {
-			System.getProperties().remove("java.security.krb5.conf");
-			System.getProperties().remove("sun.security.krb5.debug");
+			try {
+				MiniKdcKrb5Conf.unregister(this);
+			}
+			catch (Exception ex) {
+				LOG.error("Could not update the JVM krb5.conf: {}", ex.toString(), ex);
+			}
 			this.kdc.stop();
 			try {
 				this.ds.shutdown();
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * The Kerberos configuration of the JVM shared by all running {@link MiniKdc} instances.
+ * </p>
+ * <p>
+ * The JDK reads a single krb5.conf per JVM. Every started MiniKdc adds its realm and port
+ * to that configuration, and removes it again when stopped, so that several instances
+ * with separate realms can run at the same time, for example in test classes executed in
+ * parallel. The configuration is merged from the krb5.conf files of the instances. The
+ * libdefaults, including the default realm, are the ones of the first started instance
+ * and are kept until all instances stopped, so tests running next to others should use
+ * principal names qualified with their realm.
+ * </p>
+ * <p>
+ * The configuration file is replaced atomically, so a login refreshing the configuration
+ * of the JVM always reads a complete file.
+ * </p>
+ */
+public final class MiniKdcKrb5Conf {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MiniKdcKrb5Conf.class);
+
+	private static final String KRB5_CONF = "java.security.krb5.conf";
+
+	private static final String KRB5_DEBUG = "sun.security.krb5.debug";
+
+	private static final String LIBDEFAULTS = "libdefaults";
+
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+	private static final Map<String, MiniKdc> KDCS = new LinkedHashMap<String, MiniKdc>();
+
+	private static File krb5conf;
+
+	private static String defaultRealm;
+
+	private static String libdefaults;
+
+	private static String previousKrb5conf;
+
+	private static String previousKrb5Debug;
+
+	private MiniKdcKrb5Conf() {
+	}
+
+	/**
+	 * Returns the shared configuration file.
+	 * @return the configuration file, or {@code null} if no MiniKdc is running
+	 */
+	public static synchronized File getKrb5conf() {
+		return krb5conf;
+	}
+
+	/**
+	 * Returns the realms of the running MiniKdc instances.
+	 * @return the realms in the order the instances were started
+	 */
+	public static synchronized List<String> getRealms() {
+		return new ArrayList<String>(KDCS.keySet());
+	}
+
+	/**
+	 * Returns the default realm of the shared configuration.
+	 * @return the default realm, or {@code null} if no MiniKdc is running
+	 */
+	public static synchronized String getDefaultRealm() {
+		return defaultRealm;
+	}
+
+	static synchronized void register(MiniKdc kdc, boolean debug) throws Exception {
+		if (KDCS.containsKey(kdc.getRealm())) {
+			throw new IllegalStateException("Realm " + kdc.getRealm() + " is already served by a running MiniKdc");
+		}
+		if (KDCS.isEmpty()) {
+			krb5conf = Files.createTempDirectory("minikdc").resolve("krb5.conf").toFile();
+			defaultRealm = kdc.getRealm();
+			String kdcLibdefaults = parse(kdc.getKrb5conf()).get(LIBDEFAULTS);
+			libdefaults = (kdcLibdefaults != null) ? kdcLibdefaults : "";
+			previousKrb5conf = System.getProperty(KRB5_CONF);
+			previousKrb5Debug = System.getProperty(KRB5_DEBUG);
+		}
+		KDCS.put(kdc.getRealm(), kdc);
+		if (debug) {
+			System.setProperty(KRB5_DEBUG, "true");
+		}
+		update();
+		LOG.info("MiniKdc setting JVM krb5.conf to: {}", krb5conf.getAbsolutePath());
+	}
+
+	static synchronized void unregister(MiniKdc kdc) throws Exception {
+		if (KDCS.get(kdc.getRealm()) != kdc) {
+			return;
+		}
+		KDCS.remove(kdc.getRealm());
+		if (!KDCS.isEmpty()) {
+			update();
+			return;
+		}
+		restore(KRB5_CONF, previousKrb5conf);
+		restore(KRB5_DEBUG, previousKrb5Debug);
+		Files.deleteIfExists(krb5conf.toPath());
+		Files.deleteIfExists(krb5conf.getParentFile().toPath());
+		krb5conf = null;
+		defaultRealm = null;
+		libdefaults = null;
+	}
+
+	private static void update() throws Exception {
+		write(render());
+		System.setProperty(KRB5_CONF, krb5conf.getAbsolutePath());
+		refresh();
+	}
+
+	private static String render() throws IOException {
+		Map<String, StringBuilder> sections = new LinkedHashMap<String, StringBuilder>();
+		sections.put(LIBDEFAULTS, new StringBuilder(libdefaults));
+		for (MiniKdc kdc : KDCS.values()) {
+			for (Map.Entry<String, String> section : parse(kdc.getKrb5conf()).entrySet()) {
+				if (!LIBDEFAULTS.equals(section.getKey())) {
+					StringBuilder body = sections.get(section.getKey());
+					if (body == null) {
+						body = new StringBuilder();
+						sections.put(section.getKey(), body);
+					}
+					body.append(section.getValue());
+				}
+			}
+		}
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, StringBuilder> section : sections.entrySet()) {
+			sb.append('[').append(section.getKey()).append(']').append(LINE_SEPARATOR);
+			sb.append(section.getValue()).append(LINE_SEPARATOR);
+		}
+		return sb.toString();
+	}
+
+	private static Map<String, String> parse(File file) throws IOException {
+		Map<String, String> sections = new LinkedHashMap<String, String>();
+		String name = null;
+		StringBuilder body = new StringBuilder();
+		for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+			String trimmed = line.trim();
+			if (trimmed.startsWith("[") && trimmed.endsWith("]")) {
+				if (name != null) {
+					sections.put(name, body.toString());
+				}
+				name = trimmed.substring(1, trimmed.length() - 1).trim();
+				body = new StringBuilder();
+			}
+			else if (name != null && !trimmed.isEmpty() && !trimmed.startsWith("#")) {
+				body.append(line).append(LINE_SEPARATOR);
+			}
+		}
+		if (name != null) {
+			sections.put(name, body.toString());
+		}
+		return sections;
+	}
+
+	private static void write(String content) throws IOException {
+		Path target = krb5conf.toPath();
+		Path tmp = Files.createTempFile(target.getParent(), "krb5", ".conf");
+		try {
+			Files.write(tmp, content.getBytes(StandardCharsets.UTF_8));
+			Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	private static void restore(String key, String value) {
+		if (value != null) {
+			System.setProperty(key, value);
+		}
+		else {
+			System.getProperties().remove(key);
+		}
+	}
+
+	private static void refresh() throws Exception {
+		Class<?> classRef;
+		if (System.getProperty("java.vendor").contains("IBM")) {
+			classRef = Class.forName("com.ibm.security.krb5.internal.Config");
+		}
+		else {
+			classRef = Class.forName("sun.security.krb5.Config");
+		}
+		Method refreshMethod = classRef.getMethod("refresh", new Class[0]);
+		refreshMethod.invoke(classRef, new Object[0]);
+	}
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.test.load;
+
+import java.io.File;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.security.auth.Subject;
+import javax.security.auth.login.AppConfigurationEntry;
+import javax.security.auth.login.Configuration;
+import javax.security.auth.login.LoginContext;
+import javax.security.auth.login.LoginException;
+
+import org.ietf.jgss.GSSContext;
+import org.ietf.jgss.GSSException;
+import org.ietf.jgss.GSSManager;
+import org.ietf.jgss.GSSName;
+import org.ietf.jgss.Oid;
+
+/**
+ * {@link SpnegoTokenSource} of tokens created by the JDK for a client which logs in to a
+ * KDC with a keytab, for example of a standalone {@code MiniKdc}. Every thread logs in
+ * once and reuses its service ticket, unless every token should log in again to reproduce
+ * a login storm.
+ */
+public class KdcSpnegoTokenSource implements SpnegoTokenSource {
+
+	private static final Oid SPNEGO_OID = createOid("1.3.6.1.5.5.2");
+
+	private static final Oid KERBEROS_PRINCIPAL_OID = createOid("1.2.840.113554.1.2.2.1");
+
+	private final String servicePrincipal;
+
+	private final String clientPrincipal;
+
+	private final File keyTab;
+
+	private final ThreadLocal<Subject> subjects = new ThreadLocal<Subject>();
+
+	private boolean loginPerToken;
+
+	/**
+	 * Creates a token source.
+	 * @param servicePrincipal the principal of the service tokens are created for
+	 * @param clientPrincipal the principal of the client
+	 * @param keyTab the keytab of the client
+	 */
+	public KdcSpnegoTokenSource(String servicePrincipal, String clientPrincipal, File keyTab) {
+		this.servicePrincipal = servicePrincipal;
+		this.clientPrincipal = clientPrincipal;
+		this.keyTab = keyTab;
+	}
+
+	/**
+	 * Sets if every token logs in to the KDC and obtains a service ticket again. Defaults
+	 * to {@code false}.
+	 * @param loginPerToken if every token logs in again
+	 */
+	public void setLoginPerToken(boolean loginPerToken) {
+		this.loginPerToken = loginPerToken;
+	}
+
+	@Override
+	public byte[] createToken() throws Exception {
+		Subject subject = this.subjects.get();
+		if (subject == null || this.loginPerToken) {
+			subject = login();
+			this.subjects.set(subject);
+		}
+		try {
+			return Subject.doAs(subject, (PrivilegedExceptionAction<byte[]>) () -> {
+				GSSManager manager = GSSManager.getInstance();
+				GSSName serverName = manager.createName(this.servicePrincipal, KERBEROS_PRINCIPAL_OID);
+				GSSContext context = manager.createContext(serverName, SPNEGO_OID, null, GSSContext.DEFAULT_LIFETIME);
+				try {
+					return context.initSecContext(new byte[0], 0, 0);
+				}
+				finally {
+					context.dispose();
+				}
+			});
+		}
+		catch (PrivilegedActionException ex) {
+			throw ex.getException();
+		}
+	}
+
+	private Subject login() throws LoginException {
+		LoginContext loginContext = new LoginContext("", new Subject(), null, new KeyTabConfiguration());
+		loginContext.login();
+		return loginContext.getSubject();
+	}
+
+	private static Oid createOid(String oid) {
+		try {
+			return new Oid(oid);
+		}
+		catch (GSSException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	private final class KeyTabConfiguration extends Configuration {
+
+		@Override
+		public AppConfigurationEntry[] getAppConfigurationEntry(String name) {
+			Map<String, String> options = new HashMap<String, String>();
+			options.put("useKeyTab", "true");
+			options.put("keyTab", KdcSpnegoTokenSource.this.keyTab.getAbsolutePath());
+			options.put("principal", KdcSpnegoTokenSource.this.clientPrincipal);
+			options.put("storeKey", "false");
+			options.put("doNotPrompt", "true");
+			options.put("isInitiator", "true");
+			return new AppConfigurationEntry[] {
+					new AppConfigurationEntry("com.sun.security.auth.module.Krb5LoginModule",
+							AppConfigurationEntry.LoginModuleControlFlag.REQUIRED, options) };
+		}
+
+	}
+
+}
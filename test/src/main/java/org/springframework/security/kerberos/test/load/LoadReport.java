@@ -0,0 +1,165 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.test.load;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Result of a {@link SpnegoLoadDriver} run. Latencies of successful requests are kept in
+ * microseconds per kind of client, failed requests are counted per client kind and cause.
+ */
+public class LoadReport {
+
+	/**
+	 * Kind of clients sending SPNEGO tokens.
+	 */
+	public static final String KERBEROS = "kerberos";
+
+	/**
+	 * Kind of clients sending no credentials.
+	 */
+	public static final String ANONYMOUS = "anonymous";
+
+	private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+	private final Duration duration;
+
+	private final Map<String, Histogram> histograms;
+
+	private final Map<String, Long> errors;
+
+	LoadReport(Duration duration, Map<String, Histogram> histograms, Map<String, Long> errors) {
+		this.duration = duration;
+		this.histograms = Collections.unmodifiableMap(new TreeMap<String, Histogram>(histograms));
+		this.errors = Collections.unmodifiableMap(new TreeMap<String, Long>(errors));
+	}
+
+	/**
+	 * Returns the measured duration, without the warmup.
+	 * @return the measured duration
+	 */
+	public Duration getDuration() {
+		return this.duration;
+	}
+
+	/**
+	 * Returns the latencies in microseconds of the successful requests of a kind of
+	 * clients.
+	 * @param kind {@link #KERBEROS} or {@link #ANONYMOUS}
+	 * @return the latencies
+	 */
+	public Histogram getHistogram(String kind) {
+		return this.histograms.get(kind);
+	}
+
+	/**
+	 * Returns the number of failed requests by client kind and cause, like
+	 * {@code kerberos: 500} or {@code anonymous: SocketTimeoutException}.
+	 * @return the failed requests
+	 */
+	public Map<String, Long> getErrors() {
+		return this.errors;
+	}
+
+	/**
+	 * Returns the number of failed requests.
+	 * @return the number of failed requests
+	 */
+	public long getErrorCount() {
+		long count = 0;
+		for (long errors : this.errors.values()) {
+			count += errors;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the number of requests, successful or not.
+	 * @return the number of requests
+	 */
+	public long getRequestCount() {
+		long count = getErrorCount();
+		for (Histogram histogram : this.histograms.values()) {
+			count += histogram.getTotalCount();
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the number of requests per second.
+	 * @return the throughput
+	 */
+	public double getThroughput() {
+		return getRequestCount() * 1000.0 / Math.max(1, this.duration.toMillis());
+	}
+
+	/**
+	 * Prints a summary with latency percentiles in milliseconds.
+	 * @param out the stream to print to
+	 */
+	public void print(PrintStream out) {
+		out.printf("%d requests in %.1fs, %.1f requests/s, %d errors%n", getRequestCount(),
+				this.duration.toMillis() / 1000.0, getThroughput(), getErrorCount());
+		for (Map.Entry<String, Histogram> entry : this.histograms.entrySet()) {
+			Histogram histogram = entry.getValue();
+			StringBuilder line = new StringBuilder(
+					String.format("%-10s %8d ok", entry.getKey(), histogram.getTotalCount()));
+			for (double percentile : PERCENTILES) {
+				line.append(
+						String.format("  p%s %.3fms",
+								(percentile == (long) percentile) ? Long.toString((long) percentile)
+										: Double.toString(percentile),
+								histogram.getValueAtPercentile(percentile) / 1000.0));
+			}
+			line.append(String.format("  max %.3fms", histogram.getMaxValue() / 1000.0));
+			out.println(line);
+		}
+		for (Map.Entry<String, Long> entry : this.errors.entrySet()) {
+			out.printf("  %-40s %8d%n", entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Writes the percentile distribution of every kind of clients in milliseconds to
+	 * {@code <prefix>-<kind>.hgrm}, which can be compared between runs with the
+	 * HdrHistogram plotter.
+	 * @param prefix the path prefix of the files
+	 * @throws IOException if a file could not be written
+	 */
+	public void writePercentileDistributions(String prefix) throws IOException {
+		for (Map.Entry<String, Histogram> entry : this.histograms.entrySet()) {
+			PrintStream out = new PrintStream(new FileOutputStream(new File(prefix + "-" + entry.getKey() + ".hgrm")),
+					false, "UTF-8");
+			try {
+				entry.getValue().outputPercentileDistribution(out, 1000.0);
+			}
+			finally {
+				out.close();
+			}
+		}
+	}
+
+}
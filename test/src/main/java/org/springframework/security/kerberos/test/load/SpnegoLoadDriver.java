@@ -0,0 +1,438 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.test.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import org.springframework.security.kerberos.test.KerberosTokenForge;
+
+/**
+ * Closed loop load driver for services protected with SPNEGO, like the
+ * {@code sec-server-spnego-web} and {@code sec-server-spnego-webflux} samples. A fixed
+ * number of clients send requests one after another, optionally paced to a total arrival
+ * rate, and a share of them are Kerberos clients sending tokens while the others send no
+ * credentials and expect to be challenged.
+ * <p>
+ * Different load shapes are driven with these settings:
+ * <ul>
+ * <li>login storms: no keep-alive and a {@link KdcSpnegoTokenSource} logging in for every
+ * token, or forged tokens for new tickets of many clients</li>
+ * <li>steady state traffic: keep-alive connections with a new token for every request, or
+ * with sessions, where tokens are only sent when the service asks for them</li>
+ * <li>mixed traffic: a Kerberos client ratio below 1</li>
+ * </ul>
+ * With an arrival rate, latencies are measured from the time a request should have been
+ * sent, so that a stalled service is not hidden by clients waiting for it.
+ * <p>
+ * Can be run from the command line with {@code --name=value} arguments, see
+ * {@link #main(String[])}.
+ */
+public class SpnegoLoadDriver {
+
+	private final URL url;
+
+	private final SpnegoTokenSource tokenSource;
+
+	private int concurrency = 16;
+
+	private double rate;
+
+	private Duration duration = Duration.ofSeconds(60);
+
+	private Duration warmup = Duration.ofSeconds(10);
+
+	private double kerberosRatio = 1;
+
+	private boolean keepAlive = true;
+
+	private boolean sessions;
+
+	private Duration timeout = Duration.ofSeconds(10);
+
+	private final Map<String, Histogram> histograms = new HashMap<String, Histogram>();
+
+	private final Map<String, AtomicLong> errors = new ConcurrentHashMap<String, AtomicLong>();
+
+	private volatile boolean running;
+
+	private volatile boolean measuring;
+
+	/**
+	 * Creates a load driver.
+	 * @param url the url requests are sent to
+	 * @param tokenSource the source of tokens of the Kerberos clients
+	 */
+	public SpnegoLoadDriver(URL url, SpnegoTokenSource tokenSource) {
+		this.url = url;
+		this.tokenSource = tokenSource;
+	}
+
+	/**
+	 * Sets the number of clients sending requests at the same time. Defaults to 16.
+	 * @param concurrency the number of clients
+	 */
+	public void setConcurrency(int concurrency) {
+		this.concurrency = concurrency;
+	}
+
+	/**
+	 * Sets the number of requests per second sent by all clients together, or 0 to send
+	 * requests as fast as the service answers them. Defaults to 0.
+	 * @param rate the arrival rate
+	 */
+	public void setRate(double rate) {
+		this.rate = rate;
+	}
+
+	/**
+	 * Sets the duration of the measurement after the warmup. Defaults to 60 seconds.
+	 * @param duration the duration
+	 */
+	public void setDuration(Duration duration) {
+		this.duration = duration;
+	}
+
+	/**
+	 * Sets the duration of the warmup, which is not measured. Defaults to 10 seconds.
+	 * @param warmup the warmup duration
+	 */
+	public void setWarmup(Duration warmup) {
+		this.warmup = warmup;
+	}
+
+	/**
+	 * Sets the share of clients sending tokens, the other clients send no credentials.
+	 * Defaults to 1.
+	 * @param kerberosRatio the share of Kerberos clients
+	 */
+	public void setKerberosRatio(double kerberosRatio) {
+		this.kerberosRatio = kerberosRatio;
+	}
+
+	/**
+	 * Sets if clients keep their connections open. Defaults to {@code true}.
+	 * @param keepAlive if connections are kept open
+	 */
+	public void setKeepAlive(boolean keepAlive) {
+		this.keepAlive = keepAlive;
+	}
+
+	/**
+	 * Sets if Kerberos clients send the cookies they receive and only send a token when
+	 * they are challenged. Defaults to {@code false}, which sends a token with every
+	 * request.
+	 * @param sessions if sessions are used
+	 */
+	public void setSessions(boolean sessions) {
+		this.sessions = sessions;
+	}
+
+	/**
+	 * Sets the connect and read timeout of requests. Defaults to 10 seconds.
+	 * @param timeout the timeout
+	 */
+	public void setTimeout(Duration timeout) {
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Runs the load and waits until it is done.
+	 * @return the report of the measured requests
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public LoadReport run() throws InterruptedException {
+		this.histograms.put(LoadReport.KERBEROS, new ConcurrentHistogram(3));
+		this.histograms.put(LoadReport.ANONYMOUS, new ConcurrentHistogram(3));
+		this.errors.clear();
+		this.running = true;
+		this.measuring = false;
+		int kerberosClients = (int) Math.round(this.concurrency * this.kerberosRatio);
+		long start = System.nanoTime();
+		Thread[] threads = new Thread[this.concurrency];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(new Client(i, i < kerberosClients, start), "spnego-load-" + i);
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+		try {
+			Thread.sleep(this.warmup.toMillis());
+			this.measuring = true;
+			long measureStart = System.nanoTime();
+			Thread.sleep(this.duration.toMillis());
+			this.measuring = false;
+			Duration measured = Duration.ofNanos(System.nanoTime() - measureStart);
+			Map<String, Long> errors = new HashMap<String, Long>();
+			for (Map.Entry<String, AtomicLong> entry : this.errors.entrySet()) {
+				errors.put(entry.getKey(), entry.getValue().get());
+			}
+			Map<String, Histogram> histograms = new HashMap<String, Histogram>();
+			for (Map.Entry<String, Histogram> entry : this.histograms.entrySet()) {
+				histograms.put(entry.getKey(), entry.getValue().copy());
+			}
+			return new LoadReport(measured, histograms, errors);
+		}
+		finally {
+			this.running = false;
+			for (Thread thread : threads) {
+				thread.join(this.timeout.toMillis());
+			}
+		}
+	}
+
+	private void error(String kind, String cause) {
+		if (this.measuring) {
+			this.errors.computeIfAbsent(kind + ": " + cause, (key) -> new AtomicLong()).incrementAndGet();
+		}
+	}
+
+	/**
+	 * Runs the driver from the command line and prints its report. Arguments are given as
+	 * {@code --name=value}:
+	 * <ul>
+	 * <li>url: the url requests are sent to, required</li>
+	 * <li>concurrency, rate, duration and warmup in seconds, kerberos-ratio, keep-alive,
+	 * sessions and timeout in seconds: settings of the driver</li>
+	 * <li>tokens: {@code forge}, the default, or {@code kdc}</li>
+	 * <li>service-principal: the principal of the service, required</li>
+	 * <li>keytab: the keytab of the service to forge tokens with, or of the client
+	 * logging in to a KDC</li>
+	 * <li>clients, client-principal, encryption-type and pac-size: settings of forged
+	 * tokens</li>
+	 * <li>client-principal and login-per-token: settings of tokens from a KDC, the KDC is
+	 * configured with {@code java.security.krb5.conf} or krb5-conf</li>
+	 * <li>hgrm: path prefix to write percentile distributions to</li>
+	 * </ul>
+	 * @param args the arguments
+	 * @throws Exception if the driver could not be run
+	 */
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<String, String>();
+		for (String arg : args) {
+			int index = arg.indexOf('=');
+			if (!arg.startsWith("--") || index < 0) {
+				throw new IllegalArgumentException("Arguments are given as --name=value: " + arg);
+			}
+			options.put(arg.substring(2, index), arg.substring(index + 1));
+		}
+		if (options.containsKey("krb5-conf")) {
+			System.setProperty("java.security.krb5.conf", options.get("krb5-conf"));
+		}
+		String servicePrincipal = required(options, "service-principal");
+		File keyTab = new File(required(options, "keytab"));
+		SpnegoTokenSource tokenSource;
+		String tokens = options.getOrDefault("tokens", "forge");
+		if (tokens.equals("forge")) {
+			KerberosTokenForge forge = new KerberosTokenForge(servicePrincipal, keyTab);
+			forge.setClientCount(Integer.parseInt(options.getOrDefault("clients", "16")));
+			forge.setClientPrincipal(options.getOrDefault("client-principal", "client"));
+			forge.setEncryptionType(options.getOrDefault("encryption-type", "aes128-cts-hmac-sha1-96"));
+			forge.setPacSize(Integer.parseInt(options.getOrDefault("pac-size", "0")));
+			tokenSource = SpnegoTokenSource.forged(forge);
+		}
+		else if (tokens.equals("kdc")) {
+			KdcSpnegoTokenSource kdcTokenSource = new KdcSpnegoTokenSource(servicePrincipal,
+					required(options, "client-principal"), keyTab);
+			kdcTokenSource.setLoginPerToken(Boolean.parseBoolean(options.getOrDefault("login-per-token", "false")));
+			tokenSource = kdcTokenSource;
+		}
+		else {
+			throw new IllegalArgumentException("Invalid tokens: " + tokens);
+		}
+
+		SpnegoLoadDriver driver = new SpnegoLoadDriver(new URL(required(options, "url")), tokenSource);
+		driver.setConcurrency(Integer.parseInt(options.getOrDefault("concurrency", "16")));
+		driver.setRate(Double.parseDouble(options.getOrDefault("rate", "0")));
+		driver.setDuration(
+				Duration.ofMillis((long) (Double.parseDouble(options.getOrDefault("duration", "60")) * 1000)));
+		driver.setWarmup(Duration.ofMillis((long) (Double.parseDouble(options.getOrDefault("warmup", "10")) * 1000)));
+		driver.setKerberosRatio(Double.parseDouble(options.getOrDefault("kerberos-ratio", "1")));
+		driver.setKeepAlive(Boolean.parseBoolean(options.getOrDefault("keep-alive", "true")));
+		driver.setSessions(Boolean.parseBoolean(options.getOrDefault("sessions", "false")));
+		driver.setTimeout(Duration.ofMillis((long) (Double.parseDouble(options.getOrDefault("timeout", "10")) * 1000)));
+		LoadReport report = driver.run();
+		report.print(System.out);
+		if (options.containsKey("hgrm")) {
+			report.writePercentileDistributions(options.get("hgrm"));
+		}
+	}
+
+	private static String required(Map<String, String> options, String name) {
+		String value = options.get(name);
+		if (value == null) {
+			throw new IllegalArgumentException("Missing argument --" + name);
+		}
+		return value;
+	}
+
+	private final class Client implements Runnable {
+
+		private final boolean kerberos;
+
+		private final String kind;
+
+		private final long start;
+
+		private final long interval;
+
+		private String cookie;
+
+		private Client(int index, boolean kerberos, long start) {
+			SpnegoLoadDriver driver = SpnegoLoadDriver.this;
+			this.kerberos = kerberos;
+			this.kind = kerberos ? LoadReport.KERBEROS : LoadReport.ANONYMOUS;
+			this.interval = (driver.rate > 0) ? (long) (driver.concurrency * 1e9 / driver.rate) : 0;
+			// paced clients are spread over the interval
+			this.start = start + this.interval * index / driver.concurrency;
+		}
+
+		@Override
+		public void run() {
+			SpnegoLoadDriver driver = SpnegoLoadDriver.this;
+			long count = 0;
+			while (driver.running) {
+				long intended = System.nanoTime();
+				if (this.interval > 0) {
+					intended = this.start + count++ * this.interval;
+					long delay = intended - System.nanoTime();
+					if (delay > 0) {
+						LockSupport.parkNanos(delay);
+					}
+				}
+				boolean measured = driver.measuring;
+				String error;
+				try {
+					error = request();
+				}
+				catch (TokenException ex) {
+					error = "token " + ex.getCause().getClass().getSimpleName();
+				}
+				catch (Exception ex) {
+					error = ex.getClass().getSimpleName();
+				}
+				if (!measured || !driver.measuring) {
+					continue;
+				}
+				if (error == null) {
+					long latency = (System.nanoTime() - intended) / 1000;
+					driver.histograms.get(this.kind).recordValue(Math.max(latency, 1));
+				}
+				else {
+					driver.error(this.kind, error);
+				}
+			}
+		}
+
+		private String request() throws Exception {
+			boolean withCookie = this.kerberos && this.cookie != null;
+			HttpURLConnection connection = open(withCookie);
+			int status = connection.getResponseCode();
+			if (withCookie && status == HttpURLConnection.HTTP_UNAUTHORIZED) {
+				// session expired, authenticate again
+				drain(connection);
+				this.cookie = null;
+				connection = open(false);
+				status = connection.getResponseCode();
+			}
+			String challenge = connection.getHeaderField("WWW-Authenticate");
+			if (this.kerberos && SpnegoLoadDriver.this.sessions) {
+				String setCookie = connection.getHeaderField("Set-Cookie");
+				if (setCookie != null) {
+					int index = setCookie.indexOf(';');
+					this.cookie = (index < 0) ? setCookie : setCookie.substring(0, index);
+				}
+			}
+			drain(connection);
+			if (status < 400) {
+				return null;
+			}
+			if (!this.kerberos && status == HttpURLConnection.HTTP_UNAUTHORIZED && challenge != null
+					&& challenge.startsWith("Negotiate")) {
+				return null;
+			}
+			return Integer.toString(status);
+		}
+
+		private HttpURLConnection open(boolean withCookie) throws Exception {
+			SpnegoLoadDriver driver = SpnegoLoadDriver.this;
+			HttpURLConnection connection = (HttpURLConnection) driver.url.openConnection();
+			connection.setConnectTimeout((int) driver.timeout.toMillis());
+			connection.setReadTimeout((int) driver.timeout.toMillis());
+			connection.setInstanceFollowRedirects(false);
+			connection.setUseCaches(false);
+			if (!driver.keepAlive) {
+				connection.setRequestProperty("Connection", "close");
+			}
+			if (withCookie) {
+				connection.setRequestProperty("Cookie", this.cookie);
+			}
+			else if (this.kerberos) {
+				byte[] token;
+				try {
+					token = driver.tokenSource.createToken();
+				}
+				catch (Exception ex) {
+					throw new TokenException(ex);
+				}
+				connection.setRequestProperty("Authorization",
+						"Negotiate " + Base64.getEncoder().encodeToString(token));
+			}
+			return connection;
+		}
+
+		private void drain(HttpURLConnection connection) throws IOException {
+			// connections are only reused once their response was read
+			InputStream body = (connection.getResponseCode() < 400) ? connection.getInputStream()
+					: connection.getErrorStream();
+			if (body != null) {
+				byte[] buffer = new byte[4096];
+				int read = 0;
+				while (read >= 0) {
+					read = body.read(buffer);
+				}
+				body.close();
+			}
+			if (!SpnegoLoadDriver.this.keepAlive) {
+				connection.disconnect();
+			}
+		}
+
+	}
+
+	@SuppressWarnings("serial")
+	private static final class TokenException extends Exception {
+
+		private TokenException(Exception cause) {
+			super(cause);
+		}
+
+	}
+
+}
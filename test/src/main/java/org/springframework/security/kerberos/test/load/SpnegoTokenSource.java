@@ -0,0 +1,46 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.test.load;
+
+import org.springframework.security.kerberos.test.KerberosTokenForge;
+
+/**
+ * Source of the SPNEGO tokens sent by a {@link SpnegoLoadDriver}. Implementations are
+ * used by all clients of a driver at the same time.
+ *
+ * @see KdcSpnegoTokenSource
+ */
+@FunctionalInterface
+public interface SpnegoTokenSource {
+
+	/**
+	 * Creates a token for a new authentication of a client.
+	 * @return a SPNEGO token
+	 * @throws Exception if the token could not be created
+	 */
+	byte[] createToken() throws Exception;
+
+	/**
+	 * Returns a source of tokens created by the given forge, without any KDC.
+	 * @param forge the token forge
+	 * @return a source of forged tokens
+	 */
+	static SpnegoTokenSource forged(KerberosTokenForge forge) {
+		return forge::createSpnegoToken;
+	}
+
+}
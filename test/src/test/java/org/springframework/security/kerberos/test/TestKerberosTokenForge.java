@@ -0,0 +1,112 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.test;
+
+import java.io.File;
+import java.security.PrivilegedExceptionAction;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.security.auth.Subject;
+import javax.security.auth.login.LoginContext;
+
+import org.ietf.jgss.GSSContext;
+import org.ietf.jgss.GSSCredential;
+import org.ietf.jgss.GSSManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.security.kerberos.test.TestMiniKdc.KerberosConfiguration;
+
+public class TestKerberosTokenForge extends KerberosSecurityTestcase {
+
+	private String servicePrincipal;
+
+	private File keytab;
+
+	private LoginContext loginContext;
+
+	@BeforeEach
+	public void login() throws Exception {
+		this.servicePrincipal = "HTTP/localhost@" + getKdc().getRealm();
+		this.keytab = new File(getWorkDir(), "forge-" + System.nanoTime() + ".keytab");
+		getKdc().createPrincipal(this.keytab, "HTTP/localhost");
+		this.loginContext = new LoginContext("", new Subject(), null,
+				KerberosConfiguration.createServerConfig(this.servicePrincipal, this.keytab));
+		this.loginContext.login();
+	}
+
+	@AfterEach
+	public void logout() throws Exception {
+		this.loginContext.logout();
+	}
+
+	@Test
+	public void testKerberosTokens() throws Exception {
+		KerberosTokenForge forge = new KerberosTokenForge(this.servicePrincipal, this.keytab);
+		forge.setClientCount(3);
+		Set<String> clients = new HashSet<String>();
+		for (int i = 0; i < 300; i++) {
+			GSSContext context = accept(forge.createKerberosToken());
+			clients.add(context.getSrcName().toString());
+			Assertions.assertFalse(context.getCredDelegState());
+		}
+		Assertions.assertEquals(3, clients.size());
+		Assertions.assertTrue(clients.contains("client0@" + getKdc().getRealm()));
+	}
+
+	@Test
+	public void testSpnegoTokens() throws Exception {
+		KerberosTokenForge forge = new KerberosTokenForge(this.servicePrincipal, this.keytab);
+		forge.setEncryptionType("aes256-cts-hmac-sha1-96");
+		forge.setClientPrincipal("alice");
+		forge.setTicketLifetime(Duration.ofMinutes(5));
+		forge.setPacSize(16384);
+		for (int i = 0; i < 100; i++) {
+			GSSContext context = accept(forge.createSpnegoToken());
+			Assertions.assertEquals("alice@" + getKdc().getRealm(), context.getSrcName().toString());
+		}
+	}
+
+	@Test
+	public void testDelegation() throws Exception {
+		KerberosTokenForge forge = new KerberosTokenForge(this.servicePrincipal, this.keytab);
+		forge.setRequestCredDeleg(true);
+		GSSContext context = accept(forge.createSpnegoToken());
+		Assertions.assertTrue(context.getCredDelegState());
+		Assertions.assertEquals("client@" + getKdc().getRealm(), context.getDelegCred().getName().toString());
+	}
+
+	@Test
+	public void testMissingKey() throws Exception {
+		KerberosTokenForge forge = new KerberosTokenForge("HTTP/other@" + getKdc().getRealm(), this.keytab);
+		Assertions.assertThrows(IllegalArgumentException.class, forge::createKerberosToken);
+	}
+
+	private GSSContext accept(final byte[] token) throws Exception {
+		return Subject.doAs(this.loginContext.getSubject(), (PrivilegedExceptionAction<GSSContext>) () -> {
+			GSSContext context = GSSManager.getInstance().createContext((GSSCredential) null);
+			context.acceptSecContext(token, 0, token.length);
+			Assertions.assertTrue(context.isEstablished());
+			return context;
+		});
+	}
+
+}
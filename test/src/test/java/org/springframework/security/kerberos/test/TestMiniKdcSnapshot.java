@@ -0,0 +1,107 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.test;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.security.Principal;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+import javax.security.auth.Subject;
+import javax.security.auth.kerberos.KerberosPrincipal;
+import javax.security.auth.login.LoginContext;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.security.kerberos.test.TestMiniKdc.KerberosConfiguration;
+
+public class TestMiniKdcSnapshot {
+
+	@TempDir
+	Path snapshotDir;
+
+	private MiniKdc kdc;
+
+	@AfterEach
+	public void stopMiniKdc() {
+		if (this.kdc != null) {
+			this.kdc.stop();
+		}
+	}
+
+	@Test
+	public void testMemoryPartition() throws Exception {
+		startAndLogin(createConf("memory", null), "mem1");
+	}
+
+	@Test
+	public void testJdbmSnapshot() throws Exception {
+		testSnapshot("jdbm");
+	}
+
+	@Test
+	public void testMemorySnapshot() throws Exception {
+		testSnapshot("memory");
+	}
+
+	private void testSnapshot(String partition) throws Exception {
+		Properties conf = createConf(partition, this.snapshotDir.toFile());
+		startAndLogin(conf, partition + "1");
+		File[] snapshots = this.snapshotDir.toFile().listFiles();
+		Assertions.assertEquals(1, snapshots.length);
+		Assertions.assertTrue(snapshots[0].getName().startsWith(partition + "-"));
+
+		// principals created after the snapshot are not in it
+		startAndLogin(conf, partition + "1");
+		Assertions.assertEquals(1, this.snapshotDir.toFile().listFiles().length);
+	}
+
+	private void startAndLogin(Properties conf, String name) throws Exception {
+		stopMiniKdc();
+		this.kdc = new MiniKdc(conf, KerberosSecurityTestcase.defaultWorkDir());
+		this.kdc.start();
+		String principal = name + "@" + this.kdc.getRealm();
+		File keytab = new File(KerberosSecurityTestcase.defaultWorkDir(), name + "-" + System.nanoTime() + ".keytab");
+		this.kdc.createPrincipal(keytab, name);
+		Set<Principal> principals = new HashSet<Principal>();
+		principals.add(new KerberosPrincipal(principal));
+		Subject subject = new Subject(false, principals, new HashSet<Object>(), new HashSet<Object>());
+		LoginContext loginContext = new LoginContext("", subject, null,
+				KerberosConfiguration.createClientConfig(principal, keytab));
+		loginContext.login();
+		Assertions.assertEquals(principal, loginContext.getSubject().getPrincipals().iterator().next().getName());
+		loginContext.logout();
+		this.kdc.stop();
+		this.kdc = null;
+	}
+
+	private static Properties createConf(String partition, File snapshotDir) {
+		Properties conf = MiniKdc.createConf();
+		conf.setProperty(MiniKdc.ORG_NAME, "DELTA");
+		conf.setProperty(MiniKdc.PARTITION, partition);
+		if (snapshotDir != null) {
+			conf.setProperty(MiniKdc.SNAPSHOT_DIR, snapshotDir.getAbsolutePath());
+		}
+		return conf;
+	}
+
+}
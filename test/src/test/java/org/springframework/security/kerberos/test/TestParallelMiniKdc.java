@@ -0,0 +1,128 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.test;
+
+import java.io.File;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.security.auth.Subject;
+import javax.security.auth.kerberos.KerberosPrincipal;
+import javax.security.auth.login.LoginContext;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.security.kerberos.test.TestMiniKdc.KerberosConfiguration;
+
+public class TestParallelMiniKdc {
+
+	private final List<MiniKdc> kdcs = new ArrayList<MiniKdc>();
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+	@AfterEach
+	public void stopMiniKdcs() {
+		this.executor.shutdownNow();
+		for (MiniKdc kdc : this.kdcs) {
+			kdc.stop();
+		}
+	}
+
+	@Test
+	public void testParallelLogins() throws Exception {
+		Future<MiniKdc> alpha = this.executor.submit(startMiniKdc("ALPHA"));
+		Future<MiniKdc> beta = this.executor.submit(startMiniKdc("BETA"));
+		MiniKdc alphaKdc = alpha.get();
+		MiniKdc betaKdc = beta.get();
+		this.kdcs.add(alphaKdc);
+		this.kdcs.add(betaKdc);
+		Assertions.assertNotEquals(alphaKdc.getPort(), betaKdc.getPort());
+		Assertions.assertTrue(MiniKdcKrb5Conf.getRealms().contains("ALPHA.COM"));
+		Assertions.assertTrue(MiniKdcKrb5Conf.getRealms().contains("BETA.COM"));
+
+		List<Future<String>> logins = new ArrayList<Future<String>>();
+		for (int i = 0; i < 4; i++) {
+			logins.add(this.executor.submit(login(alphaKdc)));
+			logins.add(this.executor.submit(login(betaKdc)));
+		}
+		for (int i = 0; i < logins.size(); i += 2) {
+			Assertions.assertEquals("foo@ALPHA.COM", logins.get(i).get());
+			Assertions.assertEquals("foo@BETA.COM", logins.get(i + 1).get());
+		}
+
+		alphaKdc.stop();
+		this.kdcs.remove(alphaKdc);
+		Assertions.assertFalse(MiniKdcKrb5Conf.getRealms().contains("ALPHA.COM"));
+		Assertions.assertEquals("foo@BETA.COM", login(betaKdc).call());
+	}
+
+	@Test
+	public void testSameRealmFails() throws Exception {
+		MiniKdc kdc = startMiniKdc("GAMMA").call();
+		this.kdcs.add(kdc);
+		MiniKdc other = new MiniKdc(createConf("GAMMA"), KerberosSecurityTestcase.defaultWorkDir());
+		Assertions.assertThrows(IllegalStateException.class, other::start);
+		Assertions.assertEquals("GAMMA.COM", login(kdc).call().substring(4));
+	}
+
+	private Callable<MiniKdc> startMiniKdc(final String orgName) {
+		return () -> {
+			MiniKdc kdc = new MiniKdc(createConf(orgName), KerberosSecurityTestcase.defaultWorkDir());
+			kdc.start();
+			kdc.createPrincipal(keytab(kdc), "foo");
+			return kdc;
+		};
+	}
+
+	private static Callable<String> login(final MiniKdc kdc) {
+		return () -> {
+			String principal = "foo@" + kdc.getRealm();
+			File keytab = keytab(kdc);
+			Set<Principal> principals = new HashSet<Principal>();
+			principals.add(new KerberosPrincipal(principal));
+			Subject subject = new Subject(false, principals, new HashSet<Object>(), new HashSet<Object>());
+			LoginContext loginContext = new LoginContext("", subject, null,
+					KerberosConfiguration.createClientConfig(principal, keytab));
+			loginContext.login();
+			String name = loginContext.getSubject().getPrincipals().iterator().next().getName();
+			loginContext.logout();
+			return name;
+		};
+	}
+
+	private static File keytab(MiniKdc kdc) {
+		// the work dir of the kdc instance, removed when it stops
+		return new File(kdc.getKrb5conf().getParentFile(), "foo.keytab");
+	}
+
+	private static Properties createConf(String orgName) {
+		Properties conf = MiniKdc.createConf();
+		conf.setProperty(MiniKdc.ORG_NAME, orgName);
+		return conf;
+	}
+
+}
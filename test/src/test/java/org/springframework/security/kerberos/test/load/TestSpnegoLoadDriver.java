@@ -0,0 +1,174 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.test.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.security.PrivilegedExceptionAction;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.Executors;
+
+import javax.security.auth.Subject;
+import javax.security.auth.login.LoginContext;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.ietf.jgss.GSSContext;
+import org.ietf.jgss.GSSCredential;
+import org.ietf.jgss.GSSManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.security.kerberos.test.KerberosSecurityTestcase;
+import org.springframework.security.kerberos.test.KerberosTokenForge;
+import org.springframework.security.kerberos.test.TestMiniKdc.KerberosConfiguration;
+
+public class TestSpnegoLoadDriver extends KerberosSecurityTestcase {
+
+	private String servicePrincipal;
+
+	private File keytab;
+
+	private LoginContext loginContext;
+
+	private HttpServer server;
+
+	private URL url;
+
+	@BeforeEach
+	public void startServer() throws Exception {
+		this.servicePrincipal = "HTTP/localhost@" + getKdc().getRealm();
+		this.keytab = new File(getWorkDir(), "load-" + System.nanoTime() + ".keytab");
+		getKdc().createPrincipal(this.keytab, "HTTP/localhost", "loadclient");
+		this.loginContext = new LoginContext("", new Subject(), null,
+				KerberosConfiguration.createServerConfig(this.servicePrincipal, this.keytab));
+		this.loginContext.login();
+		this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		this.server.createContext("/", this::handle);
+		this.server.setExecutor(Executors.newFixedThreadPool(4));
+		this.server.start();
+		this.url = new URL("http://localhost:" + this.server.getAddress().getPort() + "/");
+	}
+
+	@AfterEach
+	public void stopServer() throws Exception {
+		this.server.stop(0);
+		this.loginContext.logout();
+	}
+
+	@Test
+	public void testForgedTokensWithAnonymousClients() throws Exception {
+		KerberosTokenForge forge = new KerberosTokenForge(this.servicePrincipal, this.keytab);
+		forge.setClientCount(10);
+		SpnegoLoadDriver driver = new SpnegoLoadDriver(this.url, SpnegoTokenSource.forged(forge));
+		driver.setConcurrency(4);
+		driver.setKerberosRatio(0.5);
+		driver.setWarmup(Duration.ofMillis(500));
+		driver.setDuration(Duration.ofSeconds(2));
+		LoadReport report = driver.run();
+		Assertions.assertEquals(0, report.getErrorCount(), report.getErrors().toString());
+		Assertions.assertTrue(report.getHistogram(LoadReport.KERBEROS).getTotalCount() > 0);
+		Assertions.assertTrue(report.getHistogram(LoadReport.ANONYMOUS).getTotalCount() > 0);
+		Assertions.assertEquals(report.getHistogram(LoadReport.KERBEROS).getTotalCount()
+				+ report.getHistogram(LoadReport.ANONYMOUS).getTotalCount(), report.getRequestCount());
+	}
+
+	@Test
+	public void testPacedSessions() throws Exception {
+		KerberosTokenForge forge = new KerberosTokenForge(this.servicePrincipal, this.keytab);
+		SpnegoLoadDriver driver = new SpnegoLoadDriver(this.url, SpnegoTokenSource.forged(forge));
+		driver.setConcurrency(2);
+		driver.setRate(100);
+		driver.setSessions(true);
+		driver.setWarmup(Duration.ofMillis(500));
+		driver.setDuration(Duration.ofSeconds(2));
+		LoadReport report = driver.run();
+		Assertions.assertEquals(0, report.getErrorCount(), report.getErrors().toString());
+		Assertions.assertTrue(report.getThroughput() > 50 && report.getThroughput() < 150,
+				"throughput " + report.getThroughput());
+	}
+
+	@Test
+	public void testLoginStorm() throws Exception {
+		KdcSpnegoTokenSource tokenSource = new KdcSpnegoTokenSource(this.servicePrincipal,
+				"loadclient@" + getKdc().getRealm(), this.keytab);
+		tokenSource.setLoginPerToken(true);
+		SpnegoLoadDriver driver = new SpnegoLoadDriver(this.url, tokenSource);
+		// lookups of the embedded KDC are not reliable under concurrent logins
+		driver.setConcurrency(1);
+		driver.setKeepAlive(false);
+		driver.setWarmup(Duration.ofMillis(500));
+		driver.setDuration(Duration.ofSeconds(2));
+		LoadReport report = driver.run();
+		Assertions.assertEquals(0, report.getErrorCount(), report.getErrors().toString());
+		Assertions.assertTrue(report.getHistogram(LoadReport.KERBEROS).getTotalCount() > 0);
+	}
+
+	@Test
+	public void testErrors() throws Exception {
+		SpnegoLoadDriver driver = new SpnegoLoadDriver(this.url, () -> new byte[] { 1, 2, 3 });
+		driver.setConcurrency(1);
+		driver.setWarmup(Duration.ZERO);
+		driver.setDuration(Duration.ofMillis(500));
+		LoadReport report = driver.run();
+		Assertions.assertTrue(report.getErrors().get("kerberos: 401") > 0, report.getErrors().toString());
+		Assertions.assertEquals(0, report.getHistogram(LoadReport.KERBEROS).getTotalCount());
+		Assertions.assertEquals(report.getErrorCount(), report.getRequestCount());
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		int status = 401;
+		String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+		String cookie = exchange.getRequestHeaders().getFirst("Cookie");
+		if (cookie != null && cookie.equals("session=valid")) {
+			status = 200;
+		}
+		else if (authorization != null && authorization.startsWith("Negotiate ")) {
+			byte[] token = Base64.getDecoder().decode(authorization.substring(10));
+			try {
+				Subject.doAs(this.loginContext.getSubject(), (PrivilegedExceptionAction<Void>) () -> {
+					GSSManager manager = GSSManager.getInstance();
+					GSSCredential credential = manager.createCredential(GSSCredential.ACCEPT_ONLY);
+					GSSContext context = manager.createContext(credential);
+					try {
+						context.acceptSecContext(token, 0, token.length);
+					}
+					finally {
+						context.dispose();
+					}
+					return null;
+				});
+				status = 200;
+				exchange.getResponseHeaders().add("Set-Cookie", "session=valid; Path=/");
+			}
+			catch (Exception ex) {
+				status = 401;
+			}
+		}
+		if (status == 401) {
+			exchange.getResponseHeaders().add("WWW-Authenticate", "Negotiate");
+		}
+		exchange.sendResponseHeaders(status, -1);
+		exchange.close();
+	}
+
+}
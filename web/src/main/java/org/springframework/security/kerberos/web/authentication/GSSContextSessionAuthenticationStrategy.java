@@ -0,0 +1,123 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.web.authentication;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.ietf.jgss.GSSContext;
+import org.ietf.jgss.GSSException;
+
+import org.springframework.context.ApplicationListener;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.session.AbstractSessionEvent;
+import org.springframework.security.core.session.SessionDestroyedEvent;
+import org.springframework.security.core.session.SessionIdChangedEvent;
+import org.springframework.security.kerberos.authentication.GSSContextRegistry;
+import org.springframework.security.kerberos.authentication.KerberosServiceRequestToken;
+import org.springframework.security.kerberos.authentication.KerberosTicketValidation;
+import org.springframework.security.web.authentication.session.SessionAuthenticationStrategy;
+import org.springframework.util.Assert;
+
+/**
+ * {@link SessionAuthenticationStrategy} registering the {@link GSSContext} retained for a
+ * Kerberos authentication in a {@link GSSContextRegistry}, keyed by the id of the HTTP
+ * session. Contexts which the registry does not accept, because they are not established
+ * or already expired, are disposed.
+ *
+ * <p>
+ * The context of a session is looked up with {@link #getContext(HttpServletRequest)}.
+ * When registered as a bean together with an
+ * {@link org.springframework.security.web.session.HttpSessionEventPublisher}, the context
+ * follows session id changes and is disposed when its session is destroyed. When used
+ * together with session fixation protection, this strategy should run after it.
+ *
+ * @see SpnegoAuthenticationProcessingFilter#setSessionAuthenticationStrategy(SessionAuthenticationStrategy)
+ */
+public class GSSContextSessionAuthenticationStrategy
+		implements SessionAuthenticationStrategy, ApplicationListener<AbstractSessionEvent> {
+
+	private static final Log LOG = LogFactory.getLog(GSSContextSessionAuthenticationStrategy.class);
+
+	private final GSSContextRegistry contextRegistry;
+
+	/**
+	 * Instantiates a new strategy.
+	 * @param contextRegistry the registry of retained contexts
+	 */
+	public GSSContextSessionAuthenticationStrategy(GSSContextRegistry contextRegistry) {
+		Assert.notNull(contextRegistry, "contextRegistry cannot be null");
+		this.contextRegistry = contextRegistry;
+	}
+
+	@Override
+	public void onAuthentication(Authentication authentication, HttpServletRequest request,
+			HttpServletResponse response) {
+		if (!(authentication instanceof KerberosServiceRequestToken)) {
+			return;
+		}
+		KerberosTicketValidation ticketValidation = ((KerberosServiceRequestToken) authentication)
+				.getTicketValidation();
+		if (ticketValidation == null || ticketValidation.getGssContext() == null) {
+			return;
+		}
+		GSSContext context = ticketValidation.getGssContext();
+		if (!this.contextRegistry.register(request.getSession().getId(), context)) {
+			try {
+				context.dispose();
+			}
+			catch (GSSException ex) {
+				LOG.debug("Failed to dispose GSSContext", ex);
+			}
+		}
+	}
+
+	@Override
+	public void onApplicationEvent(AbstractSessionEvent event) {
+		if (event instanceof SessionDestroyedEvent) {
+			this.contextRegistry.remove(((SessionDestroyedEvent) event).getId());
+		}
+		else if (event instanceof SessionIdChangedEvent) {
+			SessionIdChangedEvent sessionIdChangedEvent = (SessionIdChangedEvent) event;
+			this.contextRegistry.rename(sessionIdChangedEvent.getOldSessionId(),
+					sessionIdChangedEvent.getNewSessionId());
+		}
+	}
+
+	/**
+	 * Returns the retained context of the session of the given request.
+	 * @param request the request
+	 * @return the context, or {@code null} if the request has no session or its session
+	 * has no retained context
+	 */
+	public GSSContext getContext(HttpServletRequest request) {
+		HttpSession session = request.getSession(false);
+		return (session != null) ? this.contextRegistry.get(session.getId()) : null;
+	}
+
+	/**
+	 * Returns the registry of retained contexts.
+	 * @return the context registry
+	 */
+	public GSSContextRegistry getContextRegistry() {
+		return this.contextRegistry;
+	}
+
+}
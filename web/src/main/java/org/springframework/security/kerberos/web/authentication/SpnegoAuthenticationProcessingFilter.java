@@ -34,6 +34,8 @@ import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.kerberos.authentication.KerberosServiceAuthenticationProvider;
 import org.springframework.security.kerberos.authentication.KerberosServiceRequestToken;
+import org.springframework.security.kerberos.authentication.RecentlyRejectedTicketException;
+import org.springframework.security.kerberos.authentication.TicketValidationOverloadedException;
 import org.springframework.security.web.authentication.AuthenticationFailureHandler;
 import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
@@ -168,10 +170,29 @@ public class SpnegoAuthenticationProcessingFilter extends GenericFilterBean {
 			try {
 				authentication = this.authenticationManager.authenticate(authenticationRequest);
 			}
+			catch (TicketValidationOverloadedException ex) {
+				// shed load without running the failure handler
+				if (logger.isDebugEnabled()) {
+					logger.debug("Negotiate Header was not validated: " + ex.getMessage());
+				}
+				SecurityContextHolder.clearContext();
+				response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+				response.setHeader("Retry-After", Long.toString(ex.getRetryAfterSeconds()));
+				response.flushBuffer();
+				return;
+			}
 			catch (AuthenticationException ex) {
-				// That shouldn't happen, as it is most likely a wrong
-				// configuration on the server side
-				logger.warn("Negotiate Header was invalid: " + header, ex);
+				if (ex instanceof RecentlyRejectedTicketException) {
+					// already logged when it was rejected first
+					if (logger.isDebugEnabled()) {
+						logger.debug("Negotiate Header was rejected recently: " + header);
+					}
+				}
+				else {
+					// That shouldn't happen, as it is most likely a wrong
+					// configuration on the server side
+					logger.warn("Negotiate Header was invalid: " + header, ex);
+				}
 				SecurityContextHolder.clearContext();
 				if (this.failureHandler != null) {
 					this.failureHandler.onAuthenticationFailure(request, response, ex);
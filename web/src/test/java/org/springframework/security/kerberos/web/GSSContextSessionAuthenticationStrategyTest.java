@@ -0,0 +1,100 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.web;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.security.auth.Subject;
+
+import org.ietf.jgss.GSSContext;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.session.SessionDestroyedEvent;
+import org.springframework.security.kerberos.authentication.GSSContextRegistry;
+import org.springframework.security.kerberos.authentication.KerberosServiceRequestToken;
+import org.springframework.security.kerberos.authentication.KerberosTicketValidation;
+import org.springframework.security.kerberos.web.authentication.GSSContextSessionAuthenticationStrategy;
+
+public class GSSContextSessionAuthenticationStrategyTest {
+
+	private final GSSContextRegistry registry = new GSSContextRegistry();
+
+	private final GSSContextSessionAuthenticationStrategy strategy = new GSSContextSessionAuthenticationStrategy(
+			this.registry);
+
+	@Test
+	public void contextRegisteredForSession() throws Exception {
+		GSSContext context = Mockito.mock(GSSContext.class);
+		Mockito.when(context.isEstablished()).thenReturn(true);
+		Mockito.when(context.getLifetime()).thenReturn(3600);
+		KerberosServiceRequestToken authentication = new KerberosServiceRequestToken("user1",
+				new KerberosTicketValidation("user1", new Subject(), null, context), Collections.emptyList(),
+				new byte[0]);
+		MockHttpServletRequest request = new MockHttpServletRequest();
+
+		this.strategy.onAuthentication(authentication, request, new MockHttpServletResponse());
+		Assertions.assertSame(context, this.strategy.getContext(request));
+
+		String sessionId = request.getSession().getId();
+		this.strategy.onApplicationEvent(new SessionDestroyedEvent(request.getSession()) {
+
+			@Override
+			public List<SecurityContext> getSecurityContexts() {
+				return Collections.emptyList();
+			}
+
+			@Override
+			public String getId() {
+				return sessionId;
+			}
+
+		});
+		Assertions.assertNull(this.strategy.getContext(request));
+		Mockito.verify(context).dispose();
+	}
+
+	@Test
+	public void unestablishedContextDisposed() throws Exception {
+		GSSContext context = Mockito.mock(GSSContext.class);
+		KerberosServiceRequestToken authentication = new KerberosServiceRequestToken("user1",
+				new KerberosTicketValidation("user1", new Subject(), null, context), Collections.emptyList(),
+				new byte[0]);
+		MockHttpServletRequest request = new MockHttpServletRequest();
+
+		this.strategy.onAuthentication(authentication, request, new MockHttpServletResponse());
+		Assertions.assertNull(this.strategy.getContext(request));
+		Mockito.verify(context).dispose();
+		Assertions.assertEquals(0, this.registry.getDisposedCount());
+	}
+
+	@Test
+	public void nothingRegisteredWithoutRetainedContext() {
+		KerberosServiceRequestToken authentication = new KerberosServiceRequestToken(new byte[0]);
+		MockHttpServletRequest request = new MockHttpServletRequest();
+
+		this.strategy.onAuthentication(authentication, request, new MockHttpServletResponse());
+		Assertions.assertNull(request.getSession(false));
+		Assertions.assertEquals(0, this.registry.size());
+	}
+
+}
@@ -17,6 +17,7 @@
 package org.springframework.security.kerberos.web;
 
 import java.io.IOException;
+import java.time.Duration;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -41,6 +42,8 @@ import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.kerberos.authentication.KerberosServiceRequestToken;
 import org.springframework.security.kerberos.authentication.KerberosTicketValidation;
+import org.springframework.security.kerberos.authentication.RecentlyRejectedTicketException;
+import org.springframework.security.kerberos.authentication.TicketValidationOverloadedException;
 import org.springframework.security.kerberos.web.authentication.SpnegoAuthenticationProcessingFilter;
 import org.springframework.security.web.authentication.AuthenticationFailureHandler;
 import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
@@ -192,6 +195,34 @@ public class SpnegoAuthenticationProcessingFilterTest {
 		verify(this.response, never()).setStatus(anyInt());
 	}
 
+	@Test
+	public void testRecentlyRejectedWithHandlers() throws Exception {
+		createHandler();
+		RecentlyRejectedTicketException rejected = new RecentlyRejectedTicketException("rejected");
+		lenient().when(this.request.getHeader(HEADER)).thenReturn(TOKEN_PREFIX_NEG + TEST_TOKEN_BASE64);
+		lenient().when(this.authenticationManager.authenticate(any(Authentication.class))).thenThrow(rejected);
+
+		this.filter.doFilter(this.request, this.response, this.chain);
+		verify(this.chain, never()).doFilter(any(ServletRequest.class), any(ServletResponse.class));
+		verify(this.failureHandler).onAuthenticationFailure(this.request, this.response, rejected);
+		Assertions.assertEquals(0, rejected.getStackTrace().length);
+	}
+
+	@Test
+	public void testOverloadedWithHandlers() throws Exception {
+		createHandler();
+		lenient().when(this.request.getHeader(HEADER)).thenReturn(TOKEN_PREFIX_NEG + TEST_TOKEN_BASE64);
+		lenient().when(this.authenticationManager.authenticate(any(Authentication.class)))
+				.thenThrow(new TicketValidationOverloadedException("overloaded", Duration.ofMillis(1500)));
+
+		this.filter.doFilter(this.request, this.response, this.chain);
+		verify(this.chain, never()).doFilter(any(ServletRequest.class), any(ServletResponse.class));
+		verify(this.response).setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+		verify(this.response).setHeader("Retry-After", "2");
+		verify(this.failureHandler, never()).onAuthenticationFailure(any(HttpServletRequest.class),
+				any(HttpServletResponse.class), any(AuthenticationException.class));
+	}
+
 	@Test
 	public void testAlreadyAuthenticated() throws Exception {
 		try {
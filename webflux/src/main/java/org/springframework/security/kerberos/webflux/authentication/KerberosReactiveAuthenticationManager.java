@@ -0,0 +1,71 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.webflux.authentication;
+
+import reactor.core.publisher.Mono;
+
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.kerberos.authentication.AsyncKerberosClient;
+import org.springframework.security.kerberos.authentication.KerberosAuthenticationProvider;
+import org.springframework.security.kerberos.authentication.KerberosUsernamePasswordAuthenticationToken;
+import org.springframework.util.Assert;
+
+/**
+ * {@link ReactiveAuthenticationManager} logging users in to the KDC with their username
+ * and password, the reactive counterpart of {@link KerberosAuthenticationProvider}.
+ *
+ * <p>
+ * Logins run on the pool of the {@link AsyncKerberosClient}, and no thread of the caller
+ * waits for them. A login failing, timing out or rejected because too many logins are
+ * pending fails the authentication.
+ */
+public class KerberosReactiveAuthenticationManager implements ReactiveAuthenticationManager {
+
+	private final AsyncKerberosClient kerberosClient;
+
+	private final ReactiveUserDetailsService userDetailsService;
+
+	public KerberosReactiveAuthenticationManager(AsyncKerberosClient kerberosClient,
+			ReactiveUserDetailsService userDetailsService) {
+		Assert.notNull(kerberosClient, "kerberosClient cannot be null");
+		Assert.notNull(userDetailsService, "userDetailsService cannot be null");
+		this.kerberosClient = kerberosClient;
+		this.userDetailsService = userDetailsService;
+	}
+
+	@Override
+	public Mono<Authentication> authenticate(Authentication authentication) {
+		UsernamePasswordAuthenticationToken auth = (UsernamePasswordAuthenticationToken) authentication;
+		return Mono
+				.fromFuture(
+						() -> this.kerberosClient.loginAsync(auth.getName(), auth.getCredentials().toString()))
+				.flatMap((subjectHolder) -> this.userDetailsService.findByUsername(subjectHolder.getUsername())
+						.switchIfEmpty(Mono.error(() -> new UsernameNotFoundException(
+								"User " + subjectHolder.getUsername() + " not found")))
+						.map((userDetails) -> {
+							KerberosUsernamePasswordAuthenticationToken output = new KerberosUsernamePasswordAuthenticationToken(
+									userDetails, auth.getCredentials(), userDetails.getAuthorities(), subjectHolder);
+							output.setDetails(authentication.getDetails());
+							return output;
+						}));
+	}
+
+}
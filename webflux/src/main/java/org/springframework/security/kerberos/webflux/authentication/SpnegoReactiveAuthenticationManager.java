@@ -17,6 +17,8 @@
 package org.springframework.security.kerberos.webflux.authentication;
 
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 import org.springframework.security.authentication.ReactiveAuthenticationManager;
 import org.springframework.security.core.Authentication;
@@ -24,9 +26,22 @@ import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsChecker;
+import org.springframework.security.kerberos.authentication.CoalescingKerberosTicketValidator;
 import org.springframework.security.kerberos.authentication.KerberosServiceRequestToken;
+import org.springframework.security.kerberos.authentication.KerberosTicketValidation;
 import org.springframework.security.kerberos.authentication.KerberosTicketValidator;
+import org.springframework.util.Assert;
 
+/**
+ * {@link ReactiveAuthenticationManager} validating SPNEGO tokens with a
+ * {@link KerberosTicketValidator}.
+ *
+ * <p>
+ * Ticket validation blocks, so it runs on the {@link Schedulers#boundedElastic() bounded
+ * elastic} scheduler by default. When the validator is a
+ * {@link CoalescingKerberosTicketValidator}, requests sharing a pending validation wait
+ * for it without holding on to a thread.
+ */
 public class SpnegoReactiveAuthenticationManager implements ReactiveAuthenticationManager {
 
 	private final ReactiveUserDetailsService userDetailsService;
@@ -35,6 +50,8 @@ public class SpnegoReactiveAuthenticationManager implements ReactiveAuthenticati
 
 	private final UserDetailsChecker userDetailsChecker;
 
+	private Scheduler scheduler = Schedulers.boundedElastic();
+
 	public SpnegoReactiveAuthenticationManager(KerberosTicketValidator ticketValidator,
 			ReactiveUserDetailsService userDetailsService, UserDetailsChecker userDetailsChecker) {
 		this.ticketValidator = ticketValidator;
@@ -46,16 +63,33 @@ public class SpnegoReactiveAuthenticationManager implements ReactiveAuthenticati
 	public Mono<Authentication> authenticate(Authentication authentication) {
 		KerberosServiceRequestToken auth = (KerberosServiceRequestToken) authentication;
 		byte[] token = auth.getToken();
-		return Mono.just(token).map(this.ticketValidator::validateTicket)
-				.flatMap((ticketValidation) -> this.userDetailsService.findByUsername(ticketValidation.username())
-						.map((userDetails) -> {
-							this.userDetailsChecker.check(userDetails);
-							this.additionalAuthenticationChecks(userDetails, auth);
-							KerberosServiceRequestToken responseAuth = new KerberosServiceRequestToken(userDetails,
-									ticketValidation, userDetails.getAuthorities(), token);
-							responseAuth.setDetails(authentication.getDetails());
-							return responseAuth;
-						}));
+		return validateTicket(token).flatMap((ticketValidation) -> this.userDetailsService
+				.findByUsername(ticketValidation.username()).map((userDetails) -> {
+					this.userDetailsChecker.check(userDetails);
+					this.additionalAuthenticationChecks(userDetails, auth);
+					KerberosServiceRequestToken responseAuth = new KerberosServiceRequestToken(userDetails,
+							ticketValidation, userDetails.getAuthorities(), token);
+					responseAuth.setDetails(authentication.getDetails());
+					return responseAuth;
+				}));
+	}
+
+	/**
+	 * Sets the scheduler on which tickets are validated. Defaults to
+	 * {@link Schedulers#boundedElastic()}.
+	 * @param scheduler the scheduler
+	 */
+	public void setScheduler(Scheduler scheduler) {
+		Assert.notNull(scheduler, "scheduler cannot be null");
+		this.scheduler = scheduler;
+	}
+
+	private Mono<KerberosTicketValidation> validateTicket(byte[] token) {
+		if (this.ticketValidator instanceof CoalescingKerberosTicketValidator) {
+			CoalescingKerberosTicketValidator validator = (CoalescingKerberosTicketValidator) this.ticketValidator;
+			return Mono.fromFuture(() -> validator.validateTicketAsync(token)).subscribeOn(this.scheduler);
+		}
+		return Mono.fromCallable(() -> this.ticketValidator.validateTicket(token)).subscribeOn(this.scheduler);
 	}
 
 	protected void additionalAuthenticationChecks(UserDetails userDetails, KerberosServiceRequestToken authentication)
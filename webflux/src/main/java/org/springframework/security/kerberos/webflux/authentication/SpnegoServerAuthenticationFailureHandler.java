@@ -0,0 +1,71 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.webflux.authentication;
+
+import reactor.core.publisher.Mono;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.kerberos.authentication.TicketValidationOverloadedException;
+import org.springframework.security.web.server.WebFilterExchange;
+import org.springframework.security.web.server.authentication.HttpBasicServerAuthenticationEntryPoint;
+import org.springframework.security.web.server.authentication.ServerAuthenticationEntryPointFailureHandler;
+import org.springframework.security.web.server.authentication.ServerAuthenticationFailureHandler;
+import org.springframework.util.Assert;
+
+/**
+ * {@link ServerAuthenticationFailureHandler} answering tokens which were not validated
+ * because of a {@link TicketValidationOverloadedException} with
+ * {@code 503 Service Unavailable} and a {@code Retry-After} header. Other failures are
+ * handled by a delegate, by default the same way as {@code AuthenticationWebFilter} does.
+ */
+public class SpnegoServerAuthenticationFailureHandler implements ServerAuthenticationFailureHandler {
+
+	private final ServerAuthenticationFailureHandler delegate;
+
+	/**
+	 * Instantiates a new spnego server authentication failure handler.
+	 */
+	public SpnegoServerAuthenticationFailureHandler() {
+		this(new ServerAuthenticationEntryPointFailureHandler(new HttpBasicServerAuthenticationEntryPoint()));
+	}
+
+	/**
+	 * Instantiates a new spnego server authentication failure handler.
+	 * @param delegate the handler of other failures
+	 */
+	public SpnegoServerAuthenticationFailureHandler(ServerAuthenticationFailureHandler delegate) {
+		Assert.notNull(delegate, "delegate cannot be null");
+		this.delegate = delegate;
+	}
+
+	@Override
+	public Mono<Void> onAuthenticationFailure(WebFilterExchange webFilterExchange, AuthenticationException ex) {
+		if (!(ex instanceof TicketValidationOverloadedException)) {
+			return this.delegate.onAuthenticationFailure(webFilterExchange, ex);
+		}
+		long retryAfter = ((TicketValidationOverloadedException) ex).getRetryAfterSeconds();
+		return Mono.fromRunnable(() -> {
+			ServerHttpResponse response = webFilterExchange.getExchange().getResponse();
+			response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+			response.getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter));
+		});
+	}
+
+}
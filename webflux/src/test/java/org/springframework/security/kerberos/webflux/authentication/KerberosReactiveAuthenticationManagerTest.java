@@ -0,0 +1,101 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.webflux.authentication;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.security.auth.Subject;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.MapReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.kerberos.authentication.AsyncKerberosClient;
+import org.springframework.security.kerberos.authentication.JaasSubjectHolder;
+import org.springframework.security.kerberos.authentication.KerberosClient;
+import org.springframework.security.kerberos.authentication.KerberosUsernamePasswordAuthenticationToken;
+
+public class KerberosReactiveAuthenticationManagerTest {
+
+	private final KerberosClient delegate = Mockito.mock(KerberosClient.class);
+
+	private final AsyncKerberosClient kerberosClient = new AsyncKerberosClient(this.delegate);
+
+	private final KerberosReactiveAuthenticationManager manager = new KerberosReactiveAuthenticationManager(
+			this.kerberosClient, new MapReactiveUserDetailsService(
+					User.withUsername("user1@EXAMPLE.COM").password("n/a").roles("USER").build()));
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	@AfterEach
+	public void tearDown() {
+		this.release.countDown();
+		this.kerberosClient.destroy();
+	}
+
+	@Test
+	public void authenticateDoesNotWaitForLogin() throws Exception {
+		JaasSubjectHolder holder = new JaasSubjectHolder(new Subject(), "user1@EXAMPLE.COM");
+		Mockito.when(this.delegate.login("user1", "secret")).thenAnswer((invocation) -> {
+			this.release.await(10, TimeUnit.SECONDS);
+			return holder;
+		});
+
+		CompletableFuture<Authentication> authentication = this.manager
+				.authenticate(new UsernamePasswordAuthenticationToken("user1", "secret")).toFuture();
+		Assertions.assertFalse(authentication.isDone());
+		this.release.countDown();
+
+		KerberosUsernamePasswordAuthenticationToken result = (KerberosUsernamePasswordAuthenticationToken) authentication
+				.get(10, TimeUnit.SECONDS);
+		Assertions.assertEquals("user1@EXAMPLE.COM", ((User) result.getPrincipal()).getUsername());
+		Assertions.assertSame(holder, result.getJaasSubjectHolder());
+		Assertions.assertTrue(result.isAuthenticated());
+	}
+
+	@Test
+	public void failedLoginFailsAuthentication() {
+		Mockito.when(this.delegate.login("user1", "wrong")).thenThrow(new BadCredentialsException("failed"));
+
+		ExecutionException exception = Assertions.assertThrows(ExecutionException.class,
+				() -> this.manager.authenticate(new UsernamePasswordAuthenticationToken("user1", "wrong")).toFuture()
+						.get(10, TimeUnit.SECONDS));
+		Assertions.assertTrue(exception.getCause() instanceof BadCredentialsException);
+	}
+
+	@Test
+	public void unknownUserFailsAuthentication() {
+		Mockito.when(this.delegate.login("user2", "secret"))
+				.thenReturn(new JaasSubjectHolder(new Subject(), "user2@EXAMPLE.COM"));
+
+		ExecutionException exception = Assertions.assertThrows(ExecutionException.class,
+				() -> this.manager.authenticate(new UsernamePasswordAuthenticationToken("user2", "secret")).toFuture()
+						.get(10, TimeUnit.SECONDS));
+		Assertions.assertTrue(exception.getCause() instanceof UsernameNotFoundException);
+	}
+
+}
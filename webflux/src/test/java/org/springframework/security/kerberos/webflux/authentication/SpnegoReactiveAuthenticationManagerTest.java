@@ -0,0 +1,135 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.webflux.authentication;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.security.auth.Subject;
+
+import org.ietf.jgss.GSSContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import org.springframework.security.authentication.AccountStatusUserDetailsChecker;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.kerberos.authentication.CoalescingKerberosTicketValidator;
+import org.springframework.security.kerberos.authentication.KerberosServiceRequestToken;
+import org.springframework.security.kerberos.authentication.KerberosTicketValidation;
+import org.springframework.security.kerberos.authentication.KerberosTicketValidator;
+
+public class SpnegoReactiveAuthenticationManagerTest {
+
+	private static final byte[] TOKEN = { 0x60, 0x01, 0x01 };
+
+	private static final int REQUESTS = 4;
+
+	private final KerberosTicketValidator delegate = Mockito.mock(KerberosTicketValidator.class);
+
+	private final CoalescingKerberosTicketValidator validator = new CoalescingKerberosTicketValidator(this.delegate);
+
+	private final Scheduler scheduler = Schedulers.newBoundedElastic(REQUESTS * 2, 100, "spnego-test");
+
+	private final CountDownLatch started = new CountDownLatch(1);
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	@AfterEach
+	public void disposeScheduler() {
+		this.scheduler.dispose();
+	}
+
+	@Test
+	public void concurrentAuthenticationsShareOneValidation() throws Exception {
+		GSSContext context = Mockito.mock(GSSContext.class);
+		Mockito.when(this.delegate.validateTicket(ArgumentMatchers.any())).thenAnswer((invocation) -> {
+			this.started.countDown();
+			this.release.await(10, TimeUnit.SECONDS);
+			return new KerberosTicketValidation("user1", new Subject(), null, context);
+		});
+
+		List<CompletableFuture<Authentication>> authentications = authenticateConcurrently();
+		this.release.countDown();
+
+		int withContext = 0;
+		for (CompletableFuture<Authentication> authentication : authentications) {
+			KerberosServiceRequestToken result = (KerberosServiceRequestToken) authentication.get(10, TimeUnit.SECONDS);
+			Assertions.assertEquals("user1", ((User) result.getPrincipal()).getUsername());
+			if (result.getTicketValidation().getGssContext() != null) {
+				Assertions.assertSame(context, result.getTicketValidation().getGssContext());
+				withContext++;
+			}
+		}
+		Assertions.assertEquals(1, withContext);
+		Mockito.verify(this.delegate, Mockito.times(1)).validateTicket(ArgumentMatchers.any());
+	}
+
+	@Test
+	public void failureReachesEverySubscriber() throws Exception {
+		Mockito.when(this.delegate.validateTicket(ArgumentMatchers.any())).thenAnswer((invocation) -> {
+			this.started.countDown();
+			this.release.await(10, TimeUnit.SECONDS);
+			throw new BadCredentialsException("bad token");
+		});
+
+		List<CompletableFuture<Authentication>> authentications = authenticateConcurrently();
+		this.release.countDown();
+
+		for (CompletableFuture<Authentication> authentication : authentications) {
+			ExecutionException ex = Assertions.assertThrows(ExecutionException.class,
+					() -> authentication.get(10, TimeUnit.SECONDS));
+			Assertions.assertTrue(ex.getCause() instanceof BadCredentialsException);
+		}
+		Mockito.verify(this.delegate, Mockito.times(1)).validateTicket(ArgumentMatchers.any());
+	}
+
+	private List<CompletableFuture<Authentication>> authenticateConcurrently() throws Exception {
+		SpnegoReactiveAuthenticationManager manager = new SpnegoReactiveAuthenticationManager(this.validator,
+				(username) -> Mono.just(User.withUsername(username).password("").authorities("ROLE_USER").build()),
+				new AccountStatusUserDetailsChecker());
+		manager.setScheduler(this.scheduler);
+		List<CompletableFuture<Authentication>> authentications = new ArrayList<CompletableFuture<Authentication>>();
+		authentications.add(manager.authenticate(new KerberosServiceRequestToken(TOKEN)).toFuture());
+		Assertions.assertTrue(this.started.await(10, TimeUnit.SECONDS));
+		for (int i = 1; i < REQUESTS; i++) {
+			authentications.add(manager.authenticate(new KerberosServiceRequestToken(TOKEN)).toFuture());
+		}
+		// followers joined the pending validation while its thread is still blocked
+		long deadline = System.currentTimeMillis() + 10000;
+		while (this.validator.getCoalescedCount() < REQUESTS - 1 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		Assertions.assertEquals(REQUESTS - 1, this.validator.getCoalescedCount());
+		for (CompletableFuture<Authentication> authentication : authentications) {
+			Assertions.assertFalse(authentication.isDone());
+		}
+		return authentications;
+	}
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2009-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.kerberos.webflux.authentication;
+
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.security.auth.Subject;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import reactor.core.publisher.Mono;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.authentication.AccountStatusUserDetailsChecker;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.kerberos.authentication.ConcurrencyLimitingKerberosTicketValidator;
+import org.springframework.security.kerberos.authentication.KerberosTicketValidation;
+import org.springframework.security.kerberos.authentication.KerberosTicketValidator;
+import org.springframework.security.web.server.authentication.AuthenticationWebFilter;
+
+public class SpnegoServerAuthenticationFailureHandlerTest {
+
+	private static final byte[] TOKEN = { 0x60, 0x01, 0x01 };
+
+	private final KerberosTicketValidator delegate = Mockito.mock(KerberosTicketValidator.class);
+
+	@Test
+	public void overloadedValidationAnsweredWithServiceUnavailable() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Mockito.when(this.delegate.validateTicket(ArgumentMatchers.any())).thenAnswer((invocation) -> {
+			started.countDown();
+			release.await(10, TimeUnit.SECONDS);
+			return new KerberosTicketValidation("user1", new Subject(), null, null);
+		});
+		ConcurrencyLimitingKerberosTicketValidator validator = new ConcurrencyLimitingKerberosTicketValidator(
+				this.delegate, 1);
+		validator.setRetryAfter(Duration.ofSeconds(3));
+		AuthenticationWebFilter filter = new AuthenticationWebFilter(new SpnegoReactiveAuthenticationManager(validator,
+				(username) -> Mono.just(User.withUsername(username).password("").authorities("ROLE_USER").build()),
+				new AccountStatusUserDetailsChecker()));
+		filter.setServerAuthenticationConverter(new SpnegoServerAuthenticationConverter());
+		filter.setAuthenticationFailureHandler(new SpnegoServerAuthenticationFailureHandler());
+
+		MockServerWebExchange admitted = exchange();
+		CompletableFuture<Void> first = filter.filter(admitted, (exchange) -> Mono.empty()).toFuture();
+		Assertions.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+		MockServerWebExchange rejected = exchange();
+		filter.filter(rejected, (exchange) -> Mono.empty()).block(Duration.ofSeconds(10));
+		Assertions.assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rejected.getResponse().getStatusCode());
+		Assertions.assertEquals("3", rejected.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+
+		release.countDown();
+		first.get(10, TimeUnit.SECONDS);
+		Assertions.assertNotEquals(HttpStatus.SERVICE_UNAVAILABLE, admitted.getResponse().getStatusCode());
+		Assertions.assertEquals(1, validator.getRejectedCount());
+	}
+
+	private static MockServerWebExchange exchange() {
+		return MockServerWebExchange.from(MockServerHttpRequest.get("/").header(HttpHeaders.AUTHORIZATION,
+				"Negotiate " + Base64.getEncoder().encodeToString(TOKEN)));
+	}
+
+}